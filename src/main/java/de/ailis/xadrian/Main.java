@@ -6,11 +6,18 @@
 package de.ailis.xadrian;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.SwingUtilities;
 
 import de.ailis.oneinstance.OneInstance;
 import de.ailis.oneinstance.OneInstanceListener;
+import de.ailis.xadrian.data.BaseComplexCache;
+import de.ailis.xadrian.data.BaseComplexStore;
+import de.ailis.xadrian.data.ComplexJournal;
+import de.ailis.xadrian.data.ComplexLibrary;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.factories.GameFactory;
 import de.ailis.xadrian.dialogs.AboutDialog;
@@ -21,6 +28,7 @@ import de.ailis.xadrian.dialogs.SaveComplexDialog;
 import de.ailis.xadrian.dialogs.SelectGameDialog;
 import de.ailis.xadrian.frames.MainFrame;
 import de.ailis.xadrian.frames.SplashFrame;
+import de.ailis.xadrian.freemarker.SiteExporter;
 import de.ailis.xadrian.support.ErrorHandler;
 import de.ailis.xadrian.utils.SwingUtils;
 
@@ -45,6 +53,10 @@ public class Main
      */
     public static void main(final String[] args)
     {
+        // Export complexes to a static HTML site without starting the GUI
+        if (args.length > 0 && "--export-html".equals(args[0]))
+            System.exit(exportHTML(args));
+
         // If Xadrian is already running then focus the already running
         // Xadrian and pass command line arguments to it. This allows us
         // to open more complexes in the already running Xadrian by
@@ -82,9 +94,24 @@ public class Main
             // Install the error handler
             ErrorHandler.install();
 
+            // Keep calculated base complexes on disk across sessions
+            BaseComplexCache.getInstance().setStore(new BaseComplexStore(
+                BaseComplexStore.getDefaultDirectory(),
+                BaseComplexStore.DEFAULT_MAX_SIZE));
+
             // Open the splash screen.
             SplashFrame.open();
 
+            // Restore the complexes left open by a crashed session
+            ComplexJournal.setDirectory(ComplexJournal.getDefaultDirectory());
+            final List<ComplexJournal.Recovery> recoveries =
+                ComplexJournal.recover();
+
+            // Keep the complex library up to date
+            final ComplexLibrary library = ComplexLibrary.getDefault();
+            library.watch();
+            library.refresh();
+
             // Preload everything
             for (Game game: GameFactory.getInstance().getGames())
             {
@@ -110,7 +137,7 @@ public class Main
                 @Override
                 public void run()
                 {
-                    MainFrame.start(args);
+                    MainFrame.start(args, recoveries);
                 }
             });
         }
@@ -120,4 +147,45 @@ public class Main
             System.exit(1);
         }
     }
+
+    /**
+     * Exports complexes to a static HTML site. Called with the command line
+     * arguments "--export-html DIRECTORY FILE...". The files can be complex
+     * files or directories containing complex files.
+     *
+     * @param args
+     *            Command line arguments
+     * @return The exit code
+     */
+    private static int exportHTML(final String[] args)
+    {
+        if (args.length < 3)
+        {
+            System.err.println("Usage: xadrian --export-html DIRECTORY "
+                + "FILE...");
+            return 2;
+        }
+        System.setProperty("java.awt.headless", "true");
+        SwingUtils.prepareLocale();
+        final List<File> files = new ArrayList<File>();
+        for (int i = 2; i < args.length; i++)
+            files.add(new File(args[i]));
+        final SiteExporter exporter = new SiteExporter(new File(args[1]));
+        try
+        {
+            exporter.export(files, null);
+        }
+        catch (final IOException e)
+        {
+            System.err.println("Unable to export complexes: " + e);
+            return 1;
+        }
+        catch (final InterruptedException e)
+        {
+            return 1;
+        }
+        System.out.println("Rendered " + exporter.getRendered()
+            + " changed complexes into " + exporter.getDirectory());
+        return 0;
+    }
 }
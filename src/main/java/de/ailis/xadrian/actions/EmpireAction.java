@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.actions;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import de.ailis.xadrian.frames.MainFrame;
+import de.ailis.xadrian.listeners.MainStateListener;
+import de.ailis.xadrian.resources.Icons;
+import de.ailis.xadrian.support.FrameAction;
+
+/**
+ * Shows the supply and demand of all open complexes of the current game.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class EmpireAction extends FrameAction<MainFrame> implements
+    MainStateListener
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /**
+     * Constructor
+     *
+     * @param frame
+     *            The frame
+     */
+    public EmpireAction(final MainFrame frame)
+    {
+        super(frame, "empire", Icons.SECTOR);
+        frame.addStateListener(this);
+        setEnabled(false);
+    }
+
+    /**
+     * @see ActionListener#actionPerformed(ActionEvent)
+     */
+    @Override
+    public void actionPerformed(final ActionEvent e)
+    {
+        this.frame.empire();
+    }
+
+    /**
+     * @see MainStateListener#mainStateChanged(MainFrame)
+     */
+    @Override
+    public void mainStateChanged(final MainFrame sender)
+    {
+        setEnabled(sender.getCurrentTab() != null);
+    }
+}
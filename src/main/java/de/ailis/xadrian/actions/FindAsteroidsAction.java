@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.actions;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import de.ailis.xadrian.components.ComplexEditor;
+import de.ailis.xadrian.frames.MainFrame;
+import de.ailis.xadrian.listeners.MainStateListener;
+import de.ailis.xadrian.resources.Icons;
+import de.ailis.xadrian.support.FrameAction;
+
+/**
+ * Searches the asteroids with the best yields and moves the complex to the
+ * sector of the selected asteroid.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class FindAsteroidsAction extends FrameAction<MainFrame> implements
+    MainStateListener
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /**
+     * Constructor
+     *
+     * @param frame
+     *            The frame
+     */
+    public FindAsteroidsAction(final MainFrame frame)
+    {
+        super(frame, "findAsteroids", Icons.SECTOR);
+        frame.addStateListener(this);
+        setEnabled(false);
+    }
+
+    /**
+     * @see ActionListener#actionPerformed(ActionEvent)
+     */
+    @Override
+    public void actionPerformed(final ActionEvent e)
+    {
+        final Component component = this.frame.getCurrentTab();
+        if (component instanceof ComplexEditor)
+            ((ComplexEditor) component).findAsteroids();
+    }
+
+    /**
+     * @see MainStateListener#mainStateChanged(MainFrame)
+     */
+    @Override
+    public void mainStateChanged(final MainFrame sender)
+    {
+        setEnabled(sender.getCurrentTab() != null);
+    }
+}
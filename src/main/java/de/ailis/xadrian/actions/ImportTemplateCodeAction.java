@@ -13,17 +13,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 
-import javax.swing.JOptionPane;
-
-import de.ailis.xadrian.data.Complex;
 import de.ailis.xadrian.exceptions.TemplateCodeException;
 import de.ailis.xadrian.frames.MainFrame;
 import de.ailis.xadrian.listeners.MainStateListener;
 import de.ailis.xadrian.support.FrameAction;
-import de.ailis.xadrian.support.I18N;
 
 /**
- * Imports from a complex template code in clipboard.
+ * Imports complexes from all template codes found in the clipboard.
  *
  * @author Klaus Reimer (k@ailis.de)
  */
@@ -51,7 +47,6 @@ public class ImportTemplateCodeAction extends FrameAction<MainFrame> implements
     @Override
     public void actionPerformed(final ActionEvent e)
     {
-        int imported = 0;
         final Clipboard clipboard = this.frame.getToolkit().getSystemClipboard();
         final Transferable transferable = clipboard.getContents(null);
         if (transferable.isDataFlavorSupported(DataFlavor.stringFlavor))
@@ -60,21 +55,7 @@ public class ImportTemplateCodeAction extends FrameAction<MainFrame> implements
             {
                 final String text = transferable.getTransferData(DataFlavor.stringFlavor)
                     .toString();
-                for (final String code: text.split("\\s+"))
-                {
-                    if (Complex.isValidTemplateCode(code))
-                    {
-                        this.frame.importFromTemplateCode(code);
-                        imported += 1;
-                    }
-                }
-
-                if (imported == 0)
-                {
-                    JOptionPane.showMessageDialog(null, I18N.getString(
-                        "error.noTemplateCodeFound"), I18N
-                        .getString("error.title"), JOptionPane.ERROR_MESSAGE);
-                }
+                this.frame.importTemplateCodes(text);
             }
             catch (final UnsupportedFlavorException ex)
             {
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.actions;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import de.ailis.xadrian.frames.MainFrame;
+import de.ailis.xadrian.resources.Icons;
+import de.ailis.xadrian.support.FrameAction;
+
+/**
+ * Opens the complex library to search the complex files of a directory
+ * tree.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LibraryAction extends FrameAction<MainFrame>
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /**
+     * Constructor
+     *
+     * @param frame
+     *            The frame
+     */
+    public LibraryAction(final MainFrame frame)
+    {
+        super(frame, "library", Icons.OPEN);
+    }
+
+    /**
+     * @see ActionListener#actionPerformed(ActionEvent)
+     */
+    @Override
+    public void actionPerformed(final ActionEvent e)
+    {
+        this.frame.library();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.actions;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import de.ailis.xadrian.frames.MainFrame;
+import de.ailis.xadrian.listeners.MainStateListener;
+import de.ailis.xadrian.resources.Icons;
+import de.ailis.xadrian.support.FrameAction;
+
+/**
+ * Searches the most profitable complex for a budget and opens it in a new
+ * tab.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class OptimizeBudgetAction extends FrameAction<MainFrame> implements
+    MainStateListener
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /**
+     * Constructor
+     *
+     * @param frame
+     *            The frame
+     */
+    public OptimizeBudgetAction(final MainFrame frame)
+    {
+        super(frame, "optimizeBudget", Icons.WAND);
+        frame.addStateListener(this);
+        setEnabled(false);
+    }
+
+    /**
+     * @see ActionListener#actionPerformed(ActionEvent)
+     */
+    @Override
+    public void actionPerformed(final ActionEvent e)
+    {
+        this.frame.optimizeBudget();
+    }
+
+    /**
+     * @see MainStateListener#mainStateChanged(MainFrame)
+     */
+    @Override
+    public void mainStateChanged(final MainFrame sender)
+    {
+        setEnabled(sender.getCurrentTab() != null);
+    }
+}
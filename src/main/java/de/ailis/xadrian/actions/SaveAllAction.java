@@ -15,7 +15,8 @@ import de.ailis.xadrian.resources.Icons;
 import de.ailis.xadrian.support.FrameAction;
 
 /**
- * Saves all modified files.
+ * Saves all modified files. The files are written concurrently in the
+ * background.
  *
  * @author Klaus Reimer (k@ailis.de)
  */
@@ -46,10 +47,12 @@ public class SaveAllAction extends FrameAction<MainFrame> implements MainStateLi
         for (final Component component: this.frame.getTabs().getComponents())
         {
             final ComplexEditor editor = (ComplexEditor) component;
-            if (editor.isChanged())
+            if (editor.isChanged() && !editor.isSaving())
             {
                 editor.save();
-                if (editor.isChanged()) return;
+
+                // Stop when the user cancelled the file selection
+                if (!editor.isSaving() && editor.isChanged()) return;
             }
         }
     }
@@ -8,11 +8,16 @@ package de.ailis.xadrian.components;
 import java.awt.BorderLayout;
 import java.awt.Font;
 import java.awt.print.PrinterException;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComponent;
@@ -20,6 +25,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
 import javax.swing.UIManager;
 import javax.swing.event.CaretEvent;
@@ -41,14 +47,19 @@ import de.ailis.xadrian.actions.CopyAction;
 import de.ailis.xadrian.actions.SelectAllAction;
 import de.ailis.xadrian.actions.ToggleBaseComplexAction;
 import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.ComplexFactory;
+import de.ailis.xadrian.data.ComplexJournal;
+import de.ailis.xadrian.data.ComplexJournal.Toggle;
 import de.ailis.xadrian.data.Factory;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Sector;
 import de.ailis.xadrian.data.Ware;
 import de.ailis.xadrian.dialogs.AddFactoryDialog;
+import de.ailis.xadrian.dialogs.BestSectorsDialog;
 import de.ailis.xadrian.dialogs.ChangePricesDialog;
 import de.ailis.xadrian.dialogs.ChangeQuantityDialog;
 import de.ailis.xadrian.dialogs.ChangeSunsDialog;
+import de.ailis.xadrian.dialogs.FindAsteroidsDialog;
 import de.ailis.xadrian.dialogs.SaveComplexDialog;
 import de.ailis.xadrian.dialogs.SelectSectorDialog;
 import de.ailis.xadrian.dialogs.SetYieldsDialog;
@@ -60,13 +71,15 @@ import de.ailis.xadrian.interfaces.SectorProvider;
 import de.ailis.xadrian.interfaces.StateProvider;
 import de.ailis.xadrian.listeners.ClipboardStateListener;
 import de.ailis.xadrian.listeners.EditorStateListener;
+import de.ailis.xadrian.listeners.FileChangeListener;
 import de.ailis.xadrian.listeners.StateListener;
 import de.ailis.xadrian.support.Config;
+import de.ailis.xadrian.support.FileWatcher;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog.Result;
 import de.ailis.xadrian.utils.FileUtils;
 import de.ailis.xadrian.utils.SwingUtils;
-import de.ailis.xadrian.utils.XmlUtils;
+import de.ailis.xadrian.utils.ThreadUtils;
 import freemarker.template.Template;
 
 /**
@@ -76,7 +89,7 @@ import freemarker.template.Template;
  */
 public class ComplexEditor extends JComponent implements HyperlinkListener,
     CaretListener, ClipboardProvider, ComplexProvider, SectorProvider,
-    GameProvider
+    GameProvider, FileChangeListener
 {
     /** Serial version UID */
     private static final long serialVersionUID = -582597303446091577L;
@@ -88,11 +101,24 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     private static final Template template = TemplateFactory
         .getTemplate("complex.ftl");
 
+    /** The number of threads writing saved complexes to disk */
+    private static final int SAVE_THREADS = 4;
+
+    /** The executor writing saved complexes to disk in the background */
+    private static final ExecutorService saveExecutor = ThreadUtils
+        .createExecutor("save", SAVE_THREADS);
+
     /** The text pane */
     private final JTextPane textPane;
 
-    /** The edited complex */
-    private final Complex complex;
+    /** The edited complex. Replaced when the file is reloaded */
+    private Complex complex;
+
+    /**
+     * The complex as it was last loaded or saved. Used as common ancestor
+     * when merging external changes. Null if unknown
+     */
+    private Complex base;
 
     /** The file under which this complex was last saved */
     private File file;
@@ -100,6 +126,18 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     /** True if this editor has unsaved changes */
     private boolean changed = false;
 
+    /**
+     * The number of changes made so far. Used to detect changes made while
+     * a save is running.
+     */
+    private int revision = 0;
+
+    /** The save currently running in the background. Null if none */
+    private SaveTask saving;
+
+    /** The journal recording the changes for crash recovery */
+    private final ComplexJournal journal;
+
     /**
      * Constructor
      *
@@ -121,12 +159,48 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
      *            loaded from a file.
      */
     public ComplexEditor(final Complex complex, final File file)
+    {
+        this(complex, file, false, ComplexJournal.create());
+    }
+
+    /**
+     * Constructor for a complex recovered from a journal after a crash.
+     *
+     * @param recovery
+     *            The recovered complex
+     */
+    public ComplexEditor(final ComplexJournal.Recovery recovery)
+    {
+        this(recovery.getComplex(), recovery.getFile(), recovery.isChanged(),
+            recovery.getJournal());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to edit
+     * @param file
+     *            The file from which the complex was loaded. Null if it not
+     *            loaded from a file.
+     * @param changed
+     *            If the complex has unsaved changes
+     * @param journal
+     *            The journal recording the changes
+     */
+    private ComplexEditor(final Complex complex, final File file,
+        final boolean changed, final ComplexJournal journal)
     {
         super();
         setLayout(new BorderLayout());
 
         this.complex = complex;
         this.file = file;
+        this.changed = changed;
+        this.journal = journal;
+        journal.snapshot(complex, file, changed);
+        if (!changed) this.base = complex.copy();
+        if (file != null) FileWatcher.getInstance().watch(file, this);
 
         // Create the text pane
         this.textPane = new JTextPane();
@@ -143,7 +217,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         popupMenu.add(new SelectAllAction(this));
         popupMenu.addSeparator();
         popupMenu.add(new AddFactoryAction(this));
-        popupMenu.add(new ChangeSectorAction(this.complex, this, "complex"));
+        popupMenu.add(new ChangeSectorAction(this, this, "complex"));
         popupMenu.add(new ChangeSunsAction(this));
         popupMenu.add(new ChangePricesAction(this));
         popupMenu.add(new JCheckBoxMenuItem(new ToggleBaseComplexAction(this)));
@@ -211,6 +285,9 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     private void doChange()
     {
         this.changed = true;
+        this.revision++;
+        if (this.journal.needsCompaction())
+            this.journal.snapshot(this.complex, this.file, true);
         fireState();
         fireComplexState();
     }
@@ -304,6 +381,10 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
             {
                 toggleShowingStorageCapacities();
             }
+            else if ("toggleShowingPriceSensitivity".equals(action))
+            {
+                toggleShowingPriceSensitivity();
+            }
             else if ("toggleShowingShoppingList".equals(action))
             {
                 toggleShowingShoppingList();
@@ -344,6 +425,13 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
             for (final Factory factory : dialog.getFactories())
             {
                 this.complex.addFactory(factory);
+
+                // Mines are added through a dialog so the result is recorded
+                // as a whole
+                if (factory.isMine())
+                    this.journal.snapshot(this.complex, this.file, true);
+                else
+                    this.journal.addFactory(factory, 1);
             }
             doChange();
             redraw();
@@ -362,6 +450,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         if (dialog.open() == Result.OK)
         {
             this.complex.setSector(dialog.getSelected());
+            this.journal.setSector(dialog.getSelected());
             doChange();
             redraw();
         }
@@ -373,6 +462,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void toggleShowingComplexSetup()
     {
         this.complex.toggleShowingComplexSetup();
+        this.journal.toggle(Toggle.COMPLEX_SETUP);
         doChange();
         redraw();
     }
@@ -386,6 +476,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void buildFactory(final String id)
     {
         this.complex.buildFactory(id);
+        this.journal.buildFactory(id);
         doChange();
         redraw();
     }
@@ -399,6 +490,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void destroyFactory(final String id)
     {
         this.complex.destroyFactory(id);
+        this.journal.destroyFactory(id);
         doChange();
         redraw();
     }
@@ -409,6 +501,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void buildKit()
     {
         this.complex.buildKit();
+        this.journal.buildKit();
         doChange();
         redraw();
     }
@@ -419,6 +512,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void destroyKit()
     {
         this.complex.destroyKit();
+        this.journal.destroyKit();
         doChange();
         redraw();
     }
@@ -429,6 +523,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void toggleShowingProductionStats()
     {
         this.complex.toggleShowingProductionStats();
+        this.journal.toggle(Toggle.PRODUCTION_STATS);
         doChange();
         redraw();
     }
@@ -439,6 +534,18 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void toggleShowingStorageCapacities()
     {
         this.complex.toggleShowingStorageCapacities();
+        this.journal.toggle(Toggle.STORAGE_CAPACITIES);
+        doChange();
+        redraw();
+    }
+
+    /**
+     * Toggles the display of the price sensitivity.
+     */
+    public void toggleShowingPriceSensitivity()
+    {
+        this.complex.toggleShowingPriceSensitivity();
+        this.journal.toggle(Toggle.PRICE_SENSITIVITY);
         doChange();
         redraw();
     }
@@ -449,6 +556,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void toggleShowingShoppingList()
     {
         this.complex.toggleShowingShoppingList();
+        this.journal.toggle(Toggle.SHOPPING_LIST);
         doChange();
         redraw();
     }
@@ -462,6 +570,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void removeFactory(final int index)
     {
         this.complex.removeFactory(index);
+        this.journal.removeFactory(index);
         doChange();
         redraw();
     }
@@ -475,6 +584,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void disableFactory(final int index)
     {
         this.complex.disableFactory(index);
+        this.journal.disableFactory(index);
         doChange();
         redraw();
     }
@@ -488,6 +598,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void enableFactory(final int index)
     {
         this.complex.enableFactory(index);
+        this.journal.enableFactory(index);
         doChange();
         redraw();
     }
@@ -500,7 +611,11 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
      */
     public void acceptFactory(final int index)
     {
+        final ComplexFactory accepted =
+            this.complex.getAutoFactories().get(index);
         this.complex.acceptFactory(index);
+        this.journal.acceptFactory(accepted.getFactory(), accepted
+            .getQuantity());
         doChange();
         redraw();
     }
@@ -518,6 +633,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         if (dialog.open() == Result.OK)
         {
             this.complex.setQuantity(index, dialog.getQuantity());
+            this.journal.setQuantity(index, dialog.getQuantity());
             doChange();
             redraw();
         }
@@ -533,6 +649,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     {
         if (this.complex.increaseQuantity(index))
         {
+            this.journal.increaseQuantity(index);
             doChange();
             redraw();
         }
@@ -548,6 +665,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     {
         if (this.complex.decreaseQuantity(index))
         {
+            this.journal.decreaseQuantity(index);
             doChange();
             redraw();
         }
@@ -569,6 +687,8 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         {
             this.complex.setYields(index, dialog.getYields());
             this.complex.setSector(dialog.getSector());
+            this.journal.setYields(index, dialog.getYields());
+            this.journal.setSector(dialog.getSector());
             doChange();
             redraw();
         }
@@ -586,6 +706,41 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         if (dialog.open() == Result.OK)
         {
             this.complex.setSuns(dialog.getSuns());
+            this.journal.setSuns(dialog.getSuns());
+            doChange();
+            redraw();
+        }
+    }
+
+    /**
+     * Rates the complex in all sectors and moves it to the sector selected
+     * by the user.
+     */
+    public void findBestSectors()
+    {
+        final BestSectorsDialog dialog = new BestSectorsDialog(this.complex);
+        if (dialog.open() == Result.OK)
+        {
+            this.complex.relocate(dialog.getSelected());
+            this.journal.relocate(dialog.getSelected());
+            doChange();
+            redraw();
+        }
+    }
+
+    /**
+     * Searches the asteroids with the best yields and moves the complex to
+     * the sector of the asteroid selected by the user.
+     */
+    public void findAsteroids()
+    {
+        final FindAsteroidsDialog dialog =
+            this.complex.getGame().getFindAsteroidsDialog();
+        dialog.setSector(this.complex.getSector());
+        if (dialog.open() == Result.OK)
+        {
+            this.complex.setSector(dialog.getSelected());
+            this.journal.setSector(dialog.getSelected());
             doChange();
             redraw();
         }
@@ -615,7 +770,8 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         {
             // Add file extension if none present
             if (FileUtils.getExtension(file) == null)
-                file = new File(file.getPath() + ".x3c");
+                file = new File(file.getPath() + "."
+                    + dialog.getSelectedExtension());
 
             // Save the file if it does not yet exists are user confirms
             // overwrite
@@ -631,30 +787,228 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     }
 
     /**
-     * Save the complex in the specified file.
+     * Save the complex in the specified file. A snapshot of the complex is
+     * taken immediately and then written to disk in the background. The
+     * editor is marked as saved when writing is finished.
      *
      * @param file
      *            The file
      */
     private void save(final File file)
     {
+        // Only one save per editor at a time so an older snapshot never
+        // replaces a newer one
+        waitForSave();
+
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
         try
         {
-            XmlUtils.write(this.complex.toXML(), file);
-            this.file = file;
-            this.changed = false;
-            this.complex.setName(FileUtils.getNameWithoutExt(file));
-            redraw();
-            fireState();
-            fireComplexState();
+            if (Complex.isBinaryFile(file))
+                this.complex.writeBinary(snapshot, true);
+            else
+                this.complex.writeXML(snapshot);
         }
         catch (final IOException e)
         {
-            JOptionPane.showMessageDialog(null, I18N.getString(
-                "error.cantWriteComplex", file), I18N
-                .getString("error.title"), JOptionPane.ERROR_MESSAGE);
-            log.error("Unable to save complex to file '" + file + "': " + e, e);
+            saveFailed(file, e);
+            return;
         }
+        this.saving = new SaveTask(file, snapshot.toByteArray(), this.complex
+            .copy(), this.revision);
+        saveExecutor.execute(this.saving);
+    }
+
+    /**
+     * Finishes a background save. Does nothing if the save was already
+     * finished.
+     *
+     * @param task
+     *            The finished save task
+     */
+    void finishSave(final SaveTask task)
+    {
+        if (this.saving != task) return;
+        this.saving = null;
+        IOException error;
+        try
+        {
+            error = task.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            error = new IOException("Interrupted", e);
+        }
+        catch (final ExecutionException e)
+        {
+            error = new IOException(e.getCause().toString(), e.getCause());
+        }
+        if (error != null)
+        {
+            saveFailed(task.file, error);
+            return;
+        }
+        if (!task.file.equals(this.file))
+        {
+            if (this.file != null)
+                FileWatcher.getInstance().unwatch(this.file, this);
+            FileWatcher.getInstance().watch(task.file, this);
+        }
+        this.file = task.file;
+        this.base = task.complex;
+        if (task.revision == this.revision) this.changed = false;
+        this.complex.setName(FileUtils.getNameWithoutExt(task.file));
+        this.journal.snapshot(this.complex, this.file, this.changed);
+        redraw();
+        fireState();
+        fireComplexState();
+    }
+
+    /**
+     * Reports a failed save.
+     *
+     * @param file
+     *            The file which could not be written
+     * @param e
+     *            The error
+     */
+    private void saveFailed(final File file, final IOException e)
+    {
+        JOptionPane.showMessageDialog(null, I18N.getString(
+            "error.cantWriteComplex", file), I18N
+            .getString("error.title"), JOptionPane.ERROR_MESSAGE);
+        log.error("Unable to save complex to file '" + file + "': " + e, e);
+    }
+
+    /**
+     * Waits until the save running in the background is finished.
+     *
+     * @return True if the complex has no unsaved changes afterwards, false
+     *         if it still has unsaved changes (Because saving failed for
+     *         example)
+     */
+    public boolean waitForSave()
+    {
+        final SaveTask task = this.saving;
+        if (task != null)
+        {
+            try
+            {
+                task.get();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            catch (final ExecutionException e)
+            {
+                // Reported by finishSave
+            }
+            finishSave(task);
+        }
+        return !this.changed;
+    }
+
+    /**
+     * Checks if the complex is currently written to disk in the background.
+     *
+     * @return True if a save is running, false if not
+     */
+    public boolean isSaving()
+    {
+        return this.saving != null;
+    }
+
+    /**
+     * Closes the editor. Deletes the journal because the complex no longer
+     * needs to be recovered.
+     */
+    public void close()
+    {
+        if (this.file != null)
+            FileWatcher.getInstance().unwatch(this.file, this);
+        this.journal.close();
+    }
+
+    /**
+     * Reads the complex file again after it has been changed by another
+     * program. Called by the file watcher thread so the file is parsed
+     * outside of the event thread.
+     *
+     * @see FileChangeListener#fileChanged(File)
+     */
+    @Override
+    public void fileChanged(final File file)
+    {
+        // Deleted files are ignored. The editor still has the complex.
+        if (!file.isFile()) return;
+        final Complex remote;
+        try
+        {
+            remote = Complex.readFile(file);
+        }
+        catch (final Exception e)
+        {
+            // Probably still being written. Next change is reported again.
+            log.warn("Unable to reload complex from file '" + file + "': "
+                + e);
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                reload(file, remote);
+            }
+        });
+    }
+
+    /**
+     * Replaces the complex with the complex read from the changed file.
+     * Unsaved changes are merged with the changes made by the other
+     * program. The user is only asked when the changes conflict.
+     *
+     * @param file
+     *            The changed file
+     * @param remote
+     *            The complex read from the changed file
+     */
+    void reload(final File file, final Complex remote)
+    {
+        // Ignore changes of an old file and changes caused by our own save
+        if (!file.equals(this.file) || isSaving()) return;
+
+        Complex complex = remote;
+        if (this.changed)
+        {
+            complex = this.base == null ? null : Complex.merge(this.base,
+                this.complex, remote);
+            if (complex == null)
+            {
+                if (JOptionPane.showConfirmDialog(null, I18N.getString(
+                    "confirm.reloadConflict", file), I18N
+                    .getString("confirm.title"), JOptionPane.YES_NO_OPTION)
+                    != JOptionPane.YES_OPTION)
+                {
+                    // Keep the local version which overwrites the file
+                    // when saved
+                    this.base = remote;
+                    return;
+                }
+                complex = remote;
+            }
+        }
+        this.base = remote.copy();
+        this.complex = complex;
+        complex.setName(FileUtils.getNameWithoutExt(file));
+        this.changed = complex != remote;
+        this.revision++;
+        this.journal.snapshot(complex, file, this.changed);
+        redraw();
+        fireState();
+        fireComplexState();
     }
 
     /**
@@ -684,6 +1038,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void toggleBaseComplex()
     {
         this.complex.toggleAddBaseComplex();
+        this.journal.toggle(Toggle.BASE_COMPLEX);
         doChange();
         redraw();
     }
@@ -990,6 +1345,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         if (dialog.open(this.complex) == Result.OK)
         {
             this.complex.setCustomPrices(dialog.getCustomPrices());
+            this.journal.setCustomPrices(dialog.getCustomPrices());
             doChange();
             redraw();
         }
@@ -1020,6 +1376,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     public void setSector(final Sector sector)
     {
         this.complex.setSector(sector);
+        this.journal.setSector(sector);
         doChange();
         redraw();
     }
@@ -1054,4 +1411,74 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     {
         return this.file;
     }
+
+    /**
+     * Writes a snapshot of the complex to disk and finishes the save on the
+     * event thread.
+     */
+    private final class SaveTask extends FutureTask<IOException>
+    {
+        /** The file to write */
+        final File file;
+
+        /** The copy of the complex from which the snapshot was taken */
+        final Complex complex;
+
+        /** The revision of the complex when the snapshot was taken */
+        final int revision;
+
+        /**
+         * Constructor
+         *
+         * @param file
+         *            The file to write
+         * @param data
+         *            The snapshot of the complex
+         * @param complex
+         *            The copy of the complex from which the snapshot was
+         *            taken
+         * @param revision
+         *            The revision of the complex when the snapshot was taken
+         */
+        SaveTask(final File file, final byte[] data, final Complex complex,
+            final int revision)
+        {
+            super(new Callable<IOException>()
+            {
+                @Override
+                public IOException call()
+                {
+                    try
+                    {
+                        FileUtils.writeAtomically(file, data);
+                        FileWatcher.getInstance().update(file);
+                        return null;
+                    }
+                    catch (final IOException e)
+                    {
+                        return e;
+                    }
+                }
+            });
+            this.file = file;
+            this.complex = complex;
+            this.revision = revision;
+        }
+
+        /**
+         * @see java.util.concurrent.FutureTask#done()
+         */
+        @Override
+        protected void done()
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finishSave(SaveTask.this);
+                }
+            });
+        }
+    }
 }
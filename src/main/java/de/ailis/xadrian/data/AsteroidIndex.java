@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.ailis.xadrian.data.factories.SectorFactory;
+
+/**
+ * Index over all asteroids of a game. For each asteroid ware the asteroids
+ * are sorted by yield (highest first) so queries for the best asteroids,
+ * asteroids with a minimum yield and the best asteroids near a specific
+ * sector can be answered without scanning all sectors.
+ *
+ * The asteroids of all player sector variants are indexed. Queries only
+ * return the asteroids of the currently configured variant so the index
+ * doesn't need to be rebuilt when the configuration changes.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class AsteroidIndex
+{
+    /** The sector factory used to resolve sector ordinals */
+    private final SectorFactory sectorFactory;
+
+    /** The indices of the asteroid wares. Key is the ware ID. */
+    private final Map<String, WareIndex> wareIndices =
+        new HashMap<String, WareIndex>();
+
+    /** The indexed asteroid wares */
+    private final SortedSet<Ware> wares = new TreeSet<Ware>();
+
+    /**
+     * Constructor
+     *
+     * @param game
+     *            The game to index
+     */
+    public AsteroidIndex(final Game game)
+    {
+        this.sectorFactory = game.getSectorFactory();
+
+        // Collect the asteroids of all sectors (and all player sector
+        // variants) grouped by ware
+        final Map<String, List<Entry>> entries =
+            new HashMap<String, List<Entry>>();
+        for (int ordinal = 0, count = this.sectorFactory.getSectorCount();
+            ordinal < count; ordinal++)
+        {
+            final Sector sector = this.sectorFactory.getSectorByOrdinal(ordinal);
+            if (sector instanceof PlayerSector)
+            {
+                final PlayerSector playerSector = (PlayerSector) sector;
+                for (int variant = 0, variants = playerSector
+                    .getVariantCount(); variant < variants; variant++)
+                    addEntries(entries, playerSector.getAsteroids(variant),
+                        ordinal, variant);
+            }
+            else
+                addEntries(entries, sector.getAsteroids(), ordinal, -1);
+        }
+
+        // Sort the asteroids and build the ware indices
+        for (final Map.Entry<String, List<Entry>> mapEntry: entries
+            .entrySet())
+        {
+            final List<Entry> list = mapEntry.getValue();
+            Collections.sort(list, new Comparator<Entry>()
+            {
+                @Override
+                public int compare(final Entry a, final Entry b)
+                {
+                    final int yieldA = a.asteroid.getYield();
+                    final int yieldB = b.asteroid.getYield();
+                    if (yieldA != yieldB) return yieldA > yieldB ? -1 : 1;
+                    return a.sector - b.sector;
+                }
+            });
+            this.wareIndices.put(mapEntry.getKey(), new WareIndex(list));
+            this.wares.add(list.get(0).asteroid.getWare());
+        }
+    }
+
+    /**
+     * Adds index entries for the specified asteroids.
+     *
+     * @param entries
+     *            The map to add the entries to
+     * @param asteroids
+     *            The asteroids
+     * @param sector
+     *            The sector ordinal
+     * @param variant
+     *            The player sector variant. -1 for normal sectors
+     */
+    private static void addEntries(final Map<String, List<Entry>> entries,
+        final Asteroid[] asteroids, final int sector, final int variant)
+    {
+        for (final Asteroid asteroid: asteroids)
+        {
+            final String wareId = asteroid.getWare().getId();
+            List<Entry> list = entries.get(wareId);
+            if (list == null)
+            {
+                list = new ArrayList<Entry>();
+                entries.put(wareId, list);
+            }
+            list.add(new Entry(asteroid, sector, variant));
+        }
+    }
+
+    /**
+     * Returns the wares for which asteroids exist.
+     *
+     * @return The asteroid wares
+     */
+    public SortedSet<Ware> getWares()
+    {
+        return Collections.unmodifiableSortedSet(this.wares);
+    }
+
+    /**
+     * Returns the asteroids with the highest yields.
+     *
+     * @param ware
+     *            The asteroid ware
+     * @param limit
+     *            The maximum number of returned asteroids
+     * @return The asteroids sorted by yield (highest first)
+     */
+    public List<AsteroidLocation> getTop(final Ware ware, final int limit)
+    {
+        final WareIndex index = this.wareIndices.get(ware.getId());
+        if (index == null) return Collections.emptyList();
+        return query(index, index.yields.length, null, limit);
+    }
+
+    /**
+     * Returns all asteroids with at least the specified yield.
+     *
+     * @param ware
+     *            The asteroid ware
+     * @param minYield
+     *            The minimum yield
+     * @return The asteroids sorted by yield (highest first)
+     */
+    public List<AsteroidLocation> getByMinYield(final Ware ware,
+        final int minYield)
+    {
+        final WareIndex index = this.wareIndices.get(ware.getId());
+        if (index == null) return Collections.emptyList();
+        return query(index, index.getEnd(minYield), null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the asteroids with the highest yields which are located at
+     * most the specified number of jumps away from the specified sector.
+     *
+     * @param ware
+     *            The asteroid ware
+     * @param sector
+     *            The sector to search around
+     * @param maxJumps
+     *            The maximum number of jumps. 0 only searches the specified
+     *            sector
+     * @param minYield
+     *            The minimum yield
+     * @param limit
+     *            The maximum number of returned asteroids
+     * @return The asteroids sorted by yield (highest first)
+     */
+    public List<AsteroidLocation> getNear(final Ware ware,
+        final Sector sector, final int maxJumps, final int minYield,
+        final int limit)
+    {
+        final WareIndex index = this.wareIndices.get(ware.getId());
+        if (index == null) return Collections.emptyList();
+        return query(index, index.getEnd(minYield), this.sectorFactory
+            .getSectorsWithin(sector, maxJumps), limit);
+    }
+
+    /**
+     * Returns the highest asteroid yield of the specified ware.
+     *
+     * @param ware
+     *            The asteroid ware
+     * @return The highest yield. 0 if there are no asteroids of this ware
+     */
+    public int getMaxYield(final Ware ware)
+    {
+        final List<AsteroidLocation> top = getTop(ware, 1);
+        return top.isEmpty() ? 0 : top.get(0).getYield();
+    }
+
+    /**
+     * Collects the matching asteroids from the specified ware index.
+     *
+     * @param index
+     *            The ware index
+     * @param end
+     *            The index of the first asteroid which is no longer checked
+     * @param sectors
+     *            The ordinals of the sectors to search. Null for all
+     * @param limit
+     *            The maximum number of returned asteroids
+     * @return The asteroids
+     */
+    private List<AsteroidLocation> query(final WareIndex index, final int end,
+        final BitSet sectors, final int limit)
+    {
+        final List<AsteroidLocation> result = new ArrayList<AsteroidLocation>(
+            Math.min(end, limit));
+        for (int i = 0; i < end && result.size() < limit; i++)
+        {
+            final int ordinal = index.sectors[i];
+            if (sectors != null && !sectors.get(ordinal)) continue;
+            final Sector sector = this.sectorFactory.getSectorByOrdinal(ordinal);
+            final int variant = index.variants[i];
+            if (variant >= 0
+                && variant != ((PlayerSector) sector).getVariant()) continue;
+            result.add(new AsteroidLocation(sector, index.asteroids[i]));
+        }
+        return result;
+    }
+
+    /**
+     * A single indexed asteroid. Only used while building the index.
+     */
+    private static class Entry
+    {
+        /** The asteroid */
+        final Asteroid asteroid;
+
+        /** The sector ordinal */
+        final int sector;
+
+        /** The player sector variant. -1 for normal sectors */
+        final int variant;
+
+        /**
+         * Constructor
+         *
+         * @param asteroid
+         *            The asteroid
+         * @param sector
+         *            The sector ordinal
+         * @param variant
+         *            The player sector variant. -1 for normal sectors
+         */
+        Entry(final Asteroid asteroid, final int sector, final int variant)
+        {
+            this.asteroid = asteroid;
+            this.sector = sector;
+            this.variant = variant;
+        }
+    }
+
+    /**
+     * The asteroids of a single ware sorted by yield (highest first) and
+     * stored in parallel arrays.
+     */
+    private static class WareIndex
+    {
+        /** The asteroid yields */
+        final int[] yields;
+
+        /** The sector ordinals */
+        final int[] sectors;
+
+        /** The player sector variants. -1 for normal sectors */
+        final int[] variants;
+
+        /** The asteroids */
+        final Asteroid[] asteroids;
+
+        /**
+         * Constructor
+         *
+         * @param entries
+         *            The sorted index entries
+         */
+        WareIndex(final List<Entry> entries)
+        {
+            final int size = entries.size();
+            this.yields = new int[size];
+            this.sectors = new int[size];
+            this.variants = new int[size];
+            this.asteroids = new Asteroid[size];
+            for (int i = 0; i < size; i++)
+            {
+                final Entry entry = entries.get(i);
+                this.yields[i] = entry.asteroid.getYield();
+                this.sectors[i] = entry.sector;
+                this.variants[i] = entry.variant;
+                this.asteroids[i] = entry.asteroid;
+            }
+        }
+
+        /**
+         * Returns the index of the first asteroid with a yield lower than the
+         * specified minimum yield (Binary search).
+         *
+         * @param minYield
+         *            The minimum yield
+         * @return The index of the first asteroid with a lower yield
+         */
+        int getEnd(final int minYield)
+        {
+            int low = 0;
+            int high = this.yields.length;
+            while (low < high)
+            {
+                final int mid = (low + high) >>> 1;
+                if (this.yields[mid] >= minYield)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+    }
+}
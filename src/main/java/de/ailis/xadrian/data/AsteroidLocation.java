@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.Serializable;
+
+/**
+ * An asteroid together with the sector it is located in.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class AsteroidLocation implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The sector */
+    private final Sector sector;
+
+    /** The asteroid */
+    private final Asteroid asteroid;
+
+    /**
+     * Constructor
+     *
+     * @param sector
+     *            The sector
+     * @param asteroid
+     *            The asteroid
+     */
+    public AsteroidLocation(final Sector sector, final Asteroid asteroid)
+    {
+        this.sector = sector;
+        this.asteroid = asteroid;
+    }
+
+    /**
+     * Returns the sector.
+     *
+     * @return The sector
+     */
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Returns the asteroid.
+     *
+     * @return The asteroid
+     */
+    public Asteroid getAsteroid()
+    {
+        return this.asteroid;
+    }
+
+    /**
+     * Returns the yield of the asteroid.
+     *
+     * @return The yield
+     */
+    public int getYield()
+    {
+        return this.asteroid.getYield();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return this.sector + ": " + this.asteroid;
+    }
+}
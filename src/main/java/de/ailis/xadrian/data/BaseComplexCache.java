@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Process-wide cache for the automatically added factories of the base
+ * complex. Calculating the base complex is expensive and several open
+ * complexes (Duplicated complexes, imported template codes, sweeps) often
+ * need the same result.
+ *
+ * The entries are keyed by a 64 bit fingerprint of the configuration
+ * version and the canonical base complex key of a complex (See
+ * {@link Complex#getBaseComplexKey()}). The key itself is stored with the
+ * entry so fingerprint collisions are detected. The least recently used
+ * entries are discarded when the number of entries or the estimated memory
+ * usage exceeds the limits. The whole cache is cleared when the settings
+ * version of the configuration changes.
+ *
+ * Optionally a {@link BaseComplexStore} can be set as a second level which
+ * keeps the results on disk across sessions.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class BaseComplexCache
+{
+    /** The default maximum number of entries */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /** The default maximum estimated memory usage in bytes */
+    public static final long DEFAULT_MAX_MEMORY = 4 * 1024 * 1024;
+
+    /** The estimated memory usage of an entry without key and factories */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /** The estimated memory usage of a single cached factory */
+    private static final int FACTORY_SIZE = 64;
+
+    /** The FNV-1a 64 bit offset basis */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** The FNV-1a 64 bit prime */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The singleton instance */
+    private static final BaseComplexCache instance = new BaseComplexCache();
+
+    /** The cache entries in access order */
+    private final LinkedHashMap<Long, Entry> entries =
+        new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+
+    /** The maximum number of entries */
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /** The maximum estimated memory usage in bytes */
+    private long maxMemory = DEFAULT_MAX_MEMORY;
+
+    /** The current estimated memory usage in bytes */
+    private long memory;
+
+    /** The configuration version the entries were calculated for */
+    private int version = Config.getInstance().getVersion();
+
+    /** The number of cache hits */
+    private long hits;
+
+    /** The number of cache misses */
+    private long misses;
+
+    /** The optional disk store. Null if none */
+    private BaseComplexStore store;
+
+    /**
+     * Private constructor to prevent instantiation of singleton
+     */
+    private BaseComplexCache()
+    {
+        // Empty
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return The singleton instance
+     */
+    public static BaseComplexCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Returns the 64 bit fingerprint of the specified key.
+     *
+     * @param key
+     *            The canonical base complex key
+     * @return The fingerprint
+     */
+    static long getFingerprint(final String key)
+    {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++)
+        {
+            final char c = key.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns copies of the cached automatically added factories for the
+     * specified key. If not found in memory then the disk store is asked.
+     *
+     * @param game
+     *            The game
+     * @param key
+     *            The canonical base complex key
+     * @return The factories or null if not cached
+     */
+    List<ComplexFactory> get(final Game game, final String key)
+    {
+        final BaseComplexStore store;
+        synchronized (this)
+        {
+            checkVersion();
+            final Entry entry = this.entries.get(getFingerprint(this.version
+                + ";" + key));
+            if (entry != null && entry.key.equals(key))
+            {
+                this.hits++;
+                return copy(entry.factories);
+            }
+            this.misses++;
+            store = this.store;
+        }
+        if (store == null) return null;
+        final List<ComplexFactory> factories = store.load(game, key);
+        if (factories == null) return null;
+        synchronized (this)
+        {
+            add(key, factories);
+        }
+        return copy(factories);
+    }
+
+    /**
+     * Stores copies of the automatically added factories for the specified
+     * key in memory and in the disk store.
+     *
+     * @param game
+     *            The game
+     * @param key
+     *            The canonical base complex key
+     * @param factories
+     *            The automatically added factories
+     */
+    void put(final Game game, final String key,
+        final List<ComplexFactory> factories)
+    {
+        final List<ComplexFactory> copies = copy(factories);
+        final BaseComplexStore store;
+        synchronized (this)
+        {
+            add(key, copies);
+            store = this.store;
+        }
+        if (store != null) store.store(game, key, copies);
+    }
+
+    /**
+     * Adds an entry to the memory cache.
+     *
+     * @param key
+     *            The canonical base complex key
+     * @param factories
+     *            The factories. Must not be shared with anybody else
+     */
+    private void add(final String key, final List<ComplexFactory> factories)
+    {
+        checkVersion();
+        final Entry entry = new Entry(key, factories);
+        final Entry old = this.entries.put(getFingerprint(this.version + ";"
+            + key), entry);
+        if (old != null) this.memory -= old.size;
+        this.memory += entry.size;
+        trim();
+    }
+
+    /**
+     * Sets the disk store used as second cache level.
+     *
+     * @param store
+     *            The disk store. Null for none
+     */
+    public synchronized void setStore(final BaseComplexStore store)
+    {
+        this.store = store;
+    }
+
+    /**
+     * Returns the disk store used as second cache level.
+     *
+     * @return The disk store or null if none
+     */
+    public synchronized BaseComplexStore getStore()
+    {
+        return this.store;
+    }
+
+    /**
+     * Clears the cache if the configuration settings have changed since the
+     * entries were calculated.
+     */
+    private void checkVersion()
+    {
+        final int current = Config.getInstance().getVersion();
+        if (current == this.version) return;
+        this.entries.clear();
+        this.memory = 0;
+        this.version = current;
+    }
+
+    /**
+     * Removes the least recently used entries until the limits are no longer
+     * exceeded.
+     */
+    private void trim()
+    {
+        final Iterator<Entry> iterator = this.entries.values().iterator();
+        while (iterator.hasNext() && (this.entries.size() > this.maxEntries
+            || this.memory > this.maxMemory))
+        {
+            this.memory -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns deep copies of the specified factories.
+     *
+     * @param factories
+     *            The factories to copy
+     * @return The copies
+     */
+    private static List<ComplexFactory> copy(
+        final List<ComplexFactory> factories)
+    {
+        final List<ComplexFactory> copies =
+            new ArrayList<ComplexFactory>(factories.size());
+        for (final ComplexFactory factory: factories)
+            copies.add(new ComplexFactory(factory));
+        return copies;
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public synchronized void clear()
+    {
+        this.entries.clear();
+        this.memory = 0;
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Sets the maximum number of entries.
+     *
+     * @param maxEntries
+     *            The maximum number of entries. 0 disables the cache
+     */
+    public synchronized void setMaxEntries(final int maxEntries)
+    {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        this.maxEntries = maxEntries;
+        trim();
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     *
+     * @return The maximum number of entries
+     */
+    public synchronized int getMaxEntries()
+    {
+        return this.maxEntries;
+    }
+
+    /**
+     * Sets the maximum estimated memory usage.
+     *
+     * @param maxMemory
+     *            The maximum memory usage in bytes
+     */
+    public synchronized void setMaxMemory(final long maxMemory)
+    {
+        if (maxMemory < 0)
+            throw new IllegalArgumentException("maxMemory must not be negative");
+        this.maxMemory = maxMemory;
+        trim();
+    }
+
+    /**
+     * Returns the maximum estimated memory usage.
+     *
+     * @return The maximum memory usage in bytes
+     */
+    public synchronized long getMaxMemory()
+    {
+        return this.maxMemory;
+    }
+
+    /**
+     * Returns the current estimated memory usage.
+     *
+     * @return The memory usage in bytes
+     */
+    public synchronized long getMemory()
+    {
+        return this.memory;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries
+     */
+    public synchronized int getSize()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of cache hits.
+     *
+     * @return The number of hits
+     */
+    public synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     *
+     * @return The number of misses
+     */
+    public synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static final class Entry
+    {
+        /** The canonical base complex key */
+        final String key;
+
+        /** The automatically added factories */
+        final List<ComplexFactory> factories;
+
+        /** The estimated memory usage in bytes */
+        final long size;
+
+        /**
+         * Constructor
+         *
+         * @param key
+         *            The canonical base complex key
+         * @param factories
+         *            The automatically added factories
+         */
+        Entry(final String key, final List<ComplexFactory> factories)
+        {
+            this.key = key;
+            this.factories = factories;
+            this.size = ENTRY_OVERHEAD + 2L * key.length() + (long) FACTORY_SIZE
+                * factories.size();
+        }
+    }
+}
@@ -0,0 +1,600 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Stores calculated base complexes on disk so complexes opened in a later
+ * session don't need to be calculated again. Each entry is a small binary
+ * file named after the fingerprint of the base complex key. It contains the
+ * game data hash, the full key (To detect fingerprint collisions), the total
+ * price of the automatically added factories (As a consistency check) and
+ * the factories themselves. Entries are read through memory mapped buffers.
+ *
+ * Entries are written behind by a single background thread so callers
+ * (Like the parallel workers of the optimizers) never wait for the disk.
+ * Entries which are not yet written are served from memory. The size of the
+ * store is tracked while writing. Only when it grows beyond the size limit
+ * the directory is listed and the least recently used entries are deleted
+ * until the store is down to three quarters of the limit.
+ *
+ * The store is only a cache. Unreadable, outdated or broken entries are
+ * deleted and I/O errors are logged and otherwise ignored.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BaseComplexStore
+{
+    /** The default maximum size of the store in bytes */
+    public static final long DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+
+    /** The logger */
+    private static final Log log = LogFactory.getLog(BaseComplexStore.class);
+
+    /** The magic number at the start of each entry file */
+    private static final int MAGIC = 0x58424353;
+
+    /** The file format version */
+    private static final int FORMAT = 1;
+
+    /** The file name suffix of entry files */
+    private static final String SUFFIX = ".xbc";
+
+    /** Accepts entry files */
+    private static final FileFilter ENTRIES = new FileFilter()
+    {
+        @Override
+        public boolean accept(final File file)
+        {
+            return file.isFile() && file.getName().endsWith(SUFFIX);
+        }
+    };
+
+    /** Orders files by modification time (Oldest first) */
+    private static final Comparator<File> OLDEST_FIRST = new Comparator<File>()
+    {
+        @Override
+        public int compare(final File a, final File b)
+        {
+            final long diff = a.lastModified() - b.lastModified();
+            return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        }
+    };
+
+    /** The directory containing the entry files */
+    private final File directory;
+
+    /** The maximum size of the store in bytes */
+    private final long maxSize;
+
+    /** The executor running the background writer */
+    private final ExecutorService executor = ThreadUtils.createExecutor(
+        "base-complex-store", 1);
+
+    /** The entries waiting to be written by key */
+    private final Map<String, Pending> pending =
+        new LinkedHashMap<String, Pending>();
+
+    /** If the background writer is running */
+    private boolean writing;
+
+    /** The current size of the store in bytes */
+    private long size;
+
+    /** The number of entries read from disk */
+    private long reads;
+
+    /** The number of entries written to disk */
+    private long writes;
+
+    /**
+     * Constructor
+     *
+     * @param directory
+     *            The directory containing the entry files. Created when
+     *            needed
+     * @param maxSize
+     *            The maximum size of the store in bytes
+     */
+    public BaseComplexStore(final File directory, final long maxSize)
+    {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize must not be negative");
+        this.directory = directory;
+        this.maxSize = maxSize;
+        final File[] files = directory.listFiles(ENTRIES);
+        if (files != null) for (final File file: files)
+            this.size += file.length();
+    }
+
+    /**
+     * Returns the default directory of the store (The xadrian cache
+     * directory in the home directory of the user).
+     *
+     * @return The default directory
+     */
+    public static File getDefaultDirectory()
+    {
+        return new File(new File(System.getProperty("user.home"), ".xadrian"),
+            "cache");
+    }
+
+    /**
+     * Returns the directory containing the entry files.
+     *
+     * @return The directory
+     */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * Returns the maximum size of the store.
+     *
+     * @return The maximum size in bytes
+     */
+    public long getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the number of entries successfully read from disk.
+     *
+     * @return The number of reads
+     */
+    public synchronized long getReads()
+    {
+        return this.reads;
+    }
+
+    /**
+     * Returns the number of entries written to disk.
+     *
+     * @return The number of writes
+     */
+    public synchronized long getWrites()
+    {
+        return this.writes;
+    }
+
+    /**
+     * Returns the current size of the written entries.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * Returns the entry file for the specified key.
+     *
+     * @param key
+     *            The base complex key
+     * @return The entry file
+     */
+    private File getFile(final String key)
+    {
+        return new File(this.directory, String.format("%016x",
+            BaseComplexCache.getFingerprint(key)) + SUFFIX);
+    }
+
+    /**
+     * Returns the total price of the specified factories.
+     *
+     * @param factories
+     *            The factories
+     * @return The total price
+     */
+    private static long getPrice(final List<ComplexFactory> factories)
+    {
+        long price = 0;
+        for (final ComplexFactory factory: factories)
+            price += (long) factory.getQuantity()
+                * factory.getFactory().getPrice();
+        return price;
+    }
+
+    /**
+     * Reads the automatically added factories for the specified key.
+     *
+     * @param game
+     *            The game
+     * @param key
+     *            The base complex key
+     * @return The factories or null if not stored
+     */
+    public synchronized List<ComplexFactory> load(final Game game,
+        final String key)
+    {
+        final Pending entry = this.pending.get(key);
+        if (entry != null)
+        {
+            final List<ComplexFactory> copies =
+                new ArrayList<ComplexFactory>(entry.factories.size());
+            for (final ComplexFactory factory: entry.factories)
+                copies.add(new ComplexFactory(factory));
+            return copies;
+        }
+        final File file = getFile(key);
+        if (!file.isFile()) return null;
+        List<ComplexFactory> factories = null;
+        try
+        {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try
+            {
+                final FileChannel channel = raf.getChannel();
+                factories = read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()), game, key);
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to read base complex from " + file + ": " + e);
+        }
+        if (factories == null)
+        {
+            // Another key with the same fingerprint is not an error
+            final long length = file.length();
+            if (file.delete())
+                this.size -= length;
+            else
+                log.debug("Unable to delete base complex file " + file);
+            return null;
+        }
+        if (!file.setLastModified(System.currentTimeMillis()))
+            log.debug("Unable to touch base complex file " + file);
+        this.reads++;
+        return factories;
+    }
+
+    /**
+     * Parses an entry.
+     *
+     * @param buffer
+     *            The mapped entry file
+     * @param game
+     *            The game
+     * @param key
+     *            The expected base complex key
+     * @return The factories or null if the entry is invalid or belongs to a
+     *         different key
+     */
+    private static List<ComplexFactory> read(final MappedByteBuffer buffer,
+        final Game game, final String key)
+    {
+        try
+        {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT)
+                return null;
+            if (buffer.getLong() != game.getDataHash()) return null;
+            if (!key.equals(readString(buffer))) return null;
+            final long price = buffer.getLong();
+            final int count = buffer.getInt();
+            final List<ComplexFactory> factories =
+                new ArrayList<ComplexFactory>(count);
+            for (int i = 0; i < count; i++)
+            {
+                final Factory factory = game.getFactoryFactory().getFactory(
+                    readString(buffer));
+                if (factory == null) return null;
+                final int quantity = buffer.getInt();
+                if (factory.isMine())
+                {
+                    final List<Integer> yields = new ArrayList<Integer>(
+                        quantity);
+                    for (int j = 0; j < quantity; j++)
+                        yields.add(buffer.getInt());
+                    factories.add(new ComplexFactory(game, factory, yields));
+                }
+                else
+                    factories.add(new ComplexFactory(game, factory, quantity,
+                        0));
+            }
+            if (buffer.hasRemaining() || getPrice(factories) != price)
+                return null;
+            return factories;
+        }
+        catch (final BufferUnderflowException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a string from the buffer.
+     *
+     * @param buffer
+     *            The buffer
+     * @return The string
+     */
+    private static String readString(final MappedByteBuffer buffer)
+    {
+        final int length = buffer.getInt();
+        if (length < 0 || length * 2 > buffer.remaining())
+            throw new BufferUnderflowException();
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = buffer.getChar();
+        return new String(chars);
+    }
+
+    /**
+     * Writes a string to the stream.
+     *
+     * @param stream
+     *            The stream
+     * @param string
+     *            The string
+     * @throws IOException
+     *             When writing fails
+     */
+    private static void writeString(final DataOutputStream stream,
+        final String string) throws IOException
+    {
+        stream.writeInt(string.length());
+        stream.writeChars(string);
+    }
+
+    /**
+     * Stores the automatically added factories for the specified key. The
+     * entry is written by the background writer. A pending entry for the
+     * same key is replaced.
+     *
+     * @param game
+     *            The game
+     * @param key
+     *            The base complex key
+     * @param factories
+     *            The automatically added factories. Must not be modified
+     *            afterwards
+     */
+    public synchronized void store(final Game game, final String key,
+        final List<ComplexFactory> factories)
+    {
+        this.pending.put(key, new Pending(game, factories));
+        if (this.writing) return;
+        this.writing = true;
+        this.executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writePending();
+            }
+        });
+    }
+
+    /**
+     * Waits until all pending entries are written.
+     */
+    public synchronized void flush()
+    {
+        while (this.writing)
+        {
+            try
+            {
+                wait();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the pending entries until there are no more. Runs in the
+     * background writer thread.
+     */
+    void writePending()
+    {
+        while (true)
+        {
+            final String key;
+            final Pending entry;
+            synchronized (this)
+            {
+                if (this.pending.isEmpty())
+                {
+                    this.writing = false;
+                    notifyAll();
+                    return;
+                }
+                final Map.Entry<String, Pending> next =
+                    this.pending.entrySet().iterator().next();
+                key = next.getKey();
+                entry = next.getValue();
+            }
+            try
+            {
+                write(entry.game, key, entry.factories);
+            }
+            catch (final RuntimeException e)
+            {
+                log.error("Unable to write base complex: " + e, e);
+            }
+            synchronized (this)
+            {
+                // A replaced entry stays pending and is written again
+                if (this.pending.get(key) == entry) this.pending.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Writes an entry. The entry is written to a temporary file first which
+     * is then renamed so readers never see half written entries.
+     *
+     * @param game
+     *            The game
+     * @param key
+     *            The base complex key
+     * @param factories
+     *            The automatically added factories
+     */
+    private void write(final Game game, final String key,
+        final List<ComplexFactory> factories)
+    {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs())
+        {
+            log.warn("Unable to create cache directory " + this.directory);
+            return;
+        }
+        final File file = getFile(key);
+        final File tmp = new File(this.directory, file.getName() + ".tmp");
+        try
+        {
+            final DataOutputStream stream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            try
+            {
+                stream.writeInt(MAGIC);
+                stream.writeInt(FORMAT);
+                stream.writeLong(game.getDataHash());
+                writeString(stream, key);
+                stream.writeLong(getPrice(factories));
+                stream.writeInt(factories.size());
+                for (final ComplexFactory factory: factories)
+                {
+                    writeString(stream, factory.getFactory().getId());
+                    if (factory.getFactory().isMine())
+                    {
+                        final List<Integer> yields = factory.getYields();
+                        stream.writeInt(yields.size());
+                        for (final int yield: yields)
+                            stream.writeInt(yield);
+                    }
+                    else
+                        stream.writeInt(factory.getQuantity());
+                }
+            }
+            finally
+            {
+                stream.close();
+            }
+            synchronized (this)
+            {
+                final long length = file.length();
+                if (file.exists() && !file.delete())
+                    throw new IOException("Unable to replace " + file);
+                this.size -= length;
+                if (!tmp.renameTo(file))
+                    throw new IOException("Unable to rename " + tmp);
+                this.size += file.length();
+                this.writes++;
+                evict();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to write base complex to " + file + ": " + e);
+            if (tmp.exists() && !tmp.delete())
+                log.debug("Unable to delete " + tmp);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries down to three quarters of the
+     * size limit when the store exceeds the size limit. The size is
+     * calculated again from the listed files.
+     */
+    private void evict()
+    {
+        if (this.size <= this.maxSize) return;
+        final File[] files = this.directory.listFiles(ENTRIES);
+        if (files == null) return;
+        long size = 0;
+        for (final File file: files)
+            size += file.length();
+        Arrays.sort(files, OLDEST_FIRST);
+        final long target = this.maxSize / 4 * 3;
+        for (final File file: files)
+        {
+            if (size <= target) break;
+            final long length = file.length();
+            if (file.delete())
+                size -= length;
+            else
+                log.debug("Unable to delete base complex file " + file);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Deletes all entries.
+     */
+    public synchronized void clear()
+    {
+        this.pending.clear();
+        final File[] files = this.directory.listFiles(ENTRIES);
+        if (files == null) return;
+        for (final File file: files)
+        {
+            final long length = file.length();
+            if (file.delete())
+                this.size -= length;
+            else
+                log.debug("Unable to delete base complex file " + file);
+        }
+    }
+
+    /**
+     * An entry waiting to be written.
+     */
+    private static final class Pending
+    {
+        /** The game */
+        final Game game;
+
+        /** The automatically added factories */
+        final List<ComplexFactory> factories;
+
+        /**
+         * Constructor
+         *
+         * @param game
+         *            The game
+         * @param factories
+         *            The automatically added factories
+         */
+        Pending(final Game game, final List<ComplexFactory> factories)
+        {
+            this.game = game;
+            this.factories = factories;
+        }
+    }
+}
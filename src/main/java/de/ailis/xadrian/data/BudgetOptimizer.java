@@ -0,0 +1,877 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Searches the combination of factories with the highest profit per hour
+ * which can be bought with a specific budget. The automatically calculated
+ * base complex is always included in the price and profit.
+ *
+ * The candidates are the cheapest factory per product and factory size of
+ * all races which are not ignored. Mines are not considered because they
+ * depend on the asteroids of a sector.
+ *
+ * The profit of a complex is the sum of the profits of its single factories
+ * (The value of the product minus the costs of the resources at the
+ * complex prices) and each factory costs its price plus a construction kit
+ * (Except the first one). The base complex must produce all missing
+ * resources (Except minerals), including the ones needed by its own
+ * factories. Relaxing the budget and these needs with a value per credit
+ * and a shadow price per ware (The lowest ones which don't let any factory
+ * of the base complex earn anything) results in a reduced profit per
+ * candidate and a bound for all designs reachable from a partial design
+ * which never underestimates them. The lowest bound of several credit
+ * values is used. The branch and bound search over the used candidates
+ * (Best reduced profit per credit first) and their quantities is therefore
+ * exact: Branches are only pruned when they can't beat the best design
+ * found so far. Only the number of different products can be limited (See
+ * {@link #setMaxProducts(int)}) because the search time grows very fast
+ * with it.
+ *
+ * The bound of a design is derived from the parent design in constant time
+ * and the base complex is only calculated for designs which can still beat
+ * the best design found so far and which don't exceed the budget with the
+ * lowest possible base complex cost. A single working complex is used per
+ * search task and only the factories which changed since the last
+ * evaluated design are updated. The search is split into one task per
+ * candidate (The designs in which this candidate is the first used one)
+ * which are run in parallel and share the best design.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BudgetOptimizer
+{
+    /** The default maximum number of different products. 0 for no limit */
+    public static final int DEFAULT_MAX_PRODUCTS = 2;
+
+    /** Tolerance for rounding errors when comparing bounds and profits */
+    private static final double EPSILON = 0.001;
+
+    /** The number of credit values used for the bound */
+    private static final int CREDIT_VALUES = 16;
+
+    /** The maximum number of iterations when calculating shadow prices */
+    private static final int SHADOW_PRICE_ITERATIONS = 100;
+
+    /**
+     * The missing units per hour of a ware the base complex may leave
+     * unfulfilled
+     */
+    private static final double BASE_TOLERANCE = 0.1;
+
+    /** The template providing game, suns, sector and custom prices */
+    private final Complex template;
+
+    /** The budget */
+    private final long budget;
+
+    /** The races which factories are not used */
+    private final Set<Race> ignoredRaces;
+
+    /** The candidates sorted by reduced profit per credit (highest first) */
+    private final Factory[] candidates;
+
+    /** The costs (Price plus construction kit) of the candidates */
+    private final long[] costs;
+
+    /**
+     * The bounds of the empty design per credit value. This is the budget
+     * valued with the credit value plus the value of the wares the base
+     * complex may leave missing at the shadow prices
+     */
+    private final double[] bounds;
+
+    /**
+     * The reduced profits per hour of a single factory of the candidates
+     * per credit value
+     */
+    private final double[][] values;
+
+    /**
+     * The highest reduced profit per credit (At least 0) of the candidates
+     * starting at the index per credit value. Has one more entry (0) than
+     * the candidates
+     */
+    private final double[][] ratios;
+
+    /**
+     * The balances (Needed minus produced units per hour) of the wares the
+     * base complex may produce per candidate
+     */
+    private final double[][] balances;
+
+    /** The cost of the cheapest factory per base complex ware */
+    private final double[] baseCosts;
+
+    /** The lowest cost per produced unit per base complex ware */
+    private final double[] baseUnitCosts;
+
+    /**
+     * The lowest needed units of a base complex ware (Second index) per
+     * produced unit of a base complex ware (First index)
+     */
+    private final double[][] baseNeeds;
+
+    /** The maximum number of different products. 0 for no limit */
+    private int maxProducts = DEFAULT_MAX_PRODUCTS;
+
+    /** The best design found so far */
+    private Design best;
+
+    /** The profit of the best design found so far */
+    private volatile double bestProfit = Double.NEGATIVE_INFINITY;
+
+    /** If search has been cancelled */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor. The template complex is copied so it can be modified by
+     * the caller while the search is running. Its factories are ignored.
+     *
+     * @param template
+     *            The complex providing the game, suns, sector, custom prices
+     *            and ignored races
+     * @param budget
+     *            The available credits
+     */
+    public BudgetOptimizer(final Complex template, final long budget)
+    {
+        this.template = template.copy();
+        this.budget = budget;
+
+        this.ignoredRaces = template.getIgnoredRaces();
+
+        // Collect the factories the base complex may add and the
+        // cheapest candidate per product and size
+        final Collection<Factory> factories = template.getGame()
+            .getFactoryFactory().getFactories();
+        final Set<Ware> resources = new HashSet<Ware>();
+        for (final Factory factory: factories)
+            for (final Product resource: factory.getResources())
+                if (!resource.getWare().isMineral())
+                    resources.add(resource.getWare());
+        final Sun suns = this.template.getSuns();
+        final List<Factory> producers = new ArrayList<Factory>();
+        final Map<String, Factory> cheapest = new HashMap<String, Factory>();
+        final Map<Factory, Double> profits = new HashMap<Factory, Double>();
+        for (final Factory factory: factories)
+        {
+            if (factory.isMine()) continue;
+            if (this.ignoredRaces.contains(factory.getRace())) continue;
+            profits.put(factory, getProfit(factory));
+            final Product product = factory.getProductPerHour(suns, 0);
+            if (resources.contains(product.getWare())
+                && product.getQuantity() > 0) producers.add(factory);
+            if (factory.getPrice() > budget) continue;
+            if (getSalesValue(factory) <= 0) continue;
+            final String key = product.getWare().getId() + "/"
+                + factory.getSize();
+            final Factory current = cheapest.get(key);
+            if (current == null || factory.getPrice() < current.getPrice())
+                cheapest.put(key, factory);
+        }
+        final List<Factory> candidates =
+            new ArrayList<Factory>(cheapest.values());
+
+        // Collect the costs and needs of the base complex factories per ware
+        final List<Ware> wares = new ArrayList<Ware>();
+        for (final Factory producer: producers)
+            if (!wares.contains(producer.getProduct().getWare()))
+                wares.add(producer.getProduct().getWare());
+        final int wareCount = wares.size();
+        this.baseCosts = new double[wareCount];
+        this.baseUnitCosts = new double[wareCount];
+        this.baseNeeds = new double[wareCount][wareCount];
+        Arrays.fill(this.baseCosts, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.baseUnitCosts, Double.POSITIVE_INFINITY);
+        for (final double[] needs: this.baseNeeds)
+            Arrays.fill(needs, Double.POSITIVE_INFINITY);
+        for (final Factory producer: producers)
+        {
+            final int ware = wares.indexOf(producer.getProduct().getWare());
+            final double quantity = producer.getProductPerHour(suns, 0)
+                .getQuantity();
+            final long cost = getCost(producer);
+            this.baseCosts[ware] = Math.min(this.baseCosts[ware], cost);
+            this.baseUnitCosts[ware] = Math.min(this.baseUnitCosts[ware],
+                cost / quantity);
+            final double[] needs = getBalances(producer, wares);
+            for (int i = 0; i < wareCount; i++)
+                this.baseNeeds[ware][i] = Math.min(this.baseNeeds[ware][i],
+                    Math.max(0, needs[i]) / quantity);
+        }
+
+        // Calculate the reduced profits for credit values between the
+        // highest profit per credit of the base complex factories (The
+        // lowest valid one) and the highest one of the candidates. The
+        // search uses the lowest bound of all of them
+        double minCreditValue = 0;
+        double maxCreditValue = 0;
+        for (final Factory producer: producers)
+            minCreditValue = Math.max(minCreditValue, profits.get(producer)
+                / getCost(producer));
+        for (final Factory candidate: candidates)
+            maxCreditValue = Math.max(maxCreditValue, profits.get(candidate)
+                / getCost(candidate));
+        maxCreditValue = Math.max(minCreditValue, maxCreditValue);
+        final List<Map<Factory, Double>> reduced =
+            new ArrayList<Map<Factory, Double>>();
+        this.bounds = new double[CREDIT_VALUES];
+        final long limit = budget + Complex.KIT_PRICE;
+        Map<Factory, Double> order = null;
+        double lowestBound = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < CREDIT_VALUES; i++)
+        {
+            final double creditValue = minCreditValue + i
+                * (maxCreditValue - minCreditValue) / (CREDIT_VALUES - 1);
+            final Map<Ware, Double> prices = getShadowPrices(producers,
+                profits, creditValue);
+            final Map<Factory, Double> values = new HashMap<Factory, Double>();
+            for (final Factory candidate: candidates)
+                values.put(candidate, profits.get(candidate) - creditValue
+                    * getCost(candidate) - getBalanceValue(candidate, prices));
+            reduced.add(values);
+            this.bounds[i] = creditValue * limit;
+            for (final double price: prices.values())
+                this.bounds[i] += price * BASE_TOLERANCE;
+
+            // Sort by the reduced profits with the lowest bound of the
+            // whole search
+            double ratio = 0;
+            for (final Factory candidate: candidates)
+                ratio = Math.max(ratio, values.get(candidate)
+                    / getCost(candidate));
+            if (creditValue + ratio < lowestBound)
+            {
+                lowestBound = creditValue + ratio;
+                order = values;
+            }
+        }
+
+        // Sort the candidates by reduced profit per credit
+        final Map<Factory, Double> values = order;
+        Collections.sort(candidates, new Comparator<Factory>()
+        {
+            @Override
+            public int compare(final Factory a, final Factory b)
+            {
+                final int result = Double.compare(values.get(b)
+                    / getCost(b), values.get(a) / getCost(a));
+                if (result != 0) return result;
+                return a.compareTo(b);
+            }
+        });
+        final int count = candidates.size();
+        this.candidates = candidates.toArray(new Factory[count]);
+        this.costs = new long[count];
+        for (int i = 0; i < count; i++)
+            this.costs[i] = getCost(this.candidates[i]);
+        this.balances = new double[count][];
+        for (int i = 0; i < count; i++)
+            this.balances[i] = getBalances(this.candidates[i], wares);
+        this.values = new double[CREDIT_VALUES][count];
+        this.ratios = new double[CREDIT_VALUES][count + 1];
+        for (int k = 0; k < CREDIT_VALUES; k++)
+        {
+            for (int i = count - 1; i >= 0; i--)
+            {
+                this.values[k][i] = reduced.get(k).get(this.candidates[i]);
+                this.ratios[k][i] = Math.max(this.ratios[k][i + 1],
+                    this.values[k][i] / this.costs[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the shadow prices of the wares the base complex may produce for
+     * the specified credit value. The loss of a factory is its cost
+     * multiplied with the credit value minus its profit. The shadow price of
+     * a ware is the lowest loss per produced unit of the factories
+     * producing it (Including the shadow prices of the resources they
+     * need). So no factory of the base complex has a positive reduced
+     * profit. Iterating from zero only raises the prices and every step
+     * keeps them low enough so the iteration can stop at any time.
+     *
+     * @param producers
+     *            The factories the base complex may add
+     * @param profits
+     *            The profits per hour of single factories
+     * @param creditValue
+     *            The profit per hour each credit is valued with. Must be
+     *            at least the highest profit per credit of the producers
+     * @return The shadow prices per ware
+     */
+    private Map<Ware, Double> getShadowPrices(final List<Factory> producers,
+        final Map<Factory, Double> profits, final double creditValue)
+    {
+        final Sun suns = this.template.getSuns();
+        final Map<Factory, Double> amounts = new HashMap<Factory, Double>();
+        for (final Factory producer: producers)
+            amounts.put(producer, Math.max(0, creditValue * getCost(producer)
+                - profits.get(producer)));
+        Map<Ware, Double> prices = new HashMap<Ware, Double>();
+        for (int i = 0; i < SHADOW_PRICE_ITERATIONS; i++)
+        {
+            final Map<Ware, Double> next = new HashMap<Ware, Double>();
+            for (final Map.Entry<Factory, Double> entry: amounts.entrySet())
+            {
+                final Factory factory = entry.getKey();
+                double amount = entry.getValue();
+                for (final Product resource: factory.getResourcesPerHour(
+                    suns, 0))
+                {
+                    final Double price = prices.get(resource.getWare());
+                    if (price != null) amount += price * resource.getQuantity();
+                }
+                final Product product = factory.getProductPerHour(suns, 0);
+                final double price = amount / product.getQuantity();
+                final Double current = next.get(product.getWare());
+                if (current == null || price < current)
+                    next.put(product.getWare(), price);
+            }
+            if (next.equals(prices)) break;
+            prices = next;
+        }
+        return prices;
+    }
+
+    /**
+     * Returns the value of the wares the specified factory needs from the
+     * base complex minus the value of the wares it produces for it at the
+     * specified shadow prices.
+     *
+     * @param factory
+     *            The factory
+     * @param prices
+     *            The prices per ware the base complex may produce
+     * @return The balance value. Negative if the factory produces more than
+     *         it needs
+     */
+    private double getBalanceValue(final Factory factory,
+        final Map<Ware, Double> prices)
+    {
+        final Sun suns = this.template.getSuns();
+        double value = 0;
+        for (final Product resource: factory.getResourcesPerHour(suns, 0))
+        {
+            final Double price = prices.get(resource.getWare());
+            if (price != null) value += price * resource.getQuantity();
+        }
+        final Product product = factory.getProductPerHour(suns, 0);
+        final Double price = prices.get(product.getWare());
+        if (price != null) value -= price * product.getQuantity();
+        return value;
+    }
+
+    /**
+     * Returns the balances (Needed minus produced units per hour) of the
+     * specified wares of the specified factory.
+     *
+     * @param factory
+     *            The factory
+     * @param wares
+     *            The wares
+     * @return The balances per ware
+     */
+    private double[] getBalances(final Factory factory, final List<Ware> wares)
+    {
+        final Sun suns = this.template.getSuns();
+        final double[] balances = new double[wares.size()];
+        for (final Product resource: factory.getResourcesPerHour(suns, 0))
+        {
+            final int ware = wares.indexOf(resource.getWare());
+            if (ware >= 0) balances[ware] += resource.getQuantity();
+        }
+        final Product product = factory.getProductPerHour(suns, 0);
+        final int ware = wares.indexOf(product.getWare());
+        if (ware >= 0) balances[ware] -= product.getQuantity();
+        return balances;
+    }
+
+    /**
+     * Returns the lowest possible cost of the base complex of the specified
+     * design. The base complex must produce the missing wares of the design
+     * and the wares its own factories need at least with the cheapest
+     * factory and the lowest cost per produced unit of each ware.
+     *
+     * @param quantities
+     *            The quantities of the design
+     * @return The lowest possible base complex cost
+     */
+    private double getMinBaseCost(final int[] quantities)
+    {
+        final int wareCount = this.baseCosts.length;
+        final double[] missing = new double[wareCount];
+        for (int i = 0; i < quantities.length; i++)
+            if (quantities[i] > 0)
+                for (int ware = 0; ware < wareCount; ware++)
+                    missing[ware] += quantities[i] * this.balances[i][ware];
+
+        // Add the wares needed by the base complex factories until nothing
+        // changes anymore. Every step only adds wares which are really
+        // needed so the iteration can stop at any time
+        double[] needs = missing;
+        for (int i = 0; i < SHADOW_PRICE_ITERATIONS; i++)
+        {
+            final double[] next = missing.clone();
+            for (int ware = 0; ware < wareCount; ware++)
+            {
+                final double production = needs[ware] - BASE_TOLERANCE;
+                if (production <= 0) continue;
+                for (int need = 0; need < wareCount; need++)
+                    next[need] += production * this.baseNeeds[ware][need];
+            }
+            if (Arrays.equals(next, needs)) break;
+            needs = next;
+        }
+
+        double cost = 0;
+        for (int ware = 0; ware < wareCount; ware++)
+        {
+            final double production = needs[ware] - BASE_TOLERANCE;
+            if (production > 0)
+                cost += Math.max(this.baseCosts[ware], production
+                    * this.baseUnitCosts[ware]);
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the cost of the specified factory in a complex (Its price plus
+     * a construction kit).
+     *
+     * @param factory
+     *            The factory
+     * @return The cost
+     */
+    private static long getCost(final Factory factory)
+    {
+        return factory.getPrice() + (long) Complex.KIT_PRICE;
+    }
+
+    /**
+     * Returns the value of the products of the specified factory per hour.
+     *
+     * @param factory
+     *            The factory
+     * @return The sales value per hour
+     */
+    private double getSalesValue(final Factory factory)
+    {
+        final Product product = factory.getProductPerHour(
+            this.template.getSuns(), 0);
+        return product.getQuantity()
+            * this.template.getWarePrice(product.getWare());
+    }
+
+    /**
+     * Returns the profit per hour of a single factory (The value of the
+     * product minus the costs of the resources).
+     *
+     * @param factory
+     *            The factory
+     * @return The profit per hour
+     */
+    private double getProfit(final Factory factory)
+    {
+        final Complex complex = createComplex();
+        complex.addFactory(factory, 1);
+        return complex.getProfit();
+    }
+
+    /**
+     * Sets the maximum number of different products in a design.
+     *
+     * @param maxProducts
+     *            The maximum number of different products. 0 for no limit
+     */
+    public void setMaxProducts(final int maxProducts)
+    {
+        if (maxProducts < 0)
+            throw new IllegalArgumentException("maxProducts must be >= 0");
+        this.maxProducts = maxProducts;
+    }
+
+    /**
+     * Returns the candidate factories.
+     *
+     * @return The candidate factories
+     */
+    public List<Factory> getCandidates()
+    {
+        return Collections.unmodifiableList(Arrays.asList(this.candidates));
+    }
+
+    /**
+     * Cancels the search. The running optimize() call throws an
+     * InterruptedException.
+     */
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    /**
+     * Searches the best design using a new executor with one thread per
+     * available processor.
+     *
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The best complex or null if no factory fits into the budget
+     * @throws InterruptedException
+     *             When search was interrupted or cancelled
+     */
+    public Complex optimize(final ProgressListener listener)
+        throws InterruptedException
+    {
+        final ExecutorService executor =
+            ThreadUtils.createCalculationExecutor("budget-optimizer");
+        try
+        {
+            return optimize(executor, listener);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Searches the best design using the specified executor.
+     *
+     * @param executor
+     *            The executor running the calculations
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The best complex or null if no factory fits into the budget
+     * @throws InterruptedException
+     *             When search was interrupted or cancelled
+     */
+    public Complex optimize(final ExecutorService executor,
+        final ProgressListener listener) throws InterruptedException
+    {
+        final int count = this.candidates.length;
+        final CompletionService<Void> service =
+            new ExecutorCompletionService<Void>(executor);
+        for (int i = 0; i < count; i++)
+        {
+            service.submit(new Search(i));
+        }
+        for (int i = 0; i < count; i++)
+        {
+            ThreadUtils.take(service);
+            if (listener != null) listener.progressChanged(i + 1, count);
+        }
+
+        final Design best = getBest();
+        if (best == null) return null;
+        final Complex complex = createComplex();
+        for (int i = 0; i < count; i++)
+            if (best.quantities[i] > 0)
+                complex.addFactory(this.candidates[i], best.quantities[i]);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        complex.setSector(this.template.getSector());
+        return complex;
+    }
+
+    /**
+     * Creates an empty complex with the suns, prices and ignored races of
+     * the template and without base complex.
+     *
+     * @return The complex
+     */
+    private Complex createComplex()
+    {
+        final Complex complex = new Complex(this.template.getGame(),
+            this.template.getName());
+        complex.setSuns(this.template.getSuns());
+        complex.setCustomPrices(this.template.getCustomPrices());
+        complex.setIgnoredRaces(this.ignoredRaces);
+        complex.setAddBaseComplex(false);
+        return complex;
+    }
+
+    /**
+     * Remembers the specified design if it is better than the best design
+     * found so far.
+     *
+     * @param design
+     *            The design
+     */
+    private synchronized void offer(final Design design)
+    {
+        if (this.best == null || design.profit > this.best.profit
+            || (design.profit == this.best.profit
+                && design.price < this.best.price))
+        {
+            this.best = design;
+            this.bestProfit = design.profit;
+        }
+    }
+
+    /**
+     * Returns the best design found so far.
+     *
+     * @return The best design or null if none
+     */
+    private synchronized Design getBest()
+    {
+        return this.best;
+    }
+
+    /**
+     * Throws an InterruptedException if the search has been cancelled or
+     * the current thread has been interrupted.
+     *
+     * @throws InterruptedException
+     *             When search was interrupted or cancelled
+     */
+    private void checkCancelled() throws InterruptedException
+    {
+        if (this.cancelled || Thread.interrupted())
+            throw new InterruptedException();
+    }
+
+    /**
+     * Searches all designs in which a specific candidate is the first used
+     * one.
+     */
+    private final class Search implements Callable<Void>
+    {
+        /** The index of the first used candidate */
+        private final int first;
+
+        /** The quantities of the current design */
+        private final int[] quantities;
+
+        /**
+         * The working complex (Without base complex). Only updated to the
+         * current design when a design is evaluated
+         */
+        private final Complex complex;
+
+        /** The quantities of the factories in the working complex */
+        private final int[] applied;
+
+        /**
+         * Constructor
+         *
+         * @param first
+         *            The index of the first used candidate
+         */
+        Search(final int first)
+        {
+            this.first = first;
+            this.quantities = new int[BudgetOptimizer.this.candidates.length];
+            this.applied = new int[this.quantities.length];
+            this.complex = createComplex();
+        }
+
+        /**
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Void call() throws InterruptedException
+        {
+            search(this.first, 0, 0, new double[CREDIT_VALUES]);
+            return null;
+        }
+
+        /**
+         * Recursive branch and bound search over the quantity of the
+         * specified candidate and the following used candidates.
+         *
+         * @param candidate
+         *            The index of the candidate to search the quantity for
+         * @param products
+         *            The number of different products in the parent design
+         * @param cost
+         *            The cost of the parent design (Prices plus construction
+         *            kits)
+         * @param value
+         *            The reduced profits of the parent design per credit
+         *            value
+         * @throws InterruptedException
+         *             When search was interrupted or cancelled
+         */
+        private void search(final int candidate, final int products,
+            final long cost, final double[] value)
+            throws InterruptedException
+        {
+            checkCancelled();
+
+            // The first factory doesn't need a construction kit
+            final BudgetOptimizer optimizer = BudgetOptimizer.this;
+            final long limit = optimizer.budget + Complex.KIT_PRICE;
+            final long candidateCost = optimizer.costs[candidate];
+            final int maxQuantity = (int) Math.min(Integer.MAX_VALUE,
+                (limit - cost) / candidateCost);
+            final int count = optimizer.candidates.length;
+            final boolean last = candidate + 1 == count
+                || products + 1 == optimizer.maxProducts;
+
+            // The bound only gets lower with lower quantities when the
+            // candidate is better than everything which follows it
+            boolean monotonic = true;
+            for (int k = 0; k < CREDIT_VALUES; k++)
+                if (optimizer.values[k][candidate] < candidateCost
+                    * optimizer.ratios[k][candidate + 1]) monotonic = false;
+
+            // Highest quantity first so good designs are found early
+            final double[] designValue = new double[CREDIT_VALUES];
+            for (int quantity = maxQuantity; quantity > 0; quantity--)
+            {
+                final long designCost = cost + quantity * candidateCost;
+
+                // The highest profit of this design alone and of the
+                // designs with additional following candidates
+                double designBound = Double.POSITIVE_INFINITY;
+                double bound = Double.POSITIVE_INFINITY;
+                for (int k = 0; k < CREDIT_VALUES; k++)
+                {
+                    designValue[k] = value[k] + quantity
+                        * optimizer.values[k][candidate];
+                    final double base = optimizer.bounds[k]
+                        + designValue[k];
+                    designBound = Math.min(designBound, base);
+                    bound = Math.min(bound, base + (limit - designCost)
+                        * optimizer.ratios[k][candidate + 1]);
+                }
+                if (bound + EPSILON <= optimizer.bestProfit)
+                {
+                    if (monotonic) break;
+                    continue;
+                }
+
+                this.quantities[candidate] = quantity;
+                if (designBound + EPSILON > optimizer.bestProfit) evaluate();
+                if (last) continue;
+
+                // Search the designs with additional candidates. The bound
+                // only gets lower with later candidates
+                for (int next = candidate + 1; next < count; next++)
+                {
+                    bound = Double.POSITIVE_INFINITY;
+                    for (int k = 0; k < CREDIT_VALUES; k++)
+                        bound = Math.min(bound, optimizer.bounds[k]
+                            + designValue[k] + (limit - designCost)
+                            * optimizer.ratios[k][next]);
+                    if (bound + EPSILON <= optimizer.bestProfit) break;
+                    if (designCost + optimizer.costs[next] > limit) continue;
+                    search(next, products + 1, designCost, designValue);
+                }
+            }
+            this.quantities[candidate] = 0;
+        }
+
+        /**
+         * Updates the working complex to the current design, calculates its
+         * base complex and offers the design if it fits into the budget.
+         */
+        private void evaluate()
+        {
+            // Designs which can't fit into the budget are not calculated
+            long cost = 0;
+            for (int i = 0; i < this.quantities.length; i++)
+                cost += this.quantities[i] * BudgetOptimizer.this.costs[i];
+            if (cost + getMinBaseCost(this.quantities) > BudgetOptimizer.this
+                .budget + Complex.KIT_PRICE) return;
+
+            final Complex complex = this.complex;
+            for (int i = 0; i < this.quantities.length; i++)
+            {
+                final int quantity = this.quantities[i];
+                if (quantity == this.applied[i]) continue;
+                if (this.applied[i] == 0)
+                    complex.addFactory(BudgetOptimizer.this.candidates[i],
+                        quantity);
+                else if (quantity == 0)
+                    complex.removeFactory(indexOf(i));
+                else
+                    complex.setQuantity(indexOf(i), quantity);
+                this.applied[i] = quantity;
+            }
+            complex.setAddBaseComplex(true);
+            complex.updateBaseComplex();
+            final long price = complex.getTotalPrice();
+            if (price <= BudgetOptimizer.this.budget)
+                offer(new Design(this.quantities.clone(), complex.getProfit(),
+                    price));
+
+            // Changing the working complex removes the base complex again
+            complex.setAddBaseComplex(false);
+        }
+
+        /**
+         * Returns the index of the factory of the specified candidate in the
+         * working complex. The complex keeps its factories sorted so the
+         * index changes when other factories are added or removed.
+         *
+         * @param candidate
+         *            The candidate index
+         * @return The factory index or -1 if not found
+         */
+        private int indexOf(final int candidate)
+        {
+            final List<ComplexFactory> factories = this.complex.getFactories();
+            for (int i = 0; i < factories.size(); i++)
+                if (factories.get(i).getFactory()
+                    == BudgetOptimizer.this.candidates[candidate])
+                    return i;
+            return -1;
+        }
+    }
+
+    /**
+     * An evaluated design.
+     */
+    private static final class Design
+    {
+        /** The quantities per candidate */
+        final int[] quantities;
+
+        /** The profit per hour */
+        final double profit;
+
+        /** The total price */
+        final long price;
+
+        /**
+         * Constructor
+         *
+         * @param quantities
+         *            The quantities per candidate
+         * @param profit
+         *            The profit per hour
+         * @param price
+         *            The total price
+         */
+        Design(final int[] quantities, final double profit, final long price)
+        {
+            this.quantities = quantities;
+            this.profit = profit;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The order in which the factories of a complex are bought, calculated by
+ * the build scheduler. Times are in hours since the start of the schedule.
+ * Between two purchases the profit grows linearly with the profit per hour
+ * of the factories built so far.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BuildSchedule
+{
+    /** The purchases */
+    private final List<BuildStep> steps;
+
+    /** The starting budget */
+    private final long budget;
+
+    /** The profit per hour of the already built factories */
+    private final double initialProfit;
+
+    /** If all factories could be bought */
+    private final boolean complete;
+
+    /**
+     * Constructor
+     *
+     * @param steps
+     *            The purchases
+     * @param budget
+     *            The starting budget
+     * @param initialProfit
+     *            The profit per hour of the already built factories
+     * @param complete
+     *            If all factories could be bought
+     */
+    BuildSchedule(final List<BuildStep> steps, final long budget,
+        final double initialProfit, final boolean complete)
+    {
+        this.steps = Collections.unmodifiableList(steps);
+        this.budget = budget;
+        this.initialProfit = initialProfit;
+        this.complete = complete;
+    }
+
+    /**
+     * Returns the purchases in chronological order.
+     *
+     * @return The purchases
+     */
+    public List<BuildStep> getSteps()
+    {
+        return this.steps;
+    }
+
+    /**
+     * Returns the starting budget.
+     *
+     * @return The budget
+     */
+    public long getBudget()
+    {
+        return this.budget;
+    }
+
+    /**
+     * Checks if all factories could be bought. This is not the case when the
+     * budget is too small for the first purchase or the built factories
+     * make no profit.
+     *
+     * @return True if the schedule is complete, false if not
+     */
+    public boolean isComplete()
+    {
+        return this.complete;
+    }
+
+    /**
+     * Returns the time of the last purchase.
+     *
+     * @return The completion time in hours
+     */
+    public double getCompletionTime()
+    {
+        if (this.steps.isEmpty()) return 0;
+        return this.steps.get(this.steps.size() - 1).getTime();
+    }
+
+    /**
+     * Returns the credits invested by all purchases.
+     *
+     * @return The total investment
+     */
+    public long getTotalInvestment()
+    {
+        if (this.steps.isEmpty()) return 0;
+        return this.steps.get(this.steps.size() - 1).getInvested();
+    }
+
+    /**
+     * Returns the profit per hour after the last purchase.
+     *
+     * @return The profit per hour
+     */
+    public double getFinalProfit()
+    {
+        if (this.steps.isEmpty()) return this.initialProfit;
+        return this.steps.get(this.steps.size() - 1).getProfit();
+    }
+
+    /**
+     * Returns the last purchase before or at the specified time.
+     *
+     * @param hours
+     *            The time in hours
+     * @return The purchase or null if nothing was bought yet
+     */
+    private BuildStep getStep(final double hours)
+    {
+        BuildStep last = null;
+        for (final BuildStep step: this.steps)
+        {
+            if (step.getTime() > hours) break;
+            last = step;
+        }
+        return last;
+    }
+
+    /**
+     * Returns the profit earned until the specified time.
+     *
+     * @param hours
+     *            The time in hours
+     * @return The earned profit
+     */
+    public double getEarned(final double hours)
+    {
+        final BuildStep step = getStep(hours);
+        if (step == null) return this.initialProfit * hours;
+        return step.getEarned() + step.getProfit() * (hours - step.getTime());
+    }
+
+    /**
+     * Returns the credits invested until the specified time.
+     *
+     * @param hours
+     *            The time in hours
+     * @return The invested credits
+     */
+    public long getInvested(final double hours)
+    {
+        final BuildStep step = getStep(hours);
+        return step == null ? 0 : step.getInvested();
+    }
+
+    /**
+     * Returns the available credits at the specified time.
+     *
+     * @param hours
+     *            The time in hours
+     * @return The credits
+     */
+    public double getCash(final double hours)
+    {
+        return this.budget + getEarned(hours) - getInvested(hours);
+    }
+
+    /**
+     * Returns the return on investment at the specified time. This is the
+     * earned profit divided by the invested credits, so a value of 1 means
+     * the investment has been paid back.
+     *
+     * @param hours
+     *            The time in hours
+     * @return The return on investment. 0 if nothing was invested yet
+     */
+    public double getRoi(final double hours)
+    {
+        final long invested = getInvested(hours);
+        if (invested == 0) return 0;
+        return getEarned(hours) / invested;
+    }
+
+    /**
+     * Returns the return on investment sampled in regular intervals starting
+     * at time 0.
+     *
+     * @param interval
+     *            The interval in hours
+     * @param count
+     *            The number of samples
+     * @return The return on investment values
+     */
+    public double[] getRoiCurve(final double interval, final int count)
+    {
+        final double[] curve = new double[count];
+        for (int i = 0; i < count; i++)
+            curve[i] = getRoi(i * interval);
+        return curve;
+    }
+
+    /**
+     * Returns the time when the earned profit has paid back the total
+     * investment.
+     *
+     * @return The payback time in hours or -1 if the schedule is incomplete
+     *         or the investment is never paid back
+     */
+    public double getPaybackTime()
+    {
+        if (!this.complete) return -1;
+        final long total = getTotalInvestment();
+        if (total == 0) return 0;
+        final BuildStep last = this.steps.get(this.steps.size() - 1);
+        if (last.getEarned() >= total)
+        {
+            // Paid back before completion. Search the segment.
+            double time = 0, earned = 0, profit = this.initialProfit;
+            for (final BuildStep step: this.steps)
+            {
+                if (step.getEarned() >= total)
+                    return time + (total - earned) / profit;
+                time = step.getTime();
+                earned = step.getEarned();
+                profit = step.getProfit();
+            }
+        }
+        if (last.getProfit() <= 0) return -1;
+        return last.getTime() + (total - last.getEarned()) / last.getProfit();
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates the order in which the factories of the shopping list are
+ * bought when the complex is built in stages with a limited starting budget.
+ * The profit of the already built factories is reinvested, so a good order
+ * buys profitable factories first and reaches the full profit of the complex
+ * as early as possible. Every factory after the first one needs a complex
+ * construction kit.
+ *
+ * The profit of a partial complex is the sum of the profits of its factories
+ * (Products sold minus resources bought at the ware prices of the complex),
+ * so adding a factory simply adds its profit per hour. The order is
+ * searched with a beam search: After each purchase only the most promising
+ * partial schedules are kept and schedules which have bought the same
+ * factories are merged.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BuildScheduler
+{
+    /** The default beam width */
+    public static final int DEFAULT_BEAM_WIDTH = 64;
+
+    /** Orders states by score (Highest first) */
+    private static final Comparator<State> ORDER = new Comparator<State>()
+    {
+        @Override
+        public int compare(final State a, final State b)
+        {
+            return Double.compare(b.score, a.score);
+        }
+    };
+
+    /** The factories to buy */
+    private final Factory[] factories;
+
+    /** The number of factories left to buy */
+    private final int[] left;
+
+    /** The prices of the factories */
+    private final int[] prices;
+
+    /** The profit per hour of a single factory */
+    private final double[] profits;
+
+    /** The profit per hour of the already built factories */
+    private final double initialProfit;
+
+    /** The number of already built factories */
+    private final int built;
+
+    /** The number of built kits which are not yet used */
+    private final int spareKits;
+
+    /** The price of a complex construction kit */
+    private final int kitPrice;
+
+    /** The starting budget */
+    private long budget;
+
+    /** The beam width */
+    private int beamWidth = DEFAULT_BEAM_WIDTH;
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to build
+     * @param budget
+     *            The starting budget
+     */
+    public BuildScheduler(final Complex complex, final long budget)
+    {
+        this.budget = budget;
+        this.kitPrice = complex.getKitPrice();
+
+        // Sum up the profit and quantity of each factory type
+        final Map<Factory, double[]> factoryProfits =
+            new HashMap<Factory, double[]>();
+        final List<ComplexFactory> complexFactories =
+            new ArrayList<ComplexFactory>(complex.getFactories());
+        complexFactories.addAll(complex.getAutoFactories());
+        final Sun suns = complex.getSuns();
+        for (final ComplexFactory complexFactory: complexFactories)
+        {
+            final Product product = complexFactory.getProductPerHour(suns);
+            double profit = product.getQuantity()
+                * complex.getWarePrice(product.getWare());
+            for (final Product resource: complexFactory
+                .getResourcesPerHour(suns))
+                profit -= resource.getQuantity()
+                    * complex.getWarePrice(resource.getWare());
+            double[] sum = factoryProfits.get(complexFactory.getFactory());
+            if (sum == null)
+            {
+                sum = new double[2];
+                factoryProfits.put(complexFactory.getFactory(), sum);
+            }
+            sum[0] += profit;
+            sum[1] += complexFactory.getQuantity();
+        }
+
+        // Read the shopping list
+        final ShoppingList list = complex.getShoppingList();
+        final List<ShoppingListItem> items = list.getItems();
+        final int count = items.size();
+        this.factories = new Factory[count];
+        this.left = new int[count];
+        this.prices = new int[count];
+        this.profits = new double[count];
+        double initialProfit = 0;
+        int built = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final ShoppingListItem item = items.get(i);
+            final double[] sum = factoryProfits.get(item.getFactory());
+            final int quantityBuilt = Math.min(item.getQuantity(),
+                item.getQuantityBuilt());
+            this.factories[i] = item.getFactory();
+            this.left[i] = item.getQuantity() - quantityBuilt;
+            this.prices[i] = item.getPrice();
+            this.profits[i] = sum == null || sum[1] == 0 ? 0 : sum[0] / sum[1];
+            initialProfit += this.profits[i] * quantityBuilt;
+            built += quantityBuilt;
+        }
+        this.initialProfit = initialProfit;
+        this.built = built;
+        this.spareKits = Math.max(0, list.getKitQuantityBuilt()
+            - Math.max(0, built - 1));
+    }
+
+    /**
+     * Sets the starting budget.
+     *
+     * @param budget
+     *            The starting budget
+     */
+    public void setBudget(final long budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the starting budget.
+     *
+     * @return The starting budget
+     */
+    public long getBudget()
+    {
+        return this.budget;
+    }
+
+    /**
+     * Sets the beam width. This is the number of partial schedules kept
+     * after each purchase. Higher values find better schedules but need
+     * more time.
+     *
+     * @param beamWidth
+     *            The beam width. Must be at least 1
+     */
+    public void setBeamWidth(final int beamWidth)
+    {
+        if (beamWidth < 1)
+            throw new IllegalArgumentException("beamWidth must be at least 1");
+        this.beamWidth = beamWidth;
+    }
+
+    /**
+     * Returns the beam width.
+     *
+     * @return The beam width
+     */
+    public int getBeamWidth()
+    {
+        return this.beamWidth;
+    }
+
+    /**
+     * Calculates the build schedule. If the factories can't all be bought
+     * (Budget too small and no profit to wait for) then the returned
+     * schedule is incomplete and contains the purchases which were possible.
+     *
+     * @return The build schedule
+     */
+    public BuildSchedule schedule()
+    {
+        int remaining = 0;
+        for (final int quantity: this.left)
+            remaining += quantity;
+
+        List<State> beam = new ArrayList<State>();
+        beam.add(new State(this.factories.length, this.budget,
+            this.initialProfit, this.built, this.spareKits));
+        for (int depth = 0; depth < remaining; depth++)
+        {
+            // Expand all states, merging states with the same purchases
+            final Map<State, State> candidates = new HashMap<State, State>();
+            double maxTime = 0;
+            for (final State state: beam)
+            {
+                for (int i = 0; i < this.factories.length; i++)
+                {
+                    if (state.counts[i] >= this.left[i]) continue;
+                    final State next = buy(state, i);
+                    if (next == null) continue;
+                    maxTime = Math.max(maxTime, next.time);
+                    final State old = candidates.get(next);
+                    if (old == null || old.cash - old.profit * old.time
+                        < next.cash - next.profit * next.time)
+                        candidates.put(next, next);
+                }
+            }
+            if (candidates.isEmpty()) break;
+
+            // Keep the states with the most credits at the latest time
+            final List<State> next = new ArrayList<State>(candidates.values());
+            for (final State state: next)
+                state.score = state.earned + state.profit
+                    * (maxTime - state.time) - state.invested;
+            Collections.sort(next, ORDER);
+            beam = next.size() > this.beamWidth ? next.subList(0,
+                this.beamWidth) : next;
+        }
+
+        // Pick the final state which reached the highest profit first
+        State best = null;
+        for (final State state: beam)
+            if (best == null || state.depth > best.depth
+                || (state.depth == best.depth && state.time < best.time))
+                best = state;
+        final LinkedList<BuildStep> steps = new LinkedList<BuildStep>();
+        for (State state = best; state.parent != null; state = state.parent)
+            steps.addFirst(new BuildStep(this.factories[state.item],
+                state.kit, state.time, state.price, state.cash, state.profit,
+                state.earned, state.invested));
+        return new BuildSchedule(new ArrayList<BuildStep>(steps), this.budget,
+            this.initialProfit, best.depth == remaining);
+    }
+
+    /**
+     * Buys a factory as soon as the credits are available.
+     *
+     * @param state
+     *            The current state
+     * @param item
+     *            The index of the factory to buy
+     * @return The new state or null if the factory can never be bought
+     */
+    private State buy(final State state, final int item)
+    {
+        final boolean kit = state.built > 0 && state.spareKits == 0;
+        final long price = this.prices[item] + (kit ? this.kitPrice : 0);
+        double wait = 0;
+        if (state.cash < price)
+        {
+            if (state.profit <= 0) return null;
+            wait = (price - state.cash) / state.profit;
+        }
+        final State next = new State(state, item);
+        next.kit = kit;
+        next.price = price;
+        next.time = state.time + wait;
+        next.earned = state.earned + state.profit * wait;
+        next.cash = Math.max(0, state.cash + state.profit * wait - price);
+        next.invested = state.invested + price;
+        next.profit = state.profit + this.profits[item];
+        next.built = state.built + 1;
+        next.spareKits = state.built > 0 && !kit ? state.spareKits - 1
+            : state.spareKits;
+        return next;
+    }
+
+    /**
+     * A partial schedule.
+     */
+    private static final class State
+    {
+        /** The previous state. Null for the start state */
+        final State parent;
+
+        /** The index of the factory bought in this state */
+        final int item;
+
+        /** The number of purchases */
+        final int depth;
+
+        /** The number of bought factories per shopping list item */
+        final int[] counts;
+
+        /** If a kit was bought together with the factory */
+        boolean kit;
+
+        /** The paid price */
+        long price;
+
+        /** The time of the purchase */
+        double time;
+
+        /** The credits left after the purchase */
+        double cash;
+
+        /** The profit earned until the purchase */
+        double earned;
+
+        /** The credits invested until the purchase */
+        long invested;
+
+        /** The profit per hour after the purchase */
+        double profit;
+
+        /** The number of built factories */
+        int built;
+
+        /** The number of built but unused kits */
+        int spareKits;
+
+        /** The score used to select the states to keep */
+        double score;
+
+        /**
+         * Creates the start state.
+         *
+         * @param items
+         *            The number of shopping list items
+         * @param cash
+         *            The starting budget
+         * @param profit
+         *            The profit per hour of the already built factories
+         * @param built
+         *            The number of already built factories
+         * @param spareKits
+         *            The number of built but unused kits
+         */
+        State(final int items, final double cash, final double profit,
+            final int built, final int spareKits)
+        {
+            this.parent = null;
+            this.item = -1;
+            this.depth = 0;
+            this.counts = new int[items];
+            this.cash = cash;
+            this.profit = profit;
+            this.built = built;
+            this.spareKits = spareKits;
+        }
+
+        /**
+         * Creates the state after buying the specified factory.
+         *
+         * @param parent
+         *            The previous state
+         * @param item
+         *            The index of the bought factory
+         */
+        State(final State parent, final int item)
+        {
+            this.parent = parent;
+            this.item = item;
+            this.depth = parent.depth + 1;
+            this.counts = parent.counts.clone();
+            this.counts[item]++;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode(this.counts);
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (obj == this) return true;
+            if (!(obj instanceof State)) return false;
+            return Arrays.equals(this.counts, ((State) obj).counts);
+        }
+    }
+}
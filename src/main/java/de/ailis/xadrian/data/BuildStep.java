@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+/**
+ * A single purchase of a build schedule. Times are in hours since the start
+ * of the schedule.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BuildStep
+{
+    /** The bought factory */
+    private final Factory factory;
+
+    /** If a complex construction kit was bought together with the factory */
+    private final boolean kit;
+
+    /** The time of the purchase */
+    private final double time;
+
+    /** The paid price (Including the kit) */
+    private final long price;
+
+    /** The credits left after the purchase */
+    private final double cash;
+
+    /** The profit per hour of the built factories after the purchase */
+    private final double profit;
+
+    /** The profit earned until the purchase */
+    private final double earned;
+
+    /** The credits invested until and including the purchase */
+    private final long invested;
+
+    /**
+     * Constructor
+     *
+     * @param factory
+     *            The bought factory
+     * @param kit
+     *            If a kit was bought together with the factory
+     * @param time
+     *            The time of the purchase
+     * @param price
+     *            The paid price
+     * @param cash
+     *            The credits left after the purchase
+     * @param profit
+     *            The profit per hour after the purchase
+     * @param earned
+     *            The profit earned until the purchase
+     * @param invested
+     *            The credits invested until and including the purchase
+     */
+    BuildStep(final Factory factory, final boolean kit, final double time,
+        final long price, final double cash, final double profit,
+        final double earned, final long invested)
+    {
+        this.factory = factory;
+        this.kit = kit;
+        this.time = time;
+        this.price = price;
+        this.cash = cash;
+        this.profit = profit;
+        this.earned = earned;
+        this.invested = invested;
+    }
+
+    /**
+     * Returns the bought factory.
+     *
+     * @return The factory
+     */
+    public Factory getFactory()
+    {
+        return this.factory;
+    }
+
+    /**
+     * Checks if a complex construction kit was bought together with the
+     * factory to connect it to the complex.
+     *
+     * @return True if a kit was bought, false if not
+     */
+    public boolean isKit()
+    {
+        return this.kit;
+    }
+
+    /**
+     * Returns the time of the purchase.
+     *
+     * @return The time in hours
+     */
+    public double getTime()
+    {
+        return this.time;
+    }
+
+    /**
+     * Returns the paid price including the kit.
+     *
+     * @return The price
+     */
+    public long getPrice()
+    {
+        return this.price;
+    }
+
+    /**
+     * Returns the credits left after the purchase.
+     *
+     * @return The credits
+     */
+    public double getCash()
+    {
+        return this.cash;
+    }
+
+    /**
+     * Returns the profit per hour of all built factories after the purchase.
+     *
+     * @return The profit per hour
+     */
+    public double getProfit()
+    {
+        return this.profit;
+    }
+
+    /**
+     * Returns the profit earned by the built factories until the purchase.
+     *
+     * @return The earned profit
+     */
+    public double getEarned()
+    {
+        return this.earned;
+    }
+
+    /**
+     * Returns the credits invested until and including this purchase.
+     *
+     * @return The invested credits
+     */
+    public long getInvested()
+    {
+        return this.invested;
+    }
+}
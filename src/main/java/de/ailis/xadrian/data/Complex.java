@@ -5,8 +5,12 @@
 
 package de.ailis.xadrian.data;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -15,24 +19,39 @@ import java.io.Serializable;
 import java.io.StringWriter;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
-import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
 
 import de.ailis.xadrian.data.factories.FactoryFactory;
 import de.ailis.xadrian.data.factories.GameFactory;
@@ -45,12 +64,13 @@ import de.ailis.xadrian.exceptions.DataException;
 import de.ailis.xadrian.exceptions.GameNotFoundException;
 import de.ailis.xadrian.exceptions.TemplateCodeException;
 import de.ailis.xadrian.interfaces.GameProvider;
-import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.DynaByteInputStream;
 import de.ailis.xadrian.support.DynaByteOutputStream;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog.Result;
 import de.ailis.xadrian.support.MultiCollection;
+import de.ailis.xadrian.utils.FileUtils;
+import de.ailis.xadrian.utils.XmlUtils;
 
 /**
  * A complex
@@ -71,6 +91,39 @@ public class Complex implements Serializable, GameProvider
     /** The volume of a complex construction kit */
     public static final int KIT_VOLUME = 4250;
 
+    /** The file extension of the binary complex format */
+    public static final String BINARY_EXTENSION = "x3cb";
+
+    /** The magic bytes at the start of the binary complex format */
+    private static final byte[] BINARY_MAGIC = { 'X', '3', 'C', 'B' };
+
+    /** The version of the binary complex format */
+    private static final int BINARY_VERSION = 1;
+
+    /** Binary format header flag: The body is deflated */
+    private static final int BINARY_DEFLATED = 1;
+
+    /**
+     * The minimum length of a template code. This is a complex with a single
+     * factory.
+     */
+    private static final int MIN_TEMPLATE_CODE_LENGTH = 8;
+
+    /** Template code settings flag: The code uses format version 2 */
+    private static final int TEMPLATE_CODE_V2 = 16;
+
+    /** Template code settings flag: The version 2 body is deflated */
+    private static final int TEMPLATE_CODE_DEFLATED = 32;
+
+    /** All valid bits of the template code settings */
+    private static final int TEMPLATE_CODE_SETTINGS = 63;
+
+    /** The maximum number of yields of a mine in a template code */
+    private static final int MAX_TEMPLATE_CODE_YIELDS = 65535;
+
+    /** The maximum size of an inflated template code body */
+    private static final int MAX_TEMPLATE_CODE_SIZE = 1 << 20;
+
     /** The complex counter for the complex name generator */
     private static int complexCounter = 0;
 
@@ -98,6 +151,12 @@ public class Complex implements Serializable, GameProvider
     /** Custom buy/sell prices in this complex */
     private final Map<Ware, Integer> customPrices;
 
+    /**
+     * The races which factories are not used for the base complex. Null to
+     * use the ignored races of the configuration
+     */
+    private Set<Race> ignoredRaces;
+
     /** If complex setup should be displayed */
     private boolean showingComplexSetup = true;
 
@@ -107,6 +166,9 @@ public class Complex implements Serializable, GameProvider
     /** If storage capacities should be displayed */
     private boolean showingStorageCapacities = false;
 
+    /** If the price sensitivity should be displayed */
+    private boolean showingPriceSensitivity = false;
+
     /** If shopping list should be displayed */
     private boolean showingShoppingList = false;
 
@@ -119,6 +181,12 @@ public class Complex implements Serializable, GameProvider
     /** The cached shopping list */
     private ShoppingList shoppingList;
 
+    /** The cached shopping route */
+    private transient ShoppingRoute shoppingRoute;
+
+    /** The cached freighter load plan */
+    private transient LoadPlan loadPlan;
+
     /**
      * Constructor
      *
@@ -154,7 +222,7 @@ public class Complex implements Serializable, GameProvider
      *
      * @return A new complex name
      */
-    private static String createComplexName()
+    private static synchronized String createComplexName()
     {
         complexCounter++;
         return I18N.getString("complex.nameTemplate", complexCounter);
@@ -468,6 +536,43 @@ public class Complex implements Serializable, GameProvider
         }
     }
 
+    /**
+     * Adds the specified number of factories to the complex without asking
+     * the user for anything. Mines can't be added this way because they
+     * need asteroid yields.
+     *
+     * @param factory
+     *            The factory to add. Must not be a mine
+     * @param quantity
+     *            The number of factories to add
+     */
+    public void addFactory(final Factory factory, final int quantity)
+    {
+        if (factory.isMine())
+            throw new IllegalArgumentException("Mines need yields");
+        addFactory(new ComplexFactory(this.game, factory, quantity, 0));
+        calculateBaseComplex();
+        updateShoppingList();
+    }
+
+    /**
+     * Adds mines with the specified yields to the complex without asking the
+     * user for anything.
+     *
+     * @param mine
+     *            The mine to add
+     * @param yields
+     *            The yields of the asteroids. One mine is added per yield
+     */
+    public void addFactory(final Factory mine, final List<Integer> yields)
+    {
+        if (!mine.isMine())
+            throw new IllegalArgumentException("Only mines have yields");
+        addFactory(new ComplexFactory(this.game, mine, yields));
+        calculateBaseComplex();
+        updateShoppingList();
+    }
+
     /**
      * Adds the specified factory/factories to the complex.
      *
@@ -494,85 +599,121 @@ public class Complex implements Serializable, GameProvider
     }
 
     /**
-     * Converts the complex into XML and returns it.
+     * Writes the complex as XML into the specified stream. The XML is
+     * streamed directly without building a document in memory.
      *
-     * @return The complex as XML
+     * @param stream
+     *            The stream to write to. It is not closed
+     * @throws IOException
+     *             If writing fails
      */
-    public Document toXML()
+    public void writeXML(final OutputStream stream) throws IOException
     {
-        final Document document = DocumentHelper.createDocument();
-        final Element root = document.addElement("complex");
-        root.addAttribute("version", "4");
-        root.addAttribute("game", this.game.getId());
-        root.addAttribute("suns", Integer.toString(getSuns().getPercent()));
-        if (this.sector != null)
-            root.addAttribute("sector", this.sector.getId());
-        root.addAttribute("addBaseComplex", Boolean
-            .toString(this.addBaseComplex));
-        root.addAttribute("showingProductionStats", Boolean
-            .toString(this.showingProductionStats));
-        root.addAttribute("showingShoppingList", Boolean
-            .toString(this.showingShoppingList));
-        root.addAttribute("showingStorageCapacities", Boolean
-            .toString(this.showingStorageCapacities));
-        root.addAttribute("showingComplexSetup", Boolean
-            .toString(this.showingComplexSetup));
-        if (!this.factories.isEmpty())
-        {
-            final Element factoriesE = root.addElement("complexFactories");
-            for (final ComplexFactory factory: this.factories)
+        try
+        {
+            final XMLStreamWriter writer = XmlUtils.createWriter(stream);
+            XmlUtils.newLine(writer, 0);
+            writer.writeStartElement("complex");
+            writer.writeAttribute("version", "4");
+            writer.writeAttribute("game", this.game.getId());
+            writer.writeAttribute("suns", Integer.toString(getSuns()
+                .getPercent()));
+            if (this.sector != null)
+                writer.writeAttribute("sector", this.sector.getId());
+            writer.writeAttribute("addBaseComplex", Boolean
+                .toString(this.addBaseComplex));
+            writer.writeAttribute("showingProductionStats", Boolean
+                .toString(this.showingProductionStats));
+            writer.writeAttribute("showingShoppingList", Boolean
+                .toString(this.showingShoppingList));
+            writer.writeAttribute("showingStorageCapacities", Boolean
+                .toString(this.showingStorageCapacities));
+            writer.writeAttribute("showingPriceSensitivity", Boolean
+                .toString(this.showingPriceSensitivity));
+            writer.writeAttribute("showingComplexSetup", Boolean
+                .toString(this.showingComplexSetup));
+            if (!this.factories.isEmpty())
             {
-                final Element factoryE = factoriesE
-                    .addElement("complexFactory");
-                factoryE.addAttribute("factory", factory.getFactory().getId());
-                factoryE.addAttribute("disabled", Boolean.toString(factory
-                    .isDisabled()));
-                if (factory.getFactory().isMine())
+                XmlUtils.newLine(writer, 1);
+                writer.writeStartElement("complexFactories");
+                for (final ComplexFactory factory: this.factories)
                 {
-                    final Element yieldsE = factoryE.addElement("yields");
-                    for (final Integer yield: factory.getYields())
+                    XmlUtils.newLine(writer, 2);
+                    final boolean mine = factory.getFactory().isMine();
+                    if (mine)
+                        writer.writeStartElement("complexFactory");
+                    else
+                        writer.writeEmptyElement("complexFactory");
+                    writer.writeAttribute("factory", factory.getFactory()
+                        .getId());
+                    writer.writeAttribute("disabled", Boolean.toString(factory
+                        .isDisabled()));
+                    if (mine)
                     {
-                        final Element yieldE = yieldsE.addElement("yield");
-                        yieldE.setText(Integer.toString(yield));
+                        XmlUtils.newLine(writer, 3);
+                        writer.writeStartElement("yields");
+                        for (final Integer yield: factory.getYields())
+                        {
+                            XmlUtils.newLine(writer, 4);
+                            writer.writeStartElement("yield");
+                            writer.writeCharacters(Integer.toString(yield));
+                            writer.writeEndElement();
+                        }
+                        XmlUtils.newLine(writer, 3);
+                        writer.writeEndElement();
+                        XmlUtils.newLine(writer, 2);
+                        writer.writeEndElement();
                     }
+                    else
+                        writer.writeAttribute("quantity", Integer
+                            .toString(factory.getQuantity()));
                 }
-                else
+                XmlUtils.newLine(writer, 1);
+                writer.writeEndElement();
+            }
+            if (!this.customPrices.isEmpty())
+            {
+                XmlUtils.newLine(writer, 1);
+                writer.writeStartElement("complexWares");
+                for (final Map.Entry<Ware, Integer> entry: this.customPrices
+                    .entrySet())
                 {
-                    factoryE.addAttribute("quantity", Integer.toString(factory
-                        .getQuantity()));
+                    final int price = entry.getValue();
+                    XmlUtils.newLine(writer, 2);
+                    writer.writeEmptyElement("complexWare");
+                    writer.writeAttribute("ware", entry.getKey().getId());
+                    writer.writeAttribute("use", Boolean.toString(price > 0));
+                    writer.writeAttribute("price", Integer.toString(Math
+                        .abs(price)));
                 }
+                XmlUtils.newLine(writer, 1);
+                writer.writeEndElement();
             }
-        }
-        if (!this.customPrices.isEmpty())
-        {
-            final Element waresE = root.addElement("complexWares");
-            for (final Map.Entry<Ware, Integer> entry: this.customPrices
+
+            XmlUtils.newLine(writer, 1);
+            writer.writeStartElement("built");
+            writer.writeAttribute("kits", Integer.toString(this.builtKits));
+            for (final Entry<String, Integer> entry: this.builtFactories
                 .entrySet())
             {
-                final Ware ware = entry.getKey();
-                final int price = entry.getValue();
-                final Element wareE = waresE.addElement("complexWare");
-                wareE.addAttribute("ware", ware.getId());
-                wareE
-                    .addAttribute("use", Boolean.valueOf(price > 0)
-                        .toString());
-                wareE.addAttribute("price", Integer.toString(Math.abs(price)));
+                XmlUtils.newLine(writer, 2);
+                writer.writeEmptyElement("factory");
+                writer.writeAttribute("id", entry.getKey());
+                writer.writeAttribute("quantity", Integer.toString(entry
+                    .getValue()));
             }
+            if (!this.builtFactories.isEmpty()) XmlUtils.newLine(writer, 1);
+            writer.writeEndElement();
+            XmlUtils.newLine(writer, 0);
+            writer.writeEndElement();
+            XmlUtils.newLine(writer, 0);
+            writer.writeEndDocument();
+            writer.close();
         }
-
-        final Element shoppingListE = root.addElement("built");
-        shoppingListE.addAttribute("kits", Integer.toString(this.builtKits));
-        for (final Entry<String, Integer> entry: this.builtFactories
-            .entrySet())
+        catch (final XMLStreamException e)
         {
-            final String id = entry.getKey();
-            final int quantity = entry.getValue();
-            final Element factoryE = shoppingListE.addElement("factory");
-            factoryE.addAttribute("id", id);
-            factoryE.addAttribute("quantity", Integer.toString(quantity));
+            throw new IOException("Unable to write XML: " + e, e);
         }
-
-        return document;
     }
 
     /**
@@ -620,6 +761,8 @@ public class Complex implements Serializable, GameProvider
             "showingShoppingList", "false"));
         complex.showingStorageCapacities = Boolean.parseBoolean(root
             .attributeValue("showingStorageCapacities", "false"));
+        complex.showingPriceSensitivity = Boolean.parseBoolean(root
+            .attributeValue("showingPriceSensitivity", "false"));
         complex.showingComplexSetup = Boolean.parseBoolean(root.attributeValue(
             "showingComplexSetup", "true"));
 
@@ -816,6 +959,16 @@ public class Complex implements Serializable, GameProvider
         return profit;
     }
 
+    /**
+     * Returns the price sensitivity of the profit of this complex.
+     *
+     * @return The price sensitivity
+     */
+    public PriceSensitivity getPriceSensitivity()
+    {
+        return new PriceSensitivity(this);
+    }
+
     /**
      * Returns the number of needed complex construction kits in this complex.
      *
@@ -855,7 +1008,7 @@ public class Complex implements Serializable, GameProvider
         final FactoryFactory factoryFactory = this.game.getFactoryFactory();
         final RaceFactory raceFactory = this.game.getRaceFactory();
         final Ware crystals = this.game.getWareFactory().getWare("crystals");
-        final Config config = Config.getInstance();
+        final Set<Race> ignoredRaces = getIgnoredRaces();
         long currentPrice;
         long price;
         final List<ComplexFactory> backup = new ArrayList<ComplexFactory>();
@@ -866,21 +1019,42 @@ public class Complex implements Serializable, GameProvider
 
         if (!this.addBaseComplex) return;
 
+        // Reuse the base complex already calculated for an equal complex
+        final BaseComplexCache cache = BaseComplexCache.getInstance();
+        final String key = getBaseComplexKey();
+        final List<ComplexFactory> cached = cache.get(this.game, key);
+        if (cached != null)
+        {
+            this.autoFactories.addAll(cached);
+            updateShoppingList();
+            return;
+        }
+
         // First of all we build a base complex without specific crystal fab
         // race and remember the price
         while (true)
-            if (!addBaseComplex(null)) break;
+            if (!addBaseComplex(null, ignoredRaces)) break;
         currentPrice = getTotalPrice();
 
+        // The crystal fab race doesn't matter if the complex doesn't need
+        // crystals at all
+        if (!needsWare(crystals))
+        {
+            cache.put(this.game, key, this.autoFactories);
+            updateShoppingList();
+            return;
+        }
+
         // Now cycle over all races and check if the complex gets cheaper if
         // the crystal fabs are bought from them
         for (final Race race: raceFactory.getRaces())
         {
             // If race is ignored then don't use it
-            if (config.isRaceIgnored(race)) continue;
+            if (ignoredRaces.contains(race)) continue;
 
             // If race has no crystal fabs then don't use it
-            if (!factoryFactory.hasFactories(race, crystals)) continue;
+            if (!factoryFactory.hasFactories(race, crystals, ignoredRaces))
+                continue;
 
             // Backup current automatically added factories, clear the
             // calculated factories and then calculate the complex again with
@@ -888,7 +1062,7 @@ public class Complex implements Serializable, GameProvider
             backup.addAll(this.autoFactories);
             this.autoFactories.clear();
             while (true)
-                if (!addBaseComplex(race)) break;
+                if (!addBaseComplex(race, ignoredRaces)) break;
 
             // Check if new price is cheaper then the old one. If cheaper
             // then the new complex is used (and checked against the next
@@ -905,9 +1079,89 @@ public class Complex implements Serializable, GameProvider
             }
             backup.clear();
         }
+        cache.put(this.game, key, this.autoFactories);
         updateShoppingList();
     }
 
+    /**
+     * Returns the canonical key of the base complex calculation. Two
+     * complexes with the same key get the same automatically added
+     * factories. The key covers the game, the sun power, the ignored races,
+     * the enabled factories (Quantities of equal factories are summed up,
+     * yields of equal mines are merged) and whether the complex needs
+     * crystals at all. It doesn't depend on the running application so it
+     * can also be used to store results on disk.
+     *
+     * @return The base complex key
+     */
+    String getBaseComplexKey()
+    {
+        final Map<String, Integer> quantities = new TreeMap<String, Integer>();
+        final Map<String, List<Integer>> yields =
+            new TreeMap<String, List<Integer>>();
+        for (final ComplexFactory complexFactory: this.factories)
+        {
+            if (complexFactory.isDisabled()) continue;
+            final String id = complexFactory.getFactory().getId();
+            if (complexFactory.getFactory().isMine())
+            {
+                List<Integer> mineYields = yields.get(id);
+                if (mineYields == null)
+                {
+                    mineYields = new ArrayList<Integer>();
+                    yields.put(id, mineYields);
+                }
+                mineYields.addAll(complexFactory.getYields());
+            }
+            else
+            {
+                final Integer quantity = quantities.get(id);
+                quantities.put(id, (quantity == null ? 0 : quantity)
+                    + complexFactory.getQuantity());
+            }
+        }
+        final Set<String> races = new TreeSet<String>();
+        for (final Race race: getIgnoredRaces())
+            races.add(race.getId());
+
+        final StringBuilder key = new StringBuilder();
+        key.append(this.game.getId()).append(';');
+        key.append(getSuns().getPercent()).append(';');
+        key.append(races).append(';');
+        key.append(needsWare(this.game.getWareFactory().getWare("crystals")))
+            .append(';');
+        key.append(quantities).append(';');
+        for (final Map.Entry<String, List<Integer>> entry: yields.entrySet())
+        {
+            Collections.sort(entry.getValue());
+            key.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Checks if the manually added factories of this complex directly or
+     * indirectly need the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @return True if the ware is needed, false if not
+     */
+    private boolean needsWare(final Ware ware)
+    {
+        final ProductionGraph graph = this.game.getProductionGraph();
+        final BitSet consumers = graph.getAllConsumers(ware);
+        for (final ComplexFactory complexFactory: this.factories)
+        {
+            for (final Product resource: complexFactory.getFactory()
+                .getResources())
+                if (resource.getWare().equals(ware)
+                    || consumers.get(graph.getOrdinal(resource.getWare())))
+                    return true;
+        }
+        return false;
+    }
+
     /**
      * Updates the base complex.
      */
@@ -944,10 +1198,13 @@ public class Complex implements Serializable, GameProvider
      * @param crystalRace
      *            Optional race from which crystal fabs should be bought. If
      *            null then the cheapest fab is searched.
+     * @param ignoredRaces
+     *            The races which factories are not used
      * @return True if a need was found and fixed, false if everything is
      *         finished
      */
-    private boolean addBaseComplex(final Race crystalRace)
+    private boolean addBaseComplex(final Race crystalRace,
+        final Set<Race> ignoredRaces)
     {
         for (final ComplexWare ware: getWares())
         {
@@ -960,7 +1217,7 @@ public class Complex implements Serializable, GameProvider
             {
                 final Race race = ware.getWare().getId().equals("crystals")
                     ? crystalRace : null;
-                if (!addBaseComplexForWare(ware, race)) continue;
+                if (!addBaseComplexForWare(ware, race, ignoredRaces)) continue;
                 return true;
             }
 
@@ -977,11 +1234,13 @@ public class Complex implements Serializable, GameProvider
      * @param race
      *            The race from which factories should be bought. If null then
      *            the cheapest factory is used.
+     * @param ignoredRaces
+     *            The races which factories are not used
      * @return True if a new factories were added, false if this was not
      *         possible
      */
     private boolean addBaseComplexForWare(final ComplexWare complexWare,
-        final Race race)
+        final Race race, final Set<Race> ignoredRaces)
     {
         final Ware ware = complexWare.getWare();
         final FactoryFactory factoryFactory = this.game.getFactoryFactory();
@@ -1004,7 +1263,7 @@ public class Complex implements Serializable, GameProvider
 
         // Determine the available factory sizes
         final SortedSet<FactorySize> sizesSet =
-            factoryFactory.getFactorySizes(ware, race);
+            factoryFactory.getFactorySizes(ware, race, ignoredRaces);
         final FactorySize[] sizes =
             sizesSet.toArray(new FactorySize[sizesSet.size()]);
 
@@ -1018,10 +1277,10 @@ public class Complex implements Serializable, GameProvider
         {
             if (race == null)
                 factories.put(size, factoryFactory.getCheapestFactory(ware,
-                    size));
+                    size, ignoredRaces));
             else
-                factories
-                    .put(size, factoryFactory.getFactory(ware, size, race));
+                factories.put(size, factoryFactory.getFactory(ware, size,
+                    race, false));
         }
 
         // Get the smallest possible production quantity
@@ -1174,6 +1433,244 @@ public class Complex implements Serializable, GameProvider
         return this.sector;
     }
 
+    /**
+     * Moves the complex into the specified sector and places the mines of the
+     * complex on the asteroids with the best yields in this sector. If the
+     * sector doesn't have enough asteroids for all mines then the complex is
+     * not modified and false is returned.
+     *
+     * @param sector
+     *            The new sector. Must not be null.
+     * @return True if complex was moved, false if sector doesn't have enough
+     *         asteroids
+     */
+    public boolean relocate(final Sector sector)
+    {
+        // Check if sector has enough asteroids for all the mines
+        final Map<String, Integer> needed = new HashMap<String, Integer>();
+        for (final ComplexFactory complexFactory: this.factories)
+        {
+            final Factory factory = complexFactory.getFactory();
+            if (!factory.isMine()) continue;
+            final String wareId = factory.getProduct().getWare().getId();
+            final Integer quantity = needed.get(wareId);
+            needed.put(wareId, complexFactory.getQuantity()
+                + (quantity == null ? 0 : quantity));
+        }
+        final Map<String, List<Integer>> available =
+            new HashMap<String, List<Integer>>();
+        for (final Map.Entry<String, Integer> entry: needed.entrySet())
+        {
+            final String wareId = entry.getKey();
+            final List<Integer> yields = sector.getYields(wareId);
+            if (yields.size() < entry.getValue()) return false;
+            available.put(wareId, yields);
+        }
+
+        // Assign the best asteroids (yields are sorted in descending order)
+        // to the mines
+        for (final ComplexFactory complexFactory: this.factories)
+        {
+            final Factory factory = complexFactory.getFactory();
+            if (!factory.isMine()) continue;
+            final List<Integer> yields = available.get(factory.getProduct()
+                .getWare().getId());
+            final List<Integer> used = yields.subList(0,
+                complexFactory.getQuantity());
+            complexFactory.setYields(new ArrayList<Integer>(used));
+            used.clear();
+        }
+        Collections.sort(this.factories);
+
+        this.sector = sector;
+        calculateBaseComplex();
+        updateShoppingList();
+        return true;
+    }
+
+    /**
+     * Creates a copy of this complex. The copy shares no mutable state with
+     * this complex so it can be modified and calculated independently (even
+     * in a different thread).
+     *
+     * @return The copy of this complex
+     */
+    public Complex copy()
+    {
+        final Complex copy = new Complex(this.game, this.name);
+        copy.suns = this.suns;
+        copy.sector = this.sector;
+        copy.addBaseComplex = this.addBaseComplex;
+        for (final ComplexFactory complexFactory: this.factories)
+            copy.factories.add(new ComplexFactory(complexFactory));
+        for (final ComplexFactory complexFactory: this.autoFactories)
+            copy.autoFactories.add(new ComplexFactory(complexFactory));
+        copy.customPrices.putAll(this.customPrices);
+        copy.ignoredRaces = this.ignoredRaces;
+        copy.showingComplexSetup = this.showingComplexSetup;
+        copy.showingProductionStats = this.showingProductionStats;
+        copy.showingStorageCapacities = this.showingStorageCapacities;
+        copy.showingPriceSensitivity = this.showingPriceSensitivity;
+        copy.showingShoppingList = this.showingShoppingList;
+        copy.builtFactories.putAll(this.builtFactories);
+        copy.builtKits = this.builtKits;
+        return copy;
+    }
+
+    /**
+     * Merges the changes made to two versions of a complex. The local and
+     * the remote complex were both derived from the base complex. Each part
+     * of the complex (The factories, the location, the custom prices, the
+     * base complex setting and the built factories and kits) is taken from
+     * the version which changed it. When both versions changed the same part
+     * differently then the versions conflict. The name and the view settings
+     * are always taken from the local complex.
+     *
+     * @param base
+     *            The common ancestor
+     * @param local
+     *            The local version
+     * @param remote
+     *            The remote version
+     * @return The merged complex or null if the versions conflict
+     */
+    public static Complex merge(final Complex base, final Complex local,
+        final Complex remote)
+    {
+        if (!local.game.equals(remote.game)) return null;
+        final Complex merged = local.copy();
+        merged.factories.clear();
+        final List<ComplexFactory> factories = pick(base.factories,
+            local.factories, remote.factories, new Equality<
+                List<ComplexFactory>>()
+            {
+                @Override
+                public boolean equal(final List<ComplexFactory> a,
+                    final List<ComplexFactory> b)
+                {
+                    return sameFactories(a, b);
+                }
+            });
+        final Complex location = pick(base, local, remote,
+            new Equality<Complex>()
+            {
+                @Override
+                public boolean equal(final Complex a, final Complex b)
+                {
+                    return ObjectUtils.equals(a.sector, b.sector)
+                        && ObjectUtils.equals(a.getSuns(), b.getSuns());
+                }
+            });
+        final Complex prices = pick(base, local, remote,
+            new Equality<Complex>()
+            {
+                @Override
+                public boolean equal(final Complex a, final Complex b)
+                {
+                    return a.customPrices.equals(b.customPrices);
+                }
+            });
+        final Complex baseComplex = pick(base, local, remote,
+            new Equality<Complex>()
+            {
+                @Override
+                public boolean equal(final Complex a, final Complex b)
+                {
+                    return a.addBaseComplex == b.addBaseComplex;
+                }
+            });
+        final Complex built = pick(base, local, remote,
+            new Equality<Complex>()
+            {
+                @Override
+                public boolean equal(final Complex a, final Complex b)
+                {
+                    return a.builtKits == b.builtKits
+                        && a.builtFactories.equals(b.builtFactories);
+                }
+            });
+        if (factories == null || location == null || prices == null
+            || baseComplex == null || built == null) return null;
+
+        for (final ComplexFactory factory: factories)
+            merged.factories.add(new ComplexFactory(factory));
+        merged.suns = location.suns;
+        merged.sector = location.sector;
+        merged.customPrices.clear();
+        merged.customPrices.putAll(prices.customPrices);
+        merged.addBaseComplex = baseComplex.addBaseComplex;
+        merged.builtFactories.clear();
+        merged.builtFactories.putAll(built.builtFactories);
+        merged.builtKits = built.builtKits;
+        merged.calculateBaseComplex();
+        merged.updateShoppingList();
+        return merged;
+    }
+
+    /**
+     * Compares two values for the merge.
+     *
+     * @param <T>
+     *            The value type
+     */
+    private interface Equality<T>
+    {
+        /**
+         * Checks if the two values are equal.
+         *
+         * @param a
+         *            The first value
+         * @param b
+         *            The second value
+         * @return True if values are equal, false if not
+         */
+        boolean equal(T a, T b);
+    }
+
+    /**
+     * Picks the changed value of a three way merge.
+     *
+     * @param <T>
+     *            The value type
+     * @param base
+     *            The common ancestor
+     * @param local
+     *            The local value
+     * @param remote
+     *            The remote value
+     * @param equality
+     *            Compares the values
+     * @return The picked value or null if both values were changed
+     *         differently
+     */
+    private static <T> T pick(final T base, final T local, final T remote,
+        final Equality<T> equality)
+    {
+        if (equality.equal(local, base)) return remote;
+        if (equality.equal(remote, base) || equality.equal(remote, local))
+            return local;
+        return null;
+    }
+
+    /**
+     * Checks if two factory lists are equal including the disabled states
+     * of the factories.
+     *
+     * @param a
+     *            The first factory list
+     * @param b
+     *            The second factory list
+     * @return True if factory lists are equal, false if not
+     */
+    static boolean sameFactories(final List<ComplexFactory> a,
+        final List<ComplexFactory> b)
+    {
+        if (!a.equals(b)) return false;
+        for (int i = 0; i < a.size(); i++)
+            if (a.get(i).isDisabled() != b.get(i).isDisabled()) return false;
+        return true;
+    }
+
     /**
      * Returns the factory shopping list.
      *
@@ -1205,6 +1702,52 @@ public class Complex implements Serializable, GameProvider
         return list;
     }
 
+    /**
+     * Returns the trips a freighter with the specified cargo capacity needs
+     * to buy the rest of the shopping list. The route is cached until the
+     * shopping list changes.
+     *
+     * @param capacity
+     *            The cargo capacity of the freighter
+     * @return The shopping route or null if the complex has no sector
+     */
+    public ShoppingRoute getShoppingRoute(final int capacity)
+    {
+        if (this.sector == null) return null;
+        final ShoppingList list = getShoppingList();
+        final ShoppingRoute route = this.shoppingRoute;
+        if (route != null && route.getShoppingList() == list
+            && route.getCapacity() == capacity) return route;
+        this.shoppingRoute = new ShoppingRoutePlanner(list, this.sector,
+            capacity).plan();
+        return this.shoppingRoute;
+    }
+
+    /**
+     * Returns the freighter loads needed to buy the rest of the shopping list
+     * with freighters of the specified cargo capacities. The plan is cached.
+     * When only some factories or kits have been marked as built since the
+     * last call then the previous plan is updated instead of planning all
+     * loads again.
+     *
+     * @param capacities
+     *            The cargo capacities of the freighters. Must not be empty
+     * @return The load plan
+     */
+    public LoadPlan getLoadPlan(final List<Integer> capacities)
+    {
+        final ShoppingList list = getShoppingList();
+        final LoadPlan plan = this.loadPlan;
+        if (plan != null && plan.getShoppingList() == list
+            && plan.getCapacities().equals(capacities)) return plan;
+        final LoadPlanner planner = new LoadPlanner(capacities);
+        if (plan != null)
+            this.loadPlan = planner.update(plan, list);
+        else
+            this.loadPlan = planner.plan(list);
+        return this.loadPlan;
+    }
+
     /**
      * Returns the price for the specified ware. If the price has a custom price
      * then this one is returned. If not then the standard average price of the
@@ -1244,6 +1787,47 @@ public class Complex implements Serializable, GameProvider
         this.customPrices.putAll(customPrices);
     }
 
+    /**
+     * Returns the races which factories are not used for the base complex.
+     *
+     * @return The ignored races. If no races were set for this complex then
+     *         the ignored races of the configuration are returned
+     */
+    public Set<Race> getIgnoredRaces()
+    {
+        if (this.ignoredRaces == null)
+            return this.game.getRaceFactory().getIgnoredRaces();
+        return this.ignoredRaces;
+    }
+
+    /**
+     * Sets the races which factories are not used for the base complex. This
+     * overrides the ignored races of the configuration for this complex
+     * only so different race combinations can be calculated in parallel. The
+     * setting is not saved with the complex. The base complex is not updated
+     * automatically.
+     *
+     * @param ignoredRaces
+     *            The ignored races. Null to use the configuration again
+     */
+    public void setIgnoredRaces(final Set<Race> ignoredRaces)
+    {
+        this.ignoredRaces = ignoredRaces == null ? null : Collections
+            .unmodifiableSet(new HashSet<Race>(ignoredRaces));
+    }
+
+    /**
+     * Checks if the specified race is ignored for the base complex.
+     *
+     * @param race
+     *            The race
+     * @return True if the race is ignored, false if not
+     */
+    public boolean isRaceIgnored(final Race race)
+    {
+        return getIgnoredRaces().contains(race);
+    }
+
     /**
      * Checks if complex setup should be displayed.
      *
@@ -1298,6 +1882,24 @@ public class Complex implements Serializable, GameProvider
         this.showingStorageCapacities = !this.showingStorageCapacities;
     }
 
+    /**
+     * Checks if the price sensitivity should be displayed.
+     *
+     * @return True if the price sensitivity should be displayed, false if not
+     */
+    public boolean isShowingPriceSensitivity()
+    {
+        return this.showingPriceSensitivity;
+    }
+
+    /**
+     * Toggles the display of the price sensitivity.
+     */
+    public void toggleShowingPriceSensitivity()
+    {
+        this.showingPriceSensitivity = !this.showingPriceSensitivity;
+    }
+
     /**
      * Checks if the shopping list should be displayed.
      *
@@ -1416,14 +2018,36 @@ public class Complex implements Serializable, GameProvider
      */
     public boolean usesWare(final Ware ware)
     {
+        final ProductionGraph graph = this.game.getProductionGraph();
+        return getUsedWares(graph).get(graph.getOrdinal(ware));
+    }
+
+    /**
+     * Returns the wares produced or consumed by the factories of this
+     * complex.
+     *
+     * @return The used wares sorted like the wares of the ware factory
+     */
+    public List<Ware> getUsedWares()
+    {
+        final ProductionGraph graph = this.game.getProductionGraph();
+        return graph.getWares(getUsedWares(graph));
+    }
+
+    /**
+     * Returns the ordinals of the wares produced or consumed by the factories
+     * of this complex.
+     *
+     * @param graph
+     *            The production graph
+     * @return The ordinals of the used wares
+     */
+    private BitSet getUsedWares(final ProductionGraph graph)
+    {
+        final BitSet used = new BitSet(graph.getWareCount());
         for (final ComplexFactory complexFactory: getAllFactories())
-        {
-            final Factory factory = complexFactory.getFactory();
-            if (factory.getProduct().getWare().equals(ware)) return true;
-            for (final Product product: factory.getResources())
-                if (product.getWare().equals(ware)) return true;
-        }
-        return false;
+            used.or(graph.getWares(complexFactory.getFactory()));
+        return used;
     }
 
     /**
@@ -1444,80 +2068,7 @@ public class Complex implements Serializable, GameProvider
      */
     public static boolean isValidTemplateCode(final String templateCode)
     {
-        try
-        {
-            // Decode base 64
-            final byte[] data =
-                DatatypeConverter.parseBase64Binary(templateCode.trim());
-
-            final InputStream stream = new DynaByteInputStream(
-                new ByteArrayInputStream(data));
-            try
-            {
-                // Read complex settings
-                final int settings = stream.read();
-                final boolean hasSector = (settings & 1) == 1;
-                final int gameNid = (settings >> 1) & 7;
-    
-                final Game game;
-                try
-                {
-                    game = GameFactory.getInstance().getGame(gameNid);
-                }
-                catch (final GameNotFoundException e)
-                {
-                    return false;
-                }
-    
-                // Read sector coordinates or sun power
-                if (hasSector)
-                {
-                    final int x = stream.read();
-                    final int y = stream.read();
-                    if (game.getSectorFactory().getSector(x, y) == null) return false;
-                }
-                else
-                {
-                    final int percent = stream.read();
-                    try
-                    {
-                        game.getSunFactory().getSun(percent);
-                    }
-                    catch (final DataException e)
-                    {
-                        return false;
-                    }
-                }
-    
-                int factoryId;
-                while ((factoryId = stream.read()) != 0)
-                {
-                    final Factory factory =
-                        game.getFactoryFactory().getFactory(factoryId);
-                    if (factory == null) return false;
-                    if (factory.isMine())
-                    {
-                        int yield;
-                        while ((yield = stream.read()) != 0)
-                            if (yield > 256) return false;
-                    }
-                    else
-                    {
-                        stream.read();
-                    }
-                }
-    
-                return true;
-            }
-            finally
-            {
-                stream.close();
-            }
-        }
-        catch (final Exception e)
-        {
-            return false;
-        }
+        return decodeTemplateCode(templateCode, "") != null;
     }
 
     /**
@@ -1526,77 +2077,309 @@ public class Complex implements Serializable, GameProvider
      * @param templateCode
      *            The template code
      * @return The complex.
+     * @throws TemplateCodeException
+     *             When template code is invalid
      */
     public static Complex fromTemplateCode(final String templateCode)
     {
-        try
-        {
-            // Decode base 64
-            final byte[] data =
-                DatatypeConverter.parseBase64Binary(templateCode.trim());
+        final Complex complex = parseTemplateCode(templateCode);
+        if (complex == null)
+            throw new TemplateCodeException("Invalid template code: "
+                + templateCode);
+        return complex;
+    }
 
-            final InputStream stream = new DynaByteInputStream(
-                new ByteArrayInputStream(data));
+    /**
+     * Validates and decodes the specified template code in a single pass.
+     * Unlike {@link #fromTemplateCode(String)} this method doesn't throw an
+     * exception for invalid codes so it can be used to probe candidates found
+     * in arbitrary text. Thread-safe.
+     *
+     * @param templateCode
+     *            The template code
+     * @return The complex or null if template code is invalid
+     */
+    public static Complex parseTemplateCode(final String templateCode)
+    {
+        return decodeTemplateCode(templateCode, null);
+    }
+
+    /**
+     * Decodes the specified template code. Both the original format and
+     * version 2 (Signaled by {@link #TEMPLATE_CODE_V2} in the settings) are
+     * supported. The data is decoded directly from the byte array. The
+     * complex is only created after the whole code has been validated so
+     * invalid codes don't use up complex names.
+     *
+     * @param templateCode
+     *            The template code
+     * @param name
+     *            The complex name. Null to create a new one
+     * @return The complex or null if template code is invalid
+     */
+    private static Complex decodeTemplateCode(final String templateCode,
+        final String name)
+    {
+        // Decode base 64
+        final byte[] data;
+        try
+        {
+            data = DatatypeConverter.parseBase64Binary(templateCode.trim());
+        }
+        catch (final IllegalArgumentException e)
+        {
+            return null;
+        }
+        final TemplateCodeReader reader = new TemplateCodeReader(data,
+            data.length);
+
+        // Read complex settings
+        final int settings = reader.read();
+        if (settings < 0 || (settings & ~TEMPLATE_CODE_SETTINGS) != 0)
+            return null;
+        final boolean v2 = (settings & TEMPLATE_CODE_V2) != 0;
+        final boolean deflated = (settings & TEMPLATE_CODE_DEFLATED) != 0;
+        if (deflated && !v2) return null;
+        final boolean hasSector = (settings & 1) == 1;
+        final int gameNid = (settings >> 1) & 7;
+        final Game game;
+        try
+        {
+            game = GameFactory.getInstance().getGame(gameNid);
+        }
+        catch (final GameNotFoundException e)
+        {
+            return null;
+        }
+        final TemplateCodeReader in = deflated ? reader.inflate() : reader;
+        if (in == null) return null;
+
+        // Read sector coordinates or sun power
+        Sector sector = null;
+        Sun suns = null;
+        if (hasSector)
+        {
+            final int x = in.read();
+            final int y = in.read();
+            sector = game.getSectorFactory().getSector(x, y);
+            if (sector == null) return null;
+        }
+        else
+        {
+            final int percent = in.read();
             try
             {
-                // Read complex settings
-                final int settings = stream.read();
-                final boolean hasSector = (settings & 1) == 1;
-                final int gameNid = (settings >> 1) & 7;
-    
-                final Game game = GameFactory.getInstance().getGame(gameNid);
-                final Complex complex = new Complex(game);
-    
-                // Read sector coordinates or sun power
-                if (hasSector)
-                {
-                    final int x = stream.read();
-                    final int y = stream.read();
-                    complex.setSector(game.getSectorFactory().getSector(x, y));
-                }
-                else
-                {
-                    final int percent = stream.read();
-                    complex.setSuns(game.getSunFactory().getSun(percent));
-                }
-    
-                int factoryId;
-                while ((factoryId = stream.read()) != 0)
-                {
-                    final Factory factory =
-                        game.getFactoryFactory().getFactory(factoryId);
-                    if (factory.isMine())
-                    {
-                        final List<Integer> yields = new ArrayList<Integer>();
-                        int yield;
-                        while ((yield = stream.read()) != 0)
-                            yields.add(yield - 1);
-                        complex
-                            .addFactory(new ComplexFactory(game, factory, yields));
-                    }
-                    else
-                    {
-                        final int quantity = stream.read();
-                        complex.addFactory(new ComplexFactory(game, factory,
-                            quantity, 0));
-                    }
-                }
-    
-                return complex;
+                suns = game.getSunFactory().getSun(percent);
             }
-            finally
+            catch (final DataException e)
             {
-                stream.close();
+                return null;
             }
         }
-        catch (final IOException e)
+
+        // Read the flags
+        final int flags = v2 ? in.read() : 0;
+        if (flags < 0 || flags > 1) return null;
+
+        // Read factories
+        final List<ComplexFactory> factories = new ArrayList<ComplexFactory>();
+        int factoryId;
+        while ((factoryId = in.read()) != 0)
         {
-            throw new TemplateCodeException(e.toString(), e);
+            if (factoryId < 0) return null;
+            final Factory factory =
+                game.getFactoryFactory().getFactory(factoryId);
+            if (factory == null) return null;
+            final ComplexFactory complexFactory = v2 ? readTemplateFactory(
+                in, game, factory) : readTemplateFactoryV1(in, game, factory);
+            if (complexFactory == null) return null;
+            factories.add(complexFactory);
+        }
+
+        // Read the custom prices and the built kits and factories
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        final Map<String, Integer> built = new HashMap<String, Integer>();
+        int builtKits = 0;
+        if (v2)
+        {
+            for (int i = in.read(); i > 0; i--)
+            {
+                final String wareId = in.readString();
+                if (wareId == null) return null;
+                final Ware ware = game.getWareFactory().getWare(wareId);
+                final int price = in.read();
+                if (ware == null || price < 0) return null;
+                prices.put(ware, (price & 1) == 1 ? price >>> 1
+                    : -(price >>> 1));
+            }
+            builtKits = in.read();
+            if (builtKits < 0) return null;
+            for (int i = in.read(); i > 0; i--)
+            {
+                final Factory factory =
+                    game.getFactoryFactory().getFactory(in.read());
+                final int quantity = in.read();
+                if (factory == null || quantity < 0) return null;
+                built.put(factory.getId(), quantity);
+            }
+        }
+
+        // Template codes have no trailing data
+        if (!in.isAtEnd() || !reader.isAtEnd()) return null;
+
+        final Complex complex = name == null ? new Complex(game)
+            : new Complex(game, name);
+        if (sector != null)
+            complex.setSector(sector);
+        else
+            complex.setSuns(suns);
+        for (final ComplexFactory factory: factories)
+            complex.addFactory(factory);
+        complex.customPrices.putAll(prices);
+        complex.builtKits = builtKits;
+        complex.builtFactories.putAll(built);
+        if ((flags & 1) != 0)
+        {
+            complex.addBaseComplex = true;
+            complex.calculateBaseComplex();
+        }
+        return complex;
+    }
+
+    /**
+     * Reads a factory of a template code in the original format.
+     *
+     * @param in
+     *            The template code reader
+     * @param game
+     *            The game
+     * @param factory
+     *            The already read factory
+     * @return The complex factory or null if data is invalid
+     */
+    private static ComplexFactory readTemplateFactoryV1(
+        final TemplateCodeReader in, final Game game, final Factory factory)
+    {
+        if (factory.isMine())
+        {
+            final List<Integer> yields = new ArrayList<Integer>();
+            int yield;
+            while ((yield = in.read()) != 0)
+            {
+                if (yield < 0 || yield > 256) return null;
+                yields.add(yield - 1);
+            }
+            return new ComplexFactory(game, factory, yields);
+        }
+        final int quantity = in.read();
+        if (quantity < 0) return null;
+        return new ComplexFactory(game, factory, quantity, 0);
+    }
+
+    /**
+     * Reads a factory of a version 2 template code. The lowest bit of the
+     * first value is the disabled state. For normal factories the remaining
+     * bits are the quantity. For mines they are the number of yield runs
+     * followed by the delta to the previous yield and the length of each
+     * run.
+     *
+     * @param in
+     *            The template code reader
+     * @param game
+     *            The game
+     * @param factory
+     *            The already read factory
+     * @return The complex factory or null if data is invalid
+     */
+    private static ComplexFactory readTemplateFactory(
+        final TemplateCodeReader in, final Game game, final Factory factory)
+    {
+        final int value = in.read();
+        if (value < 0) return null;
+        final ComplexFactory complexFactory;
+        if (factory.isMine())
+        {
+            final List<Integer> yields = new ArrayList<Integer>();
+            int yield = 0;
+            for (int runs = value >>> 1; runs > 0; runs--)
+            {
+                final int delta = in.read();
+                final int length = in.read();
+                if (delta < 0 || length <= 0
+                    || yields.size() + length > MAX_TEMPLATE_CODE_YIELDS)
+                    return null;
+                yield += (delta >>> 1) ^ -(delta & 1);
+                if (yield < 0 || yield > 255) return null;
+                for (int i = 0; i < length; i++)
+                    yields.add(yield);
+            }
+            complexFactory = new ComplexFactory(game, factory, yields);
+        }
+        else
+            complexFactory = new ComplexFactory(game, factory, value >>> 1,
+                0);
+        if ((value & 1) != 0) complexFactory.disable();
+        return complexFactory;
+    }
+
+    /**
+     * Finds template code candidates in arbitrary text like a pasted forum
+     * thread. The text is scanned once for runs of base 64 characters which
+     * are long enough to hold a complex. The codes may be surrounded by any
+     * non-base-64 characters like whitespace, punctuation or BBCode tags.
+     * The candidates are not validated, use
+     * {@link #parseTemplateCode(String)} for this. Duplicates are only
+     * returned once.
+     *
+     * @param text
+     *            The text to scan
+     * @return The template code candidates in the order of appearance
+     */
+    public static List<String> findTemplateCodes(final CharSequence text)
+    {
+        final Set<String> codes = new LinkedHashSet<String>();
+        final int length = text.length();
+        int start = -1;
+        int padding = 0;
+        for (int i = 0; i <= length; i++)
+        {
+            final char c = i < length ? text.charAt(i) : ' ';
+            final boolean base64 = (c >= 'A' && c <= 'Z')
+                || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                || c == '+' || c == '/';
+            if (base64 && padding == 0)
+            {
+                if (start < 0) start = i;
+                continue;
+            }
+            if (c == '=' && start >= 0 && padding < 2)
+            {
+                padding++;
+                continue;
+            }
+            if (start >= 0)
+            {
+                final int end = i;
+                if (end - start >= MIN_TEMPLATE_CODE_LENGTH
+                    && (end - start) % 4 == 0)
+                    codes.add(text.subSequence(start, end).toString());
+                start = base64 ? i : -1;
+                padding = 0;
+            }
         }
+        return new ArrayList<String>(codes);
     }
 
     /**
-     * Returns the template code.
+     * Returns the template code. The original format is used as long as it
+     * can represent the complex so the code can still be read by older
+     * versions. Like before the automatically added factories of the base
+     * complex are written as normal factories in this format. A version 2
+     * code is returned when the complex has disabled factories, custom
+     * prices or built kits and factories or when version 2 is shorter for
+     * the same factories (Like for large mine complexes). Version 2 also
+     * contains the base complex setting and its body is deflated when this
+     * makes it shorter.
      *
      * @return The template code.
      */
@@ -1604,60 +2387,584 @@ public class Complex implements Serializable, GameProvider
     {
         try
         {
-            final ByteArrayOutputStream arrayStream =
-                new ByteArrayOutputStream();
-            final OutputStream stream = new DynaByteOutputStream(arrayStream);
+            byte[] data;
+            if (hasExtendedTemplateState())
+                data = getTemplateCodeV2(false);
+            else
+            {
+                data = getTemplateCodeV1();
+                if (getTemplateCodeV2(true).length < data.length)
+                    data = getTemplateCodeV2(false);
+            }
 
-            // Write the template settings bit mask.
-            int settings = this.sector == null ? 0 : 1;
-            settings |= this.game.getNid() << 1;
-            stream.write(settings);
+            // Return base 64 encoded bytes
+            return DatatypeConverter.printBase64Binary(data);
+        }
+        catch (final IOException e)
+        {
+            throw new TemplateCodeException(e.toString(), e);
+        }
+    }
 
-            // Write the sector coordinates
-            if (this.sector != null)
+    /**
+     * Checks if the complex has a state which can't be stored in the
+     * original template code format.
+     *
+     * @return True if version 2 is needed, false if not
+     */
+    private boolean hasExtendedTemplateState()
+    {
+        if (this.builtKits != 0 || !this.customPrices.isEmpty()
+            || !this.builtFactories.isEmpty())
+            return true;
+        for (final ComplexFactory complexFactory: this.factories)
+            if (complexFactory.isDisabled()) return true;
+        return false;
+    }
+
+    /**
+     * Returns the data of the template code in the original format.
+     *
+     * @return The template code data
+     * @throws IOException
+     *             If writing fails
+     */
+    private byte[] getTemplateCodeV1() throws IOException
+    {
+        final ByteArrayOutputStream arrayStream = new ByteArrayOutputStream();
+        final OutputStream stream = new DynaByteOutputStream(arrayStream);
+
+        // Write the template settings bit mask.
+        int settings = this.sector == null ? 0 : 1;
+        settings |= this.game.getNid() << 1;
+        stream.write(settings);
+
+        // Write the sector coordinates
+        if (this.sector != null)
+        {
+            stream.write(this.sector.getX());
+            stream.write(this.sector.getY());
+        }
+
+        // Or else write the sun power
+        else
+        {
+            stream.write(this.suns.getPercent());
+        }
+
+        // Write the factories
+        for (final ComplexFactory complexFactory: getAllFactories())
+        {
+            if (complexFactory.isDisabled()) continue;
+            final Factory factory = complexFactory.getFactory();
+            stream.write(factory.getNid());
+            if (factory.isMine())
             {
-                stream.write(this.sector.getX());
-                stream.write(this.sector.getY());
+                for (final int yield: complexFactory.getYields())
+                    stream.write(yield + 1);
+                stream.write(0);
             }
-
-            // Or else write the sun power
             else
+                stream.write(complexFactory.getQuantity());
+        }
+
+        // Write end marker
+        stream.write(0);
+        stream.close();
+        return arrayStream.toByteArray();
+    }
+
+    /**
+     * Returns the data of the template code in version 2 format.
+     *
+     * @param expandBaseComplex
+     *            True to write the automatically added factories as normal
+     *            factories like the original format does instead of the
+     *            base complex setting
+     * @return The template code data
+     * @throws IOException
+     *             If writing fails
+     */
+    private byte[] getTemplateCodeV2(final boolean expandBaseComplex)
+        throws IOException
+    {
+        final ByteArrayOutputStream arrayStream = new ByteArrayOutputStream();
+        final OutputStream stream = new DynaByteOutputStream(arrayStream);
+
+        // Write the sector coordinates or the sun power
+        if (this.sector != null)
+        {
+            stream.write(this.sector.getX());
+            stream.write(this.sector.getY());
+        }
+        else
+            stream.write(this.suns.getPercent());
+
+        // Write the flags
+        stream.write(this.addBaseComplex && !expandBaseComplex ? 1 : 0);
+
+        // Write the manually added factories
+        for (final ComplexFactory complexFactory: expandBaseComplex
+            ? getAllFactories() : this.factories)
+        {
+            final Factory factory = complexFactory.getFactory();
+            final int disabled = complexFactory.isDisabled() ? 1 : 0;
+            stream.write(factory.getNid());
+            if (factory.isMine())
             {
-                stream.write(this.suns.getPercent());
+                // Write runs of equal yields as delta to the previous yield
+                final List<Integer> yields = complexFactory.getYields();
+                int runs = 0;
+                for (int i = 0, max = yields.size(); i < max; i++)
+                    if (i == 0 || !yields.get(i).equals(yields.get(i - 1)))
+                        runs++;
+                stream.write(runs << 1 | disabled);
+                int previous = 0;
+                for (int i = 0, max = yields.size(); i < max;)
+                {
+                    final int yield = yields.get(i);
+                    int length = 1;
+                    while (i + length < max && yields.get(i + length) == yield)
+                        length++;
+                    final int delta = yield - previous;
+                    stream.write(delta << 1 ^ delta >> 31);
+                    stream.write(length);
+                    previous = yield;
+                    i += length;
+                }
             }
+            else
+                stream.write(complexFactory.getQuantity() << 1 | disabled);
+        }
+        stream.write(0);
+
+        // Write the custom prices. Lowest bit is set if price is used
+        stream.write(this.customPrices.size());
+        for (final Map.Entry<Ware, Integer> entry: this.customPrices
+            .entrySet())
+        {
+            writeBinaryString(stream, entry.getKey().getId());
+            final int price = entry.getValue();
+            stream.write(price < 0 ? -price << 1 : price << 1 | 1);
+        }
 
-            // Write the factories
-            for (final ComplexFactory complexFactory: getAllFactories())
+        // Write the built kits and factories
+        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+        final Map<Factory, Integer> built = new TreeMap<Factory, Integer>();
+        for (final Map.Entry<String, Integer> entry: this.builtFactories
+            .entrySet())
+        {
+            final Factory factory = factoryFactory.getFactory(entry.getKey());
+            if (factory != null) built.put(factory, entry.getValue());
+        }
+        stream.write(this.builtKits);
+        stream.write(built.size());
+        for (final Map.Entry<Factory, Integer> entry: built.entrySet())
+        {
+            stream.write(entry.getKey().getNid());
+            stream.write(entry.getValue());
+        }
+        stream.close();
+        byte[] body = arrayStream.toByteArray();
+
+        // Deflate the body if this makes it shorter
+        int settings = this.sector == null ? 0 : 1;
+        settings |= this.game.getNid() << 1;
+        settings |= TEMPLATE_CODE_V2;
+        final byte[] deflated = deflate(body);
+        if (deflated.length < body.length)
+        {
+            settings |= TEMPLATE_CODE_DEFLATED;
+            body = deflated;
+        }
+        final byte[] data = new byte[body.length + 1];
+        data[0] = (byte) settings;
+        System.arraycopy(body, 0, data, 1, body.length);
+        return data;
+    }
+
+    /**
+     * Deflates the specified data.
+     *
+     * @param data
+     *            The data to deflate
+     * @return The deflated data
+     */
+    private static byte[] deflate(final byte[] data)
+    {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try
+        {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                data.length);
+            final byte[] buffer = new byte[256];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Checks if the specified file uses the binary complex format. This is
+     * decided by the file extension.
+     *
+     * @param file
+     *            The file to check
+     * @return True if the file uses the binary format, false if it uses XML
+     */
+    public static boolean isBinaryFile(final File file)
+    {
+        return BINARY_EXTENSION.equalsIgnoreCase(FileUtils.getExtension(file));
+    }
+
+    /**
+     * Checks if the specified file is a complex file (XML or binary format).
+     * This is decided by the file extension.
+     *
+     * @param file
+     *            The file to check
+     * @return True if file is a complex file, false if not
+     */
+    public static boolean isComplexFile(final File file)
+    {
+        return "x3c".equalsIgnoreCase(FileUtils.getExtension(file))
+            || isBinaryFile(file);
+    }
+
+    /**
+     * Reads a complex from the specified file. The format is chosen by the
+     * file extension.
+     *
+     * @param file
+     *            The file to read
+     * @return The complex
+     * @throws IOException
+     *             When file could not be read
+     * @throws DocumentException
+     *             When XML file could not be parsed
+     */
+    public static Complex readFile(final File file) throws IOException,
+        DocumentException
+    {
+        if (!isBinaryFile(file))
+            return fromXML(new SAXReader().read(file));
+        final InputStream stream = new FileInputStream(file);
+        try
+        {
+            return readBinary(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads a complex from the specified stream.
+     *
+     * @param stream
+     *            The stream to read from. Not closed
+     * @param binary
+     *            True if stream uses the binary format, false if it uses
+     *            XML
+     * @return The complex
+     * @throws IOException
+     *             When stream could not be read
+     * @throws DocumentException
+     *             When XML could not be parsed
+     */
+    public static Complex read(final InputStream stream, final boolean binary)
+        throws IOException, DocumentException
+    {
+        if (binary) return readBinary(stream);
+        return fromXML(new SAXReader().read(stream));
+    }
+
+    /**
+     * Writes the complex in the compact binary format into the specified
+     * stream. The body of the format is a superset of the template code
+     * (Using the same variable length encoding) which adds the disabled
+     * state of factories, the view flags, the custom prices and the built
+     * factories and kits.
+     *
+     * @param stream
+     *            The stream to write to. It is not closed
+     * @param compressed
+     *            True to deflate the body
+     * @throws IOException
+     *             If writing fails
+     */
+    public void writeBinary(final OutputStream stream,
+        final boolean compressed) throws IOException
+    {
+        stream.write(BINARY_MAGIC);
+        stream.write(BINARY_VERSION);
+        stream.write(compressed ? BINARY_DEFLATED : 0);
+
+        final Deflater deflater = compressed ? new Deflater(
+            Deflater.BEST_SPEED) : null;
+        try
+        {
+            final DeflaterOutputStream deflaterStream = compressed
+                ? new DeflaterOutputStream(stream, deflater) : null;
+            final BufferedOutputStream bufferedStream =
+                new BufferedOutputStream(compressed ? deflaterStream : stream);
+            final OutputStream out = new DynaByteOutputStream(bufferedStream);
+
+            // Write the settings like the template code does
+            int settings = this.sector == null ? 0 : 1;
+            settings |= this.game.getNid() << 1;
+            out.write(settings);
+            if (this.sector != null)
+            {
+                out.write(this.sector.getX());
+                out.write(this.sector.getY());
+            }
+            out.write(getSuns().getPercent());
+
+            // Write the view flags
+            int flags = this.addBaseComplex ? 1 : 0;
+            if (this.showingProductionStats) flags |= 2;
+            if (this.showingShoppingList) flags |= 4;
+            if (this.showingStorageCapacities) flags |= 8;
+            if (this.showingPriceSensitivity) flags |= 16;
+            if (this.showingComplexSetup) flags |= 32;
+            out.write(flags);
+
+            // Write the manually added factories
+            for (final ComplexFactory complexFactory: this.factories)
             {
-                if (complexFactory.isDisabled()) continue;
                 final Factory factory = complexFactory.getFactory();
-                stream.write(factory.getNid());
+                out.write(factory.getNid());
+                out.write(complexFactory.isDisabled() ? 1 : 0);
                 if (factory.isMine())
                 {
                     for (final int yield: complexFactory.getYields())
-                        stream.write(yield + 1);
-                    stream.write(0);
+                        out.write(yield + 1);
+                    out.write(0);
                 }
                 else
-                    stream.write(complexFactory.getQuantity());
+                    out.write(complexFactory.getQuantity());
             }
+            out.write(0);
 
-            // Write end marker
-            stream.write(0);
-            stream.close();
+            // Write the custom prices. Lowest bit is set if price is used
+            out.write(this.customPrices.size());
+            for (final Map.Entry<Ware, Integer> entry: this.customPrices
+                .entrySet())
+            {
+                writeBinaryString(out, entry.getKey().getId());
+                final int price = entry.getValue();
+                out.write(price < 0 ? -price << 1 : price << 1 | 1);
+            }
 
-            // Get byte array from stream
-            final byte[] data = arrayStream.toByteArray();
+            // Write the built kits and factories
+            out.write(this.builtKits);
+            out.write(this.builtFactories.size());
+            for (final Map.Entry<String, Integer> entry: this.builtFactories
+                .entrySet())
+            {
+                writeBinaryString(out, entry.getKey());
+                out.write(entry.getValue());
+            }
 
-            // Return base 64 encoded bytes
-            return DatatypeConverter.printBase64Binary(data);
+            bufferedStream.flush();
+            if (compressed) deflaterStream.finish();
         }
-        catch (final IOException e)
+        finally
         {
-            throw new TemplateCodeException(e.toString(), e);
+            if (deflater != null) deflater.end();
         }
     }
 
+    /**
+     * Writes a string in the binary complex format.
+     *
+     * @param out
+     *            The variable length encoding stream
+     * @param string
+     *            The string to write
+     * @throws IOException
+     *             If writing fails
+     */
+    private static void writeBinaryString(final OutputStream out,
+        final String string) throws IOException
+    {
+        out.write(string.length());
+        for (int i = 0; i < string.length(); i++)
+            out.write(string.charAt(i));
+    }
+
+    /**
+     * Reads a complex in the compact binary format from the specified
+     * stream. The stream may be read beyond the end of the complex but it is
+     * not closed.
+     *
+     * @param stream
+     *            The stream to read from
+     * @return The complex
+     * @throws IOException
+     *             If reading fails or the data is not a valid complex
+     */
+    public static Complex readBinary(final InputStream stream)
+        throws IOException
+    {
+        for (final byte magic: BINARY_MAGIC)
+            if (stream.read() != magic)
+                throw new IOException("Not a binary complex file");
+        final int version = stream.read();
+        if (version < 0) throw new EOFException();
+        if (version > BINARY_VERSION)
+            throw new IOException(I18N.getString("error.fileFormatTooNew"));
+        final int header = stream.read();
+        if (header < 0) throw new EOFException();
+        final boolean compressed = (header & BINARY_DEFLATED) != 0;
+
+        final Inflater inflater = compressed ? new Inflater() : null;
+        try
+        {
+            final InputStream in = new DynaByteInputStream(
+                new BufferedInputStream(compressed ? new InflaterInputStream(
+                    stream, inflater) : stream));
+
+            // Read the settings like the template code does
+            final int settings = readBinaryValue(in);
+            final Game game;
+            try
+            {
+                game = GameFactory.getInstance().getGame((settings >> 1) & 7);
+            }
+            catch (final GameNotFoundException e)
+            {
+                throw new IOException(e.getMessage(), e);
+            }
+            final Complex complex = new Complex(game);
+            Sector sector = null;
+            if ((settings & 1) == 1)
+            {
+                final int x = readBinaryValue(in);
+                final int y = readBinaryValue(in);
+                sector = game.getSectorFactory().getSector(x, y);
+                if (sector == null)
+                    throw new IOException("Unknown sector: " + x + "/" + y);
+            }
+            try
+            {
+                complex.setSuns(game.getSunFactory().getSun(
+                    readBinaryValue(in)));
+            }
+            catch (final DataException e)
+            {
+                throw new IOException(e.getMessage(), e);
+            }
+            complex.setSector(sector);
+
+            // Read the view flags
+            final int flags = readBinaryValue(in);
+            complex.addBaseComplex = (flags & 1) != 0;
+            complex.showingProductionStats = (flags & 2) != 0;
+            complex.showingShoppingList = (flags & 4) != 0;
+            complex.showingStorageCapacities = (flags & 8) != 0;
+            complex.showingPriceSensitivity = (flags & 16) != 0;
+            complex.showingComplexSetup = (flags & 32) != 0;
+
+            // Read the manually added factories
+            final FactoryFactory factoryFactory = game.getFactoryFactory();
+            int factoryId;
+            while ((factoryId = readBinaryValue(in)) != 0)
+            {
+                final Factory factory = factoryFactory.getFactory(factoryId);
+                if (factory == null)
+                    throw new IOException("Unknown factory: " + factoryId);
+                final boolean disabled = (readBinaryValue(in) & 1) != 0;
+                final ComplexFactory complexFactory;
+                if (factory.isMine())
+                {
+                    final List<Integer> yields = new ArrayList<Integer>();
+                    int yield;
+                    while ((yield = readBinaryValue(in)) != 0)
+                        yields.add(yield - 1);
+                    complexFactory = new ComplexFactory(game, factory, yields);
+                }
+                else
+                    complexFactory = new ComplexFactory(game, factory,
+                        readBinaryValue(in), 0);
+                if (disabled) complexFactory.disable();
+                complex.addFactory(complexFactory);
+            }
+
+            // Read the custom prices
+            final WareFactory wareFactory = game.getWareFactory();
+            for (int i = readBinaryValue(in); i > 0; i--)
+            {
+                final String wareId = readBinaryString(in);
+                final Ware ware = wareFactory.getWare(wareId);
+                if (ware == null)
+                    throw new IOException("Unknown ware: " + wareId);
+                final int price = readBinaryValue(in);
+                complex.customPrices.put(ware, (price & 1) == 1 ? price >>> 1
+                    : -(price >>> 1));
+            }
+
+            // Read the built kits and factories
+            complex.builtKits = readBinaryValue(in);
+            for (int i = readBinaryValue(in); i > 0; i--)
+            {
+                final String id = readBinaryString(in);
+                complex.builtFactories.put(id, readBinaryValue(in));
+            }
+
+            complex.calculateBaseComplex();
+            return complex;
+        }
+        finally
+        {
+            if (inflater != null) inflater.end();
+        }
+    }
+
+    /**
+     * Reads a value in the binary complex format.
+     *
+     * @param in
+     *            The variable length encoding stream
+     * @return The value
+     * @throws IOException
+     *             If reading fails or end of stream has been reached
+     */
+    private static int readBinaryValue(final InputStream in)
+        throws IOException
+    {
+        final int value = in.read();
+        if (value < 0) throw new EOFException();
+        return value;
+    }
+
+    /**
+     * Reads a string in the binary complex format.
+     *
+     * @param in
+     *            The variable length encoding stream
+     * @return The string
+     * @throws IOException
+     *             If reading fails or end of stream has been reached
+     */
+    private static String readBinaryString(final InputStream in)
+        throws IOException
+    {
+        final int length = readBinaryValue(in);
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append((char) readBinaryValue(in));
+        return builder.toString();
+    }
+
     /**
      * Checks if this complex has mines.
      *
@@ -1751,4 +3058,123 @@ public class Complex implements Serializable, GameProvider
         out.println(" Cr");
         return writer.toString();
     }
+
+    /**
+     * Reads the variable length encoded values of a template code directly
+     * from a byte array without any stream allocations.
+     */
+    private static final class TemplateCodeReader
+    {
+        /** The data */
+        private final byte[] data;
+
+        /** The end of the data */
+        private final int end;
+
+        /** The current read position */
+        private int pos;
+
+        /**
+         * Constructor
+         *
+         * @param data
+         *            The data
+         * @param end
+         *            The end of the data
+         */
+        TemplateCodeReader(final byte[] data, final int end)
+        {
+            this.data = data;
+            this.end = end;
+        }
+
+        /**
+         * Reads the next value.
+         *
+         * @return The value or -1 if end of data is reached or the value
+         *         is malformed
+         */
+        int read()
+        {
+            int value = 0;
+            for (int bits = 0; bits < 32; bits += 7)
+            {
+                if (this.pos >= this.end) return -1;
+                final int b = this.data[this.pos++] & 0xff;
+                value |= (b & 127) << bits;
+                if ((b & 128) == 0) return value < 0 ? -1 : value;
+            }
+            return -1;
+        }
+
+        /**
+         * Reads a string.
+         *
+         * @return The string or null if data is invalid
+         */
+        String readString()
+        {
+            final int length = read();
+            if (length < 0 || length > this.end - this.pos) return null;
+            final char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+            {
+                final int c = read();
+                if (c < 0 || c > Character.MAX_VALUE) return null;
+                chars[i] = (char) c;
+            }
+            return new String(chars);
+        }
+
+        /**
+         * Checks if all data has been read.
+         *
+         * @return True if all data has been read, false if not
+         */
+        boolean isAtEnd()
+        {
+            return this.pos >= this.end;
+        }
+
+        /**
+         * Inflates the remaining data.
+         *
+         * @return The reader for the inflated data or null if data is
+         *         invalid
+         */
+        TemplateCodeReader inflate()
+        {
+            final Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(this.data, this.pos, this.end - this.pos);
+                byte[] buffer = new byte[(this.end - this.pos) * 4 + 16];
+                int length = 0;
+                while (!inflater.finished())
+                {
+                    if (length == buffer.length)
+                    {
+                        if (length >= MAX_TEMPLATE_CODE_SIZE) return null;
+                        buffer = Arrays.copyOf(buffer, length * 2);
+                    }
+                    final int read = inflater.inflate(buffer, length,
+                        buffer.length - length);
+                    if (read == 0 && (inflater.needsInput()
+                        || inflater.needsDictionary())) return null;
+                    length += read;
+                }
+                if (inflater.getRemaining() != 0) return null;
+                this.pos = this.end;
+                return new TemplateCodeReader(buffer, length);
+            }
+            catch (final DataFormatException e)
+            {
+                return null;
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+    }
 }
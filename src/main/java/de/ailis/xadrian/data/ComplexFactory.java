@@ -89,6 +89,22 @@ public class ComplexFactory implements Serializable, Comparable<ComplexFactory>
         setYields(yields);
     }
 
+    /**
+     * Copy constructor.
+     *
+     * @param other
+     *            The complex factory to copy
+     */
+    public ComplexFactory(final ComplexFactory other)
+    {
+        this.game = other.game;
+        this.factory = other.factory;
+        this.quantity = other.quantity;
+        this.yields = other.yields == null ? null : new ArrayList<Integer>(
+            other.yields);
+        this.disabled = other.disabled;
+    }
+
     /**
      * Return the factory.
      *
@@ -0,0 +1,1446 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.support.DynaByteInputStream;
+import de.ailis.xadrian.support.DynaByteOutputStream;
+import de.ailis.xadrian.utils.FileUtils;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Append-only journal of the changes made to an open complex. It is used to
+ * restore unsaved complexes after a crash.
+ *
+ * A journal file starts with a snapshot of the complex (The complex in the
+ * binary complex format, the name, the file and the changed state) followed
+ * by one record per change. Each record is prefixed with its length and
+ * followed by a CRC32 checksum so a torn or corrupted tail is detected and
+ * ignored on recovery. The record lengths and all values in the records are
+ * written with the variable length encoding of the binary complex format
+ * (See {@link DynaByteOutputStream}) so most records only need a few bytes.
+ *
+ * Records are encoded on the calling thread (Which is cheap) and written by
+ * a single background thread. Records queued while the writer is busy are
+ * written and synced together (Group commit) so the event thread never
+ * waits for the disk. When the journal grows too large the owner writes a
+ * new snapshot which atomically replaces the whole journal file.
+ *
+ * Journaling is disabled until a journal directory is set with
+ * {@link #setDirectory(File)}. Journals created before that silently
+ * ignore all changes.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class ComplexJournal
+{
+    /** The number of records after which a new snapshot should be written */
+    public static final int COMPACT_RECORDS = 256;
+
+    /** The logger */
+    private static final Log log = LogFactory.getLog(ComplexJournal.class);
+
+    /** The magic number at the start of each journal file */
+    private static final int MAGIC = 0x58434a4c;
+
+    /** The file format version */
+    private static final int FORMAT = 2;
+
+    /** The file name suffix of journal files */
+    private static final String SUFFIX = ".xjl";
+
+    /** Record type: Snapshot of the whole complex */
+    private static final byte SNAPSHOT = 1;
+
+    /** Record type: Factories added */
+    private static final byte ADD_FACTORY = 2;
+
+    /** Record type: Mines added */
+    private static final byte ADD_MINE = 3;
+
+    /** Record type: Factory removed */
+    private static final byte REMOVE_FACTORY = 4;
+
+    /** Record type: Factory disabled */
+    private static final byte DISABLE_FACTORY = 5;
+
+    /** Record type: Factory enabled */
+    private static final byte ENABLE_FACTORY = 6;
+
+    /** Record type: Automatically added factory accepted */
+    private static final byte ACCEPT_FACTORY = 7;
+
+    /** Record type: Quantity set */
+    private static final byte SET_QUANTITY = 8;
+
+    /** Record type: Quantity increased */
+    private static final byte INCREASE_QUANTITY = 9;
+
+    /** Record type: Quantity decreased */
+    private static final byte DECREASE_QUANTITY = 10;
+
+    /** Record type: Yields set */
+    private static final byte SET_YIELDS = 11;
+
+    /** Record type: Sector set */
+    private static final byte SET_SECTOR = 12;
+
+    /** Record type: Complex relocated */
+    private static final byte RELOCATE = 13;
+
+    /** Record type: Suns set */
+    private static final byte SET_SUNS = 14;
+
+    /** Record type: Custom prices set */
+    private static final byte SET_CUSTOM_PRICES = 15;
+
+    /** Record type: Factory built */
+    private static final byte BUILD_FACTORY = 16;
+
+    /** Record type: Factory destroyed */
+    private static final byte DESTROY_FACTORY = 17;
+
+    /** Record type: Kit built */
+    private static final byte BUILD_KIT = 18;
+
+    /** Record type: Kit destroyed */
+    private static final byte DESTROY_KIT = 19;
+
+    /** Record type: Setting toggled */
+    private static final byte TOGGLE = 20;
+
+    /** Accepts journal files */
+    private static final FileFilter JOURNALS = new FileFilter()
+    {
+        @Override
+        public boolean accept(final File file)
+        {
+            return file.isFile() && file.getName().endsWith(SUFFIX);
+        }
+    };
+
+    /** The thread writing all journals */
+    private static final ExecutorService writer = ThreadUtils.createExecutor(
+        "journal", 1);
+
+    /** Counter used to create unique journal file names */
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /** The journal directory. Null if journaling is disabled */
+    private static volatile File directory;
+
+    /** The journal file. Null if journaling is disabled */
+    private final File file;
+
+    /** The encoded records not yet written to disk */
+    private List<byte[]> pending = new ArrayList<byte[]>();
+
+    /** If the pending records start with a snapshot replacing the file */
+    private boolean compact;
+
+    /** If the writer was asked to process the pending records */
+    private boolean scheduled;
+
+    /** If the journal was closed */
+    private boolean closed;
+
+    /** If writing failed and a new snapshot is needed */
+    private volatile boolean broken;
+
+    /** The number of records since the last snapshot */
+    private int records;
+
+    /** The stream appending to the journal file. Used by the writer only */
+    private FileOutputStream stream;
+
+    /** The task processing the pending records */
+    private final Runnable flushTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            flush();
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            The journal file. Null to disable journaling
+     */
+    private ComplexJournal(final File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the default journal directory (The journal directory in the
+     * xadrian directory in the home directory of the user).
+     *
+     * @return The default directory
+     */
+    public static File getDefaultDirectory()
+    {
+        return new File(new File(System.getProperty("user.home"), ".xadrian"),
+            "journal");
+    }
+
+    /**
+     * Sets the journal directory.
+     *
+     * @param directory
+     *            The journal directory. Null to disable journaling
+     */
+    public static void setDirectory(final File directory)
+    {
+        ComplexJournal.directory = directory;
+    }
+
+    /**
+     * Returns the journal directory.
+     *
+     * @return The journal directory or null if journaling is disabled
+     */
+    public static File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Creates a new journal. The owner must write a snapshot before
+     * recording any changes.
+     *
+     * @return The new journal. Never null. If journaling is disabled then
+     *         the journal ignores everything
+     */
+    public static ComplexJournal create()
+    {
+        final File directory = ComplexJournal.directory;
+        if (directory == null) return new ComplexJournal(null);
+        return new ComplexJournal(new File(directory, String.format(
+            "%013d-%04d%s", System.currentTimeMillis(),
+            counter.incrementAndGet() % 10000, SUFFIX)));
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return The journal file or null if journaling is disabled
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Checks if a new snapshot should be written because the journal grew
+     * too large or because writing failed.
+     *
+     * @return True if a new snapshot should be written
+     */
+    public boolean needsCompaction()
+    {
+        return this.file != null
+            && (this.records >= COMPACT_RECORDS || this.broken);
+    }
+
+    /**
+     * Writes a snapshot of the complex. The snapshot replaces the whole
+     * journal file.
+     *
+     * @param complex
+     *            The complex
+     * @param complexFile
+     *            The file the complex was loaded from or saved to. Null if
+     *            none
+     * @param changed
+     *            If the complex has unsaved changes
+     */
+    public void snapshot(final Complex complex, final File complexFile,
+        final boolean changed)
+    {
+        if (this.file == null) return;
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try
+        {
+            complex.writeBinary(data, false);
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to write journal snapshot: " + e, e);
+            return;
+        }
+        final Record record = new Record(SNAPSHOT);
+        record.writeString(complex.getName());
+        record.writeString(complexFile == null ? "" : complexFile.getPath());
+        record.writeBoolean(changed);
+        record.writeData(data.toByteArray());
+        synchronized (this)
+        {
+            if (this.closed) return;
+            this.pending.clear();
+            this.pending.add(record.toBytes());
+            this.compact = true;
+            this.records = 0;
+            this.broken = false;
+            schedule();
+        }
+    }
+
+    /**
+     * Records added factories.
+     *
+     * @param factory
+     *            The added factory. Must not be a mine
+     * @param quantity
+     *            The number of added factories
+     */
+    public void addFactory(final Factory factory, final int quantity)
+    {
+        final Record record = new Record(ADD_FACTORY);
+        record.writeString(factory.getId());
+        record.writeValue(quantity);
+        append(record);
+    }
+
+    /**
+     * Records added mines.
+     *
+     * @param mine
+     *            The added mine
+     * @param yields
+     *            The yields of the added mines
+     */
+    public void addFactory(final Factory mine, final List<Integer> yields)
+    {
+        final Record record = new Record(ADD_MINE);
+        record.writeString(mine.getId());
+        record.writeValues(yields);
+        append(record);
+    }
+
+    /**
+     * Records a removed factory.
+     *
+     * @param index
+     *            The factory index
+     */
+    public void removeFactory(final int index)
+    {
+        appendIndex(REMOVE_FACTORY, index);
+    }
+
+    /**
+     * Records a disabled factory.
+     *
+     * @param index
+     *            The factory index
+     */
+    public void disableFactory(final int index)
+    {
+        appendIndex(DISABLE_FACTORY, index);
+    }
+
+    /**
+     * Records an enabled factory.
+     *
+     * @param index
+     *            The factory index
+     */
+    public void enableFactory(final int index)
+    {
+        appendIndex(ENABLE_FACTORY, index);
+    }
+
+    /**
+     * Records an accepted automatically added factory. The factory is
+     * recorded instead of its index because the automatically added
+     * factories depend on the configuration (Like the ignored races) which
+     * may be different when the journal is replayed.
+     *
+     * @param factory
+     *            The accepted factory. Automatically added factories are
+     *            never mines
+     * @param quantity
+     *            The quantity of the accepted factory
+     */
+    public void acceptFactory(final Factory factory, final int quantity)
+    {
+        final Record record = new Record(ACCEPT_FACTORY);
+        record.writeString(factory.getId());
+        record.writeValue(quantity);
+        append(record);
+    }
+
+    /**
+     * Records a changed quantity.
+     *
+     * @param index
+     *            The factory index
+     * @param quantity
+     *            The new quantity
+     */
+    public void setQuantity(final int index, final int quantity)
+    {
+        final Record record = new Record(SET_QUANTITY);
+        record.writeValue(index);
+        record.writeValue(quantity);
+        append(record);
+    }
+
+    /**
+     * Records an increased quantity.
+     *
+     * @param index
+     *            The factory index
+     */
+    public void increaseQuantity(final int index)
+    {
+        appendIndex(INCREASE_QUANTITY, index);
+    }
+
+    /**
+     * Records a decreased quantity.
+     *
+     * @param index
+     *            The factory index
+     */
+    public void decreaseQuantity(final int index)
+    {
+        appendIndex(DECREASE_QUANTITY, index);
+    }
+
+    /**
+     * Records changed yields.
+     *
+     * @param index
+     *            The factory index
+     * @param yields
+     *            The new yields
+     */
+    public void setYields(final int index, final List<Integer> yields)
+    {
+        final Record record = new Record(SET_YIELDS);
+        record.writeValue(index);
+        record.writeValues(yields);
+        append(record);
+    }
+
+    /**
+     * Records a changed sector.
+     *
+     * @param sector
+     *            The new sector. May be null
+     */
+    public void setSector(final Sector sector)
+    {
+        final Record record = new Record(SET_SECTOR);
+        record.writeString(sector == null ? "" : sector.getId());
+        append(record);
+    }
+
+    /**
+     * Records a relocated complex.
+     *
+     * @param sector
+     *            The new sector
+     */
+    public void relocate(final Sector sector)
+    {
+        final Record record = new Record(RELOCATE);
+        record.writeString(sector.getId());
+        append(record);
+    }
+
+    /**
+     * Records changed suns.
+     *
+     * @param suns
+     *            The new suns
+     */
+    public void setSuns(final Sun suns)
+    {
+        appendIndex(SET_SUNS, suns.getPercent());
+    }
+
+    /**
+     * Records changed custom prices.
+     *
+     * @param customPrices
+     *            The new custom prices
+     */
+    public void setCustomPrices(final Map<Ware, Integer> customPrices)
+    {
+        final Record record = new Record(SET_CUSTOM_PRICES);
+        record.writeValue(customPrices.size());
+        for (final Map.Entry<Ware, Integer> entry: customPrices.entrySet())
+        {
+            record.writeString(entry.getKey().getId());
+            final int price = entry.getValue();
+            record.writeValue(price < 0 ? -price << 1 : price << 1 | 1);
+        }
+        append(record);
+    }
+
+    /**
+     * Records a built factory.
+     *
+     * @param id
+     *            The factory id
+     */
+    public void buildFactory(final String id)
+    {
+        final Record record = new Record(BUILD_FACTORY);
+        record.writeString(id);
+        append(record);
+    }
+
+    /**
+     * Records a destroyed factory.
+     *
+     * @param id
+     *            The factory id
+     */
+    public void destroyFactory(final String id)
+    {
+        final Record record = new Record(DESTROY_FACTORY);
+        record.writeString(id);
+        append(record);
+    }
+
+    /**
+     * Records a built kit.
+     */
+    public void buildKit()
+    {
+        append(new Record(BUILD_KIT));
+    }
+
+    /**
+     * Records a destroyed kit.
+     */
+    public void destroyKit()
+    {
+        append(new Record(DESTROY_KIT));
+    }
+
+    /**
+     * Records a toggled setting.
+     *
+     * @param toggle
+     *            The toggled setting
+     */
+    public void toggle(final Toggle toggle)
+    {
+        appendIndex(TOGGLE, toggle.ordinal());
+    }
+
+    /**
+     * Appends a record with a single integer argument.
+     *
+     * @param type
+     *            The record type
+     * @param value
+     *            The integer argument
+     */
+    private void appendIndex(final byte type, final int value)
+    {
+        final Record record = new Record(type);
+        record.writeValue(value);
+        append(record);
+    }
+
+    /**
+     * Queues a record for writing.
+     *
+     * @param record
+     *            The record to write
+     */
+    private void append(final Record record)
+    {
+        if (this.file == null) return;
+        final byte[] bytes = record.toBytes();
+        synchronized (this)
+        {
+            if (this.closed) return;
+            this.pending.add(bytes);
+            this.records++;
+            schedule();
+        }
+    }
+
+    /**
+     * Asks the writer to process the pending records unless it was already
+     * asked to do so. Must be called while holding the lock.
+     */
+    private void schedule()
+    {
+        if (this.scheduled) return;
+        this.scheduled = true;
+        writer.execute(this.flushTask);
+    }
+
+    /**
+     * Closes the journal and deletes the journal file. Called when the
+     * complex is closed. Pending records are discarded.
+     */
+    public void close()
+    {
+        if (this.file == null) return;
+        synchronized (this)
+        {
+            if (this.closed) return;
+            this.closed = true;
+            this.pending.clear();
+            schedule();
+        }
+    }
+
+    /**
+     * Writes the pending records to disk. Runs in the writer thread.
+     */
+    void flush()
+    {
+        final List<byte[]> records;
+        final boolean compact, closed;
+        synchronized (this)
+        {
+            records = this.pending;
+            this.pending = new ArrayList<byte[]>();
+            compact = this.compact;
+            this.compact = false;
+            closed = this.closed;
+            this.scheduled = false;
+        }
+        try
+        {
+            if (closed || compact) closeStream();
+            if (closed)
+            {
+                if (this.file.exists() && !this.file.delete())
+                    log.warn("Unable to delete journal " + this.file);
+                return;
+            }
+            if (records.isEmpty()) return;
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            if (compact)
+            {
+                final Record header = new Record();
+                header.writeFixed(MAGIC);
+                header.writeFixed(FORMAT);
+                header.writeTo(data);
+            }
+            for (final byte[] record: records)
+                data.write(record);
+            if (compact)
+            {
+                final File directory = this.file.getParentFile();
+                if (!directory.isDirectory() && !directory.mkdirs())
+                    throw new IOException("Unable to create directory "
+                        + directory);
+                FileUtils.writeAtomically(this.file, data.toByteArray());
+            }
+            else
+            {
+                if (this.stream == null)
+                    this.stream = new FileOutputStream(this.file, true);
+                this.stream.write(data.toByteArray());
+                this.stream.flush();
+                this.stream.getFD().sync();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to write journal " + this.file + ": " + e);
+            closeStream();
+            this.broken = true;
+        }
+    }
+
+    /**
+     * Closes the stream appending to the journal file. Runs in the writer
+     * thread.
+     */
+    private void closeStream()
+    {
+        if (this.stream == null) return;
+        try
+        {
+            this.stream.close();
+        }
+        catch (final IOException e)
+        {
+            log.debug("Unable to close journal " + this.file + ": " + e);
+        }
+        this.stream = null;
+    }
+
+    /**
+     * Waits until all journals queued so far are written.
+     *
+     * @param timeout
+     *            The maximum time to wait in milliseconds
+     * @return True if everything was written, false if timed out or
+     *         interrupted
+     */
+    public static boolean sync(final long timeout)
+    {
+        final Future<?> future = writer.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Nothing to do, just waiting for the queue
+            }
+        });
+        try
+        {
+            future.get(timeout, TimeUnit.MILLISECONDS);
+            return true;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (final Exception e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Recovers the complexes from the journals left behind by the last
+     * session. The journals are replayed in parallel. Journals of empty
+     * new complexes and unreadable journals are deleted. The returned
+     * journals continue to use their journal files.
+     *
+     * @return The recovered complexes in the order they were opened. Empty
+     *         if none or if journaling is disabled
+     */
+    public static List<Recovery> recover()
+    {
+        final File directory = ComplexJournal.directory;
+        if (directory == null) return Collections.emptyList();
+        final File[] files = directory.listFiles(JOURNALS);
+        if (files == null || files.length == 0)
+            return Collections.emptyList();
+        Arrays.sort(files);
+
+        final ExecutorService executor = ThreadUtils
+            .createCalculationExecutor("recovery");
+        final List<Future<Recovery>> futures =
+            new ArrayList<Future<Recovery>>(files.length);
+        try
+        {
+            for (final File file: files)
+            {
+                futures.add(executor.submit(new Callable<Recovery>()
+                {
+                    @Override
+                    public Recovery call()
+                    {
+                        return replay(file);
+                    }
+                }));
+            }
+            final List<Recovery> recoveries = new ArrayList<Recovery>();
+            for (int i = 0; i < files.length; i++)
+            {
+                Recovery recovery;
+                try
+                {
+                    recovery = futures.get(i).get();
+                }
+                catch (final ExecutionException e)
+                {
+                    log.warn("Unable to recover journal " + files[i] + ": "
+                        + e.getCause(), e.getCause());
+                    recovery = null;
+                }
+                if (recovery == null || recovery.isDiscardable())
+                {
+                    if (!files[i].delete())
+                        log.warn("Unable to delete journal " + files[i]);
+                }
+                else
+                    recoveries.add(recovery);
+            }
+            return recoveries;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Replays a journal file.
+     *
+     * @param file
+     *            The journal file
+     * @return The recovered complex or null if the journal doesn't even
+     *         contain a valid snapshot
+     */
+    static Recovery replay(final File file)
+    {
+        final byte[] data;
+        try
+        {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try
+            {
+                data = new byte[(int) raf.length()];
+                raf.readFully(data);
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to read journal " + file + ": " + e);
+            return null;
+        }
+
+        final ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        final InputStream values = new DynaByteInputStream(bytes);
+        Recovery recovery = null;
+        final CRC32 crc = new CRC32();
+        try
+        {
+            if (readFixed(bytes) != MAGIC || readFixed(bytes) != FORMAT)
+                return null;
+            while (bytes.available() > 0)
+            {
+                final int length = values.read();
+                if (length < 1 || length > bytes.available() - 4) break;
+                final byte[] record = new byte[length];
+                bytes.read(record, 0, length);
+                crc.reset();
+                crc.update(record);
+                if (readFixed(bytes) != (int) crc.getValue()) break;
+                final Payload payload = new Payload(record);
+                if (record[0] == SNAPSHOT)
+                    recovery = readSnapshot(payload, file);
+                else if (recovery == null)
+                    break;
+                else
+                {
+                    apply(recovery.complex, record[0], payload);
+                    recovery.changed = true;
+                }
+            }
+        }
+        catch (final EOFException e)
+        {
+            // Torn header or record. Everything before it is recovered.
+        }
+        catch (final IOException e)
+        {
+            // Invalid snapshot. Everything before it is recovered.
+            log.warn("Unable to replay journal " + file + ": " + e);
+        }
+        catch (final RuntimeException e)
+        {
+            // Record doesn't match the complex. Everything before it is
+            // recovered.
+            log.warn("Unable to replay journal " + file + ": " + e);
+        }
+        return recovery;
+    }
+
+    /**
+     * Reads a fixed size 4 byte integer.
+     *
+     * @param stream
+     *            The stream to read from
+     * @return The integer
+     * @throws IOException
+     *             When end of stream has been reached
+     */
+    private static int readFixed(final InputStream stream) throws IOException
+    {
+        int value = 0;
+        for (int i = 0; i < 4; i++)
+        {
+            final int b = stream.read();
+            if (b < 0) throw new EOFException();
+            value = value << 8 | b;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a snapshot record.
+     *
+     * @param payload
+     *            The record payload
+     * @param file
+     *            The journal file
+     * @return The recovered complex
+     * @throws IOException
+     *             When snapshot is invalid
+     */
+    private static Recovery readSnapshot(final Payload payload,
+        final File file) throws IOException
+    {
+        final String name = payload.readString();
+        final String path = payload.readString();
+        final boolean changed = payload.readBoolean();
+        final Complex complex = Complex.readBinary(new ByteArrayInputStream(
+            payload.readData()));
+        complex.setName(name);
+        return new Recovery(complex, path.length() == 0 ? null : new File(
+            path), changed, new ComplexJournal(file));
+    }
+
+    /**
+     * Applies a change record to a complex.
+     *
+     * @param complex
+     *            The complex
+     * @param type
+     *            The record type
+     * @param payload
+     *            The record payload
+     * @throws IOException
+     *             When record payload is incomplete
+     */
+    private static void apply(final Complex complex, final byte type,
+        final Payload payload) throws IOException
+    {
+        final Game game = complex.getGame();
+        switch (type)
+        {
+            case ADD_FACTORY:
+                complex.addFactory(getFactory(game, payload.readString()),
+                    payload.readValue());
+                break;
+
+            case ADD_MINE:
+                complex.addFactory(getFactory(game, payload.readString()),
+                    payload.readValues());
+                break;
+
+            case REMOVE_FACTORY:
+                complex.removeFactory(payload.readValue());
+                break;
+
+            case DISABLE_FACTORY:
+                complex.disableFactory(payload.readValue());
+                break;
+
+            case ENABLE_FACTORY:
+                complex.enableFactory(payload.readValue());
+                break;
+
+            case ACCEPT_FACTORY:
+                complex.addFactory(getFactory(game, payload.readString()),
+                    payload.readValue());
+                break;
+
+            case SET_QUANTITY:
+                complex.setQuantity(payload.readValue(), payload.readValue());
+                break;
+
+            case INCREASE_QUANTITY:
+                complex.increaseQuantity(payload.readValue());
+                break;
+
+            case DECREASE_QUANTITY:
+                complex.decreaseQuantity(payload.readValue());
+                break;
+
+            case SET_YIELDS:
+                complex.setYields(payload.readValue(), payload.readValues());
+                break;
+
+            case SET_SECTOR:
+                final String sectorId = payload.readString();
+                complex.setSector(sectorId.length() == 0 ? null : game
+                    .getSectorFactory().getSector(sectorId));
+                break;
+
+            case RELOCATE:
+                complex.relocate(game.getSectorFactory().getSector(
+                    payload.readString()));
+                break;
+
+            case SET_SUNS:
+                complex.setSuns(game.getSunFactory().getSun(payload.readValue()));
+                break;
+
+            case SET_CUSTOM_PRICES:
+                final int count = payload.readValue();
+                final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+                for (int i = 0; i < count; i++)
+                {
+                    final Ware ware = game.getWareFactory().getWare(
+                        payload.readString());
+                    final int price = payload.readValue();
+                    prices.put(ware, (price & 1) == 1 ? price >>> 1
+                        : -(price >>> 1));
+                }
+                complex.setCustomPrices(prices);
+                break;
+
+            case BUILD_FACTORY:
+                complex.buildFactory(payload.readString());
+                break;
+
+            case DESTROY_FACTORY:
+                complex.destroyFactory(payload.readString());
+                break;
+
+            case BUILD_KIT:
+                complex.buildKit();
+                break;
+
+            case DESTROY_KIT:
+                complex.destroyKit();
+                break;
+
+            case TOGGLE:
+                Toggle.values()[payload.readValue()].apply(complex);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown record type: "
+                    + type);
+        }
+    }
+
+    /**
+     * Returns the factory with the specified id.
+     *
+     * @param game
+     *            The game
+     * @param id
+     *            The factory id
+     * @return The factory
+     */
+    private static Factory getFactory(final Game game, final String id)
+    {
+        final Factory factory = game.getFactoryFactory().getFactory(id);
+        if (factory == null)
+            throw new IllegalStateException("Unknown factory: " + id);
+        return factory;
+    }
+
+    /**
+     * The settings of a complex which can be toggled.
+     */
+    public enum Toggle
+    {
+        /** Adding the base complex */
+        BASE_COMPLEX,
+
+        /** Display of the complex setup */
+        COMPLEX_SETUP,
+
+        /** Display of the production statistics */
+        PRODUCTION_STATS,
+
+        /** Display of the storage capacities */
+        STORAGE_CAPACITIES,
+
+        /** Display of the price sensitivity */
+        PRICE_SENSITIVITY,
+
+        /** Display of the shopping list */
+        SHOPPING_LIST;
+
+        /**
+         * Toggles this setting in the specified complex.
+         *
+         * @param complex
+         *            The complex
+         */
+        void apply(final Complex complex)
+        {
+            switch (this)
+            {
+                case BASE_COMPLEX:
+                    complex.toggleAddBaseComplex();
+                    break;
+
+                case COMPLEX_SETUP:
+                    complex.toggleShowingComplexSetup();
+                    break;
+
+                case PRODUCTION_STATS:
+                    complex.toggleShowingProductionStats();
+                    break;
+
+                case STORAGE_CAPACITIES:
+                    complex.toggleShowingStorageCapacities();
+                    break;
+
+                case PRICE_SENSITIVITY:
+                    complex.toggleShowingPriceSensitivity();
+                    break;
+
+                default:
+                    complex.toggleShowingShoppingList();
+            }
+        }
+    }
+
+    /**
+     * A complex recovered from a journal.
+     */
+    public static final class Recovery
+    {
+        /** The recovered complex */
+        final Complex complex;
+
+        /** The file the complex was loaded from or saved to */
+        private final File file;
+
+        /** If the complex has unsaved changes */
+        boolean changed;
+
+        /** The journal continuing to record changes of the complex */
+        private final ComplexJournal journal;
+
+        /**
+         * Constructor
+         *
+         * @param complex
+         *            The recovered complex
+         * @param file
+         *            The file the complex was loaded from or saved to. Null
+         *            if none
+         * @param changed
+         *            If the complex has unsaved changes
+         * @param journal
+         *            The journal
+         */
+        Recovery(final Complex complex, final File file,
+            final boolean changed, final ComplexJournal journal)
+        {
+            this.complex = complex;
+            this.file = file;
+            this.changed = changed;
+            this.journal = journal;
+        }
+
+        /**
+         * Returns the recovered complex.
+         *
+         * @return The complex
+         */
+        public Complex getComplex()
+        {
+            return this.complex;
+        }
+
+        /**
+         * Returns the file the complex was loaded from or saved to.
+         *
+         * @return The file or null if none
+         */
+        public File getFile()
+        {
+            return this.file;
+        }
+
+        /**
+         * Checks if the recovered complex has unsaved changes.
+         *
+         * @return True if unsaved changes were recovered
+         */
+        public boolean isChanged()
+        {
+            return this.changed;
+        }
+
+        /**
+         * Returns the journal which continues to record the changes of the
+         * recovered complex. The owner must write a new snapshot before
+         * recording any changes.
+         *
+         * @return The journal
+         */
+        public ComplexJournal getJournal()
+        {
+            return this.journal;
+        }
+
+        /**
+         * Checks if there is nothing worth restoring (An unchanged new
+         * complex without factories).
+         *
+         * @return True if the recovery can be discarded
+         */
+        boolean isDiscardable()
+        {
+            return this.file == null && !this.changed
+                && this.complex.getFactories().isEmpty();
+        }
+    }
+
+    /**
+     * The payload of a journal record (Everything after the record type).
+     */
+    private static final class Payload
+    {
+        /** The payload bytes */
+        private final ByteArrayInputStream bytes;
+
+        /** The stream reading variable length values from the payload */
+        private final InputStream values;
+
+        /**
+         * Constructor
+         *
+         * @param record
+         *            The record including the record type
+         */
+        Payload(final byte[] record)
+        {
+            this.bytes = new ByteArrayInputStream(record, 1,
+                record.length - 1);
+            this.values = new DynaByteInputStream(this.bytes);
+        }
+
+        /**
+         * Reads a variable length value.
+         *
+         * @return The value
+         * @throws IOException
+         *             When end of payload has been reached
+         */
+        int readValue() throws IOException
+        {
+            final int value = this.values.read();
+            if (value < 0) throw new EOFException();
+            return value;
+        }
+
+        /**
+         * Reads a boolean.
+         *
+         * @return The boolean
+         * @throws IOException
+         *             When end of payload has been reached
+         */
+        boolean readBoolean() throws IOException
+        {
+            return readValue() != 0;
+        }
+
+        /**
+         * Reads a string.
+         *
+         * @return The string
+         * @throws IOException
+         *             When end of payload has been reached
+         */
+        String readString() throws IOException
+        {
+            final int length = readValue();
+            if (length > this.bytes.available()) throw new EOFException();
+            final StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < length; i++)
+                builder.append((char) readValue());
+            return builder.toString();
+        }
+
+        /**
+         * Reads a list of variable length values.
+         *
+         * @return The values
+         * @throws IOException
+         *             When end of payload has been reached
+         */
+        List<Integer> readValues() throws IOException
+        {
+            final int count = readValue();
+            if (count > this.bytes.available()) throw new EOFException();
+            final List<Integer> values = new ArrayList<Integer>(count);
+            for (int i = 0; i < count; i++)
+                values.add(readValue());
+            return values;
+        }
+
+        /**
+         * Reads a byte array.
+         *
+         * @return The bytes
+         * @throws IOException
+         *             When end of payload has been reached
+         */
+        byte[] readData() throws IOException
+        {
+            final int length = readValue();
+            if (length > this.bytes.available()) throw new EOFException();
+            final byte[] data = new byte[length];
+            this.bytes.read(data, 0, length);
+            return data;
+        }
+    }
+
+    /**
+     * An encoded journal record. The first byte is the record type.
+     */
+    private static final class Record extends ByteArrayOutputStream
+    {
+        /** The stream writing variable length values into this record */
+        private final OutputStream values = new DynaByteOutputStream(this);
+
+        /**
+         * Constructor for raw data without record type.
+         */
+        Record()
+        {
+            super(64);
+        }
+
+        /**
+         * Constructor
+         *
+         * @param type
+         *            The record type
+         */
+        Record(final byte type)
+        {
+            super(64);
+            write(type);
+        }
+
+        /**
+         * Writes a fixed size 4 byte integer.
+         *
+         * @param value
+         *            The integer to write
+         */
+        void writeFixed(final int value)
+        {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        /**
+         * Writes a variable length value. Small values only need one byte.
+         *
+         * @param value
+         *            The value to write. Must not be negative
+         */
+        void writeValue(final int value)
+        {
+            try
+            {
+                this.values.write(value);
+            }
+            catch (final IOException e)
+            {
+                // Can't happen because the record is written to memory
+                throw new IllegalStateException(e.toString(), e);
+            }
+        }
+
+        /**
+         * Writes a boolean.
+         *
+         * @param value
+         *            The boolean to write
+         */
+        void writeBoolean(final boolean value)
+        {
+            writeValue(value ? 1 : 0);
+        }
+
+        /**
+         * Writes a string.
+         *
+         * @param value
+         *            The string to write
+         */
+        void writeString(final String value)
+        {
+            writeValue(value.length());
+            for (int i = 0; i < value.length(); i++)
+                writeValue(value.charAt(i));
+        }
+
+        /**
+         * Writes a list of variable length values.
+         *
+         * @param values
+         *            The values to write. Must not be negative
+         */
+        void writeValues(final List<Integer> values)
+        {
+            writeValue(values.size());
+            for (final int value: values)
+                writeValue(value);
+        }
+
+        /**
+         * Writes a byte array.
+         *
+         * @param bytes
+         *            The bytes to write
+         */
+        void writeData(final byte[] bytes)
+        {
+            writeValue(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Returns the record with length prefix and CRC suffix.
+         *
+         * @return The framed record
+         */
+        byte[] toBytes()
+        {
+            final CRC32 crc = new CRC32();
+            crc.update(this.buf, 0, this.count);
+            final Record framed = new Record();
+            framed.writeValue(this.count);
+            framed.write(this.buf, 0, this.count);
+            framed.writeFixed((int) crc.getValue());
+            return framed.toByteArray();
+        }
+    }
+}
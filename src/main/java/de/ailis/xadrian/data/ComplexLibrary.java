@@ -0,0 +1,956 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.listeners.FileChangeListener;
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.support.DynaByteInputStream;
+import de.ailis.xadrian.support.DynaByteOutputStream;
+import de.ailis.xadrian.support.FileWatcher;
+import de.ailis.xadrian.utils.FileUtils;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * A searchable library of complex files. The library scans a directory tree
+ * for complex files, reads them in parallel and keeps a summary of each
+ * complex. Inverted postings (The numbers of the summaries containing a
+ * game, sector, factory, produced ware or consumed ware) make searching
+ * independent of the size of the complex files.
+ *
+ * The summaries and postings are stored in a compact index file. Strings
+ * are stored once in a string table and numbers and postings are written
+ * as variable length integers (Postings as differences between ascending
+ * summary numbers). When scanning again only complex files with a changed
+ * modification time or size are read again.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexLibrary implements FileChangeListener
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog(ComplexLibrary.class);
+
+    /** The magic number at the start of the index file */
+    private static final int MAGIC = 0x58434c49;
+
+    /** The index file format version */
+    private static final int FORMAT = 1;
+
+    /** The posting key prefix for games */
+    private static final String GAME = "game:";
+
+    /** The posting key prefix for sectors */
+    private static final String SECTOR = "sector:";
+
+    /** The posting key prefix for factories */
+    private static final String FACTORY = "factory:";
+
+    /** The posting key prefix for produced wares */
+    private static final String PRODUCED = "produced:";
+
+    /** The posting key prefix for consumed wares */
+    private static final String CONSUMED = "consumed:";
+
+    /** Orders summaries by profit (Highest first) and file */
+    private static final Comparator<ComplexSummary> BY_PROFIT =
+        new Comparator<ComplexSummary>()
+        {
+            @Override
+            public int compare(final ComplexSummary a, final ComplexSummary b)
+            {
+                if (a.getProfit() != b.getProfit())
+                    return a.getProfit() > b.getProfit() ? -1 : 1;
+                return a.getFile().compareTo(b.getFile());
+            }
+        };
+
+    /** Accepts complex files */
+    private static final FileFilter COMPLEX_FILES = new FileFilter()
+    {
+        @Override
+        public boolean accept(final File file)
+        {
+            return file.isFile() && Complex.isComplexFile(file);
+        }
+    };
+
+    /** The library stored in the default index file. Null if not loaded */
+    private static ComplexLibrary defaultLibrary;
+
+    /** The executor refreshing watched libraries in the background */
+    private static final ExecutorService refreshExecutor = ThreadUtils
+        .createExecutor("library-refresh", 1);
+
+    /** The index file */
+    private final File file;
+
+    /** The watched root directory. Null if not watched */
+    private File watched;
+
+    /** The scanned root directory. Null if not scanned yet */
+    private File root;
+
+    /** The summaries ordered by file. The index is the summary number */
+    private List<ComplexSummary> summaries = new ArrayList<ComplexSummary>();
+
+    /** The postings (Summary numbers) by posting key */
+    private Map<String, BitSet> postings = new HashMap<String, BitSet>();
+
+    /** The number of complex files read by the last scan */
+    private int read;
+
+    /** If the running scan has been cancelled */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            The index file. Created when saved
+     */
+    public ComplexLibrary(final File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the default index file (In the xadrian directory in the home
+     * directory of the user).
+     *
+     * @return The default index file
+     */
+    public static File getDefaultFile()
+    {
+        return new File(new File(System.getProperty("user.home"), ".xadrian"),
+            "library.idx");
+    }
+
+    /**
+     * Returns the library stored in the default index file. The index is
+     * loaded when the library is requested for the first time.
+     *
+     * @return The default library
+     */
+    public static synchronized ComplexLibrary getDefault()
+    {
+        if (defaultLibrary == null)
+        {
+            defaultLibrary = new ComplexLibrary(getDefaultFile());
+            defaultLibrary.load();
+        }
+        return defaultLibrary;
+    }
+
+    /**
+     * Returns the index file.
+     *
+     * @return The index file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Returns the scanned root directory.
+     *
+     * @return The root directory or null if nothing scanned yet
+     */
+    public synchronized File getRoot()
+    {
+        return this.root;
+    }
+
+    /**
+     * Returns the summaries of all complexes in the library.
+     *
+     * @return The summaries ordered by file
+     */
+    public synchronized List<ComplexSummary> getSummaries()
+    {
+        return Collections.unmodifiableList(this.summaries);
+    }
+
+    /**
+     * Returns the number of complex files which had to be read by the last
+     * scan because they were new or modified.
+     *
+     * @return The number of read complex files
+     */
+    public synchronized int getRead()
+    {
+        return this.read;
+    }
+
+    /**
+     * Cancels the running scan.
+     */
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    /**
+     * Scans the specified directory tree using a new executor with one
+     * thread per available processor.
+     *
+     * @param root
+     *            The root directory
+     * @param listener
+     *            Optional progress listener. May be null
+     * @throws InterruptedException
+     *             When scan was interrupted or cancelled
+     */
+    public void scan(final File root, final ProgressListener listener)
+        throws InterruptedException
+    {
+        final ExecutorService executor =
+            ThreadUtils.createCalculationExecutor("library");
+        try
+        {
+            scan(root, executor, listener);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Scans the specified directory tree using the specified executor. The
+     * library then contains exactly the complex files found in this tree.
+     * Complex files which can't be read are logged and ignored.
+     *
+     * @param root
+     *            The root directory
+     * @param executor
+     *            The executor reading the complex files
+     * @param listener
+     *            Optional progress listener. May be null
+     * @throws InterruptedException
+     *             When scan was interrupted or cancelled
+     */
+    public void scan(final File root, final ExecutorService executor,
+        final ProgressListener listener) throws InterruptedException
+    {
+        this.cancelled = false;
+        final List<File> files = new ArrayList<File>();
+        collect(root.getAbsoluteFile(), files);
+        Collections.sort(files);
+
+        final Map<File, ComplexSummary> previous =
+            new HashMap<File, ComplexSummary>();
+        for (final ComplexSummary summary: getSummaries())
+            previous.put(summary.getFile(), summary);
+
+        final int total = files.size();
+        final ComplexSummary[] results = new ComplexSummary[total];
+        final CompletionService<Void> service =
+            new ExecutorCompletionService<Void>(executor);
+        int submitted = 0;
+        for (int i = 0; i < total; i++)
+        {
+            final File file = files.get(i);
+            final ComplexSummary summary = previous.get(file);
+            if (summary != null && summary.isCurrent(file))
+            {
+                results[i] = summary;
+                continue;
+            }
+            final int index = i;
+            service.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws InterruptedException
+                {
+                    if (ComplexLibrary.this.cancelled)
+                        throw new InterruptedException();
+                    results[index] = summarize(file);
+                    return null;
+                }
+            });
+            submitted++;
+        }
+        for (int i = 0; i < submitted; i++)
+        {
+            ThreadUtils.take(service);
+            if (listener != null)
+                listener.progressChanged(total - submitted + i + 1, total);
+        }
+        if (listener != null && submitted == 0)
+            listener.progressChanged(total, total);
+
+        final List<ComplexSummary> summaries =
+            new ArrayList<ComplexSummary>(total);
+        for (final ComplexSummary summary: results)
+            if (summary != null) summaries.add(summary);
+        final Map<String, BitSet> postings = createPostings(summaries);
+        synchronized (this)
+        {
+            this.root = root.getAbsoluteFile();
+            this.summaries = summaries;
+            this.postings = postings;
+            this.read = submitted;
+        }
+    }
+
+    /**
+     * Recursively collects the complex files in the specified directory.
+     *
+     * @param directory
+     *            The directory
+     * @param files
+     *            The list to add the found files to
+     * @throws InterruptedException
+     *             When scan has been cancelled
+     */
+    private void collect(final File directory, final List<File> files)
+        throws InterruptedException
+    {
+        if (this.cancelled) throw new InterruptedException();
+        final File[] children = directory.listFiles();
+        if (children == null) return;
+        for (final File child: children)
+        {
+            if (child.isDirectory())
+                collect(child, files);
+            else if (COMPLEX_FILES.accept(child))
+                files.add(child);
+        }
+    }
+
+    /**
+     * Reads the specified complex file and returns its summary.
+     *
+     * @param file
+     *            The complex file
+     * @return The summary or null if file could not be read
+     */
+    private static ComplexSummary summarize(final File file)
+    {
+        // Remember the state before reading so a concurrent modification
+        // is detected by the next scan
+        final long modified = file.lastModified();
+        final long size = file.length();
+        try
+        {
+            return ComplexSummary.create(file, modified, size, Complex
+                .readFile(file));
+        }
+        catch (final Exception e)
+        {
+            log.warn("Unable to read complex " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the postings for the specified summaries.
+     *
+     * @param summaries
+     *            The summaries
+     * @return The postings by posting key
+     */
+    private static Map<String, BitSet> createPostings(
+        final List<ComplexSummary> summaries)
+    {
+        final Map<String, BitSet> postings = new HashMap<String, BitSet>();
+        for (int i = 0; i < summaries.size(); i++)
+        {
+            final ComplexSummary summary = summaries.get(i);
+            addPosting(postings, GAME + summary.getGame(), i);
+            if (summary.getSector() != null)
+                addPosting(postings, SECTOR + summary.getSector(), i);
+            for (final String id: summary.getFactories().keySet())
+                addPosting(postings, FACTORY + id, i);
+            for (final String id: summary.getProduced())
+                addPosting(postings, PRODUCED + id, i);
+            for (final String id: summary.getConsumed())
+                addPosting(postings, CONSUMED + id, i);
+        }
+        return postings;
+    }
+
+    /**
+     * Adds a summary number to a posting.
+     *
+     * @param postings
+     *            The postings
+     * @param key
+     *            The posting key
+     * @param index
+     *            The summary number
+     */
+    private static void addPosting(final Map<String, BitSet> postings,
+        final String key, final int index)
+    {
+        BitSet posting = postings.get(key);
+        if (posting == null)
+        {
+            posting = new BitSet();
+            postings.put(key, posting);
+        }
+        posting.set(index);
+    }
+
+    /**
+     * Searches the library.
+     *
+     * @param query
+     *            The query
+     * @return The matching summaries ordered by profit (Highest first)
+     */
+    public synchronized List<ComplexSummary> search(final Query query)
+    {
+        final BitSet hits = new BitSet();
+        hits.set(0, this.summaries.size());
+        if (query.getGame() != null) intersect(hits, GAME + query.getGame());
+        if (query.getSector() != null)
+            intersect(hits, SECTOR + query.getSector());
+        for (final String id: query.getFactories())
+            intersect(hits, FACTORY + id);
+        for (final String id: query.getProduced())
+            intersect(hits, PRODUCED + id);
+        for (final String id: query.getConsumed())
+            intersect(hits, CONSUMED + id);
+
+        final List<ComplexSummary> result = new ArrayList<ComplexSummary>();
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1))
+        {
+            final ComplexSummary summary = this.summaries.get(i);
+            if (summary.getProfit() < query.getMinProfit()) continue;
+            if (summary.getPrice() > query.getMaxPrice()) continue;
+            result.add(summary);
+        }
+        Collections.sort(result, BY_PROFIT);
+        return result;
+    }
+
+    /**
+     * Intersects the hits with the specified posting.
+     *
+     * @param hits
+     *            The hits to modify
+     * @param key
+     *            The posting key
+     */
+    private void intersect(final BitSet hits, final String key)
+    {
+        final BitSet posting = this.postings.get(key);
+        if (posting == null)
+            hits.clear();
+        else
+            hits.and(posting);
+    }
+
+    /**
+     * Starts watching the scanned root directory with the file watcher so
+     * the library (and the index file) is refreshed in the background when
+     * complex files are added, removed or replaced. Must be called again
+     * after the root directory has been changed by a scan.
+     */
+    public synchronized void watch()
+    {
+        if (this.watched != null && this.watched.equals(this.root)) return;
+        final FileWatcher watcher = FileWatcher.getInstance();
+        if (this.watched != null) watcher.unwatch(this.watched, this);
+        this.watched = this.root;
+        if (this.watched != null)
+            watcher.watch(this.watched, COMPLEX_FILES, this);
+    }
+
+    /**
+     * Stops watching the root directory.
+     */
+    public synchronized void unwatch()
+    {
+        if (this.watched == null) return;
+        FileWatcher.getInstance().unwatch(this.watched, this);
+        this.watched = null;
+    }
+
+    /**
+     * Scans the changed root directory again. Called by the file watcher
+     * thread.
+     *
+     * @see FileChangeListener#fileChanged(File)
+     */
+    @Override
+    public void fileChanged(final File root)
+    {
+        if (root.equals(getRoot())) refresh();
+    }
+
+    /**
+     * Scans the root directory again in the background and saves the index.
+     * Does nothing if nothing has been scanned yet.
+     */
+    public void refresh()
+    {
+        refreshExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final File root = getRoot();
+                if (root == null) return;
+                try
+                {
+                    scan(root, null);
+                    save();
+                }
+                catch (final InterruptedException e)
+                {
+                    // Cancelled. The next change triggers a new scan.
+                }
+                catch (final IOException e)
+                {
+                    log.warn("Unable to write complex library " + getFile()
+                        + ": " + e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the index file. When the file does not exist or is invalid then
+     * the library is left untouched.
+     *
+     * @return True if index has been loaded, false if not
+     */
+    public boolean load()
+    {
+        if (!this.file.isFile()) return false;
+        try
+        {
+            final InputStream stream = new FileInputStream(this.file);
+            try
+            {
+                final byte[] data = new byte[(int) this.file.length()];
+                new DataInputStream(stream).readFully(data);
+                return read(data);
+            }
+            catch (final ArrayIndexOutOfBoundsException e)
+            {
+                // Invalid string reference
+                return false;
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to read complex library " + this.file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Parses the index data.
+     *
+     * @param data
+     *            The index data
+     * @return True if index has been parsed, false if it is invalid
+     * @throws IOException
+     *             When index data is truncated
+     */
+    private boolean read(final byte[] data) throws IOException
+    {
+        final DataInputStream stream = new DataInputStream(
+            new ByteArrayInputStream(data));
+        final DynaByteInputStream dyna = new DynaByteInputStream(stream);
+        if (stream.readInt() != MAGIC || stream.readInt() != FORMAT)
+            return false;
+        final String rootPath = stream.readUTF();
+
+        final String[] strings = new String[readInt(dyna)];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = stream.readUTF();
+
+        final int count = readInt(dyna);
+        final List<ComplexSummary> summaries =
+            new ArrayList<ComplexSummary>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final File file = new File(stream.readUTF());
+            final long modified = stream.readLong();
+            final long size = stream.readLong();
+            final String game = strings[readInt(dyna)];
+            final int sector = readInt(dyna);
+            final int suns = readInt(dyna);
+            final Map<String, Integer> factories =
+                new TreeMap<String, Integer>();
+            for (int j = readInt(dyna); j > 0; j--)
+                factories.put(strings[readInt(dyna)], readInt(dyna));
+            final Set<String> produced = readStrings(dyna, strings);
+            final Set<String> consumed = readStrings(dyna, strings);
+            final long price = stream.readLong();
+            final long profit = stream.readLong();
+            summaries.add(new ComplexSummary(file, modified, size, game,
+                sector == 0 ? null : strings[sector - 1], suns, factories,
+                produced, consumed, price, profit));
+        }
+
+        final Map<String, BitSet> postings = new HashMap<String, BitSet>();
+        for (int i = readInt(dyna); i > 0; i--)
+        {
+            final String key = stream.readUTF();
+            final BitSet posting = new BitSet(count);
+            int index = -1;
+            for (int j = readInt(dyna); j > 0; j--)
+            {
+                index += readInt(dyna) + 1;
+                if (index >= count) return false;
+                posting.set(index);
+            }
+            postings.put(key, posting);
+        }
+        if (stream.read() != -1) return false;
+
+        synchronized (this)
+        {
+            this.root = rootPath.length() == 0 ? null : new File(rootPath);
+            this.summaries = summaries;
+            this.postings = postings;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a non-negative variable length integer.
+     *
+     * @param stream
+     *            The stream to read from
+     * @return The integer
+     * @throws IOException
+     *             When end of stream has been reached
+     */
+    private static int readInt(final DynaByteInputStream stream)
+        throws IOException
+    {
+        final int value = stream.read();
+        if (value < 0) throw new EOFException();
+        return value;
+    }
+
+    /**
+     * Reads a set of strings referenced by their index in the string table.
+     *
+     * @param stream
+     *            The stream to read from
+     * @param strings
+     *            The string table
+     * @return The strings
+     * @throws IOException
+     *             When end of stream has been reached
+     */
+    private static Set<String> readStrings(final DynaByteInputStream stream,
+        final String[] strings) throws IOException
+    {
+        final Set<String> result = new TreeSet<String>();
+        for (int i = readInt(stream); i > 0; i--)
+            result.add(strings[readInt(stream)]);
+        return result;
+    }
+
+    /**
+     * Saves the index file. The file is replaced atomically.
+     *
+     * @throws IOException
+     *             When index file could not be written
+     */
+    public void save() throws IOException
+    {
+        final File directory = this.file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create directory " + directory);
+        FileUtils.writeAtomically(this.file, toBytes());
+    }
+
+    /**
+     * Returns the index data.
+     *
+     * @return The index data
+     * @throws IOException
+     *             When writing fails
+     */
+    private synchronized byte[] toBytes() throws IOException
+    {
+        // Build the string table
+        final Map<String, Integer> strings =
+            new LinkedHashMap<String, Integer>();
+        for (final ComplexSummary summary: this.summaries)
+        {
+            addString(strings, summary.getGame());
+            if (summary.getSector() != null)
+                addString(strings, summary.getSector());
+            for (final String id: summary.getFactories().keySet())
+                addString(strings, id);
+            for (final String id: summary.getProduced())
+                addString(strings, id);
+            for (final String id: summary.getConsumed())
+                addString(strings, id);
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream stream = new DataOutputStream(bytes);
+        final DynaByteOutputStream dyna = new DynaByteOutputStream(stream);
+        stream.writeInt(MAGIC);
+        stream.writeInt(FORMAT);
+        stream.writeUTF(this.root == null ? "" : this.root.getPath());
+        dyna.write(strings.size());
+        for (final String string: strings.keySet())
+            stream.writeUTF(string);
+
+        dyna.write(this.summaries.size());
+        for (final ComplexSummary summary: this.summaries)
+        {
+            stream.writeUTF(summary.getFile().getPath());
+            stream.writeLong(summary.getModified());
+            stream.writeLong(summary.getSize());
+            dyna.write(strings.get(summary.getGame()));
+            dyna.write(summary.getSector() == null ? 0 : strings.get(summary
+                .getSector()) + 1);
+            dyna.write(summary.getSuns());
+            dyna.write(summary.getFactories().size());
+            for (final Map.Entry<String, Integer> entry: summary
+                .getFactories().entrySet())
+            {
+                dyna.write(strings.get(entry.getKey()));
+                dyna.write(entry.getValue());
+            }
+            writeStrings(dyna, strings, summary.getProduced());
+            writeStrings(dyna, strings, summary.getConsumed());
+            stream.writeLong(summary.getPrice());
+            stream.writeLong(summary.getProfit());
+        }
+
+        dyna.write(this.postings.size());
+        for (final Map.Entry<String, BitSet> entry: new TreeMap<String,
+            BitSet>(this.postings).entrySet())
+        {
+            final BitSet posting = entry.getValue();
+            stream.writeUTF(entry.getKey());
+            dyna.write(posting.cardinality());
+            int last = -1;
+            for (int i = posting.nextSetBit(0); i >= 0; i = posting
+                .nextSetBit(i + 1))
+            {
+                dyna.write(i - last - 1);
+                last = i;
+            }
+        }
+        stream.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Adds a string to the string table if not already present.
+     *
+     * @param strings
+     *            The string table
+     * @param string
+     *            The string to add
+     */
+    private static void addString(final Map<String, Integer> strings,
+        final String string)
+    {
+        if (!strings.containsKey(string)) strings.put(string, strings.size());
+    }
+
+    /**
+     * Writes a set of strings as indices into the string table.
+     *
+     * @param stream
+     *            The stream to write to
+     * @param strings
+     *            The string table
+     * @param values
+     *            The strings to write
+     * @throws IOException
+     *             When writing fails
+     */
+    private static void writeStrings(final DynaByteOutputStream stream,
+        final Map<String, Integer> strings, final Set<String> values)
+        throws IOException
+    {
+        stream.write(values.size());
+        for (final String value: values)
+            stream.write(strings.get(value));
+    }
+
+    /**
+     * A library query. All set criteria must match.
+     */
+    public static class Query
+    {
+        /** The game ID. Null for any game */
+        private String game;
+
+        /** The sector ID. Null for any sector */
+        private String sector;
+
+        /** The IDs of the factories the complex must contain */
+        private final Set<String> factories = new HashSet<String>();
+
+        /** The IDs of the wares the complex must produce */
+        private final Set<String> produced = new HashSet<String>();
+
+        /** The IDs of the wares the complex must consume */
+        private final Set<String> consumed = new HashSet<String>();
+
+        /** The minimum profit per hour */
+        private long minProfit = Long.MIN_VALUE;
+
+        /** The maximum price */
+        private long maxPrice = Long.MAX_VALUE;
+
+        /**
+         * Returns the game ID.
+         *
+         * @return The game ID or null for any game
+         */
+        public String getGame()
+        {
+            return this.game;
+        }
+
+        /**
+         * Sets the game ID.
+         *
+         * @param game
+         *            The game ID or null for any game
+         */
+        public void setGame(final String game)
+        {
+            this.game = game;
+        }
+
+        /**
+         * Returns the sector ID.
+         *
+         * @return The sector ID or null for any sector
+         */
+        public String getSector()
+        {
+            return this.sector;
+        }
+
+        /**
+         * Sets the sector ID.
+         *
+         * @param sector
+         *            The sector ID or null for any sector
+         */
+        public void setSector(final String sector)
+        {
+            this.sector = sector;
+        }
+
+        /**
+         * Returns the IDs of the factories the complex must contain.
+         *
+         * @return The factory IDs. Modifiable
+         */
+        public Set<String> getFactories()
+        {
+            return this.factories;
+        }
+
+        /**
+         * Returns the IDs of the wares the complex must produce.
+         *
+         * @return The ware IDs. Modifiable
+         */
+        public Set<String> getProduced()
+        {
+            return this.produced;
+        }
+
+        /**
+         * Returns the IDs of the wares the complex must consume.
+         *
+         * @return The ware IDs. Modifiable
+         */
+        public Set<String> getConsumed()
+        {
+            return this.consumed;
+        }
+
+        /**
+         * Returns the minimum profit.
+         *
+         * @return The minimum profit per hour
+         */
+        public long getMinProfit()
+        {
+            return this.minProfit;
+        }
+
+        /**
+         * Sets the minimum profit.
+         *
+         * @param minProfit
+         *            The minimum profit per hour
+         */
+        public void setMinProfit(final long minProfit)
+        {
+            this.minProfit = minProfit;
+        }
+
+        /**
+         * Returns the maximum price.
+         *
+         * @return The maximum price
+         */
+        public long getMaxPrice()
+        {
+            return this.maxPrice;
+        }
+
+        /**
+         * Sets the maximum price.
+         *
+         * @param maxPrice
+         *            The maximum price
+         */
+        public void setMaxPrice(final long maxPrice)
+        {
+            this.maxPrice = maxPrice;
+        }
+    }
+}
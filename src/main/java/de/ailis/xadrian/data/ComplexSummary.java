@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The summary of a complex file stored in the complex library. It contains
+ * everything the library can search for so the complex file itself only
+ * needs to be read again when it has been modified.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexSummary
+{
+    /** The complex file */
+    private final File file;
+
+    /** The last modification time of the file */
+    private final long modified;
+
+    /** The size of the file in bytes */
+    private final long size;
+
+    /** The game ID */
+    private final String game;
+
+    /** The sector ID. Null if complex has no sector */
+    private final String sector;
+
+    /** The suns in percent */
+    private final int suns;
+
+    /** The factory quantities (Including the base complex) by factory ID */
+    private final SortedMap<String, Integer> factories;
+
+    /** The IDs of the produced wares */
+    private final SortedSet<String> produced;
+
+    /** The IDs of the consumed wares */
+    private final SortedSet<String> consumed;
+
+    /** The total price of the complex */
+    private final long price;
+
+    /** The profit of the complex per hour */
+    private final long profit;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            The complex file
+     * @param modified
+     *            The last modification time of the file
+     * @param size
+     *            The size of the file in bytes
+     * @param game
+     *            The game ID
+     * @param sector
+     *            The sector ID. Null if complex has no sector
+     * @param suns
+     *            The suns in percent
+     * @param factories
+     *            The factory quantities by factory ID
+     * @param produced
+     *            The IDs of the produced wares
+     * @param consumed
+     *            The IDs of the consumed wares
+     * @param price
+     *            The total price of the complex
+     * @param profit
+     *            The profit of the complex per hour
+     */
+    public ComplexSummary(final File file, final long modified,
+        final long size, final String game, final String sector,
+        final int suns, final Map<String, Integer> factories,
+        final Set<String> produced, final Set<String> consumed,
+        final long price, final long profit)
+    {
+        this.file = file;
+        this.modified = modified;
+        this.size = size;
+        this.game = game;
+        this.sector = sector;
+        this.suns = suns;
+        this.factories = Collections.unmodifiableSortedMap(
+            new TreeMap<String, Integer>(factories));
+        this.produced = Collections.unmodifiableSortedSet(new TreeSet<String>(
+            produced));
+        this.consumed = Collections.unmodifiableSortedSet(new TreeSet<String>(
+            consumed));
+        this.price = price;
+        this.profit = profit;
+    }
+
+    /**
+     * Creates the summary of the specified complex.
+     *
+     * @param file
+     *            The complex file
+     * @param modified
+     *            The last modification time of the file
+     * @param size
+     *            The size of the file in bytes
+     * @param complex
+     *            The complex read from the file
+     * @return The summary
+     */
+    public static ComplexSummary create(final File file, final long modified,
+        final long size, final Complex complex)
+    {
+        final Map<String, Integer> factories = new TreeMap<String, Integer>();
+        final List<ComplexFactory> all = new ArrayList<ComplexFactory>(
+            complex.getFactories());
+        all.addAll(complex.getAutoFactories());
+        for (final ComplexFactory factory: all)
+        {
+            if (factory.isDisabled()) continue;
+            final String id = factory.getFactory().getId();
+            final Integer quantity = factories.get(id);
+            factories.put(id, factory.getQuantity()
+                + (quantity == null ? 0 : quantity));
+        }
+        final Set<String> produced = new TreeSet<String>();
+        final Set<String> consumed = new TreeSet<String>();
+        for (final ComplexWare ware: complex.getWares())
+        {
+            if (ware.getProduced() > 0) produced.add(ware.getWare().getId());
+            if (ware.getNeeded() > 0) consumed.add(ware.getWare().getId());
+        }
+        final Sector sector = complex.getSector();
+        return new ComplexSummary(file, modified, size, complex.getGame()
+            .getId(), sector == null ? null : sector.getId(), complex
+            .getSuns().getPercent(), factories, produced, consumed, complex
+            .getTotalPrice(), Math.round(complex.getProfit()));
+    }
+
+    /**
+     * Returns the complex file.
+     *
+     * @return The complex file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Returns the last modification time of the file when it was summarized.
+     *
+     * @return The last modification time
+     */
+    public long getModified()
+    {
+        return this.modified;
+    }
+
+    /**
+     * Returns the size of the file when it was summarized.
+     *
+     * @return The size in bytes
+     */
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * Checks if the summary is still up to date for the specified file.
+     *
+     * @param file
+     *            The complex file
+     * @return True if file has not been modified since it was summarized
+     */
+    public boolean isCurrent(final File file)
+    {
+        return this.modified == file.lastModified()
+            && this.size == file.length();
+    }
+
+    /**
+     * Returns the game ID.
+     *
+     * @return The game ID
+     */
+    public String getGame()
+    {
+        return this.game;
+    }
+
+    /**
+     * Returns the sector ID.
+     *
+     * @return The sector ID or null if complex has no sector
+     */
+    public String getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Returns the suns.
+     *
+     * @return The suns in percent
+     */
+    public int getSuns()
+    {
+        return this.suns;
+    }
+
+    /**
+     * Returns the factory quantities (Including the base complex but
+     * excluding disabled factories) by factory ID.
+     *
+     * @return The factory quantities
+     */
+    public SortedMap<String, Integer> getFactories()
+    {
+        return this.factories;
+    }
+
+    /**
+     * Returns the IDs of the produced wares.
+     *
+     * @return The produced ware IDs
+     */
+    public SortedSet<String> getProduced()
+    {
+        return this.produced;
+    }
+
+    /**
+     * Returns the IDs of the consumed wares.
+     *
+     * @return The consumed ware IDs
+     */
+    public SortedSet<String> getConsumed()
+    {
+        return this.consumed;
+    }
+
+    /**
+     * Returns the total price of the complex.
+     *
+     * @return The total price
+     */
+    public long getPrice()
+    {
+        return this.price;
+    }
+
+    /**
+     * Returns the profit of the complex.
+     *
+     * @return The profit per hour
+     */
+    public long getProfit()
+    {
+        return this.profit;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The empire aggregates the wares of multiple complexes of the same game into
+ * a global supply and demand balance and plans transfers of surplus wares
+ * from one complex to complexes which need them. Complexes are registered
+ * with a key (For example the editor displaying the complex) and whenever a
+ * complex changes only its own contribution is replaced in the totals. The
+ * transfers are only planned again for the wares the changed complex
+ * produces or needs.
+ *
+ * This class is not thread-safe. It is meant to be used from the event
+ * dispatch thread only.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class Empire
+{
+    /** Quantities below this value are treated as zero */
+    private static final double EPSILON = 0.000001;
+
+    /** The game */
+    private final Game game;
+
+    /** The registered complexes */
+    private final Map<Object, Member> members =
+        new LinkedHashMap<Object, Member>();
+
+    /** The summed up wares */
+    private final Map<Ware, Total> totals = new HashMap<Ware, Total>();
+
+    /** The planned transfers per ware */
+    private final Map<Ware, List<SupplyTransfer>> transfers =
+        new HashMap<Ware, List<SupplyTransfer>>();
+
+    /** The wares for which the transfers must be planned again */
+    private final Set<Ware> dirty = new HashSet<Ware>();
+
+    /**
+     * The wares of a single registered complex.
+     */
+    private static final class Member
+    {
+        /** The complex name */
+        final String name;
+
+        /** The complex sector. Null if none */
+        final Sector sector;
+
+        /** The complex wares */
+        final Map<Ware, ComplexWare> wares;
+
+        /**
+         * Constructor
+         *
+         * @param complex
+         *            The complex
+         */
+        Member(final Complex complex)
+        {
+            this.name = complex.getName();
+            this.sector = complex.getSector();
+            this.wares = new HashMap<Ware, ComplexWare>();
+            for (final ComplexWare ware: complex.getWares())
+                this.wares.put(ware.getWare(), ware);
+        }
+    }
+
+    /**
+     * The summed up values of a single ware.
+     */
+    private static final class Total
+    {
+        /** The produced units per hour */
+        double produced;
+
+        /** The needed units per hour */
+        double needed;
+
+        /** The sum of surplus units per hour */
+        double surplus;
+
+        /** The sum of missing units per hour */
+        double missing;
+
+        /** The number of complexes contributing to this ware */
+        int complexes;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param game
+     *            The game
+     */
+    public Empire(final Game game)
+    {
+        this.game = game;
+    }
+
+    /**
+     * Returns the game.
+     *
+     * @return The game
+     */
+    public Game getGame()
+    {
+        return this.game;
+    }
+
+    /**
+     * Returns the number of registered complexes.
+     *
+     * @return The number of complexes
+     */
+    public int getComplexCount()
+    {
+        return this.members.size();
+    }
+
+    /**
+     * Checks if the empire contains no complexes.
+     *
+     * @return True if empire is empty, false if not
+     */
+    public boolean isEmpty()
+    {
+        return this.members.isEmpty();
+    }
+
+    /**
+     * Registers the specified complex or replaces the complex previously
+     * registered with the same key. Only the contribution of this single
+     * complex is updated.
+     *
+     * @param key
+     *            The key identifying the complex
+     * @param complex
+     *            The current complex
+     */
+    public void update(final Object key, final Complex complex)
+    {
+        if (!complex.getGame().equals(this.game))
+            throw new IllegalArgumentException("Complex " + complex.getName()
+                + " belongs to game " + complex.getGame().getId());
+        final Member member = new Member(complex);
+        final Member old = this.members.put(key, member);
+        if (old != null) subtract(old);
+        add(member);
+    }
+
+    /**
+     * Removes the complex registered with the specified key. Does nothing if
+     * no such complex is registered.
+     *
+     * @param key
+     *            The key identifying the complex
+     */
+    public void remove(final Object key)
+    {
+        final Member old = this.members.remove(key);
+        if (old != null) subtract(old);
+    }
+
+    /**
+     * Adds the contribution of the specified member to the totals.
+     *
+     * @param member
+     *            The member to add
+     */
+    private void add(final Member member)
+    {
+        for (final ComplexWare ware: member.wares.values())
+        {
+            Total total = this.totals.get(ware.getWare());
+            if (total == null)
+            {
+                total = new Total();
+                this.totals.put(ware.getWare(), total);
+            }
+            total.produced += ware.getProduced();
+            total.needed += ware.getNeeded();
+            total.surplus += Math.max(0, ware.getSurplus());
+            total.missing += ware.getMissing();
+            total.complexes++;
+            this.dirty.add(ware.getWare());
+        }
+    }
+
+    /**
+     * Subtracts the contribution of the specified member from the totals.
+     *
+     * @param member
+     *            The member to subtract
+     */
+    private void subtract(final Member member)
+    {
+        for (final ComplexWare ware: member.wares.values())
+        {
+            final Total total = this.totals.get(ware.getWare());
+            this.dirty.add(ware.getWare());
+
+            // Dropping the total when no complex is left also drops the
+            // accumulated rounding errors
+            if (--total.complexes == 0)
+            {
+                this.totals.remove(ware.getWare());
+                continue;
+            }
+            total.produced -= ware.getProduced();
+            total.needed -= ware.getNeeded();
+            total.surplus -= Math.max(0, ware.getSurplus());
+            total.missing -= ware.getMissing();
+        }
+    }
+
+    /**
+     * Plans the transfers again for all wares which have been changed since
+     * the last planning.
+     */
+    private void plan()
+    {
+        for (final Ware ware: this.dirty)
+        {
+            if (this.totals.containsKey(ware))
+                this.transfers.put(ware, plan(ware));
+            else
+                this.transfers.remove(ware);
+        }
+        this.dirty.clear();
+    }
+
+    /**
+     * Plans the transfers of the specified ware. The nearest pairs of
+     * supplying and receiving complexes are connected first. Complexes
+     * without a sector or which can't reach each other are never connected.
+     *
+     * @param ware
+     *            The ware
+     * @return The planned transfers
+     */
+    private List<SupplyTransfer> plan(final Ware ware)
+    {
+        final List<Member> sources = new ArrayList<Member>();
+        final List<Member> targets = new ArrayList<Member>();
+        final Map<Member, Double> left = new HashMap<Member, Double>();
+        for (final Member member: this.members.values())
+        {
+            final ComplexWare complexWare = member.wares.get(ware);
+            if (complexWare == null || member.sector == null) continue;
+            if (complexWare.getSurplus() > EPSILON)
+            {
+                sources.add(member);
+                left.put(member, complexWare.getSurplus());
+            }
+            else if (complexWare.getMissing() > EPSILON)
+            {
+                targets.add(member);
+                left.put(member, complexWare.getMissing());
+            }
+        }
+        final List<SupplyTransfer> result = new ArrayList<SupplyTransfer>();
+        if (sources.isEmpty() || targets.isEmpty()) return result;
+
+        final List<Member[]> routes = new ArrayList<Member[]>();
+        final Map<Member[], Integer> jumps = new HashMap<Member[], Integer>();
+        for (final Member source: sources)
+        {
+            for (final Member target: targets)
+            {
+                final int distance = source.sector.getDistance(target.sector);
+                if (distance < 0) continue;
+                final Member[] route = new Member[] { source, target };
+                routes.add(route);
+                jumps.put(route, distance);
+            }
+        }
+        Collections.sort(routes, new Comparator<Member[]>()
+        {
+            @Override
+            public int compare(final Member[] o1, final Member[] o2)
+            {
+                return jumps.get(o1).compareTo(jumps.get(o2));
+            }
+        });
+
+        for (final Member[] route: routes)
+        {
+            final double supply = left.get(route[0]);
+            final double demand = left.get(route[1]);
+            final double quantity = Math.min(supply, demand);
+            if (quantity <= EPSILON) continue;
+            left.put(route[0], supply - quantity);
+            left.put(route[1], demand - quantity);
+            result.add(new SupplyTransfer(ware, route[0].name,
+                route[0].sector, route[1].name, route[1].sector, quantity,
+                jumps.get(route)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the planned transfers of all wares sorted by ware and
+     * distance.
+     *
+     * @return The planned transfers
+     */
+    public List<SupplyTransfer> getTransfers()
+    {
+        plan();
+        final List<Ware> wares = new ArrayList<Ware>(this.transfers.keySet());
+        Collections.sort(wares);
+        final List<SupplyTransfer> result = new ArrayList<SupplyTransfer>();
+        for (final Ware ware: wares)
+            result.addAll(this.transfers.get(ware));
+        return result;
+    }
+
+    /**
+     * Returns the summed up wares of all complexes sorted by ware.
+     *
+     * @return The summed up wares
+     */
+    public List<EmpireWare> getWares()
+    {
+        plan();
+        final List<EmpireWare> result =
+            new ArrayList<EmpireWare>(this.totals.size());
+        for (final Map.Entry<Ware, Total> entry: this.totals.entrySet())
+        {
+            final Ware ware = entry.getKey();
+            final Total total = entry.getValue();
+            result.add(new EmpireWare(ware, total.produced, total.needed,
+                total.surplus, total.missing, getTransferred(this.transfers
+                    .get(ware))));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the total quantity of the specified transfers.
+     *
+     * @param transfers
+     *            The transfers. May be null
+     * @return The total quantity
+     */
+    private static double getTransferred(
+        final Collection<SupplyTransfer> transfers)
+    {
+        double quantity = 0;
+        if (transfers != null) for (final SupplyTransfer transfer: transfers)
+            quantity += transfer.getQuantity();
+        return quantity;
+    }
+
+    /**
+     * Returns the total transfer cost of all planned transfers.
+     *
+     * @return The total transfer cost
+     */
+    public double getTransferCost()
+    {
+        double cost = 0;
+        for (final SupplyTransfer transfer: getTransfers())
+            cost += transfer.getCost();
+        return cost;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+/**
+ * The supply and demand of a ware summed up over all complexes of an
+ * empire.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class EmpireWare implements Comparable<EmpireWare>
+{
+    /** The ware */
+    private final Ware ware;
+
+    /** The units produced per hour by all complexes */
+    private final double produced;
+
+    /** The units needed per hour by all complexes */
+    private final double needed;
+
+    /** The sum of the surpluses of the single complexes */
+    private final double surplus;
+
+    /** The sum of the missing units of the single complexes */
+    private final double missing;
+
+    /** The units per hour transferred between the complexes */
+    private final double transferred;
+
+    /**
+     * Constructor
+     *
+     * @param ware
+     *            The ware
+     * @param produced
+     *            The units produced per hour by all complexes
+     * @param needed
+     *            The units needed per hour by all complexes
+     * @param surplus
+     *            The sum of the surpluses of the single complexes
+     * @param missing
+     *            The sum of the missing units of the single complexes
+     * @param transferred
+     *            The units per hour transferred between the complexes
+     */
+    EmpireWare(final Ware ware, final double produced, final double needed,
+        final double surplus, final double missing, final double transferred)
+    {
+        this.ware = ware;
+        this.produced = produced;
+        this.needed = needed;
+        this.surplus = surplus;
+        this.missing = missing;
+        this.transferred = transferred;
+    }
+
+    /**
+     * Returns the ware.
+     *
+     * @return The ware
+     */
+    public Ware getWare()
+    {
+        return this.ware;
+    }
+
+    /**
+     * Returns the units produced per hour by all complexes.
+     *
+     * @return The produced units per hour
+     */
+    public double getProduced()
+    {
+        return this.produced;
+    }
+
+    /**
+     * Returns the units needed per hour by all complexes.
+     *
+     * @return The needed units per hour
+     */
+    public double getNeeded()
+    {
+        return this.needed;
+    }
+
+    /**
+     * Returns the balance of the whole empire. Positive for a surplus,
+     * negative for a deficit.
+     *
+     * @return The balance in units per hour
+     */
+    public double getBalance()
+    {
+        return this.produced - this.needed;
+    }
+
+    /**
+     * Returns the units per hour transferred between the complexes.
+     *
+     * @return The transferred units per hour
+     */
+    public double getTransferred()
+    {
+        return this.transferred;
+    }
+
+    /**
+     * Returns the units per hour which are left to be sold after the
+     * transfers.
+     *
+     * @return The units per hour to sell
+     */
+    public double getSurplus()
+    {
+        return Math.max(0, this.surplus - this.transferred);
+    }
+
+    /**
+     * Returns the units per hour which must still be bought after the
+     * transfers.
+     *
+     * @return The units per hour to buy
+     */
+    public double getMissing()
+    {
+        return Math.max(0, this.missing - this.transferred);
+    }
+
+    /**
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(final EmpireWare o)
+    {
+        return this.ware.compareTo(o.ware);
+    }
+}
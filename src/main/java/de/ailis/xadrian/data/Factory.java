@@ -431,7 +431,7 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
      *            The asteroid yield
      * @return The production cycle
      */
-    private int getRealCycle(final Sun suns, final int yield)
+    public int getRealCycle(final Sun suns, final int yield)
     {
         // Handle solar power plants
         if (isSolarPowerPlant()) return suns.getCycle();
@@ -466,7 +466,7 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
      *            The asteroid yield
      * @return The product
      */
-    private Product getRealProduct(final Sun suns, final int yield)
+    public Product getRealProduct(final Sun suns, final int yield)
     {
         final Ware ware = this.product.getWare();
 
@@ -501,7 +501,7 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
      *            The asteroid yield
      * @return The resources
      */
-    private Product[] getRealResources(final Sun suns, final int yield)
+    public Product[] getRealResources(final Sun suns, final int yield)
     {
         // Handle silicon mines
         if (isSiliconMine())
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The cargo of a single freighter trip calculated by the load planner. A
+ * factory or kit is represented by its factory (Null for a kit) and the
+ * sector it is bought in.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class FreighterLoad
+{
+    /** The factories (Null for kits) */
+    final List<Factory> units = new ArrayList<Factory>();
+
+    /** The sectors the units are bought in (Parallel to units) */
+    final List<Sector> sectors = new ArrayList<Sector>();
+
+    /** The used cargo volume */
+    int volume;
+
+    /** The index of the freighter making this trip */
+    int freighter;
+
+    /** The cargo capacity of the freighter making this trip */
+    int capacity;
+
+    /**
+     * Constructor
+     */
+    FreighterLoad()
+    {
+        // Nothing to do
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param other
+     *            The load to copy
+     */
+    FreighterLoad(final FreighterLoad other)
+    {
+        this.units.addAll(other.units);
+        this.sectors.addAll(other.sectors);
+        this.volume = other.volume;
+        this.freighter = other.freighter;
+        this.capacity = other.capacity;
+    }
+
+    /**
+     * Adds a unit to the load.
+     *
+     * @param unit
+     *            The factory or null for a kit
+     * @param sector
+     *            The sector the unit is bought in
+     */
+    void add(final Factory unit, final Sector sector)
+    {
+        this.units.add(unit);
+        this.sectors.add(sector);
+        this.volume += LoadPlanner.getVolume(unit);
+    }
+
+    /**
+     * Removes the unit at the specified index.
+     *
+     * @param index
+     *            The index
+     */
+    void remove(final int index)
+    {
+        this.volume -= LoadPlanner.getVolume(this.units.remove(index));
+        this.sectors.remove(index);
+    }
+
+    /**
+     * Checks if the load contains a unit bought in the specified sector.
+     *
+     * @param sector
+     *            The sector
+     * @return True if the load contains the sector, false if not
+     */
+    boolean containsSector(final Sector sector)
+    {
+        return this.sectors.contains(sector);
+    }
+
+    /**
+     * Returns the index of the freighter which makes this trip. This is the
+     * index in the list of capacities the load plan was calculated for.
+     *
+     * @return The freighter index
+     */
+    public int getFreighter()
+    {
+        return this.freighter;
+    }
+
+    /**
+     * Returns the cargo capacity of the freighter making this trip.
+     *
+     * @return The cargo capacity
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the used cargo volume.
+     *
+     * @return The volume
+     */
+    public int getVolume()
+    {
+        return this.volume;
+    }
+
+    /**
+     * Returns the sectors where the cargo is bought. Units without a known
+     * sector (Complex has no sector or no manufacturer is reachable) are
+     * ignored.
+     *
+     * @return The sectors
+     */
+    public Set<Sector> getSectors()
+    {
+        final Set<Sector> sectors = new LinkedHashSet<Sector>(this.sectors);
+        sectors.remove(null);
+        return Collections.unmodifiableSet(sectors);
+    }
+
+    /**
+     * Returns the factories of this load. The quantities are the number of
+     * factories and the nearest manufacturers are the sectors where they are
+     * bought.
+     *
+     * @return The factories
+     */
+    public List<ShoppingListItem> getFactories()
+    {
+        final Map<Factory, Integer> counts =
+            new LinkedHashMap<Factory, Integer>();
+        final Map<Factory, Sector> sectors = new LinkedHashMap<Factory, Sector>();
+        for (int i = 0; i < this.units.size(); i++)
+        {
+            final Factory factory = this.units.get(i);
+            if (factory == null) continue;
+            final Integer count = counts.get(factory);
+            counts.put(factory, count == null ? 1 : count + 1);
+            sectors.put(factory, this.sectors.get(i));
+        }
+        final List<ShoppingListItem> items = new ArrayList<ShoppingListItem>();
+        for (final Map.Entry<Factory, Integer> entry: counts.entrySet())
+            items.add(new ShoppingListItem(entry.getKey(), entry.getValue(),
+                sectors.get(entry.getKey()), 0));
+        Collections.sort(items);
+        return items;
+    }
+
+    /**
+     * Returns the number of complex construction kits in this load.
+     *
+     * @return The number of kits
+     */
+    public int getKits()
+    {
+        int kits = 0;
+        for (final Factory unit: this.units)
+            if (unit == null) kits++;
+        return kits;
+    }
+}
@@ -5,11 +5,15 @@
 
 package de.ailis.xadrian.data;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.net.URL;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
+import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.factories.FactoryFactory;
 import de.ailis.xadrian.data.factories.RaceFactory;
 import de.ailis.xadrian.data.factories.SectorFactory;
@@ -18,7 +22,9 @@ import de.ailis.xadrian.data.factories.WareFactory;
 import de.ailis.xadrian.dialogs.AddFactoryDialog;
 import de.ailis.xadrian.dialogs.ChangePricesDialog;
 import de.ailis.xadrian.dialogs.ChangeSunsDialog;
+import de.ailis.xadrian.dialogs.FindAsteroidsDialog;
 import de.ailis.xadrian.dialogs.SelectSectorDialog;
+import de.ailis.xadrian.exceptions.DataException;
 import de.ailis.xadrian.support.I18N;
 
 /**
@@ -55,6 +61,15 @@ public class Game implements Serializable, Comparable<Game>
     /** The ware factory. */
     private final WareFactory wareFactory;
 
+    /** The asteroid index. Created on first use. */
+    private AsteroidIndex asteroidIndex;
+
+    /** The production graph. Created on first use. */
+    private ProductionGraph productionGraph;
+
+    /** The hash of the game data files. Calculated on first use. */
+    private Long dataHash;
+
     /** The add factory dialog. */
     private AddFactoryDialog addFactoryDialog;
 
@@ -67,6 +82,9 @@ public class Game implements Serializable, Comparable<Game>
     /** The change prices dialog. */
     private ChangePricesDialog changePricesDialog;
 
+    /** The find asteroids dialog. */
+    private FindAsteroidsDialog findAsteroidsDialog;
+
     /**
      * Constructor.
      * 
@@ -207,6 +225,78 @@ public class Game implements Serializable, Comparable<Game>
         return this.wareFactory;
     }
 
+    /**
+     * Returns the asteroid index.
+     * 
+     * @return The asteroid index.
+     */
+    public synchronized AsteroidIndex getAsteroidIndex()
+    {
+        if (this.asteroidIndex == null)
+            this.asteroidIndex = new AsteroidIndex(this);
+        return this.asteroidIndex;
+    }
+
+    /**
+     * Returns the production graph.
+     * 
+     * @return The production graph.
+     */
+    public synchronized ProductionGraph getProductionGraph()
+    {
+        if (this.productionGraph == null)
+            this.productionGraph = new ProductionGraph(this);
+        return this.productionGraph;
+    }
+
+    /**
+     * Returns a 64 bit hash over the game data files which influence the
+     * complex calculations (Factories, wares, races and suns). Results
+     * stored on disk are only valid as long as this hash doesn't change.
+     *
+     * @return The game data hash
+     */
+    public synchronized long getDataHash()
+    {
+        if (this.dataHash == null)
+        {
+            long hash = 0xcbf29ce484222325L;
+            final byte[] buffer = new byte[8192];
+            for (final String name: new String[] { "factories", "wares",
+                "races", "suns" })
+            {
+                URL url = Main.class.getResource("/" + this.id + "/" + name
+                    + ".xml");
+                if (url == null)
+                    url = Main.class.getResource("data/" + this.id + "/"
+                        + name + ".xml");
+                try
+                {
+                    final InputStream stream = url.openStream();
+                    try
+                    {
+                        int read;
+                        while ((read = stream.read(buffer)) != -1)
+                            for (int i = 0; i < read; i++)
+                                hash = (hash ^ (buffer[i] & 0xff))
+                                    * 0x100000001b3L;
+                    }
+                    finally
+                    {
+                        stream.close();
+                    }
+                }
+                catch (final IOException e)
+                {
+                    throw new DataException("Unable to read game data: " + e,
+                        e);
+                }
+            }
+            this.dataHash = hash;
+        }
+        return this.dataHash;
+    }
+
     /**
      * Returns the add factory dialog.
      * 
@@ -255,6 +345,18 @@ public class Game implements Serializable, Comparable<Game>
         return this.changePricesDialog;
     }
 
+    /**
+     * Returns the find asteroids dialog.
+     * 
+     * @return The find asteroids dialog.
+     */
+    public synchronized FindAsteroidsDialog getFindAsteroidsDialog()
+    {
+        if (this.findAsteroidsDialog == null)
+            this.findAsteroidsDialog = new FindAsteroidsDialog(this);
+        return this.findAsteroidsDialog;
+    }
+
     /**
      * Checks if the game is X3: Terrn Conflict.
      * 
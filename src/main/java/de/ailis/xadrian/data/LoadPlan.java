@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The freighter trips needed to transport the rest of a shopping list,
+ * calculated by the load planner.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LoadPlan
+{
+    /** The planned shopping list */
+    private final ShoppingList shoppingList;
+
+    /** The cargo capacities of the freighters */
+    private final List<Integer> capacities;
+
+    /** The loads */
+    private final List<FreighterLoad> loads;
+
+    /** The factories which don't fit into any freighter */
+    private final List<ShoppingListItem> unloadableFactories;
+
+    /** The number of kits which don't fit into any freighter */
+    private final int unloadableKits;
+
+    /**
+     * Constructor
+     *
+     * @param shoppingList
+     *            The planned shopping list
+     * @param capacities
+     *            The cargo capacities of the freighters
+     * @param loads
+     *            The loads
+     * @param unloadableFactories
+     *            The factories which don't fit into any freighter
+     * @param unloadableKits
+     *            The number of kits which don't fit into any freighter
+     */
+    LoadPlan(final ShoppingList shoppingList, final List<Integer> capacities,
+        final List<FreighterLoad> loads,
+        final List<ShoppingListItem> unloadableFactories,
+        final int unloadableKits)
+    {
+        this.shoppingList = shoppingList;
+        this.capacities = capacities;
+        this.loads = Collections.unmodifiableList(loads);
+        this.unloadableFactories =
+            Collections.unmodifiableList(unloadableFactories);
+        this.unloadableKits = unloadableKits;
+    }
+
+    /**
+     * Returns the planned shopping list.
+     *
+     * @return The shopping list
+     */
+    public ShoppingList getShoppingList()
+    {
+        return this.shoppingList;
+    }
+
+    /**
+     * Returns the cargo capacities of the freighters.
+     *
+     * @return The cargo capacities
+     */
+    public List<Integer> getCapacities()
+    {
+        return this.capacities;
+    }
+
+    /**
+     * Returns the loads. Each load is one trip of a freighter.
+     *
+     * @return The loads
+     */
+    public List<FreighterLoad> getLoads()
+    {
+        return this.loads;
+    }
+
+    /**
+     * Returns the loads transported by the specified freighter.
+     *
+     * @param freighter
+     *            The index of the freighter
+     * @return The loads of the freighter
+     */
+    public List<FreighterLoad> getLoads(final int freighter)
+    {
+        final List<FreighterLoad> loads = new ArrayList<FreighterLoad>();
+        for (final FreighterLoad load: this.loads)
+            if (load.getFreighter() == freighter) loads.add(load);
+        return loads;
+    }
+
+    /**
+     * Returns the number of trips.
+     *
+     * @return The number of trips
+     */
+    public int getTripCount()
+    {
+        return this.loads.size();
+    }
+
+    /**
+     * Returns the number of rounds when all freighters fly at the same time.
+     * This is the highest number of trips of a single freighter.
+     *
+     * @return The number of rounds
+     */
+    public int getRounds()
+    {
+        final int[] trips = new int[this.capacities.size()];
+        int rounds = 0;
+        for (final FreighterLoad load: this.loads)
+            rounds = Math.max(rounds, ++trips[load.getFreighter()]);
+        return rounds;
+    }
+
+    /**
+     * Returns the total cargo volume of all loads.
+     *
+     * @return The total volume
+     */
+    public long getTotalVolume()
+    {
+        long volume = 0;
+        for (final FreighterLoad load: this.loads)
+            volume += load.getVolume();
+        return volume;
+    }
+
+    /**
+     * Returns the lower bound for the number of trips. No packing can
+     * transport the cargo with fewer trips of the largest freighter.
+     *
+     * @return The minimum number of trips
+     */
+    public int getMinTrips()
+    {
+        if (this.capacities.isEmpty()) return 0;
+        final long capacity = Collections.max(this.capacities);
+        return (int) ((getTotalVolume() + capacity - 1) / capacity);
+    }
+
+    /**
+     * Returns the factories which don't fit into any freighter. The
+     * quantities are the number of factories left out.
+     *
+     * @return The unloadable factories
+     */
+    public List<ShoppingListItem> getUnloadableFactories()
+    {
+        return this.unloadableFactories;
+    }
+
+    /**
+     * Returns the number of kits which don't fit into any freighter.
+     *
+     * @return The number of unloadable kits
+     */
+    public int getUnloadableKits()
+    {
+        return this.unloadableKits;
+    }
+
+    /**
+     * Checks if all factories and kits of the shopping list are loaded.
+     *
+     * @return True if the plan is complete, false if not
+     */
+    public boolean isComplete()
+    {
+        return this.unloadableFactories.isEmpty() && this.unloadableKits == 0;
+    }
+}
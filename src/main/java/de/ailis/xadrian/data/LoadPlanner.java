@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs the rest of a shopping list into as few freighter trips as possible.
+ * The factories and kits are packed first fit decreasing into loads of the
+ * largest cargo capacity, preferring loads which already visit the sector
+ * the unit is bought in. The packing is then improved by emptying the
+ * smallest loads into the others and by moving all units of a sector into
+ * a single load. Finally each load is assigned to the freighter with the
+ * fewest trips which can carry it, so the trips are spread over all
+ * freighters.
+ *
+ * A plan can be updated when the shopping list changes (For example when
+ * a factory is marked as built). Only the changed units are removed from
+ * or inserted into the existing loads, so the loads stay stable while the
+ * complex is built.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LoadPlanner
+{
+    /** Orders loads by volume (Smallest first) */
+    private static final Comparator<FreighterLoad> SMALLEST_FIRST =
+        new Comparator<FreighterLoad>()
+        {
+            @Override
+            public int compare(final FreighterLoad a, final FreighterLoad b)
+            {
+                return a.volume - b.volume;
+            }
+        };
+
+    /** Orders units by volume (Largest first) */
+    private static final Comparator<Factory> LARGEST_UNIT_FIRST =
+        new Comparator<Factory>()
+        {
+            @Override
+            public int compare(final Factory a, final Factory b)
+            {
+                return getVolume(b) - getVolume(a);
+            }
+        };
+
+    /** The cargo capacities of the freighters */
+    private final List<Integer> capacities;
+
+    /** The largest cargo capacity */
+    private final int maxCapacity;
+
+    /**
+     * Constructor
+     *
+     * @param capacities
+     *            The cargo capacities of the available freighters
+     */
+    public LoadPlanner(final Collection<Integer> capacities)
+    {
+        if (capacities.isEmpty())
+            throw new IllegalArgumentException("No freighter capacities");
+        for (final int capacity: capacities)
+            if (capacity <= 0)
+                throw new IllegalArgumentException(
+                    "Capacities must be positive");
+        this.capacities = Collections.unmodifiableList(new ArrayList<Integer>(
+            capacities));
+        this.maxCapacity = Collections.max(capacities);
+    }
+
+    /**
+     * Returns the cargo capacities of the freighters.
+     *
+     * @return The cargo capacities
+     */
+    public List<Integer> getCapacities()
+    {
+        return this.capacities;
+    }
+
+    /**
+     * Returns the volume of a unit.
+     *
+     * @param unit
+     *            The factory or null for a kit
+     * @return The volume
+     */
+    static int getVolume(final Factory unit)
+    {
+        return unit == null ? Complex.KIT_VOLUME : unit.getVolume();
+    }
+
+    /**
+     * Plans the loads for the specified shopping list.
+     *
+     * @param shoppingList
+     *            The shopping list
+     * @return The load plan
+     */
+    public LoadPlan plan(final ShoppingList shoppingList)
+    {
+        return update(new ArrayList<FreighterLoad>(), shoppingList);
+    }
+
+    /**
+     * Updates an existing load plan for a changed shopping list. Units which
+     * are no longer needed are removed from the smallest loads and new units
+     * are inserted into the existing loads. If the plan was calculated for
+     * other capacities then a new plan is calculated.
+     *
+     * @param plan
+     *            The existing plan
+     * @param shoppingList
+     *            The changed shopping list
+     * @return The updated load plan
+     */
+    public LoadPlan update(final LoadPlan plan, final ShoppingList shoppingList)
+    {
+        if (!plan.getCapacities().equals(this.capacities))
+            return plan(shoppingList);
+        final List<FreighterLoad> loads = new ArrayList<FreighterLoad>();
+        for (final FreighterLoad load: plan.getLoads())
+            loads.add(new FreighterLoad(load));
+        return update(loads, shoppingList);
+    }
+
+    /**
+     * Updates the loads to match the specified shopping list.
+     *
+     * @param loads
+     *            The loads to update
+     * @param shoppingList
+     *            The shopping list
+     * @return The load plan
+     */
+    private LoadPlan update(final List<FreighterLoad> loads,
+        final ShoppingList shoppingList)
+    {
+        // Collect the wanted units and the sectors they are bought in
+        final Map<Factory, Integer> wanted = new HashMap<Factory, Integer>();
+        final Map<Factory, Sector> sectors = new HashMap<Factory, Sector>();
+        final List<ShoppingListItem> unloadable =
+            new ArrayList<ShoppingListItem>();
+        int unloadableKits = 0;
+        for (final ShoppingListItem item: shoppingList.getItems())
+        {
+            final Factory factory = item.getFactory();
+            if (item.getQuantityLeft() <= 0) continue;
+            if (factory.getVolume() > this.maxCapacity)
+                unloadable.add(new ShoppingListItem(factory, item
+                    .getQuantityLeft(), item.getNearestManufacturer(), 0));
+            else
+            {
+                wanted.put(factory, item.getQuantityLeft());
+                sectors.put(factory, item.getNearestManufacturer());
+            }
+        }
+        final int kits = shoppingList.getKitQuantityLeft();
+        if (kits > 0)
+        {
+            if (Complex.KIT_VOLUME > this.maxCapacity)
+                unloadableKits = kits;
+            else
+            {
+                wanted.put(null, kits);
+                sectors.put(null, shoppingList.getNearestKitSellingSector());
+            }
+        }
+
+        // Remove units which are no longer wanted, smallest loads first
+        final Map<Factory, Integer> surplus = new HashMap<Factory, Integer>();
+        for (final Map.Entry<Factory, Integer> entry: wanted.entrySet())
+            surplus.put(entry.getKey(), -entry.getValue());
+        for (final FreighterLoad load: loads)
+        {
+            for (int i = 0; i < load.units.size(); i++)
+            {
+                final Factory unit = load.units.get(i);
+                if (wanted.containsKey(unit)
+                    && equals(load.sectors.get(i), sectors.get(unit)))
+                    surplus.put(unit, surplus.get(unit) + 1);
+            }
+        }
+        final List<FreighterLoad> sorted = new ArrayList<FreighterLoad>(loads);
+        Collections.sort(sorted, SMALLEST_FIRST);
+        for (final FreighterLoad load: sorted)
+        {
+            for (int i = load.units.size() - 1; i >= 0; i--)
+            {
+                final Factory unit = load.units.get(i);
+                if (!wanted.containsKey(unit)
+                    || !equals(load.sectors.get(i), sectors.get(unit)))
+                    load.remove(i);
+                else if (surplus.get(unit) > 0)
+                {
+                    load.remove(i);
+                    surplus.put(unit, surplus.get(unit) - 1);
+                }
+            }
+        }
+
+        // Insert the missing units, largest first
+        final List<Factory> missing = new ArrayList<Factory>();
+        for (final Map.Entry<Factory, Integer> entry: surplus.entrySet())
+            for (int i = entry.getValue(); i < 0; i++)
+                missing.add(entry.getKey());
+        Collections.sort(missing, LARGEST_UNIT_FIRST);
+        for (final Factory unit: missing)
+            insert(loads, unit, sectors.get(unit));
+        for (int i = loads.size() - 1; i >= 0; i--)
+            if (loads.get(i).units.isEmpty()) loads.remove(i);
+
+        improve(loads);
+        assignFreighters(loads);
+        return new LoadPlan(shoppingList, this.capacities, loads, unloadable,
+            unloadableKits);
+    }
+
+    /**
+     * Compares two sectors which may be null.
+     *
+     * @param a
+     *            The first sector
+     * @param b
+     *            The second sector
+     * @return True if the sectors are equal, false if not
+     */
+    private static boolean equals(final Sector a, final Sector b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns the best load for the specified unit. Loads already visiting
+     * the sector of the unit are preferred, then the load with the least
+     * free space left.
+     *
+     * @param loads
+     *            The loads
+     * @param free
+     *            The free space of the loads
+     * @param exclude
+     *            The index of a load to ignore or -1 for none
+     * @param unit
+     *            The factory or null for a kit
+     * @param sector
+     *            The sector the unit is bought in
+     * @return The index of the best load or -1 if the unit fits in none
+     */
+    private static int findLoad(final List<FreighterLoad> loads,
+        final int[] free, final int exclude, final Factory unit,
+        final Sector sector)
+    {
+        final int volume = getVolume(unit);
+        int best = -1;
+        boolean bestVisits = false;
+        for (int i = 0; i < loads.size(); i++)
+        {
+            if (i == exclude || free[i] < volume) continue;
+            final boolean visits = loads.get(i).containsSector(sector);
+            if (best < 0 || (visits && !bestVisits)
+                || (visits == bestVisits && free[i] < free[best]))
+            {
+                best = i;
+                bestVisits = visits;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the free space of the loads when packed into the largest
+     * freighter.
+     *
+     * @param loads
+     *            The loads
+     * @return The free space of each load
+     */
+    private int[] getFree(final List<FreighterLoad> loads)
+    {
+        final int[] free = new int[loads.size()];
+        for (int i = 0; i < free.length; i++)
+            free[i] = this.maxCapacity - loads.get(i).volume;
+        return free;
+    }
+
+    /**
+     * Inserts a unit into the best load or into a new load if it fits in
+     * none.
+     *
+     * @param loads
+     *            The loads
+     * @param unit
+     *            The factory or null for a kit
+     * @param sector
+     *            The sector the unit is bought in
+     */
+    private void insert(final List<FreighterLoad> loads, final Factory unit,
+        final Sector sector)
+    {
+        final int index = findLoad(loads, getFree(loads), -1, unit, sector);
+        if (index >= 0)
+            loads.get(index).add(unit, sector);
+        else
+        {
+            final FreighterLoad load = new FreighterLoad();
+            load.add(unit, sector);
+            loads.add(load);
+        }
+    }
+
+    /**
+     * Improves the packing until nothing changes anymore.
+     *
+     * @param loads
+     *            The loads to improve
+     */
+    private void improve(final List<FreighterLoad> loads)
+    {
+        boolean changed = true;
+        while (changed)
+            changed = eliminateLoad(loads) || consolidateSector(loads);
+    }
+
+    /**
+     * Tries to distribute the units of a load over the other loads so the
+     * load is no longer needed. The smallest loads are tried first.
+     *
+     * @param loads
+     *            The loads
+     * @return True if a load was eliminated, false if not
+     */
+    private boolean eliminateLoad(final List<FreighterLoad> loads)
+    {
+        final List<FreighterLoad> sorted = new ArrayList<FreighterLoad>(loads);
+        Collections.sort(sorted, SMALLEST_FIRST);
+        for (final FreighterLoad load: sorted)
+        {
+            final int index = loads.indexOf(load);
+            final int[] free = getFree(loads);
+            final int count = load.units.size();
+            final int[] targets = new int[count];
+            boolean fits = true;
+            for (int i = 0; i < count && fits; i++)
+            {
+                final Factory unit = load.units.get(i);
+                targets[i] = findLoad(loads, free, index, unit, load.sectors
+                    .get(i));
+                if (targets[i] < 0)
+                    fits = false;
+                else
+                    free[targets[i]] -= getVolume(unit);
+            }
+            if (!fits) continue;
+            for (int i = 0; i < count; i++)
+                loads.get(targets[i]).add(load.units.get(i), load.sectors
+                    .get(i));
+            loads.remove(index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tries to move all units of a sector from a load visiting several
+     * sectors into another load which already visits this sector.
+     *
+     * @param loads
+     *            The loads
+     * @return True if units were moved, false if not
+     */
+    private boolean consolidateSector(final List<FreighterLoad> loads)
+    {
+        final int[] free = getFree(loads);
+        for (int from = 0; from < loads.size(); from++)
+        {
+            final FreighterLoad load = loads.get(from);
+            final Set<Sector> loadSectors =
+                new LinkedHashSet<Sector>(load.sectors);
+            if (loadSectors.size() < 2) continue;
+            for (final Sector sector: loadSectors)
+            {
+                int volume = 0;
+                for (int i = 0; i < load.units.size(); i++)
+                    if (equals(load.sectors.get(i), sector))
+                        volume += getVolume(load.units.get(i));
+                for (int to = 0; to < loads.size(); to++)
+                {
+                    if (to == from || free[to] < volume) continue;
+                    final FreighterLoad target = loads.get(to);
+                    if (!target.containsSector(sector)) continue;
+                    for (int i = load.units.size() - 1; i >= 0; i--)
+                    {
+                        if (!equals(load.sectors.get(i), sector)) continue;
+                        target.add(load.units.get(i), sector);
+                        load.remove(i);
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Assigns the loads to the freighters. The largest loads are assigned
+     * first, each to the freighter with the fewest trips which can carry it
+     * (The smaller freighter on ties).
+     *
+     * @param loads
+     *            The loads
+     */
+    private void assignFreighters(final List<FreighterLoad> loads)
+    {
+        Collections.sort(loads, Collections.reverseOrder(SMALLEST_FIRST));
+        final int[] trips = new int[this.capacities.size()];
+        for (final FreighterLoad load: loads)
+        {
+            int best = -1;
+            for (int i = 0; i < trips.length; i++)
+            {
+                final int capacity = this.capacities.get(i);
+                if (capacity < load.volume) continue;
+                if (best < 0 || trips[i] < trips[best]
+                    || (trips[i] == trips[best]
+                        && capacity < this.capacities.get(best)))
+                    best = i;
+            }
+            load.freighter = best;
+            load.capacity = this.capacities.get(best);
+            trips[best]++;
+        }
+    }
+}
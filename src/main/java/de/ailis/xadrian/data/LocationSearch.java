@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Searches the best location for a complex by evaluating it in every sector
+ * of the game. In each sector the complex uses the suns of the sector and
+ * its mines are placed on the best asteroids of the sector. Sectors which
+ * don't have enough asteroids for all mines are not rated.
+ *
+ * The sectors are rated in parallel. Sectors with the same suns and the same
+ * asteroid yields result in the same complex so these are only calculated
+ * once.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LocationSearch
+{
+    /** The complex to evaluate (A private copy) */
+    private final Complex complex;
+
+    /** Cached profit and price per complex configuration */
+    private final ConcurrentMap<String, double[]> results =
+        new ConcurrentHashMap<String, double[]>();
+
+    /**
+     * Constructor. The complex is copied so it can be modified by the caller
+     * while the search is running.
+     *
+     * @param complex
+     *            The complex to evaluate
+     */
+    public LocationSearch(final Complex complex)
+    {
+        this.complex = complex.copy();
+    }
+
+    /**
+     * Rates the complex in all sectors of the game using a new executor with
+     * one thread per available processor.
+     *
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The sector ratings sorted by profit
+     * @throws InterruptedException
+     *             When calculation was interrupted
+     */
+    public List<SectorRating> rateSectors(final ProgressListener listener)
+        throws InterruptedException
+    {
+        final ExecutorService executor =
+            ThreadUtils.createCalculationExecutor("location-search");
+        try
+        {
+            return rateSectors(executor, listener);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Rates the complex in all sectors of the game using the specified
+     * executor.
+     *
+     * @param executor
+     *            The executor running the calculations
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The sector ratings sorted by profit
+     * @throws InterruptedException
+     *             When calculation was interrupted
+     */
+    public List<SectorRating> rateSectors(final ExecutorService executor,
+        final ProgressListener listener) throws InterruptedException
+    {
+        final CompletionService<SectorRating> service =
+            new ExecutorCompletionService<SectorRating>(executor);
+        final List<Sector> sectors = new ArrayList<Sector>(this.complex
+            .getGame().getSectorFactory().getSectors());
+        for (final Sector sector: sectors)
+        {
+            service.submit(new Callable<SectorRating>()
+            {
+                @Override
+                public SectorRating call()
+                {
+                    return rateSector(sector);
+                }
+            });
+        }
+
+        final int total = sectors.size();
+        final List<SectorRating> ratings = new ArrayList<SectorRating>(total);
+        for (int done = 1; done <= total; done++)
+        {
+            final SectorRating rating = ThreadUtils.take(service);
+            if (rating != null) ratings.add(rating);
+            if (listener != null) listener.progressChanged(done, total);
+        }
+        Collections.sort(ratings, SectorRating.BY_PROFIT);
+        return ratings;
+    }
+
+    /**
+     * Rates the complex in the specified sector.
+     *
+     * @param sector
+     *            The sector
+     * @return The sector rating or null if the complex can't be placed in
+     *         the sector because of missing asteroids
+     */
+    public SectorRating rateSector(final Sector sector)
+    {
+        // Place the mines without calculating the base complex yet
+        final Complex complex = this.complex.copy();
+        complex.setAddBaseComplex(false);
+        if (!complex.relocate(sector)) return null;
+
+        // Reuse the result of an already calculated complex with the same
+        // suns and yields or calculate it now
+        final String key = getConfigurationKey(complex);
+        double[] result = this.results.get(key);
+        if (result == null)
+        {
+            complex.setAddBaseComplex(this.complex.isAddBaseComplex());
+            complex.updateBaseComplex();
+            result = new double[] { complex.getProfit(),
+                complex.getTotalPrice() };
+            this.results.putIfAbsent(key, result);
+        }
+
+        final Sector kitSector = sector.getNearestKitSellingSector();
+        final int kitDistance = kitSector == null ? -1 : sector
+            .getDistance(kitSector);
+        return new SectorRating(sector, result[0], (long) result[1],
+            kitSector, kitDistance);
+    }
+
+    /**
+     * Returns a key describing the parts of the complex which depend on the
+     * sector (The suns and the yields of the mines).
+     *
+     * @param complex
+     *            The complex
+     * @return The configuration key
+     */
+    private static String getConfigurationKey(final Complex complex)
+    {
+        final StringBuilder key = new StringBuilder();
+        key.append(complex.getSuns().getPercent());
+        for (final ComplexFactory complexFactory: complex.getFactories())
+        {
+            if (!complexFactory.getFactory().isMine()) continue;
+            key.append(':').append(complexFactory.getYields());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the top sectors from the specified ratings.
+     *
+     * @param ratings
+     *            The sector ratings
+     * @param comparator
+     *            The comparator defining the order of the ratings. See
+     *            the comparators in {@link SectorRating}
+     * @param limit
+     *            The maximum number of returned ratings
+     * @return The top ratings
+     */
+    public static List<SectorRating> getTopSectors(
+        final List<SectorRating> ratings,
+        final Comparator<SectorRating> comparator, final int limit)
+    {
+        final List<SectorRating> result = new ArrayList<SectorRating>(ratings);
+        Collections.sort(result, comparator);
+        return result.subList(0, Math.min(limit, result.size()));
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects the asteroids to build mines on to produce a specific amount of
+ * a mineral per hour. All mines of one type cost the same so the cheapest
+ * selection is the one with the fewest mines. Among the selections with the
+ * fewest mines the one with the least overproduction is chosen.
+ *
+ * The production of each asteroid is calculated with the same cycle formulas
+ * used by {@link Factory#getProductPerHour(Sun, int)}.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class MineSolver
+{
+    /** Tolerance used when comparing production rates */
+    private static final double EPSILON = 1e-9;
+
+    /** The mine type */
+    private final Factory mine;
+
+    /** The suns */
+    private final Sun suns;
+
+    /** The candidate asteroids sorted by production (highest first) */
+    private Asteroid[] asteroids;
+
+    /** The production rates of the candidate asteroids */
+    private double[] rates;
+
+    /** Sum of the rates of all candidates from the specified index on */
+    private double[] suffixSums;
+
+    /** The target rate of the current search */
+    private double target;
+
+    /** The indices of the asteroids currently being evaluated */
+    private int[] current;
+
+    /** The indices of the best asteroids found so far */
+    private int[] best;
+
+    /** The production of the best selection found so far */
+    private double bestSum;
+
+    /**
+     * Constructor
+     *
+     * @param mine
+     *            The mine type. Must be a mine
+     * @param suns
+     *            The suns
+     */
+    public MineSolver(final Factory mine, final Sun suns)
+    {
+        if (mine == null || !mine.isMine())
+            throw new IllegalArgumentException("mine must be a mine");
+        if (suns == null)
+            throw new IllegalArgumentException("suns must be set");
+        this.mine = mine;
+        this.suns = suns;
+    }
+
+    /**
+     * Returns the production per hour of a mine on the specified asteroid.
+     *
+     * @param asteroid
+     *            The asteroid
+     * @return The production per hour
+     */
+    public double getRate(final Asteroid asteroid)
+    {
+        return this.mine.getProductPerHour(this.suns, asteroid.getYield())
+            .getQuantity();
+    }
+
+    /**
+     * Selects the asteroids of the specified sector which produce at least
+     * the specified rate with the fewest mines and the least overproduction.
+     *
+     * @param sector
+     *            The sector
+     * @param rate
+     *            The needed production per hour
+     * @return The selected asteroids sorted by production (highest first).
+     *         If the sector can't produce the needed rate then all usable
+     *         asteroids are returned
+     */
+    public List<Asteroid> solve(final Sector sector, final double rate)
+    {
+        return solve(Arrays.asList(sector.getAsteroids()), rate);
+    }
+
+    /**
+     * Selects the asteroids which produce at least the specified rate with
+     * the fewest mines and the least overproduction. Asteroids which can't be
+     * mined by the mine type are ignored.
+     *
+     * @param candidates
+     *            The available asteroids
+     * @param rate
+     *            The needed production per hour
+     * @return The selected asteroids sorted by production (highest first).
+     *         If the asteroids can't produce the needed rate then all usable
+     *         asteroids are returned
+     */
+    public synchronized List<Asteroid> solve(final List<Asteroid> candidates,
+        final double rate)
+    {
+        prepare(candidates);
+        final int count = this.asteroids.length;
+        if (rate <= EPSILON || count == 0) return new ArrayList<Asteroid>();
+
+        // Use all asteroids if the target can't be reached
+        if (this.suffixSums[0] < rate - EPSILON)
+            return Arrays.asList(this.asteroids.clone());
+
+        // The fewest number of mines is reached by using the best asteroids
+        int mines = 0;
+        double sum = 0;
+        while (sum < rate - EPSILON)
+            sum += this.rates[mines++];
+
+        // Search the combination of this many asteroids with the least
+        // overproduction
+        this.target = rate;
+        this.current = new int[mines];
+        this.best = new int[mines];
+        for (int i = 0; i < mines; i++)
+            this.best[i] = i;
+        this.bestSum = sum;
+        search(0, 0, 0);
+
+        final List<Asteroid> result = new ArrayList<Asteroid>(mines);
+        for (final int index: this.best)
+            result.add(this.asteroids[index]);
+        return result;
+    }
+
+    /**
+     * Filters and sorts the candidate asteroids and calculates their rates.
+     *
+     * @param candidates
+     *            The available asteroids
+     */
+    private void prepare(final List<Asteroid> candidates)
+    {
+        final Ware ware = this.mine.getProduct().getWare();
+        final List<Asteroid> usable = new ArrayList<Asteroid>();
+        for (final Asteroid asteroid: candidates)
+            if (asteroid.getWare().equals(ware)) usable.add(asteroid);
+
+        // Sort by the real production because the cycle formulas are not
+        // strictly monotonic in the yield
+        Collections.sort(usable, new Comparator<Asteroid>()
+        {
+            @Override
+            public int compare(final Asteroid a, final Asteroid b)
+            {
+                final int result = Double.compare(getRate(b), getRate(a));
+                if (result != 0) return result;
+                return b.getYield() - a.getYield();
+            }
+        });
+
+        final int count = usable.size();
+        this.asteroids = usable.toArray(new Asteroid[count]);
+        this.rates = new double[count];
+        for (int i = 0; i < count; i++)
+            this.rates[i] = getRate(this.asteroids[i]);
+
+        this.suffixSums = new double[count + 1];
+        for (int i = count - 1; i >= 0; i--)
+            this.suffixSums[i] = this.suffixSums[i + 1] + this.rates[i];
+    }
+
+    /**
+     * Recursive branch and bound search for the combination with the least
+     * overproduction.
+     *
+     * @param depth
+     *            The number of already chosen asteroids
+     * @param start
+     *            The index of the first asteroid which may be chosen next
+     * @param sum
+     *            The production of the already chosen asteroids
+     */
+    private void search(final int depth, final int start, final double sum)
+    {
+        final int mines = this.current.length;
+        final int remaining = mines - depth;
+        final int count = this.rates.length;
+        if (remaining == 0)
+        {
+            if (sum >= this.target - EPSILON && sum < this.bestSum - EPSILON)
+            {
+                this.bestSum = sum;
+                System.arraycopy(this.current, 0, this.best, 0, mines);
+            }
+            return;
+        }
+
+        // The best solution is already exact
+        if (this.bestSum <= this.target + EPSILON) return;
+
+        for (int i = start; i <= count - remaining; i++)
+        {
+            // Skip asteroids with the same rate as the previous alternative
+            // because they result in the same sums
+            if (i > start && this.rates[i] == this.rates[i - 1]) continue;
+
+            // The highest possible sum of this branch is reached with the
+            // next asteroids. Because the rates are sorted the following
+            // branches can't reach the target either.
+            double max = sum;
+            for (int j = i; j < i + remaining; j++)
+                max += this.rates[j];
+            if (max < this.target - EPSILON) return;
+
+            // The lowest possible sum is reached with the last asteroids.
+            // Take them directly when they already reach the target.
+            this.current[depth] = i;
+            if (remaining > 1)
+            {
+                final double min = sum + this.rates[i]
+                    + this.suffixSums[count - remaining + 1];
+                if (min >= this.target - EPSILON)
+                {
+                    if (min < this.bestSum - EPSILON)
+                    {
+                        this.bestSum = min;
+                        System.arraycopy(this.current, 0, this.best, 0,
+                            depth + 1);
+                        for (int j = 1; j < remaining; j++)
+                            this.best[depth + j] = count - remaining + j;
+                    }
+                    continue;
+                }
+            }
+            search(depth + 1, i + 1, sum + this.rates[i]);
+        }
+    }
+}
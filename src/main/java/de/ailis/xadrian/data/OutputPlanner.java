@@ -0,0 +1,591 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.ailis.xadrian.data.factories.FactoryFactory;
+
+/**
+ * Plans the cheapest complex producing specific amounts of wares per hour.
+ * All needed intermediate products are produced by the complex itself. When
+ * a sector is set then the minerals are mined on the asteroids of this
+ * sector. Minerals which can't be mined (or all minerals when no sector is
+ * set) remain as resources which must be bought.
+ *
+ * The planner first calculates the full price of one unit per hour of every
+ * ware. This is the price of the cheapest factory producing it plus the
+ * prices of the units per hour of all its resources. Because of cyclic
+ * dependencies (Energy cells need crystals which need energy cells) this is
+ * solved as a fixed point iteration. With these prices the cheapest mix of
+ * factory sizes is calculated for the need of every ware and the needs are
+ * propagated to the resources until the plan is stable.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class OutputPlanner
+{
+    /** Tolerance used when comparing production rates */
+    private static final double EPSILON = 1e-6;
+
+    /** Maximum number of iterations for the price and demand calculation */
+    private static final int MAX_ITERATIONS = 1000;
+
+    /** The yield used to estimate the unit price of minerals */
+    private static final int MINE_YIELD = 25;
+
+    /** The game */
+    private final Game game;
+
+    /** The suns */
+    private Sun suns;
+
+    /** The sector. Null if none */
+    private Sector sector;
+
+    /** The targets (Produced units per hour) */
+    private final SortedMap<Ware, Double> targets = new TreeMap<Ware, Double>();
+
+    /** The full price of one unit per hour of each ware */
+    private Map<Ware, Double> unitPrices;
+
+    /** The planned factories per ware */
+    private Map<Ware, List<ComplexFactory>> plan;
+
+    /**
+     * Constructor
+     *
+     * @param game
+     *            The game
+     */
+    public OutputPlanner(final Game game)
+    {
+        if (game == null) throw new IllegalArgumentException("game must be set");
+        this.game = game;
+        this.suns = game.getSunFactory().getDefaultSun();
+    }
+
+    /**
+     * Sets the suns. Only used when no sector is set.
+     *
+     * @param suns
+     *            The suns to set. Must not be null
+     */
+    public void setSuns(final Sun suns)
+    {
+        if (suns == null) throw new IllegalArgumentException("suns must be set");
+        this.suns = suns;
+    }
+
+    /**
+     * Returns the suns used for planning.
+     *
+     * @return The suns
+     */
+    public Sun getSuns()
+    {
+        if (this.sector != null) return this.sector.getSuns();
+        return this.suns;
+    }
+
+    /**
+     * Sets the sector in which the complex is built. Minerals are mined on
+     * the asteroids of this sector.
+     *
+     * @param sector
+     *            The sector to set. Null for none
+     */
+    public void setSector(final Sector sector)
+    {
+        this.sector = sector;
+    }
+
+    /**
+     * Returns the sector in which the complex is built.
+     *
+     * @return The sector. Null if none
+     */
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Sets the number of units per hour the complex must produce of the
+     * specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @param quantity
+     *            The units per hour. Zero or less removes the target
+     */
+    public void setTarget(final Ware ware, final double quantity)
+    {
+        if (quantity <= 0)
+            this.targets.remove(ware);
+        else
+            this.targets.put(ware, quantity);
+    }
+
+    /**
+     * Returns the targets.
+     *
+     * @return The targets (Units per hour per ware)
+     */
+    public SortedMap<Ware, Double> getTargets()
+    {
+        return Collections.unmodifiableSortedMap(this.targets);
+    }
+
+    /**
+     * Returns the wares which can be planned. These are all wares produced by
+     * factories of not ignored races.
+     *
+     * @return The plannable wares
+     */
+    public List<Ware> getWares()
+    {
+        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+        final List<Ware> wares = new ArrayList<Ware>();
+        for (final Ware ware: this.game.getWareFactory().getWares())
+            if (!factoryFactory.getFactories(ware).isEmpty()) wares.add(ware);
+        return wares;
+    }
+
+    /**
+     * Plans the cheapest complex producing the targets. The complex contains
+     * all factories as normal (not automatically added) factories so its
+     * template code describes the complete complex.
+     *
+     * @return The planned complex
+     */
+    public Complex plan()
+    {
+        final Sun suns = getSuns();
+        final Map<Ware, List<Factory>> producers = getProducers();
+        calculateUnitPrices(producers, suns);
+
+        // Plan every ware for its exact demand until the plan is stable. If
+        // mixes keep alternating then only the uncovered demands are planned
+        // again so the result is complete anyway.
+        this.plan = new HashMap<Ware, List<ComplexFactory>>();
+        if (!updatePlan(producers, suns, false))
+            updatePlan(producers, suns, true);
+
+        final Complex complex = new Complex(this.game);
+        if (this.sector != null)
+            complex.setSector(this.sector);
+        else
+            complex.setSuns(this.suns);
+        for (final List<ComplexFactory> factories: this.plan.values())
+        {
+            for (final ComplexFactory factory: factories)
+            {
+                if (factory.getFactory().isMine())
+                    complex.addFactory(factory.getFactory(), factory
+                        .getYields());
+                else
+                    complex.addFactory(factory.getFactory(), factory
+                        .getQuantity());
+            }
+        }
+        return complex;
+    }
+
+    /**
+     * Plans the factories for the current demand of every ware and repeats
+     * this until the plan doesn't change anymore.
+     *
+     * @param producers
+     *            The factories per ware
+     * @param suns
+     *            The suns
+     * @param uncoveredOnly
+     *            True to only plan wares which demand is not covered by the
+     *            current plan. False to plan all wares for their exact demand
+     * @return True if the plan is stable, false if the maximum number of
+     *         iterations was reached
+     */
+    private boolean updatePlan(final Map<Ware, List<Factory>> producers,
+        final Sun suns, final boolean uncoveredOnly)
+    {
+        for (int i = 0; i < MAX_ITERATIONS; i++)
+        {
+            boolean changed = false;
+            final Map<Ware, Double> demands = getDemand(suns);
+            if (!uncoveredOnly
+                && this.plan.keySet().retainAll(demands.keySet()))
+                changed = true;
+            for (final Map.Entry<Ware, Double> entry: demands.entrySet())
+            {
+                final Ware ware = entry.getKey();
+                final double demand = entry.getValue();
+                if (uncoveredOnly && getSupply(ware, suns) >= demand - EPSILON)
+                    continue;
+                final List<Factory> factories = producers.get(ware);
+                if (factories == null) continue;
+                final List<ComplexFactory> planned = ware.isMineral()
+                    ? planMines(factories, demand, suns)
+                    : planFactories(factories, demand, suns);
+                if (planned.equals(this.plan.get(ware))) continue;
+                this.plan.put(ware, planned);
+                changed = true;
+            }
+            if (!changed) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the full price of one unit per hour of the specified ware as
+     * calculated by the last {@link #plan()} call.
+     *
+     * @param ware
+     *            The ware
+     * @return The unit price. 0 if the ware can't be produced
+     */
+    public double getUnitPrice(final Ware ware)
+    {
+        if (this.unitPrices == null)
+            throw new IllegalStateException("plan() must be called first");
+        final Double price = this.unitPrices.get(ware);
+        return price == null ? 0 : price;
+    }
+
+    /**
+     * Returns the factories of not ignored races producing each ware. Mines
+     * are only included when a sector is set.
+     *
+     * @return The factories per ware
+     */
+    private Map<Ware, List<Factory>> getProducers()
+    {
+        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+        final Map<Ware, List<Factory>> producers =
+            new HashMap<Ware, List<Factory>>();
+        for (final Ware ware: this.game.getWareFactory().getWares())
+        {
+            final List<Factory> factories = new ArrayList<Factory>();
+            for (final Factory factory: factoryFactory.getFactories(ware))
+                if (!factory.isMine() || this.sector != null)
+                    factories.add(factory);
+            if (!factories.isEmpty()) producers.put(ware, factories);
+        }
+        return producers;
+    }
+
+    /**
+     * Calculates the full price of one unit per hour of every ware.
+     *
+     * @param producers
+     *            The factories per ware
+     * @param suns
+     *            The suns
+     */
+    private void calculateUnitPrices(final Map<Ware, List<Factory>> producers,
+        final Sun suns)
+    {
+        // Start with free wares and raise the prices until they are stable.
+        // The prices grow monotonically and converge because every cycle in
+        // the production chain consumes less than it produces.
+        this.unitPrices = new HashMap<Ware, Double>();
+        for (int i = 0; i < MAX_ITERATIONS; i++)
+        {
+            boolean changed = false;
+            for (final Map.Entry<Ware, List<Factory>> entry: producers
+                .entrySet())
+            {
+                double best = Double.MAX_VALUE;
+                for (final Factory factory: entry.getValue())
+                {
+                    final int yield = factory.isMine() ? MINE_YIELD : 0;
+                    final double rate = factory.getProductPerHour(suns, yield)
+                        .getQuantity();
+                    if (rate <= 0) continue;
+                    best = Math.min(best, getFullPrice(factory, suns, yield)
+                        / rate);
+                }
+                if (best == Double.MAX_VALUE) continue;
+                final Double old = this.unitPrices.get(entry.getKey());
+                if (old == null || Math.abs(best - old) > old * 1e-9)
+                {
+                    this.unitPrices.put(entry.getKey(), best);
+                    changed = true;
+                }
+            }
+            if (!changed) break;
+        }
+    }
+
+    /**
+     * Returns the full price of a single factory. This is the price of the
+     * factory, the construction kit connecting it to the complex and the
+     * unit prices of the resources it needs per hour.
+     *
+     * @param factory
+     *            The factory
+     * @param suns
+     *            The suns
+     * @param yield
+     *            The yield (for mines)
+     * @return The full price
+     */
+    private double getFullPrice(final Factory factory, final Sun suns,
+        final int yield)
+    {
+        double price = factory.getPrice() + Complex.KIT_PRICE;
+        for (final Product resource: factory.getResourcesPerHour(suns, yield))
+        {
+            final Double unitPrice = this.unitPrices.get(resource.getWare());
+            if (unitPrice != null) price += resource.getQuantity() * unitPrice;
+        }
+        return price;
+    }
+
+    /**
+     * Returns the number of units per hour of each ware needed by the targets
+     * and the currently planned factories.
+     *
+     * @param suns
+     *            The suns
+     * @return The demand per ware
+     */
+    private SortedMap<Ware, Double> getDemand(final Sun suns)
+    {
+        final SortedMap<Ware, Double> demand =
+            new TreeMap<Ware, Double>(this.targets);
+        for (final List<ComplexFactory> factories: this.plan.values())
+        {
+            for (final ComplexFactory factory: factories)
+            {
+                for (final Product resource: factory.getResourcesPerHour(suns))
+                {
+                    final Ware ware = resource.getWare();
+                    final Double old = demand.get(ware);
+                    demand.put(ware, (old == null ? 0 : old)
+                        + resource.getQuantity());
+                }
+            }
+        }
+        return demand;
+    }
+
+    /**
+     * Returns the number of units per hour of the specified ware produced by
+     * the currently planned factories.
+     *
+     * @param ware
+     *            The ware
+     * @param suns
+     *            The suns
+     * @return The supply
+     */
+    private double getSupply(final Ware ware, final Sun suns)
+    {
+        final List<ComplexFactory> factories = this.plan.get(ware);
+        if (factories == null) return 0;
+        double supply = 0;
+        for (final ComplexFactory factory: factories)
+            supply += factory.getProductPerHour(suns).getQuantity();
+        return supply;
+    }
+
+    /**
+     * Plans the cheapest mix of factory sizes producing the specified demand.
+     *
+     * @param factories
+     *            The factories producing the ware
+     * @param demand
+     *            The needed units per hour
+     * @param suns
+     *            The suns
+     * @return The planned factories
+     */
+    private List<ComplexFactory> planFactories(final List<Factory> factories,
+        final double demand, final Sun suns)
+    {
+        // Use the factory with the lowest full price per unit for each size
+        final Map<FactorySize, Factory> bySize =
+            new TreeMap<FactorySize, Factory>();
+        final Map<Factory, Double> rates = new HashMap<Factory, Double>();
+        final Map<Factory, Double> prices = new HashMap<Factory, Double>();
+        for (final Factory factory: factories)
+        {
+            final double rate = factory.getProductPerHour(suns, 0)
+                .getQuantity();
+            if (rate <= 0) continue;
+            rates.put(factory, rate);
+            prices.put(factory, getFullPrice(factory, suns, 0));
+            final Factory current = bySize.get(factory.getSize());
+            if (current == null
+                || prices.get(factory) / rate < prices.get(current)
+                    / rates.get(current))
+                bySize.put(factory.getSize(), factory);
+        }
+
+        // Sort the options by rate (highest first) and search the mix
+        final List<Factory> options = new ArrayList<Factory>(bySize.values());
+        Collections.reverse(options);
+        final int count = options.size();
+        final double[] optionRates = new double[count];
+        final double[] optionPrices = new double[count];
+        final double[] minUnitPrices = new double[count + 1];
+        minUnitPrices[count] = Double.MAX_VALUE;
+        for (int i = count - 1; i >= 0; i--)
+        {
+            final Factory factory = options.get(i);
+            optionRates[i] = rates.get(factory);
+            optionPrices[i] = prices.get(factory);
+            minUnitPrices[i] = Math.min(minUnitPrices[i + 1], optionPrices[i]
+                / optionRates[i]);
+        }
+        final MixSearch search = new MixSearch(optionRates, optionPrices,
+            minUnitPrices);
+        search.search(0, demand, 0);
+
+        final List<ComplexFactory> planned = new ArrayList<ComplexFactory>();
+        for (int i = 0; i < count; i++)
+            if (search.best[i] > 0)
+                planned.add(new ComplexFactory(this.game, options.get(i),
+                    search.best[i], 0));
+        return planned;
+    }
+
+    /**
+     * Branch and bound search for the cheapest mix of factory sizes. The
+     * last size is used to fill up the remaining demand.
+     */
+    private static class MixSearch
+    {
+        /** The rates of the options */
+        private final double[] rates;
+
+        /** The full prices of the options */
+        private final double[] prices;
+
+        /** The lowest unit price of the options from the index on */
+        private final double[] minUnitPrices;
+
+        /** The currently evaluated quantities */
+        private final int[] current;
+
+        /** The best quantities found so far */
+        final int[] best;
+
+        /** The price of the best quantities */
+        private double bestPrice = Double.MAX_VALUE;
+
+        /**
+         * Constructor
+         *
+         * @param rates
+         *            The rates of the options (Highest first)
+         * @param prices
+         *            The full prices of the options
+         * @param minUnitPrices
+         *            The lowest unit price of the options from the index on
+         */
+        MixSearch(final double[] rates, final double[] prices,
+            final double[] minUnitPrices)
+        {
+            this.rates = rates;
+            this.prices = prices;
+            this.minUnitPrices = minUnitPrices;
+            this.current = new int[rates.length];
+            this.best = new int[rates.length];
+        }
+
+        /**
+         * Searches the quantities of the options from the specified index on.
+         *
+         * @param index
+         *            The option index
+         * @param remaining
+         *            The remaining demand
+         * @param price
+         *            The price of the already chosen quantities
+         */
+        void search(final int index, final double remaining, final double price)
+        {
+            final int last = this.rates.length - 1;
+            final int max = (int) Math.max(0,
+                Math.ceil((remaining - EPSILON) / this.rates[index]));
+            if (index == last)
+            {
+                final double total = price + max * this.prices[index];
+                if (total < this.bestPrice)
+                {
+                    this.bestPrice = total;
+                    this.current[index] = max;
+                    System.arraycopy(this.current, 0, this.best, 0,
+                        this.current.length);
+                }
+                return;
+            }
+            for (int quantity = max; quantity >= 0; quantity--)
+            {
+                final double newPrice = price + quantity * this.prices[index];
+                final double newRemaining = remaining - quantity
+                    * this.rates[index];
+                final double bound = newPrice + Math.max(0, newRemaining)
+                    * this.minUnitPrices[index + 1];
+                if (bound >= this.bestPrice) continue;
+                this.current[index] = quantity;
+                search(index + 1, newRemaining, newPrice);
+            }
+        }
+    }
+
+    /**
+     * Plans the mines producing the specified demand on the asteroids of the
+     * sector. The mine type with the lowest full price is used. Mine types
+     * reaching the demand are preferred.
+     *
+     * @param mines
+     *            The mines producing the mineral
+     * @param demand
+     *            The needed units per hour
+     * @param suns
+     *            The suns
+     * @return The planned mines
+     */
+    private List<ComplexFactory> planMines(final List<Factory> mines,
+        final double demand, final Sun suns)
+    {
+        List<ComplexFactory> best = new ArrayList<ComplexFactory>();
+        boolean bestReached = false;
+        double bestPrice = Double.MAX_VALUE;
+        for (final Factory mine: mines)
+        {
+            final MineSolver solver = new MineSolver(mine, suns);
+            final List<Integer> yields = new ArrayList<Integer>();
+            double price = 0;
+            double supply = 0;
+            for (final Asteroid asteroid: solver.solve(this.sector, demand))
+            {
+                yields.add(asteroid.getYield());
+                price += getFullPrice(mine, suns, asteroid.getYield());
+                supply += solver.getRate(asteroid);
+            }
+            if (yields.isEmpty()) continue;
+            final boolean reached = supply >= demand - EPSILON;
+            if ((reached && !bestReached)
+                || (reached == bestReached && price < bestPrice))
+            {
+                best = Collections.singletonList(new ComplexFactory(
+                    this.game, mine, yields));
+                bestReached = reached;
+                bestPrice = price;
+            }
+        }
+        return best;
+    }
+}
@@ -83,8 +83,39 @@ public class PlayerSector extends Sector
     @Override
     public Asteroid[] getAsteroids()
     {
-        final int playerSector = Config.getInstance().getX3TCPlayerSector();
-        return this.asteroids[playerSector];
+        return getAsteroids(getVariant());
+    }
+
+    /**
+     * Returns the asteroids of the specified player sector variant.
+     *
+     * @param variant
+     *            The player sector variant
+     * @return The array with asteroids
+     */
+    public Asteroid[] getAsteroids(final int variant)
+    {
+        return this.asteroids[variant].clone();
+    }
+
+    /**
+     * Returns the number of player sector variants.
+     *
+     * @return The number of variants
+     */
+    public int getVariantCount()
+    {
+        return this.asteroids.length;
+    }
+
+    /**
+     * Returns the player sector variant which is currently configured.
+     *
+     * @return The current variant
+     */
+    public int getVariant()
+    {
+        return Config.getInstance().getX3TCPlayerSector();
     }
     
     /**
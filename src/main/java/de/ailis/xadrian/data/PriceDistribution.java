@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+/**
+ * Distributions of ware prices between the minimum and maximum price of a
+ * ware.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public enum PriceDistribution
+{
+    /** Every price between minimum and maximum is equally likely */
+    UNIFORM,
+
+    /** Prices near the average price are more likely, linear falloff */
+    TRIANGULAR,
+
+    /**
+     * Normal distribution around the average price. The range between
+     * minimum and maximum price covers three standard deviations on each
+     * side, prices outside the range are clamped.
+     */
+    NORMAL;
+
+    /**
+     * Returns the price for the specified standard normal variate.
+     *
+     * @param z
+     *            The standard normal variate
+     * @param min
+     *            The minimum price
+     * @param avg
+     *            The average price
+     * @param max
+     *            The maximum price
+     * @return The price
+     */
+    double getPrice(final double z, final double min, final double avg,
+        final double max)
+    {
+        final double range = max - min;
+        if (range <= 0) return avg;
+        switch (this)
+        {
+            case UNIFORM:
+                return min + cdf(z) * range;
+
+            case TRIANGULAR:
+                final double u = cdf(z);
+                final double mode = Math.max(min, Math.min(max, avg));
+                if (u * range < mode - min)
+                    return min + Math.sqrt(u * range * (mode - min));
+                return max - Math.sqrt((1 - u) * range * (max - mode));
+
+            default:
+                return Math.max(min, Math.min(max, avg + z * range / 6));
+        }
+    }
+
+    /**
+     * Returns the cumulative standard normal distribution function. Uses the
+     * approximation 26.2.17 of Abramowitz and Stegun (Absolute error below
+     * 7.5E-8).
+     *
+     * @param z
+     *            The standard normal variate
+     * @return The probability (0.0 - 1.0)
+     */
+    static double cdf(final double z)
+    {
+        final double x = Math.abs(z);
+        final double t = 1 / (1 + 0.2316419 * x);
+        final double poly = t * (0.319381530 + t * (-0.356563782 + t
+            * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+        final double upper = 0.3989422804014327 * Math.exp(-x * x / 2) * poly;
+        return z >= 0 ? 1 - upper : upper;
+    }
+}
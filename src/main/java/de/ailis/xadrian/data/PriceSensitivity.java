@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The price sensitivity of the profit of a complex. Calculates the profit
+ * contribution, the break-even price, the derivative and the elasticity of
+ * the profit for every ware the complex trades. The production of a complex
+ * doesn't depend on prices so the profit is linear in the prices and all
+ * values are calculated from a single pass over the complex wares.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class PriceSensitivity
+{
+    /** The sensitivities of the traded wares */
+    private final List<WareSensitivity> wares;
+
+    /** The total profit per hour */
+    private final double profit;
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to analyze
+     */
+    public PriceSensitivity(final Complex complex)
+    {
+        final List<ComplexWare> traded = new ArrayList<ComplexWare>();
+        double profit = 0;
+        for (final ComplexWare complexWare: complex.getWares())
+        {
+            if (complexWare.getSurplus() == 0) continue;
+            traded.add(complexWare);
+            profit += complexWare.getProfit();
+        }
+        final List<WareSensitivity> wares =
+            new ArrayList<WareSensitivity>(traded.size());
+        for (final ComplexWare complexWare: traded)
+            wares.add(new WareSensitivity(complexWare.getWare(), complexWare
+                .getSurplus(), complexWare.getPrice(), profit));
+        this.wares = Collections.unmodifiableList(wares);
+        this.profit = profit;
+    }
+
+    /**
+     * Returns the sensitivities of all wares which are bought or sold by the
+     * complex.
+     *
+     * @return The ware sensitivities
+     */
+    public List<WareSensitivity> getWares()
+    {
+        return this.wares;
+    }
+
+    /**
+     * Returns the total profit per hour.
+     *
+     * @return The profit per hour
+     */
+    public double getProfit()
+    {
+        return this.profit;
+    }
+
+    /**
+     * Returns the ware to whose price the profit is most sensitive.
+     *
+     * @return The ware with the highest absolute elasticity. Null if the
+     *         complex trades nothing
+     */
+    public WareSensitivity getMostSensitive()
+    {
+        WareSensitivity best = null;
+        for (final WareSensitivity ware: this.wares)
+            if (best == null
+                || Math.abs(ware.getContribution()) > Math.abs(best
+                    .getContribution())) best = ware;
+        return best;
+    }
+}
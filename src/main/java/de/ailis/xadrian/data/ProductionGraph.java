@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The production dependencies of all wares of a game. A ware depends on the
+ * resources of all factories producing it. The graph is built once from all
+ * factories of the game (Including the ones of ignored races) so it can be
+ * used to skip wares and factories which can't be affected by a calculation.
+ *
+ * Wares are identified by ordinals (Their index in the sorted wares of the
+ * ware factory) so sets of wares are stored as bit sets. The graph provides
+ * a topological order (Resources before products), the transitive closure of
+ * the resources and consumers of each ware and the production cycles (Like
+ * energy cells and crystals which need each other).
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProductionGraph
+{
+    /** The wares by ordinal */
+    private final Ware[] wares;
+
+    /** The ware ordinals */
+    private final Map<Ware, Integer> ordinals = new HashMap<Ware, Integer>();
+
+    /** The wares produced or consumed by each factory */
+    private final Map<Factory, BitSet> factoryWares =
+        new HashMap<Factory, BitSet>();
+
+    /** The direct resources of each ware */
+    private final BitSet[] resources;
+
+    /** All direct and indirect resources of each ware */
+    private final BitSet[] allResources;
+
+    /** All direct and indirect consumers of each ware */
+    private final BitSet[] allConsumers;
+
+    /** The position of each ware in the topological order */
+    private final int[] positions;
+
+    /** The wares in topological order (Resources before products) */
+    private final List<Ware> order;
+
+    /** The production cycles */
+    private final List<List<Ware>> cycles = new ArrayList<List<Ware>>();
+
+    /** Tarjan search state: Discovery index of each ware. -1 if unvisited */
+    private int[] indices;
+
+    /** Tarjan search state: Lowest reachable discovery index */
+    private int[] lowLinks;
+
+    /** Tarjan search state: The stack of visited wares */
+    private int[] stack;
+
+    /** Tarjan search state: Whether a ware is on the stack */
+    private boolean[] onStack;
+
+    /** Tarjan search state: The stack size */
+    private int stackSize;
+
+    /** Tarjan search state: The next discovery index */
+    private int nextIndex;
+
+    /**
+     * Constructor
+     *
+     * @param game
+     *            The game to build the graph for
+     */
+    public ProductionGraph(final Game game)
+    {
+        final List<Ware> wareList = new ArrayList<Ware>(game.getWareFactory()
+            .getWares());
+        final int count = wareList.size();
+        this.wares = wareList.toArray(new Ware[count]);
+        for (int i = 0; i < count; i++)
+            this.ordinals.put(this.wares[i], i);
+
+        // Collect the direct dependencies
+        this.resources = new BitSet[count];
+        for (int i = 0; i < count; i++)
+            this.resources[i] = new BitSet(count);
+        for (final Factory factory: game.getFactoryFactory().getFactories())
+        {
+            final BitSet bits = new BitSet(count);
+            final int product = getOrdinal(factory.getProduct().getWare());
+            bits.set(product);
+            for (final Product resource: factory.getResources())
+            {
+                final int ordinal = getOrdinal(resource.getWare());
+                bits.set(ordinal);
+                this.resources[product].set(ordinal);
+            }
+            this.factoryWares.put(factory, bits);
+        }
+
+        // Find the strongly connected components. They are found in reverse
+        // topological order of the dependency edges so resources come first
+        // and the closures can be calculated in the same pass.
+        this.allResources = new BitSet[count];
+        this.positions = new int[count];
+        final List<Ware> order = new ArrayList<Ware>(count);
+        this.indices = new int[count];
+        this.lowLinks = new int[count];
+        this.stack = new int[count];
+        this.onStack = new boolean[count];
+        Arrays.fill(this.indices, -1);
+        for (int i = 0; i < count; i++)
+            if (this.indices[i] < 0) connect(i, order);
+        this.order = Collections.unmodifiableList(order);
+        this.indices = null;
+        this.lowLinks = null;
+        this.stack = null;
+        this.onStack = null;
+
+        // Transpose the resource closures to get the consumer closures
+        this.allConsumers = new BitSet[count];
+        for (int i = 0; i < count; i++)
+            this.allConsumers[i] = new BitSet(count);
+        for (int i = 0; i < count; i++)
+        {
+            final BitSet bits = this.allResources[i];
+            for (int j = bits.nextSetBit(0); j >= 0; j = bits.nextSetBit(j + 1))
+                this.allConsumers[j].set(i);
+        }
+    }
+
+    /**
+     * Recursive part of Tarjan's algorithm for strongly connected components.
+     *
+     * @param ware
+     *            The ware ordinal to visit
+     * @param order
+     *            The list to append the wares to in topological order
+     */
+    private void connect(final int ware, final List<Ware> order)
+    {
+        this.indices[ware] = this.lowLinks[ware] = this.nextIndex++;
+        this.stack[this.stackSize++] = ware;
+        this.onStack[ware] = true;
+
+        final BitSet edges = this.resources[ware];
+        for (int i = edges.nextSetBit(0); i >= 0; i = edges.nextSetBit(i + 1))
+        {
+            if (this.indices[i] < 0)
+            {
+                connect(i, order);
+                this.lowLinks[ware] = Math.min(this.lowLinks[ware],
+                    this.lowLinks[i]);
+            }
+            else if (this.onStack[i])
+                this.lowLinks[ware] = Math.min(this.lowLinks[ware],
+                    this.indices[i]);
+        }
+        if (this.lowLinks[ware] != this.indices[ware]) return;
+
+        // Pop the component from the stack
+        final List<Integer> component = new ArrayList<Integer>();
+        int member;
+        do
+        {
+            member = this.stack[--this.stackSize];
+            this.onStack[member] = false;
+            component.add(member);
+        }
+        while (member != ware);
+
+        // All resources of the components are already calculated because
+        // they were finished before. The members of a cycle share the same
+        // closure which includes the members themselves.
+        final BitSet closure = new BitSet(this.wares.length);
+        for (final int i: component)
+            closure.or(this.resources[i]);
+        for (int i = closure.nextSetBit(0); i >= 0; i = closure.nextSetBit(i
+            + 1))
+            if (this.allResources[i] != null) closure.or(this.allResources[i]);
+
+        final boolean cyclic = component.size() > 1
+            || this.resources[ware].get(ware);
+        final List<Ware> cycle = new ArrayList<Ware>();
+        for (int i = component.size() - 1; i >= 0; i--)
+        {
+            final int ordinal = component.get(i);
+            this.allResources[ordinal] = closure;
+            this.positions[ordinal] = order.size();
+            order.add(this.wares[ordinal]);
+            cycle.add(this.wares[ordinal]);
+        }
+        if (cyclic) this.cycles.add(Collections.unmodifiableList(cycle));
+    }
+
+    /**
+     * Returns the number of wares.
+     *
+     * @return The number of wares
+     */
+    public int getWareCount()
+    {
+        return this.wares.length;
+    }
+
+    /**
+     * Returns the ordinal of the specified ware. The ordinal is the bit index
+     * of the ware in all bit sets returned by this graph.
+     *
+     * @param ware
+     *            The ware
+     * @return The ordinal
+     */
+    public int getOrdinal(final Ware ware)
+    {
+        final Integer ordinal = this.ordinals.get(ware);
+        if (ordinal == null)
+            throw new IllegalArgumentException("Unknown ware: " + ware);
+        return ordinal;
+    }
+
+    /**
+     * Returns the ware with the specified ordinal.
+     *
+     * @param ordinal
+     *            The ordinal
+     * @return The ware
+     */
+    public Ware getWare(final int ordinal)
+    {
+        return this.wares[ordinal];
+    }
+
+    /**
+     * Returns the wares of the specified bit set.
+     *
+     * @param bits
+     *            The ware ordinals
+     * @return The wares in ordinal order
+     */
+    public List<Ware> getWares(final BitSet bits)
+    {
+        final List<Ware> result = new ArrayList<Ware>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+            result.add(this.wares[i]);
+        return result;
+    }
+
+    /**
+     * Returns the wares in topological order. Resources come before the
+     * products which need them. The members of a cycle are adjacent.
+     *
+     * @return The wares in topological order
+     */
+    public List<Ware> getTopologicalOrder()
+    {
+        return this.order;
+    }
+
+    /**
+     * Returns the position of the specified ware in the topological order.
+     *
+     * @param ware
+     *            The ware
+     * @return The position
+     */
+    public int getPosition(final Ware ware)
+    {
+        return this.positions[getOrdinal(ware)];
+    }
+
+    /**
+     * Returns the wares produced or consumed by the specified factory.
+     *
+     * @param factory
+     *            The factory
+     * @return The ware ordinals
+     */
+    public BitSet getWares(final Factory factory)
+    {
+        return (BitSet) this.factoryWares.get(factory).clone();
+    }
+
+    /**
+     * Returns the resources directly needed by the factories producing the
+     * specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @return The ware ordinals
+     */
+    public BitSet getResources(final Ware ware)
+    {
+        return (BitSet) this.resources[getOrdinal(ware)].clone();
+    }
+
+    /**
+     * Returns all wares the specified ware ultimately needs.
+     *
+     * @param ware
+     *            The ware
+     * @return The ware ordinals
+     */
+    public BitSet getAllResources(final Ware ware)
+    {
+        return (BitSet) this.allResources[getOrdinal(ware)].clone();
+    }
+
+    /**
+     * Returns all wares which ultimately consume the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @return The ware ordinals
+     */
+    public BitSet getAllConsumers(final Ware ware)
+    {
+        return (BitSet) this.allConsumers[getOrdinal(ware)].clone();
+    }
+
+    /**
+     * Checks if the specified ware directly or indirectly needs the specified
+     * resource.
+     *
+     * @param ware
+     *            The ware
+     * @param resource
+     *            The resource
+     * @return True if the ware needs the resource, false if not
+     */
+    public boolean needs(final Ware ware, final Ware resource)
+    {
+        return this.allResources[getOrdinal(ware)].get(getOrdinal(resource));
+    }
+
+    /**
+     * Checks if the specified ware is part of a production cycle.
+     *
+     * @param ware
+     *            The ware
+     * @return True if the ware ultimately needs itself, false if not
+     */
+    public boolean isCyclic(final Ware ware)
+    {
+        final int ordinal = getOrdinal(ware);
+        return this.allResources[ordinal].get(ordinal);
+    }
+
+    /**
+     * Returns the production cycles. Each cycle is a list of wares which
+     * directly or indirectly need each other.
+     *
+     * @return The production cycles
+     */
+    public List<List<Ware>> getCycles()
+    {
+        return Collections.unmodifiableList(this.cycles);
+    }
+}
@@ -0,0 +1,739 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Discrete-event simulation of the production of a complex. Every single
+ * factory runs its real production cycle. It takes the resources for a cycle
+ * from the shared complex storage when the cycle starts and puts the product
+ * into the storage when the cycle ends. A factory stalls when resources are
+ * missing (starved) or when the storage has no room for its product
+ * (blocked). The storage capacity of each ware is the sum of the capacities
+ * of all factories.
+ *
+ * The storage is initially filled to a configurable share. A trader visits
+ * the complex in a fixed interval. It buys the resources the complex doesn't
+ * produce itself until the storage is full and sells the surplus products
+ * except the stock the complex consumes itself until the next visit.
+ *
+ * Events are stored as primitive long values (time and factory number) in a
+ * binary heap so weeks of game time can be simulated quickly.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProductionSimulator
+{
+    /** The default simulated time (two weeks) in seconds */
+    public static final int DEFAULT_DURATION = 14 * 24 * 60 * 60;
+
+    /** The default trade interval (one hour) in seconds */
+    public static final int DEFAULT_TRADE_INTERVAL = 60 * 60;
+
+    /** The default initial stock (Share of the storage capacity) */
+    public static final double DEFAULT_INITIAL_STOCK = 0.5;
+
+    /** Tolerance used when comparing stocks */
+    private static final double EPSILON = 1e-9;
+
+    /** Number of bits of an event used for the factory number */
+    private static final int ID_BITS = 20;
+
+    /** The mask for the factory number of an event */
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    /** Allowed relative deviation of the production in steady state */
+    private static final double STEADY_TOLERANCE = 0.05;
+
+    /** Stall kind: Not stalled */
+    private static final int RUNNING = 0;
+
+    /** Stall kind: Waiting for resources */
+    private static final int STARVED = 1;
+
+    /** Stall kind: Waiting for free storage */
+    private static final int BLOCKED = 2;
+
+    /** The complex to simulate */
+    private final Complex complex;
+
+    /** The simulated time in seconds */
+    private int duration = DEFAULT_DURATION;
+
+    /** The trade interval in seconds. 0 to disable trading */
+    private int tradeInterval = DEFAULT_TRADE_INTERVAL;
+
+    /** The initial stock of each ware (Share of the storage capacity) */
+    private double initialStock = DEFAULT_INITIAL_STOCK;
+
+    /** The complex factory index of each single factory */
+    private int[] unitFactories;
+
+    /** The production cycle of each single factory */
+    private int[] unitCycles;
+
+    /** The product ware index of each single factory */
+    private int[] unitProducts;
+
+    /** The product quantity per cycle of each single factory */
+    private double[] unitQuantities;
+
+    /** The first resource entry of each single factory */
+    private int[] resourceStarts;
+
+    /** The ware indices of the resource entries */
+    private int[] resourceWares;
+
+    /** The quantities per cycle of the resource entries */
+    private double[] resourceQuantities;
+
+    /** The current stall kind of each single factory */
+    private int[] stallKinds;
+
+    /** The time the current stall of each single factory began */
+    private long[] stallBegins;
+
+    /** The time the current stall kind of each single factory began */
+    private long[] stallPartBegins;
+
+    /** The next single factory in the same waiting list. -1 for end */
+    private int[] waitNext;
+
+    /** The first single factory waiting for resources per ware */
+    private int[] starvedHeads;
+
+    /** The first single factory waiting for free storage per ware */
+    private int[] blockedHeads;
+
+    /** The stock of each ware */
+    private double[] stocks;
+
+    /** The storage reserved for products of running cycles per ware */
+    private double[] reserved;
+
+    /** The storage capacity of each ware */
+    private double[] capacities;
+
+    /** The highest stock of each ware */
+    private double[] peakStocks;
+
+    /** The stock of each sold ware the trader leaves in the complex */
+    private double[] keepStocks;
+
+    /** Whether the trader buys the ware */
+    private boolean[] buying;
+
+    /** Whether the trader sells the ware */
+    private boolean[] selling;
+
+    /** The bought units of each ware */
+    private double[] bought;
+
+    /** The sold units of each ware */
+    private double[] sold;
+
+    /** The completed cycles per complex factory */
+    private long[] cycles;
+
+    /** The number of stalls per complex factory */
+    private long[] stalls;
+
+    /** The starved time per complex factory */
+    private long[] starvedTimes;
+
+    /** The blocked time per complex factory */
+    private long[] blockedTimes;
+
+    /** The length of a production statistics window in seconds */
+    private int windowLength;
+
+    /** The produced units per ware and statistics window */
+    private double[][] windows;
+
+    /** The event heap */
+    private long[] heap;
+
+    /** The number of events in the heap */
+    private int heapSize;
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to simulate
+     */
+    public ProductionSimulator(final Complex complex)
+    {
+        if (complex == null)
+            throw new IllegalArgumentException("complex must be set");
+        this.complex = complex;
+    }
+
+    /**
+     * Sets the simulated time.
+     *
+     * @param duration
+     *            The simulated time in seconds
+     */
+    public void setDuration(final int duration)
+    {
+        if (duration <= 0)
+            throw new IllegalArgumentException("duration must be positive");
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the simulated time.
+     *
+     * @return The simulated time in seconds
+     */
+    public int getDuration()
+    {
+        return this.duration;
+    }
+
+    /**
+     * Sets the interval in which a trader buys resources and sells products.
+     *
+     * @param tradeInterval
+     *            The trade interval in seconds. 0 to disable trading
+     */
+    public void setTradeInterval(final int tradeInterval)
+    {
+        if (tradeInterval < 0)
+            throw new IllegalArgumentException(
+                "tradeInterval must not be negative");
+        this.tradeInterval = tradeInterval;
+    }
+
+    /**
+     * Returns the interval in which a trader buys resources and sells
+     * products.
+     *
+     * @return The trade interval in seconds. 0 if trading is disabled
+     */
+    public int getTradeInterval()
+    {
+        return this.tradeInterval;
+    }
+
+    /**
+     * Sets the initial stock of each ware. Self-sufficient production cycles
+     * (Like energy cells and crystals) can't start with empty storage.
+     *
+     * @param initialStock
+     *            The initial stock as share of the storage capacity
+     *            (0.0 - 1.0)
+     */
+    public void setInitialStock(final double initialStock)
+    {
+        if (initialStock < 0 || initialStock > 1)
+            throw new IllegalArgumentException(
+                "initialStock must be between 0 and 1");
+        this.initialStock = initialStock;
+    }
+
+    /**
+     * Returns the initial stock of each ware.
+     *
+     * @return The initial stock as share of the storage capacity
+     */
+    public double getInitialStock()
+    {
+        return this.initialStock;
+    }
+
+    /**
+     * Simulates the production of the complex.
+     *
+     * @return The simulation result
+     */
+    public SimulationResult simulate()
+    {
+        final List<ComplexFactory> factories = new ArrayList<ComplexFactory>();
+        for (final ComplexFactory factory: this.complex.getFactories())
+            if (factory.isEnabled()) factories.add(factory);
+        for (final ComplexFactory factory: this.complex.getAutoFactories())
+            if (factory.isEnabled()) factories.add(factory);
+        final List<Ware> wares = this.complex.getUsedWares();
+        final Map<Ware, Integer> wareIndices = new HashMap<Ware, Integer>();
+        for (int i = 0; i < wares.size(); i++)
+            wareIndices.put(wares.get(i), i);
+
+        final int[] units = prepareFactories(factories, wareIndices);
+        prepareWares(wares, wareIndices);
+        final int unitCount = this.unitFactories.length;
+        final int tradeId = unitCount;
+        long events = 0;
+
+        // Fill the storage and start all factories
+        this.heap = new long[Math.max(16, unitCount + 1)];
+        this.heapSize = 0;
+        if (this.tradeInterval > 0)
+        {
+            trade(0);
+            push(this.tradeInterval, tradeId);
+        }
+        for (int unit = 0; unit < unitCount; unit++)
+            tryStart(unit, 0);
+
+        // Process the events
+        while (this.heapSize > 0)
+        {
+            final long event = pop();
+            final long time = event >>> ID_BITS;
+            if (time > this.duration) break;
+            final int id = (int) (event & ID_MASK);
+            events++;
+            if (id == tradeId)
+            {
+                trade(time);
+                push(time + this.tradeInterval, tradeId);
+            }
+            else
+                finishCycle(id, time);
+        }
+
+        // Finish the stalls which are still active
+        for (int unit = 0; unit < unitCount; unit++)
+            endStall(unit, this.duration);
+
+        return new SimulationResult(factories, units, this.cycles,
+            this.stalls, this.starvedTimes, this.blockedTimes, wares,
+            this.capacities, this.peakStocks, this.stocks.clone(),
+            this.bought, this.sold, this.duration, events,
+            getSteadyStateTime());
+    }
+
+    /**
+     * Creates the single factory records.
+     *
+     * @param factories
+     *            The complex factories
+     * @param wareIndices
+     *            The ware indices
+     * @return The number of single factories per complex factory
+     */
+    private int[] prepareFactories(final List<ComplexFactory> factories,
+        final Map<Ware, Integer> wareIndices)
+    {
+        final Sun suns = this.complex.getSuns();
+        final int[] units = new int[factories.size()];
+        int unitCount = 0;
+        int resourceCount = 0;
+        for (int i = 0; i < units.length; i++)
+        {
+            final ComplexFactory factory = factories.get(i);
+            units[i] = factory.getQuantity();
+            unitCount += units[i];
+            resourceCount += units[i]
+                * factory.getFactory().getResources().length;
+        }
+        if (unitCount >= ID_MASK)
+            throw new IllegalArgumentException("Too many factories");
+
+        this.unitFactories = new int[unitCount];
+        this.unitCycles = new int[unitCount];
+        this.unitProducts = new int[unitCount];
+        this.unitQuantities = new double[unitCount];
+        this.resourceStarts = new int[unitCount + 1];
+        this.resourceWares = new int[resourceCount];
+        this.resourceQuantities = new double[resourceCount];
+        int unit = 0;
+        int entry = 0;
+        for (int i = 0; i < units.length; i++)
+        {
+            final ComplexFactory complexFactory = factories.get(i);
+            final Factory factory = complexFactory.getFactory();
+            for (int j = 0; j < units[i]; j++)
+            {
+                final int yield = factory.isMine() ? complexFactory
+                    .getYields().get(j) : 0;
+                final Product product = factory.getRealProduct(suns, yield);
+                this.unitFactories[unit] = i;
+                this.unitCycles[unit] = Math.max(1, factory.getRealCycle(suns,
+                    yield));
+                this.unitProducts[unit] = wareIndices.get(product.getWare());
+                this.unitQuantities[unit] = product.getQuantity();
+                this.resourceStarts[unit] = entry;
+                for (final Product resource: factory.getRealResources(suns,
+                    yield))
+                {
+                    this.resourceWares[entry] = wareIndices.get(resource
+                        .getWare());
+                    this.resourceQuantities[entry] = resource.getQuantity();
+                    entry++;
+                }
+                unit++;
+            }
+        }
+        this.resourceStarts[unitCount] = entry;
+
+        this.stallKinds = new int[unitCount];
+        this.stallBegins = new long[unitCount];
+        this.stallPartBegins = new long[unitCount];
+        this.waitNext = new int[unitCount];
+        this.cycles = new long[units.length];
+        this.stalls = new long[units.length];
+        this.starvedTimes = new long[units.length];
+        this.blockedTimes = new long[units.length];
+        return units;
+    }
+
+    /**
+     * Creates the ware records.
+     *
+     * @param wares
+     *            The wares
+     * @param wareIndices
+     *            The ware indices
+     */
+    private void prepareWares(final List<Ware> wares,
+        final Map<Ware, Integer> wareIndices)
+    {
+        final int count = wares.size();
+        this.stocks = new double[count];
+        this.reserved = new double[count];
+        this.capacities = new double[count];
+        this.peakStocks = new double[count];
+        this.keepStocks = new double[count];
+        this.buying = new boolean[count];
+        this.selling = new boolean[count];
+        this.bought = new double[count];
+        this.sold = new double[count];
+        this.starvedHeads = new int[count];
+        this.blockedHeads = new int[count];
+        Arrays.fill(this.starvedHeads, -1);
+        Arrays.fill(this.blockedHeads, -1);
+
+        for (final Capacity capacity: this.complex.getCapacities())
+        {
+            final Integer index = wareIndices.get(capacity.getWare());
+            if (index == null) continue;
+            this.capacities[index] = capacity.getQuantity();
+            this.stocks[index] = Math.floor(capacity.getQuantity()
+                * this.initialStock);
+            this.peakStocks[index] = this.stocks[index];
+        }
+        for (final ComplexWare ware: this.complex.getWares())
+        {
+            final Integer index = wareIndices.get(ware.getWare());
+            if (index == null) continue;
+            this.buying[index] = ware.getMissing() > EPSILON;
+            this.selling[index] = ware.getSurplus() > EPSILON;
+            this.keepStocks[index] = Math.min(this.capacities[index], ware
+                .getNeeded() * this.tradeInterval / 3600);
+        }
+
+        // Statistics windows span several trade intervals and production
+        // cycles so the discrete deliveries and cycles average out
+        int longest = Math.max(3600, this.tradeInterval);
+        for (final int cycle: this.unitCycles)
+            longest = Math.max(longest, cycle);
+        this.windowLength = longest * 4;
+        this.windows = new double[count][this.duration / this.windowLength
+            + 1];
+    }
+
+    /**
+     * Starts a production cycle of the specified single factory if the
+     * resources and the storage for the product are available. Otherwise the
+     * factory waits for the missing ware.
+     *
+     * @param unit
+     *            The single factory
+     * @param time
+     *            The current time
+     */
+    private void tryStart(final int unit, final long time)
+    {
+        final int start = this.resourceStarts[unit];
+        final int end = this.resourceStarts[unit + 1];
+        for (int i = start; i < end; i++)
+        {
+            final int ware = this.resourceWares[i];
+            if (this.stocks[ware] < this.resourceQuantities[i] - EPSILON)
+            {
+                waitFor(unit, ware, STARVED, time);
+                return;
+            }
+        }
+        final int product = this.unitProducts[unit];
+        final double quantity = this.unitQuantities[unit];
+        if (this.stocks[product] + this.reserved[product] + quantity
+            > this.capacities[product] + EPSILON)
+        {
+            waitFor(unit, product, BLOCKED, time);
+            return;
+        }
+
+        endStall(unit, time);
+        for (int i = start; i < end; i++)
+            this.stocks[this.resourceWares[i]] -= this.resourceQuantities[i];
+        this.reserved[product] += quantity;
+        push(time + this.unitCycles[unit], unit);
+
+        // Consumed resources free storage for blocked factories
+        for (int i = start; i < end; i++)
+            wakeUp(this.blockedHeads, this.resourceWares[i], time);
+    }
+
+    /**
+     * Finishes the production cycle of the specified single factory and
+     * starts the next one.
+     *
+     * @param unit
+     *            The single factory
+     * @param time
+     *            The current time
+     */
+    private void finishCycle(final int unit, final long time)
+    {
+        final int product = this.unitProducts[unit];
+        final double quantity = this.unitQuantities[unit];
+        this.cycles[this.unitFactories[unit]]++;
+        this.reserved[product] -= quantity;
+        addStock(product, quantity);
+        this.windows[product][(int) (time / this.windowLength)] += quantity;
+        wakeUp(this.starvedHeads, product, time);
+        tryStart(unit, time);
+    }
+
+    /**
+     * Lets the trader buy the missing resources and sell the surplus
+     * products.
+     *
+     * @param time
+     *            The current time
+     */
+    private void trade(final long time)
+    {
+        for (int ware = 0; ware < this.stocks.length; ware++)
+        {
+            if (this.buying[ware])
+            {
+                final double amount = this.capacities[ware]
+                    - this.stocks[ware] - this.reserved[ware];
+                if (amount > EPSILON)
+                {
+                    addStock(ware, amount);
+                    this.bought[ware] += amount;
+                    wakeUp(this.starvedHeads, ware, time);
+                }
+            }
+            if (this.selling[ware])
+            {
+                final double amount = this.stocks[ware]
+                    - this.keepStocks[ware];
+                if (amount > EPSILON)
+                {
+                    this.stocks[ware] -= amount;
+                    this.sold[ware] += amount;
+                    wakeUp(this.blockedHeads, ware, time);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds units to the stock of a ware.
+     *
+     * @param ware
+     *            The ware index
+     * @param quantity
+     *            The units to add
+     */
+    private void addStock(final int ware, final double quantity)
+    {
+        final double stock = this.stocks[ware] += quantity;
+        if (stock > this.peakStocks[ware]) this.peakStocks[ware] = stock;
+    }
+
+    /**
+     * Lets the specified single factory wait for a ware.
+     *
+     * @param unit
+     *            The single factory
+     * @param ware
+     *            The ware index
+     * @param kind
+     *            The stall kind (STARVED or BLOCKED)
+     * @param time
+     *            The current time
+     */
+    private void waitFor(final int unit, final int ware, final int kind,
+        final long time)
+    {
+        final int current = this.stallKinds[unit];
+        if (current == RUNNING)
+        {
+            this.stallBegins[unit] = time;
+            this.stallPartBegins[unit] = time;
+        }
+        else if (current != kind)
+        {
+            addStallTime(unit, current, time - this.stallPartBegins[unit]);
+            this.stallPartBegins[unit] = time;
+        }
+        this.stallKinds[unit] = kind;
+
+        final int[] heads = kind == STARVED ? this.starvedHeads
+            : this.blockedHeads;
+        this.waitNext[unit] = heads[ware];
+        heads[ware] = unit;
+    }
+
+    /**
+     * Ends the stall of the specified single factory (if it is stalled).
+     *
+     * @param unit
+     *            The single factory
+     * @param time
+     *            The current time
+     */
+    private void endStall(final int unit, final long time)
+    {
+        final int kind = this.stallKinds[unit];
+        if (kind == RUNNING) return;
+        addStallTime(unit, kind, time - this.stallPartBegins[unit]);
+        if (time > this.stallBegins[unit])
+            this.stalls[this.unitFactories[unit]]++;
+        this.stallKinds[unit] = RUNNING;
+    }
+
+    /**
+     * Adds stall time to the statistics of a single factory.
+     *
+     * @param unit
+     *            The single factory
+     * @param kind
+     *            The stall kind
+     * @param time
+     *            The stall time to add
+     */
+    private void addStallTime(final int unit, final int kind, final long time)
+    {
+        final int factory = this.unitFactories[unit];
+        if (kind == STARVED)
+            this.starvedTimes[factory] += time;
+        else
+            this.blockedTimes[factory] += time;
+    }
+
+    /**
+     * Lets all single factories waiting in the specified list try again.
+     *
+     * @param heads
+     *            The waiting list heads
+     * @param ware
+     *            The ware index
+     * @param time
+     *            The current time
+     */
+    private void wakeUp(final int[] heads, final int ware, final long time)
+    {
+        int unit = heads[ware];
+        heads[ware] = -1;
+        while (unit >= 0)
+        {
+            final int next = this.waitNext[unit];
+            tryStart(unit, time);
+            unit = next;
+        }
+    }
+
+    /**
+     * Calculates the time when the production reached a steady state. This
+     * is the start of the first statistics window from which on the
+     * production of every ware stays near its average of the second half of
+     * the simulation.
+     *
+     * @return The time in seconds or -1 if the production never settled
+     */
+    private long getSteadyStateTime()
+    {
+        final int full = this.duration / this.windowLength;
+        if (full < 2) return -1;
+
+        // One cycle more or less per single factory is no deviation
+        final double[] slack = new double[this.windows.length];
+        for (int unit = 0; unit < this.unitProducts.length; unit++)
+            slack[this.unitProducts[unit]] += this.unitQuantities[unit];
+
+        int steady = 0;
+        for (int ware = 0; ware < this.windows.length; ware++)
+        {
+            final double[] produced = this.windows[ware];
+            double average = 0;
+            for (int i = full / 2; i < full; i++)
+                average += produced[i];
+            average /= full - full / 2;
+            final double tolerance = average * STEADY_TOLERANCE + slack[ware];
+            for (int i = full - 1; i >= steady; i--)
+            {
+                if (Math.abs(produced[i] - average) > tolerance)
+                {
+                    if (i == full - 1) return -1;
+                    steady = i + 1;
+                    break;
+                }
+            }
+        }
+        return (long) steady * this.windowLength;
+    }
+
+    /**
+     * Adds an event to the heap.
+     *
+     * @param time
+     *            The event time
+     * @param id
+     *            The single factory number or the trade ID
+     */
+    private void push(final long time, final int id)
+    {
+        if (this.heapSize == this.heap.length)
+            this.heap = Arrays.copyOf(this.heap, this.heapSize * 2);
+        final long event = (time << ID_BITS) | id;
+        int index = this.heapSize++;
+        while (index > 0)
+        {
+            final int parent = (index - 1) >> 1;
+            if (this.heap[parent] <= event) break;
+            this.heap[index] = this.heap[parent];
+            index = parent;
+        }
+        this.heap[index] = event;
+    }
+
+    /**
+     * Removes the earliest event from the heap.
+     *
+     * @return The earliest event
+     */
+    private long pop()
+    {
+        final long result = this.heap[0];
+        final long last = this.heap[--this.heapSize];
+        int index = 0;
+        while (true)
+        {
+            int child = index * 2 + 1;
+            if (child >= this.heapSize) break;
+            if (child + 1 < this.heapSize
+                && this.heap[child + 1] < this.heap[child]) child++;
+            if (this.heap[child] >= last) break;
+            this.heap[index] = this.heap[child];
+            index = child;
+        }
+        this.heap[index] = last;
+        return result;
+    }
+}
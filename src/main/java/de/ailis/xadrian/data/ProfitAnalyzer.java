@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Monte Carlo analysis of the profit of a complex. The prices of all traded
+ * wares without a custom price are sampled between their minimum and maximum
+ * price and the profit per hour is calculated for each sample.
+ *
+ * Prices can be correlated. The correlated samples are drawn from a
+ * multivariate normal distribution (Using the Cholesky decomposition of the
+ * correlation matrix) which is then mapped to the price distribution of each
+ * ware, so the configured correlations are correlations of the underlying
+ * normal variates.
+ *
+ * The wares of the complex are flattened into primitive arrays (the ware
+ * ledger) before sampling. Wares with a custom price or without surplus add
+ * a constant to the profit and are not sampled at all. The samples are
+ * split into fixed chunks with their own random generators which are
+ * evaluated in parallel without allocating anything per sample, so the
+ * result only depends on the seed and not on the number of threads.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProfitAnalyzer
+{
+    /** The default number of samples */
+    public static final int DEFAULT_SAMPLES = 100000;
+
+    /** The default price distribution */
+    public static final PriceDistribution DEFAULT_DISTRIBUTION =
+        PriceDistribution.TRIANGULAR;
+
+    /** The number of samples evaluated by a single task */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** The complex to analyze */
+    private final Complex complex;
+
+    /** The number of samples */
+    private int samples = DEFAULT_SAMPLES;
+
+    /** The random seed */
+    private long seed;
+
+    /** The price distribution of wares without a specific distribution */
+    private PriceDistribution defaultDistribution = DEFAULT_DISTRIBUTION;
+
+    /** The price distributions of specific wares */
+    private final Map<Ware, PriceDistribution> distributions =
+        new HashMap<Ware, PriceDistribution>();
+
+    /** The correlation of ware pairs without a specific correlation */
+    private double defaultCorrelation;
+
+    /** The correlations of specific ware pairs (Stored in both directions) */
+    private final Map<Ware, Map<Ware, Double>> correlations =
+        new HashMap<Ware, Map<Ware, Double>>();
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to analyze
+     */
+    public ProfitAnalyzer(final Complex complex)
+    {
+        this.complex = complex;
+    }
+
+    /**
+     * Sets the number of samples.
+     *
+     * @param samples
+     *            The number of samples. At least 1
+     */
+    public void setSamples(final int samples)
+    {
+        if (samples < 1)
+            throw new IllegalArgumentException("samples must be >= 1");
+        this.samples = samples;
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return The number of samples
+     */
+    public int getSamples()
+    {
+        return this.samples;
+    }
+
+    /**
+     * Sets the random seed. Analyses with the same seed and settings return
+     * the same result.
+     *
+     * @param seed
+     *            The random seed
+     */
+    public void setSeed(final long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the random seed.
+     *
+     * @return The random seed
+     */
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    /**
+     * Sets the price distribution of all wares without a specific
+     * distribution.
+     *
+     * @param distribution
+     *            The price distribution
+     */
+    public void setDefaultDistribution(final PriceDistribution distribution)
+    {
+        if (distribution == null)
+            throw new IllegalArgumentException("distribution must be set");
+        this.defaultDistribution = distribution;
+    }
+
+    /**
+     * Sets the price distribution of the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @param distribution
+     *            The price distribution. Null to use the default distribution
+     */
+    public void setDistribution(final Ware ware,
+        final PriceDistribution distribution)
+    {
+        if (distribution == null)
+            this.distributions.remove(ware);
+        else
+            this.distributions.put(ware, distribution);
+    }
+
+    /**
+     * Returns the price distribution of the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @return The price distribution
+     */
+    public PriceDistribution getDistribution(final Ware ware)
+    {
+        final PriceDistribution distribution = this.distributions.get(ware);
+        return distribution == null ? this.defaultDistribution : distribution;
+    }
+
+    /**
+     * Sets the correlation of all ware pairs without a specific correlation.
+     *
+     * @param correlation
+     *            The correlation (0.0 - 1.0)
+     */
+    public void setDefaultCorrelation(final double correlation)
+    {
+        if (correlation < 0 || correlation > 1)
+            throw new IllegalArgumentException("Invalid correlation: "
+                + correlation);
+        this.defaultCorrelation = correlation;
+    }
+
+    /**
+     * Sets the correlation of the prices of two wares.
+     *
+     * @param a
+     *            The first ware
+     * @param b
+     *            The second ware
+     * @param correlation
+     *            The correlation (-1.0 - 1.0)
+     */
+    public void setCorrelation(final Ware a, final Ware b,
+        final double correlation)
+    {
+        if (a.equals(b))
+            throw new IllegalArgumentException("Can't correlate " + a
+                + " with itself");
+        if (correlation < -1 || correlation > 1)
+            throw new IllegalArgumentException("Invalid correlation: "
+                + correlation);
+        putCorrelation(a, b, correlation);
+        putCorrelation(b, a, correlation);
+    }
+
+    /**
+     * Stores the correlation of two wares in one direction.
+     *
+     * @param a
+     *            The first ware
+     * @param b
+     *            The second ware
+     * @param correlation
+     *            The correlation
+     */
+    private void putCorrelation(final Ware a, final Ware b,
+        final double correlation)
+    {
+        Map<Ware, Double> map = this.correlations.get(a);
+        if (map == null)
+        {
+            map = new HashMap<Ware, Double>();
+            this.correlations.put(a, map);
+        }
+        map.put(b, correlation);
+    }
+
+    /**
+     * Returns the correlation of the prices of two wares.
+     *
+     * @param a
+     *            The first ware
+     * @param b
+     *            The second ware
+     * @return The correlation
+     */
+    public double getCorrelation(final Ware a, final Ware b)
+    {
+        if (a.equals(b)) return 1;
+        final Map<Ware, Double> map = this.correlations.get(a);
+        if (map != null)
+        {
+            final Double correlation = map.get(b);
+            if (correlation != null) return correlation;
+        }
+        return this.defaultCorrelation;
+    }
+
+    /**
+     * Analyzes the profit using a new executor with one thread per available
+     * processor.
+     *
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The profit distribution
+     * @throws InterruptedException
+     *             When analysis was interrupted
+     */
+    public ProfitDistribution analyze(final ProgressListener listener)
+        throws InterruptedException
+    {
+        final ExecutorService executor =
+            ThreadUtils.createCalculationExecutor("profit-analyzer");
+        try
+        {
+            return analyze(executor, listener);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Analyzes the profit using the specified executor.
+     *
+     * @param executor
+     *            The executor running the calculations
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The profit distribution
+     * @throws InterruptedException
+     *             When analysis was interrupted
+     */
+    public ProfitDistribution analyze(final ExecutorService executor,
+        final ProgressListener listener) throws InterruptedException
+    {
+        // Build the ware ledger
+        final Map<Ware, Integer> customPrices = this.complex.getCustomPrices();
+        final List<Ware> wares = new ArrayList<Ware>();
+        final List<Double> surplusList = new ArrayList<Double>();
+        double fixedProfit = 0;
+        for (final ComplexWare complexWare: this.complex.getWares())
+        {
+            final double surplus = complexWare.getSurplus();
+            if (surplus == 0) continue;
+            final Ware ware = complexWare.getWare();
+            if (customPrices.containsKey(ware)
+                || ware.getMinPrice() == ware.getMaxPrice())
+            {
+                fixedProfit += complexWare.getProfit();
+                continue;
+            }
+            wares.add(ware);
+            surplusList.add(surplus);
+        }
+        final int count = wares.size();
+        final double[] surpluses = new double[count];
+        final double[] minPrices = new double[count];
+        final double[] avgPrices = new double[count];
+        final double[] maxPrices = new double[count];
+        final PriceDistribution[] kinds = new PriceDistribution[count];
+        for (int i = 0; i < count; i++)
+        {
+            final Ware ware = wares.get(i);
+            surpluses[i] = surplusList.get(i);
+            minPrices[i] = ware.getMinPrice();
+            avgPrices[i] = ware.getAvgPrice();
+            maxPrices[i] = ware.getMaxPrice();
+            kinds[i] = getDistribution(ware);
+        }
+        final double[] factors = decompose(wares);
+
+        // Evaluate the chunks in parallel
+        final double[] profits = new double[this.samples];
+        final int chunks = (this.samples + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final Random seeds = new Random(this.seed);
+        final CompletionService<Void> service =
+            new ExecutorCompletionService<Void>(executor);
+        final double base = fixedProfit;
+        for (int chunk = 0; chunk < chunks; chunk++)
+        {
+            final int start = chunk * CHUNK_SIZE;
+            final int end = Math.min(this.samples, start + CHUNK_SIZE);
+            final long chunkSeed = seeds.nextLong();
+            service.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    evaluate(profits, start, end, new Random(chunkSeed), base,
+                        surpluses, minPrices, avgPrices, maxPrices, kinds,
+                        factors);
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < chunks; i++)
+        {
+            ThreadUtils.take(service);
+            if (listener != null) listener.progressChanged(i + 1, chunks);
+        }
+
+        Arrays.sort(profits);
+        return new ProfitDistribution(profits, this.complex.getProfit());
+    }
+
+    /**
+     * Returns the Cholesky factor of the correlation matrix of the specified
+     * wares.
+     *
+     * @param wares
+     *            The sampled wares
+     * @return The lower triangular factor in row-major order
+     */
+    private double[] decompose(final List<Ware> wares)
+    {
+        final int count = wares.size();
+        final double[] factors = new double[count * count];
+        for (int i = 0; i < count; i++)
+        {
+            for (int j = 0; j <= i; j++)
+            {
+                double sum = getCorrelation(wares.get(i), wares.get(j));
+                for (int k = 0; k < j; k++)
+                    sum -= factors[i * count + k] * factors[j * count + k];
+                if (i == j)
+                {
+                    // A zero pivot means the ware is fully determined by the
+                    // previous ones (Like a correlation of 1)
+                    if (sum < -1e-9)
+                        throw new IllegalStateException(
+                            "Price correlations are inconsistent");
+                    factors[i * count + i] = sum <= 1e-12 ? 0 : Math.sqrt(sum);
+                }
+                else if (factors[j * count + j] != 0)
+                    factors[i * count + j] = sum / factors[j * count + j];
+            }
+        }
+        return factors;
+    }
+
+    /**
+     * Evaluates the profits of a range of samples. This is the inner loop of
+     * the analysis and doesn't allocate anything per sample.
+     *
+     * @param profits
+     *            The array to write the profits to
+     * @param start
+     *            The index of the first sample
+     * @param end
+     *            The index after the last sample
+     * @param random
+     *            The random generator of this range
+     * @param base
+     *            The profit of the wares which are not sampled
+     * @param surpluses
+     *            The surplus per hour of the sampled wares
+     * @param minPrices
+     *            The minimum prices of the sampled wares
+     * @param avgPrices
+     *            The average prices of the sampled wares
+     * @param maxPrices
+     *            The maximum prices of the sampled wares
+     * @param kinds
+     *            The price distributions of the sampled wares
+     * @param factors
+     *            The Cholesky factor of the correlation matrix
+     */
+    private static void evaluate(final double[] profits, final int start,
+        final int end, final Random random, final double base,
+        final double[] surpluses, final double[] minPrices,
+        final double[] avgPrices, final double[] maxPrices,
+        final PriceDistribution[] kinds, final double[] factors)
+    {
+        final int count = surpluses.length;
+        final double[] normals = new double[count];
+        for (int sample = start; sample < end; sample++)
+        {
+            for (int i = 0; i < count; i++)
+                normals[i] = random.nextGaussian();
+            double profit = base;
+            for (int i = 0, row = 0; i < count; i++, row += count)
+            {
+                double z = 0;
+                for (int j = 0; j <= i; j++)
+                    z += factors[row + j] * normals[j];
+                profit += surpluses[i]
+                    * kinds[i].getPrice(z, minPrices[i], avgPrices[i],
+                        maxPrices[i]);
+            }
+            profits[sample] = profit;
+        }
+    }
+}
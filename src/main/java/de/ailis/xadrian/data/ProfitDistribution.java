@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Arrays;
+
+/**
+ * The distribution of the profit per hour of a complex calculated by the
+ * profit analyzer.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProfitDistribution
+{
+    /** The sampled profits in ascending order */
+    private final double[] profits;
+
+    /** The profit with the configured (average or custom) prices */
+    private final double expectedProfit;
+
+    /** The mean of the sampled profits */
+    private final double mean;
+
+    /** The standard deviation of the sampled profits */
+    private final double standardDeviation;
+
+    /**
+     * Constructor
+     *
+     * @param profits
+     *            The sampled profits in ascending order. The array is not
+     *            copied
+     * @param expectedProfit
+     *            The profit with the configured prices
+     */
+    ProfitDistribution(final double[] profits, final double expectedProfit)
+    {
+        this.profits = profits;
+        this.expectedProfit = expectedProfit;
+        double sum = 0;
+        for (final double profit: profits)
+            sum += profit;
+        this.mean = profits.length == 0 ? 0 : sum / profits.length;
+        double squares = 0;
+        for (final double profit: profits)
+            squares += (profit - this.mean) * (profit - this.mean);
+        this.standardDeviation = profits.length < 2 ? 0 : Math.sqrt(squares
+            / (profits.length - 1));
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return The number of samples
+     */
+    public int getSampleCount()
+    {
+        return this.profits.length;
+    }
+
+    /**
+     * Returns the profit with the configured prices. This is the same as
+     * {@link Complex#getProfit()}.
+     *
+     * @return The expected profit per hour
+     */
+    public double getExpectedProfit()
+    {
+        return this.expectedProfit;
+    }
+
+    /**
+     * Returns the mean of the sampled profits.
+     *
+     * @return The mean profit per hour
+     */
+    public double getMean()
+    {
+        return this.mean;
+    }
+
+    /**
+     * Returns the standard deviation of the sampled profits.
+     *
+     * @return The standard deviation
+     */
+    public double getStandardDeviation()
+    {
+        return this.standardDeviation;
+    }
+
+    /**
+     * Returns the lowest sampled profit.
+     *
+     * @return The lowest profit per hour
+     */
+    public double getMin()
+    {
+        return this.profits.length == 0 ? 0 : this.profits[0];
+    }
+
+    /**
+     * Returns the highest sampled profit.
+     *
+     * @return The highest profit per hour
+     */
+    public double getMax()
+    {
+        return this.profits.length == 0 ? 0
+            : this.profits[this.profits.length - 1];
+    }
+
+    /**
+     * Returns the profit below which the specified percentage of the samples
+     * fall. Values between two samples are interpolated linearly.
+     *
+     * @param percent
+     *            The percentage (0 - 100)
+     * @return The profit per hour
+     */
+    public double getPercentile(final double percent)
+    {
+        if (percent < 0 || percent > 100)
+            throw new IllegalArgumentException("Invalid percentage: "
+                + percent);
+        if (this.profits.length == 0) return 0;
+        final double position = percent / 100 * (this.profits.length - 1);
+        final int index = (int) position;
+        if (index >= this.profits.length - 1)
+            return this.profits[this.profits.length - 1];
+        final double fraction = position - index;
+        return this.profits[index] + fraction
+            * (this.profits[index + 1] - this.profits[index]);
+    }
+
+    /**
+     * Returns the median of the sampled profits.
+     *
+     * @return The median profit per hour
+     */
+    public double getMedian()
+    {
+        return getPercentile(50);
+    }
+
+    /**
+     * Returns the probability that the profit reaches at least the specified
+     * value.
+     *
+     * @param profit
+     *            The profit per hour
+     * @return The probability (0.0 - 1.0)
+     */
+    public double getProbability(final double profit)
+    {
+        if (this.profits.length == 0) return 0;
+        int index = Arrays.binarySearch(this.profits, profit);
+        if (index < 0)
+            index = -index - 1;
+        else
+            while (index > 0 && this.profits[index - 1] == profit)
+                index--;
+        return (double) (this.profits.length - index) / this.profits.length;
+    }
+
+    /**
+     * Returns the probability that the complex doesn't lose money.
+     *
+     * @return The probability (0.0 - 1.0)
+     */
+    public double getBreakEvenProbability()
+    {
+        return getProbability(0);
+    }
+
+    /**
+     * Returns the probability that the complex pays back its total price
+     * within the specified time.
+     *
+     * @param price
+     *            The price of the complex
+     * @param hours
+     *            The time in hours
+     * @return The probability (0.0 - 1.0)
+     */
+    public double getPaybackProbability(final long price, final double hours)
+    {
+        if (hours <= 0)
+            throw new IllegalArgumentException("Invalid time: " + hours);
+        return getProbability(price / hours);
+    }
+}
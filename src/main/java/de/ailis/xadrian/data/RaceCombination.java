@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The result of evaluating a complex with a specific combination of ignored
+ * races.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class RaceCombination
+{
+    /** The allowed races of the swept races */
+    private final Set<Race> allowedRaces;
+
+    /** All ignored races used for the calculation */
+    private final Set<Race> ignoredRaces;
+
+    /** The total price of the complex */
+    private final long totalPrice;
+
+    /** The profit per hour of the complex */
+    private final double profit;
+
+    /** If the base complex covers all needed wares except minerals */
+    private final boolean complete;
+
+    /**
+     * Constructor
+     *
+     * @param allowedRaces
+     *            The allowed races of the swept races
+     * @param ignoredRaces
+     *            All ignored races used for the calculation
+     * @param totalPrice
+     *            The total price of the complex
+     * @param profit
+     *            The profit per hour of the complex
+     * @param complete
+     *            If the base complex covers all needed wares except minerals
+     */
+    RaceCombination(final Set<Race> allowedRaces,
+        final Set<Race> ignoredRaces, final long totalPrice,
+        final double profit, final boolean complete)
+    {
+        this.allowedRaces = Collections.unmodifiableSet(allowedRaces);
+        this.ignoredRaces = Collections.unmodifiableSet(ignoredRaces);
+        this.totalPrice = totalPrice;
+        this.profit = profit;
+        this.complete = complete;
+    }
+
+    /**
+     * Returns the races of the swept races which are allowed in this
+     * combination.
+     *
+     * @return The allowed races
+     */
+    public Set<Race> getAllowedRaces()
+    {
+        return this.allowedRaces;
+    }
+
+    /**
+     * Returns all races which were ignored for the calculation. This includes
+     * the races which were not swept but are ignored by the complex.
+     *
+     * @return The ignored races
+     */
+    public Set<Race> getIgnoredRaces()
+    {
+        return this.ignoredRaces;
+    }
+
+    /**
+     * Returns the total price of the complex including the base complex.
+     *
+     * @return The total price
+     */
+    public long getTotalPrice()
+    {
+        return this.totalPrice;
+    }
+
+    /**
+     * Returns the profit per hour of the complex.
+     *
+     * @return The profit per hour
+     */
+    public double getProfit()
+    {
+        return this.profit;
+    }
+
+    /**
+     * Checks if the base complex produces all needed wares except minerals.
+     * This is not the case when the allowed races don't sell factories for
+     * all needed wares.
+     *
+     * @return True if the complex is complete, false if not
+     */
+    public boolean isComplete()
+    {
+        return this.complete;
+    }
+}
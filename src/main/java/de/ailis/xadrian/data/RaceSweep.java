@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Evaluates a complex under every combination of ignored races. The
+ * ignored races decide which factories are used for the automatically
+ * calculated base complex, so the sweep shows which races the player needs
+ * good standing with to build the complex cheaply.
+ *
+ * Only the swept races are varied. All other races keep the ignore state of
+ * the complex (Which defaults to the configuration). By default the swept
+ * races are the races selling factories for any ware the complex directly or
+ * indirectly needs, because all other races can't change the result. Each
+ * combination is calculated on its own copy of the complex with explicitly
+ * set ignored races so the combinations are evaluated in parallel without
+ * touching the configuration.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class RaceSweep
+{
+    /** The maximum number of swept races */
+    public static final int MAX_RACES = 16;
+
+    /** Orders combinations by completeness, price, profit and race count */
+    private static final Comparator<RaceCombination> ORDER =
+        new Comparator<RaceCombination>()
+        {
+            @Override
+            public int compare(final RaceCombination a,
+                final RaceCombination b)
+            {
+                if (a.isComplete() != b.isComplete())
+                    return a.isComplete() ? -1 : 1;
+                if (a.getTotalPrice() != b.getTotalPrice())
+                    return a.getTotalPrice() < b.getTotalPrice() ? -1 : 1;
+                final int result = Double.compare(b.getProfit(),
+                    a.getProfit());
+                if (result != 0) return result;
+                return a.getAllowedRaces().size()
+                    - b.getAllowedRaces().size();
+            }
+        };
+
+    /** The complex to evaluate (With base complex enabled) */
+    private final Complex template;
+
+    /** The swept races */
+    private Race[] races;
+
+    /** If sweep has been cancelled */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor. The complex is copied so it can be modified by the caller
+     * while the sweep is running. The base complex is always calculated even
+     * if it is disabled in the complex.
+     *
+     * @param complex
+     *            The complex to evaluate
+     */
+    public RaceSweep(final Complex complex)
+    {
+        this.template = complex.copy();
+        this.template.setAddBaseComplex(true);
+        setRaces(getRelevantRaces(complex));
+    }
+
+    /**
+     * Returns the races which sell factories for wares the manually added
+     * factories of the specified complex directly or indirectly need.
+     *
+     * @param complex
+     *            The complex
+     * @return The relevant races
+     */
+    public static Set<Race> getRelevantRaces(final Complex complex)
+    {
+        final Game game = complex.getGame();
+        final ProductionGraph graph = game.getProductionGraph();
+        final BitSet needed = new BitSet(graph.getWareCount());
+        for (final ComplexFactory complexFactory: complex.getFactories())
+        {
+            for (final Product resource: complexFactory.getFactory()
+                .getResources())
+            {
+                needed.set(graph.getOrdinal(resource.getWare()));
+                needed.or(graph.getAllResources(resource.getWare()));
+            }
+        }
+        final Set<Race> races = new TreeSet<Race>();
+        for (final Factory factory: game.getFactoryFactory().getFactories())
+        {
+            if (factory.isMine()) continue;
+            if (needed.get(graph.getOrdinal(factory.getProduct().getWare())))
+                races.add(factory.getRace());
+        }
+        return races;
+    }
+
+    /**
+     * Sets the races which are swept.
+     *
+     * @param races
+     *            The races to sweep. At most {@link #MAX_RACES}
+     */
+    public void setRaces(final Collection<Race> races)
+    {
+        if (races.size() > MAX_RACES)
+            throw new IllegalArgumentException("Can't sweep more than "
+                + MAX_RACES + " races");
+        this.races = new TreeSet<Race>(races).toArray(new Race[races.size()]);
+    }
+
+    /**
+     * Returns the swept races.
+     *
+     * @return The swept races
+     */
+    public List<Race> getRaces()
+    {
+        return Collections.unmodifiableList(Arrays.asList(this.races));
+    }
+
+    /**
+     * Returns the number of evaluated combinations.
+     *
+     * @return The number of combinations
+     */
+    public int countCombinations()
+    {
+        return 1 << this.races.length;
+    }
+
+    /**
+     * Cancels the sweep. The running sweep() call throws an
+     * InterruptedException.
+     */
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    /**
+     * Evaluates all combinations using a new executor with one thread per
+     * available processor.
+     *
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The combinations. Complete combinations first, then ordered by
+     *         price (Cheapest first) and profit (Highest first)
+     * @throws InterruptedException
+     *             When sweep was interrupted or cancelled
+     */
+    public List<RaceCombination> sweep(final ProgressListener listener)
+        throws InterruptedException
+    {
+        final ExecutorService executor =
+            ThreadUtils.createCalculationExecutor("race-sweep");
+        try
+        {
+            return sweep(executor, listener);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Evaluates all combinations using the specified executor.
+     *
+     * @param executor
+     *            The executor running the calculations
+     * @param listener
+     *            Optional progress listener. May be null
+     * @return The combinations. Complete combinations first, then ordered by
+     *         price (Cheapest first) and profit (Highest first)
+     * @throws InterruptedException
+     *             When sweep was interrupted or cancelled
+     */
+    public List<RaceCombination> sweep(final ExecutorService executor,
+        final ProgressListener listener) throws InterruptedException
+    {
+        final int total = countCombinations();
+        final RaceCombination[] results = new RaceCombination[total];
+        final CompletionService<Void> service =
+            new ExecutorCompletionService<Void>(executor);
+        for (int i = 0; i < total; i++)
+        {
+            final int mask = i;
+            service.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws InterruptedException
+                {
+                    if (RaceSweep.this.cancelled)
+                        throw new InterruptedException();
+                    results[mask] = evaluate(mask);
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < total; i++)
+        {
+            ThreadUtils.take(service);
+            if (listener != null) listener.progressChanged(i + 1, total);
+        }
+        final List<RaceCombination> combinations =
+            new ArrayList<RaceCombination>(Arrays.asList(results));
+        Collections.sort(combinations, ORDER);
+        return combinations;
+    }
+
+    /**
+     * Evaluates the specified combination.
+     *
+     * @param mask
+     *            The bit mask of the allowed swept races
+     * @return The evaluated combination
+     */
+    private RaceCombination evaluate(final int mask)
+    {
+        final Set<Race> allowed = new TreeSet<Race>();
+        final Set<Race> ignored = new HashSet<Race>(this.template
+            .getIgnoredRaces());
+        for (int i = 0; i < this.races.length; i++)
+        {
+            if ((mask & (1 << i)) != 0)
+            {
+                allowed.add(this.races[i]);
+                ignored.remove(this.races[i]);
+            }
+            else
+                ignored.add(this.races[i]);
+        }
+        final Complex complex = createComplex(ignored);
+        boolean complete = true;
+        for (final ComplexWare ware: complex.getWares())
+            if (!ware.getWare().isMineral() && ware.getMissing() > 0)
+                complete = false;
+        return new RaceCombination(allowed, ignored, complex.getTotalPrice(),
+            complex.getProfit(), complete);
+    }
+
+    /**
+     * Creates a copy of the complex with the base complex calculated for the
+     * specified ignored races.
+     *
+     * @param ignoredRaces
+     *            The ignored races
+     * @return The complex
+     */
+    private Complex createComplex(final Set<Race> ignoredRaces)
+    {
+        final Complex complex = this.template.copy();
+        complex.setIgnoredRaces(ignoredRaces);
+        complex.updateBaseComplex();
+        return complex;
+    }
+
+    /**
+     * Creates the complex for the specified combination. The factories of
+     * the base complex are added as normal factories so the complex keeps
+     * them regardless of the configured ignored races.
+     *
+     * @param combination
+     *            The combination
+     * @return The complex
+     */
+    public Complex createComplex(final RaceCombination combination)
+    {
+        final Complex complex = createComplex(combination.getIgnoredRaces());
+        final List<ComplexFactory> autoFactories = new ArrayList<
+            ComplexFactory>(complex.getAutoFactories());
+        complex.setAddBaseComplex(false);
+        complex.setIgnoredRaces(null);
+        for (final ComplexFactory complexFactory: autoFactories)
+            complex.addFactory(complexFactory.getFactory(),
+                complexFactory.getQuantity());
+        return complex;
+    }
+
+    /**
+     * Returns the cheapest complete combination which allows at most the
+     * specified number of swept races.
+     *
+     * @param combinations
+     *            The combinations returned by the sweep
+     * @param maxAllowed
+     *            The maximum number of allowed races
+     * @return The cheapest combination or null if none is complete
+     */
+    public static RaceCombination getCheapest(
+        final Collection<RaceCombination> combinations, final int maxAllowed)
+    {
+        RaceCombination best = null;
+        for (final RaceCombination combination: combinations)
+        {
+            if (!combination.isComplete()) continue;
+            if (combination.getAllowedRaces().size() > maxAllowed) continue;
+            if (best == null || ORDER.compare(combination, best) < 0)
+                best = combination;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the most profitable complete combination which allows at most
+     * the specified number of swept races.
+     *
+     * @param combinations
+     *            The combinations returned by the sweep
+     * @param maxAllowed
+     *            The maximum number of allowed races
+     * @return The most profitable combination or null if none is complete
+     */
+    public static RaceCombination getMostProfitable(
+        final Collection<RaceCombination> combinations, final int maxAllowed)
+    {
+        RaceCombination best = null;
+        for (final RaceCombination combination: combinations)
+        {
+            if (!combination.isComplete()) continue;
+            if (combination.getAllowedRaces().size() > maxAllowed) continue;
+            if (best == null || combination.getProfit() > best.getProfit()
+                || (combination.getProfit() == best.getProfit()
+                    && ORDER.compare(combination, best) < 0))
+                best = combination;
+        }
+        return best;
+    }
+}
@@ -347,48 +347,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getDistance(final Sector dest)
     {
-        final Set<Sector> seen = new HashSet<Sector>();
-        Set<Sector> todo = new HashSet<Sector>();
-
-        // We begin with the current sector and a distance of 0
-        todo.add(this);
-        int distance = 0;
-
-        // This loop is repeated until no more TODOs are present. If the
-        // target sector is reached then the loop is exited with a return
-        while (todo.size() > 0)
-        {
-            final Set<Sector> newTodo = new HashSet<Sector>();
-            for (final Sector sector : todo)
-            {
-                // When we have reached our destination sector then return
-                // the distance traveled so far
-                if (dest.equals(sector)) return distance;
-
-                // Mark this sector as already seen
-                seen.add(sector);
-
-                // Add the sectors which can be reached from the current sector
-                // to the new TODOs list if they are not already seen
-                Sector tmp = sector.getNorth();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getEast();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getWest();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getSouth();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-            }
-
-            // In the next run process our new TODOs list
-            todo = newTodo;
-
-            // Increment the distance
-            distance++;
-        }
-
-        // No more TODOs and target sector was not reached
-        return -1;
+        return this.game.getSectorFactory().getJumps(this, dest);
     }
 
     /**
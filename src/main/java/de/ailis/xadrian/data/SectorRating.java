@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * The rating of a complex placed in a specific sector. Created by the
+ * {@link LocationSearch}.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class SectorRating implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** Compares ratings by profit (Highest profit first). */
+    public static final Comparator<SectorRating> BY_PROFIT =
+        new Comparator<SectorRating>()
+        {
+            @Override
+            public int compare(final SectorRating a, final SectorRating b)
+            {
+                final int result = Double.compare(b.profit, a.profit);
+                if (result != 0) return result;
+                return BY_KIT_DISTANCE.compare(a, b);
+            }
+        };
+
+    /** Compares ratings by return on investment (Best return first). */
+    public static final Comparator<SectorRating> BY_RETURN_ON_INVESTMENT =
+        new Comparator<SectorRating>()
+        {
+            @Override
+            public int compare(final SectorRating a, final SectorRating b)
+            {
+                final int result = Double.compare(
+                    b.getReturnOnInvestment(), a.getReturnOnInvestment());
+                if (result != 0) return result;
+                return BY_KIT_DISTANCE.compare(a, b);
+            }
+        };
+
+    /**
+     * Compares ratings by the distance to the nearest kit selling shipyard
+     * (Nearest first, unreachable shipyards last).
+     */
+    public static final Comparator<SectorRating> BY_KIT_DISTANCE =
+        new Comparator<SectorRating>()
+        {
+            @Override
+            public int compare(final SectorRating a, final SectorRating b)
+            {
+                final int distanceA = a.kitDistance < 0 ? Integer.MAX_VALUE
+                    : a.kitDistance;
+                final int distanceB = b.kitDistance < 0 ? Integer.MAX_VALUE
+                    : b.kitDistance;
+                if (distanceA != distanceB) return distanceA < distanceB ? -1
+                    : 1;
+                return a.sector.compareTo(b.sector);
+            }
+        };
+
+    /** The rated sector */
+    private final Sector sector;
+
+    /** The profit per hour of the complex in this sector */
+    private final double profit;
+
+    /** The total price of the complex in this sector */
+    private final long price;
+
+    /** The nearest sector selling complex construction kits. May be null */
+    private final Sector kitSector;
+
+    /** The number of jumps to the kit selling sector. -1 if unreachable */
+    private final int kitDistance;
+
+    /**
+     * Constructor
+     *
+     * @param sector
+     *            The rated sector
+     * @param profit
+     *            The profit per hour of the complex in this sector
+     * @param price
+     *            The total price of the complex in this sector
+     * @param kitSector
+     *            The nearest sector selling complex construction kits. Null
+     *            if none
+     * @param kitDistance
+     *            The number of jumps to the kit selling sector. -1 if none
+     */
+    public SectorRating(final Sector sector, final double profit,
+        final long price, final Sector kitSector, final int kitDistance)
+    {
+        this.sector = sector;
+        this.profit = profit;
+        this.price = price;
+        this.kitSector = kitSector;
+        this.kitDistance = kitDistance;
+    }
+
+    /**
+     * Returns the rated sector.
+     *
+     * @return The rated sector. Never null
+     */
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Returns the profit per hour of the complex in this sector.
+     *
+     * @return The profit per hour
+     */
+    public double getProfit()
+    {
+        return this.profit;
+    }
+
+    /**
+     * Returns the total price of the complex in this sector.
+     *
+     * @return The total price
+     */
+    public long getPrice()
+    {
+        return this.price;
+    }
+
+    /**
+     * Returns the return on investment per hour. This is the profit per hour
+     * divided by the complex price.
+     *
+     * @return The return on investment per hour. 0 if complex is free
+     */
+    public double getReturnOnInvestment()
+    {
+        if (this.price == 0) return 0;
+        return this.profit / this.price;
+    }
+
+    /**
+     * Returns the number of hours needed until the complex has paid off.
+     *
+     * @return The payback time in hours. Infinite if complex makes no profit
+     */
+    public double getPaybackTime()
+    {
+        if (this.profit <= 0) return Double.POSITIVE_INFINITY;
+        return this.price / this.profit;
+    }
+
+    /**
+     * Returns the nearest sector selling complex construction kits.
+     *
+     * @return The kit selling sector. Null if none is reachable
+     */
+    public Sector getKitSector()
+    {
+        return this.kitSector;
+    }
+
+    /**
+     * Returns the number of jumps to the nearest sector selling complex
+     * construction kits.
+     *
+     * @return The number of jumps. -1 if no kit selling sector is reachable
+     */
+    public int getKitDistance()
+    {
+        return this.kitDistance;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return this.sector + " (" + Math.round(this.profit) + " Cr)";
+    }
+}
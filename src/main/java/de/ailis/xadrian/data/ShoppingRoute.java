@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The trips needed to buy the rest of a shopping list with a freighter of
+ * a specific cargo capacity.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ShoppingRoute
+{
+    /** The planned shopping list */
+    private final ShoppingList shoppingList;
+
+    /** The cargo capacity of the freighter */
+    private final int capacity;
+
+    /** The trips */
+    private final List<ShoppingTrip> trips;
+
+    /** The factories which can't be bought with the freighter */
+    private final List<ShoppingListItem> unroutableFactories;
+
+    /** The number of kits which can't be bought with the freighter */
+    private final int unroutableKits;
+
+    /**
+     * Constructor
+     *
+     * @param shoppingList
+     *            The planned shopping list
+     * @param capacity
+     *            The cargo capacity of the freighter
+     * @param trips
+     *            The trips
+     * @param unroutableFactories
+     *            The factories which can't be bought
+     * @param unroutableKits
+     *            The number of kits which can't be bought
+     */
+    ShoppingRoute(final ShoppingList shoppingList, final int capacity,
+        final List<ShoppingTrip> trips,
+        final List<ShoppingListItem> unroutableFactories,
+        final int unroutableKits)
+    {
+        this.shoppingList = shoppingList;
+        this.capacity = capacity;
+        this.trips = Collections.unmodifiableList(trips);
+        this.unroutableFactories =
+            Collections.unmodifiableList(unroutableFactories);
+        this.unroutableKits = unroutableKits;
+    }
+
+    /**
+     * Returns the planned shopping list.
+     *
+     * @return The shopping list
+     */
+    public ShoppingList getShoppingList()
+    {
+        return this.shoppingList;
+    }
+
+    /**
+     * Returns the cargo capacity of the freighter.
+     *
+     * @return The cargo capacity
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the trips.
+     *
+     * @return The trips
+     */
+    public List<ShoppingTrip> getTrips()
+    {
+        return this.trips;
+    }
+
+    /**
+     * Returns the total number of jumps of all trips.
+     *
+     * @return The number of jumps
+     */
+    public int getTotalJumps()
+    {
+        int jumps = 0;
+        for (final ShoppingTrip trip: this.trips)
+            jumps += trip.getJumps();
+        return jumps;
+    }
+
+    /**
+     * Returns the factories which can't be bought with the freighter because
+     * they are larger than the cargo capacity or no manufacturer can be
+     * reached from the complex sector. The quantities are the number of
+     * factories left out.
+     *
+     * @return The unroutable factories
+     */
+    public List<ShoppingListItem> getUnroutableFactories()
+    {
+        return this.unroutableFactories;
+    }
+
+    /**
+     * Returns the number of kits which can't be bought with the freighter.
+     *
+     * @return The number of unroutable kits
+     */
+    public int getUnroutableKits()
+    {
+        return this.unroutableKits;
+    }
+
+    /**
+     * Checks if all factories and kits of the shopping list are covered by
+     * the trips.
+     *
+     * @return True if the route is complete, false if not
+     */
+    public boolean isComplete()
+    {
+        return this.unroutableFactories.isEmpty() && this.unroutableKits == 0;
+    }
+}
@@ -0,0 +1,599 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.ailis.xadrian.data.factories.SectorFactory;
+
+/**
+ * Plans the trips of a freighter which buys the rest of a shopping list at
+ * the nearest manufacturers and brings everything to the complex sector.
+ * Distances are the number of gate jumps.
+ *
+ * The factories and kits are first packed into loads which fit into the
+ * cargo bay (Loads of a single sector are only split when they don't fit
+ * into one trip). The loads are then assigned to trips with a nearest
+ * neighbour heuristic which is improved with 2-opt and Or-opt moves inside
+ * the trips and by relocating loads between trips. This finishes within
+ * milliseconds for realistic shopping lists so the route can be updated
+ * whenever the shopping list changes.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ShoppingRoutePlanner
+{
+    /** The default cargo capacity (Large enough for every factory) */
+    public static final int DEFAULT_CAPACITY = 30000;
+
+    /** Orders units by volume (Largest first) */
+    private static final Comparator<Factory> LARGEST_FIRST =
+        new Comparator<Factory>()
+        {
+            @Override
+            public int compare(final Factory a, final Factory b)
+            {
+                return getUnitVolume(b) - getUnitVolume(a);
+            }
+        };
+
+    /** The shopping list */
+    private final ShoppingList shoppingList;
+
+    /** The complex sector */
+    private final Sector sector;
+
+    /** The cargo capacity of the freighter */
+    private final int capacity;
+
+    /** The loads. Index 0 is reserved for the complex sector */
+    private final List<Load> loads = new ArrayList<Load>();
+
+    /** The number of jumps between the loads (Index 0 is the complex) */
+    private int[][] jumps;
+
+    /** The unroutable factories and their number */
+    private final Map<Factory, Integer> unroutableFactories =
+        new LinkedHashMap<Factory, Integer>();
+
+    /** The number of unroutable kits */
+    private int unroutableKits;
+
+    /**
+     * Constructor
+     *
+     * @param shoppingList
+     *            The shopping list. The nearest manufacturers must be set
+     * @param sector
+     *            The complex sector where all trips start and end
+     * @param capacity
+     *            The cargo capacity of the freighter
+     */
+    public ShoppingRoutePlanner(final ShoppingList shoppingList,
+        final Sector sector, final int capacity)
+    {
+        if (sector == null)
+            throw new IllegalArgumentException("sector must be set");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.shoppingList = shoppingList;
+        this.sector = sector;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Plans the route.
+     *
+     * @return The route
+     */
+    public ShoppingRoute plan()
+    {
+        this.loads.clear();
+        this.loads.add(null);
+        this.unroutableFactories.clear();
+        this.unroutableKits = 0;
+        createLoads();
+        calculateJumps();
+
+        // Build the trips and improve them until nothing changes
+        final List<int[]> trips = createTrips();
+        boolean improved = true;
+        while (improved)
+        {
+            improved = false;
+            for (int i = 0; i < trips.size(); i++)
+            {
+                final int[] trip = trips.get(i);
+                while (twoOpt(trip) || orOpt(trip))
+                    improved = true;
+            }
+            if (relocate(trips)) improved = true;
+        }
+
+        final List<ShoppingTrip> result = new ArrayList<ShoppingTrip>();
+        for (final int[] trip: trips)
+            result.add(createTrip(trip));
+        final List<ShoppingListItem> unroutable =
+            new ArrayList<ShoppingListItem>();
+        for (final Map.Entry<Factory, Integer> entry: this.unroutableFactories
+            .entrySet())
+        {
+            final Factory factory = entry.getKey();
+            unroutable.add(new ShoppingListItem(factory, entry.getValue(),
+                factory.getNearestManufacturer(this.sector), 0));
+        }
+        return new ShoppingRoute(this.shoppingList, this.capacity, result,
+            unroutable, this.unroutableKits);
+    }
+
+    /**
+     * Packs the factories and kits of each manufacturer sector into loads
+     * which fit into the cargo bay.
+     */
+    private void createLoads()
+    {
+        final SectorFactory sectorFactory =
+            this.sector.getGame().getSectorFactory();
+        final int start = sectorFactory.getOrdinal(this.sector);
+
+        // Collect the units to buy per sector (Null factory is a kit)
+        final Map<Sector, List<Factory>> units =
+            new LinkedHashMap<Sector, List<Factory>>();
+        for (final ShoppingListItem item: this.shoppingList.getItems())
+        {
+            final Factory factory = item.getFactory();
+            final Sector manufacturer = item.getNearestManufacturer();
+            for (int i = item.getQuantityLeft(); i > 0; i--)
+            {
+                if (manufacturer == null
+                    || factory.getVolume() > this.capacity
+                    || sectorFactory.getJumps(start, sectorFactory
+                        .getOrdinal(manufacturer)) < 0)
+                    addUnroutable(factory);
+                else
+                    addUnit(units, manufacturer, factory);
+            }
+        }
+        final Sector kitSector =
+            this.shoppingList.getNearestKitSellingSector();
+        for (int i = this.shoppingList.getKitQuantityLeft(); i > 0; i--)
+        {
+            if (kitSector == null || Complex.KIT_VOLUME > this.capacity
+                || sectorFactory.getJumps(start, sectorFactory
+                    .getOrdinal(kitSector)) < 0)
+                this.unroutableKits++;
+            else
+                addUnit(units, kitSector, null);
+        }
+
+        // Pack the units of each sector (First fit decreasing)
+        for (final Map.Entry<Sector, List<Factory>> entry: units.entrySet())
+        {
+            final Sector sector = entry.getKey();
+            final int ordinal = sectorFactory.getOrdinal(sector);
+            final List<Factory> sectorUnits = entry.getValue();
+            Collections.sort(sectorUnits, LARGEST_FIRST);
+            final List<Load> sectorLoads = new ArrayList<Load>();
+            for (final Factory unit: sectorUnits)
+            {
+                final int volume = getUnitVolume(unit);
+                Load target = null;
+                for (final Load load: sectorLoads)
+                {
+                    if (load.volume + volume <= this.capacity)
+                    {
+                        target = load;
+                        break;
+                    }
+                }
+                if (target == null)
+                {
+                    target = new Load(sector, ordinal);
+                    sectorLoads.add(target);
+                }
+                target.add(unit, volume);
+            }
+            this.loads.addAll(sectorLoads);
+        }
+    }
+
+    /**
+     * Adds a unit to buy in the specified sector.
+     *
+     * @param units
+     *            The units per sector
+     * @param sector
+     *            The sector
+     * @param factory
+     *            The factory or null for a kit
+     */
+    private static void addUnit(final Map<Sector, List<Factory>> units,
+        final Sector sector, final Factory factory)
+    {
+        List<Factory> sectorUnits = units.get(sector);
+        if (sectorUnits == null)
+        {
+            sectorUnits = new ArrayList<Factory>();
+            units.put(sector, sectorUnits);
+        }
+        sectorUnits.add(factory);
+    }
+
+    /**
+     * Records a factory which can't be bought with the freighter.
+     *
+     * @param factory
+     *            The factory
+     */
+    private void addUnroutable(final Factory factory)
+    {
+        final Integer count = this.unroutableFactories.get(factory);
+        this.unroutableFactories.put(factory, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Returns the volume of a unit.
+     *
+     * @param unit
+     *            The factory or null for a kit
+     * @return The volume
+     */
+    private static int getUnitVolume(final Factory unit)
+    {
+        return unit == null ? Complex.KIT_VOLUME : unit.getVolume();
+    }
+
+    /**
+     * Calculates the jumps matrix between the complex and the loads.
+     */
+    private void calculateJumps()
+    {
+        final SectorFactory sectorFactory =
+            this.sector.getGame().getSectorFactory();
+        final int count = this.loads.size();
+        final int[] ordinals = new int[count];
+        ordinals[0] = sectorFactory.getOrdinal(this.sector);
+        for (int i = 1; i < count; i++)
+            ordinals[i] = this.loads.get(i).ordinal;
+        this.jumps = new int[count][count];
+        for (int i = 0; i < count; i++)
+            for (int j = 0; j < count; j++)
+                this.jumps[i][j] = sectorFactory.getJumps(ordinals[i],
+                    ordinals[j]);
+    }
+
+    /**
+     * Creates the initial trips with the nearest neighbour heuristic. Each
+     * trip goes to the nearest load which still fits into the cargo bay
+     * until no load fits anymore.
+     *
+     * @return The trips. Each trip is an array of load indices
+     */
+    private List<int[]> createTrips()
+    {
+        final int count = this.loads.size();
+        final boolean[] done = new boolean[count];
+        int left = count - 1;
+        final List<int[]> trips = new ArrayList<int[]>();
+        while (left > 0)
+        {
+            final List<Integer> trip = new ArrayList<Integer>();
+            int current = 0;
+            long volume = 0;
+            while (true)
+            {
+                int next = -1;
+                for (int i = 1; i < count; i++)
+                {
+                    if (done[i]) continue;
+                    if (volume + this.loads.get(i).volume > this.capacity)
+                        continue;
+                    if (next < 0
+                        || this.jumps[current][i] < this.jumps[current][next])
+                        next = i;
+                }
+                if (next < 0) break;
+                done[next] = true;
+                left--;
+                trip.add(next);
+                volume += this.loads.get(next).volume;
+                current = next;
+            }
+            final int[] array = new int[trip.size()];
+            for (int i = 0; i < array.length; i++)
+                array[i] = trip.get(i);
+            trips.add(array);
+        }
+        return trips;
+    }
+
+    /**
+     * Returns the load index at the specified tour position. Position -1 and
+     * the position after the last load are the complex.
+     *
+     * @param trip
+     *            The trip
+     * @param position
+     *            The position
+     * @return The load index (0 for the complex)
+     */
+    private static int at(final int[] trip, final int position)
+    {
+        return position < 0 || position >= trip.length ? 0 : trip[position];
+    }
+
+    /**
+     * Applies the first improving 2-opt move (Reversing a part of the trip).
+     *
+     * @param trip
+     *            The trip to improve
+     * @return True if the trip was improved, false if not
+     */
+    private boolean twoOpt(final int[] trip)
+    {
+        final int[][] d = this.jumps;
+        for (int i = 0; i < trip.length - 1; i++)
+        {
+            final int a = at(trip, i - 1), b = trip[i];
+            for (int j = i + 1; j < trip.length; j++)
+            {
+                final int c = trip[j], e = at(trip, j + 1);
+                if (d[a][c] + d[b][e] < d[a][b] + d[c][e])
+                {
+                    for (int l = i, r = j; l < r; l++, r--)
+                    {
+                        final int tmp = trip[l];
+                        trip[l] = trip[r];
+                        trip[r] = tmp;
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the first improving Or-opt move (Moving up to three
+     * consecutive loads to another position, optionally reversed).
+     *
+     * @param trip
+     *            The trip to improve
+     * @return True if the trip was improved, false if not
+     */
+    private boolean orOpt(final int[] trip)
+    {
+        final int[][] d = this.jumps;
+        final int n = trip.length;
+        for (int length = 1; length <= 3 && length < n; length++)
+        {
+            for (int i = 0; i + length <= n; i++)
+            {
+                final int first = trip[i], last = trip[i + length - 1];
+                final int prev = at(trip, i - 1), next = at(trip, i + length);
+                final int gain = d[prev][first] + d[last][next]
+                    - d[prev][next];
+                for (int k = -1; k < n; k++)
+                {
+                    if (k >= i - 1 && k < i + length) continue;
+                    final int p = at(trip, k), q = at(trip, k + 1);
+                    final int forward = d[p][first] + d[last][q] - d[p][q];
+                    final int backward = d[p][last] + d[first][q] - d[p][q];
+                    if (Math.min(forward, backward) >= gain) continue;
+                    moveSegment(trip, i, length, k, backward < forward);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves a segment of the trip behind another position.
+     *
+     * @param trip
+     *            The trip
+     * @param start
+     *            The start of the segment
+     * @param length
+     *            The length of the segment
+     * @param after
+     *            The position after which the segment is inserted (-1 for
+     *            the start of the trip). Must be outside of the segment
+     * @param reverse
+     *            If the segment is reversed
+     */
+    private static void moveSegment(final int[] trip, final int start,
+        final int length, final int after, final boolean reverse)
+    {
+        final int[] segment = new int[length];
+        for (int i = 0; i < length; i++)
+            segment[i] = trip[reverse ? start + length - 1 - i : start + i];
+        final List<Integer> rest = new ArrayList<Integer>();
+        int insert = 0;
+        for (int i = 0; i < trip.length; i++)
+        {
+            if (i >= start && i < start + length) continue;
+            rest.add(trip[i]);
+            if (i == after) insert = rest.size();
+        }
+        int pos = 0;
+        for (int i = 0; i < rest.size(); i++)
+        {
+            if (i == insert)
+                for (final int load: segment)
+                    trip[pos++] = load;
+            trip[pos++] = rest.get(i);
+        }
+        if (insert == rest.size())
+            for (final int load: segment)
+                trip[pos++] = load;
+    }
+
+    /**
+     * Applies the first improving move of a single load into another trip
+     * which has enough free cargo space. Empty trips are removed.
+     *
+     * @param trips
+     *            The trips
+     * @return True if the trips were improved, false if not
+     */
+    private boolean relocate(final List<int[]> trips)
+    {
+        final int[][] d = this.jumps;
+        for (int from = 0; from < trips.size(); from++)
+        {
+            final int[] source = trips.get(from);
+            for (int i = 0; i < source.length; i++)
+            {
+                final int load = source[i];
+                final int prev = at(source, i - 1), next = at(source, i + 1);
+                final int gain = d[prev][load] + d[load][next] - d[prev][next];
+                final int volume = this.loads.get(load).volume;
+                for (int to = 0; to < trips.size(); to++)
+                {
+                    if (to == from) continue;
+                    final int[] target = trips.get(to);
+                    if (getVolume(target) + volume > this.capacity) continue;
+                    for (int k = -1; k < target.length; k++)
+                    {
+                        final int p = at(target, k), q = at(target, k + 1);
+                        if (d[p][load] + d[load][q] - d[p][q] >= gain)
+                            continue;
+                        final int[] newSource = new int[source.length - 1];
+                        System.arraycopy(source, 0, newSource, 0, i);
+                        System.arraycopy(source, i + 1, newSource, i,
+                            newSource.length - i);
+                        final int[] newTarget = new int[target.length + 1];
+                        System.arraycopy(target, 0, newTarget, 0, k + 1);
+                        newTarget[k + 1] = load;
+                        System.arraycopy(target, k + 1, newTarget, k + 2,
+                            target.length - k - 1);
+                        trips.set(to, newTarget);
+                        if (newSource.length == 0)
+                            trips.remove(from);
+                        else
+                            trips.set(from, newSource);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cargo volume of a trip.
+     *
+     * @param trip
+     *            The trip
+     * @return The volume
+     */
+    private int getVolume(final int[] trip)
+    {
+        int volume = 0;
+        for (final int load: trip)
+            volume += this.loads.get(load).volume;
+        return volume;
+    }
+
+    /**
+     * Creates the shopping trip for the specified loads. Consecutive loads in
+     * the same sector are merged into a single stop.
+     *
+     * @param trip
+     *            The load indices
+     * @return The shopping trip
+     */
+    private ShoppingTrip createTrip(final int[] trip)
+    {
+        final List<ShoppingStop> stops = new ArrayList<ShoppingStop>();
+        int previous = 0;
+        int i = 0;
+        while (i < trip.length)
+        {
+            final Load first = this.loads.get(trip[i]);
+            final Map<Factory, Integer> factories =
+                new LinkedHashMap<Factory, Integer>();
+            int kits = 0;
+            final int jumps = this.jumps[previous][trip[i]];
+            previous = trip[i];
+            while (i < trip.length
+                && this.loads.get(trip[i]).sector.equals(first.sector))
+            {
+                for (final Factory unit: this.loads.get(trip[i]).units)
+                {
+                    if (unit == null)
+                        kits++;
+                    else
+                    {
+                        final Integer count = factories.get(unit);
+                        factories.put(unit, count == null ? 1 : count + 1);
+                    }
+                }
+                i++;
+            }
+            final List<ShoppingListItem> items =
+                new ArrayList<ShoppingListItem>();
+            for (final Map.Entry<Factory, Integer> entry: factories.entrySet())
+                items.add(new ShoppingListItem(entry.getKey(), entry
+                    .getValue(), first.sector, 0));
+            Collections.sort(items);
+            stops.add(new ShoppingStop(first.sector, items, kits, jumps));
+        }
+        return new ShoppingTrip(stops, this.jumps[previous][0]);
+    }
+
+    /**
+     * Factories and kits bought together in one sector.
+     */
+    private static final class Load
+    {
+        /** The sector */
+        final Sector sector;
+
+        /** The sector ordinal */
+        final int ordinal;
+
+        /** The units (Null for a kit) */
+        final List<Factory> units = new ArrayList<Factory>();
+
+        /** The volume */
+        int volume;
+
+        /**
+         * Constructor
+         *
+         * @param sector
+         *            The sector
+         * @param ordinal
+         *            The sector ordinal
+         */
+        Load(final Sector sector, final int ordinal)
+        {
+            this.sector = sector;
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * Adds a unit.
+         *
+         * @param unit
+         *            The factory or null for a kit
+         * @param volume
+         *            The volume of the unit
+         */
+        void add(final Factory unit, final int volume)
+        {
+            this.units.add(unit);
+            this.volume += volume;
+        }
+    }
+}
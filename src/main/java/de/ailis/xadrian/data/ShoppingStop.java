@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A stop of a shopping trip. The quantities of the shopping list items are
+ * the number of factories bought at this stop.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ShoppingStop
+{
+    /** The sector of the stop */
+    private final Sector sector;
+
+    /** The factories bought at this stop */
+    private final List<ShoppingListItem> factories;
+
+    /** The number of complex construction kits bought at this stop */
+    private final int kits;
+
+    /** The number of jumps from the previous stop */
+    private final int jumps;
+
+    /**
+     * Constructor
+     *
+     * @param sector
+     *            The sector of the stop
+     * @param factories
+     *            The factories bought at this stop
+     * @param kits
+     *            The number of kits bought at this stop
+     * @param jumps
+     *            The number of jumps from the previous stop
+     */
+    ShoppingStop(final Sector sector, final List<ShoppingListItem> factories,
+        final int kits, final int jumps)
+    {
+        this.sector = sector;
+        this.factories = Collections.unmodifiableList(factories);
+        this.kits = kits;
+        this.jumps = jumps;
+    }
+
+    /**
+     * Returns the sector of the stop.
+     *
+     * @return The sector
+     */
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Returns the factories bought at this stop.
+     *
+     * @return The factories
+     */
+    public List<ShoppingListItem> getFactories()
+    {
+        return this.factories;
+    }
+
+    /**
+     * Returns the number of complex construction kits bought at this stop.
+     *
+     * @return The number of kits
+     */
+    public int getKits()
+    {
+        return this.kits;
+    }
+
+    /**
+     * Returns the number of jumps from the previous stop (Or from the complex
+     * sector for the first stop of a trip).
+     *
+     * @return The number of jumps
+     */
+    public int getJumps()
+    {
+        return this.jumps;
+    }
+
+    /**
+     * Returns the volume of the wares bought at this stop.
+     *
+     * @return The volume
+     */
+    public long getVolume()
+    {
+        long volume = ((long) this.kits) * Complex.KIT_VOLUME;
+        for (final ShoppingListItem item: this.factories)
+            volume += item.getTotalVolume();
+        return volume;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single trip of a freighter starting and ending in the complex sector.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ShoppingTrip
+{
+    /** The stops */
+    private final List<ShoppingStop> stops;
+
+    /** The number of jumps from the last stop back to the complex */
+    private final int returnJumps;
+
+    /**
+     * Constructor
+     *
+     * @param stops
+     *            The stops
+     * @param returnJumps
+     *            The number of jumps from the last stop back to the complex
+     */
+    ShoppingTrip(final List<ShoppingStop> stops, final int returnJumps)
+    {
+        this.stops = Collections.unmodifiableList(stops);
+        this.returnJumps = returnJumps;
+    }
+
+    /**
+     * Returns the stops in the order they are visited.
+     *
+     * @return The stops
+     */
+    public List<ShoppingStop> getStops()
+    {
+        return this.stops;
+    }
+
+    /**
+     * Returns the number of jumps from the last stop back to the complex.
+     *
+     * @return The number of jumps
+     */
+    public int getReturnJumps()
+    {
+        return this.returnJumps;
+    }
+
+    /**
+     * Returns the total number of jumps of this trip including the return to
+     * the complex.
+     *
+     * @return The number of jumps
+     */
+    public int getJumps()
+    {
+        int jumps = this.returnJumps;
+        for (final ShoppingStop stop: this.stops)
+            jumps += stop.getJumps();
+        return jumps;
+    }
+
+    /**
+     * Returns the cargo volume the freighter carries back to the complex.
+     *
+     * @return The volume
+     */
+    public long getVolume()
+    {
+        long volume = 0;
+        for (final ShoppingStop stop: this.stops)
+            volume += stop.getVolume();
+        return volume;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a production simulation. Factory statistics are summed up
+ * over all single factories of a complex factory. Times are in seconds.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class SimulationResult
+{
+    /** The simulated complex factories */
+    private final List<ComplexFactory> factories;
+
+    /** The number of single factories per complex factory */
+    private final int[] units;
+
+    /** The completed cycles per complex factory */
+    private final long[] cycles;
+
+    /** The number of stalls per complex factory */
+    private final long[] stalls;
+
+    /** The time the factories waited for resources */
+    private final long[] starvedTimes;
+
+    /** The time the factories waited for free storage for the product */
+    private final long[] blockedTimes;
+
+    /** The simulated wares */
+    private final List<Ware> wares;
+
+    /** The storage capacities of the wares */
+    private final double[] capacities;
+
+    /** The highest stock of the wares */
+    private final double[] peakStocks;
+
+    /** The stock of the wares at the end of the simulation */
+    private final double[] finalStocks;
+
+    /** The bought units of the wares */
+    private final double[] bought;
+
+    /** The sold units of the wares */
+    private final double[] sold;
+
+    /** The simulated time */
+    private final long duration;
+
+    /** The number of processed events */
+    private final long events;
+
+    /** The time when the production reached a steady state. -1 if never */
+    private final long steadyStateTime;
+
+    /**
+     * Constructor
+     *
+     * @param factories
+     *            The simulated complex factories
+     * @param units
+     *            The number of single factories per complex factory
+     * @param cycles
+     *            The completed cycles per complex factory
+     * @param stalls
+     *            The number of stalls per complex factory
+     * @param starvedTimes
+     *            The time the factories waited for resources
+     * @param blockedTimes
+     *            The time the factories waited for free storage
+     * @param wares
+     *            The simulated wares
+     * @param capacities
+     *            The storage capacities of the wares
+     * @param peakStocks
+     *            The highest stock of the wares
+     * @param finalStocks
+     *            The stock of the wares at the end of the simulation
+     * @param bought
+     *            The bought units of the wares
+     * @param sold
+     *            The sold units of the wares
+     * @param duration
+     *            The simulated time
+     * @param events
+     *            The number of processed events
+     * @param steadyStateTime
+     *            The time when the production reached a steady state. -1 if
+     *            never
+     */
+    SimulationResult(final List<ComplexFactory> factories, final int[] units,
+        final long[] cycles, final long[] stalls, final long[] starvedTimes,
+        final long[] blockedTimes, final List<Ware> wares,
+        final double[] capacities, final double[] peakStocks,
+        final double[] finalStocks, final double[] bought,
+        final double[] sold, final long duration, final long events,
+        final long steadyStateTime)
+    {
+        this.factories = Collections.unmodifiableList(factories);
+        this.units = units;
+        this.cycles = cycles;
+        this.stalls = stalls;
+        this.starvedTimes = starvedTimes;
+        this.blockedTimes = blockedTimes;
+        this.wares = Collections.unmodifiableList(wares);
+        this.capacities = capacities;
+        this.peakStocks = peakStocks;
+        this.finalStocks = finalStocks;
+        this.bought = bought;
+        this.sold = sold;
+        this.duration = duration;
+        this.events = events;
+        this.steadyStateTime = steadyStateTime;
+    }
+
+    /**
+     * Returns the simulated complex factories.
+     *
+     * @return The complex factories
+     */
+    public List<ComplexFactory> getFactories()
+    {
+        return this.factories;
+    }
+
+    /**
+     * Returns the number of completed production cycles of the specified
+     * complex factory.
+     *
+     * @param index
+     *            The complex factory index
+     * @return The number of completed cycles
+     */
+    public long getCycles(final int index)
+    {
+        return this.cycles[index];
+    }
+
+    /**
+     * Returns how often the factories of the specified complex factory
+     * stalled.
+     *
+     * @param index
+     *            The complex factory index
+     * @return The number of stalls
+     */
+    public long getStalls(final int index)
+    {
+        return this.stalls[index];
+    }
+
+    /**
+     * Returns the time the factories of the specified complex factory waited
+     * for resources.
+     *
+     * @param index
+     *            The complex factory index
+     * @return The starved time in seconds
+     */
+    public long getStarvedTime(final int index)
+    {
+        return this.starvedTimes[index];
+    }
+
+    /**
+     * Returns the time the factories of the specified complex factory waited
+     * for free storage for their product.
+     *
+     * @param index
+     *            The complex factory index
+     * @return The blocked time in seconds
+     */
+    public long getBlockedTime(final int index)
+    {
+        return this.blockedTimes[index];
+    }
+
+    /**
+     * Returns the share of the simulated time the factories of the specified
+     * complex factory were producing.
+     *
+     * @param index
+     *            The complex factory index
+     * @return The utilization (0.0 - 1.0)
+     */
+    public double getUtilization(final int index)
+    {
+        final double total = (double) this.duration * this.units[index];
+        if (total == 0) return 0;
+        return 1 - (this.starvedTimes[index] + this.blockedTimes[index])
+            / total;
+    }
+
+    /**
+     * Returns the simulated wares.
+     *
+     * @return The wares
+     */
+    public List<Ware> getWares()
+    {
+        return this.wares;
+    }
+
+    /**
+     * Returns the storage capacity of the specified ware.
+     *
+     * @param index
+     *            The ware index
+     * @return The storage capacity in units
+     */
+    public double getCapacity(final int index)
+    {
+        return this.capacities[index];
+    }
+
+    /**
+     * Returns the highest stock of the specified ware.
+     *
+     * @param index
+     *            The ware index
+     * @return The peak stock in units
+     */
+    public double getPeakStock(final int index)
+    {
+        return this.peakStocks[index];
+    }
+
+    /**
+     * Returns the stock of the specified ware at the end of the simulation.
+     *
+     * @param index
+     *            The ware index
+     * @return The final stock in units
+     */
+    public double getFinalStock(final int index)
+    {
+        return this.finalStocks[index];
+    }
+
+    /**
+     * Returns the number of bought units of the specified ware.
+     *
+     * @param index
+     *            The ware index
+     * @return The bought units
+     */
+    public double getBought(final int index)
+    {
+        return this.bought[index];
+    }
+
+    /**
+     * Returns the number of sold units of the specified ware.
+     *
+     * @param index
+     *            The ware index
+     * @return The sold units
+     */
+    public double getSold(final int index)
+    {
+        return this.sold[index];
+    }
+
+    /**
+     * Returns the simulated time.
+     *
+     * @return The simulated time in seconds
+     */
+    public long getDuration()
+    {
+        return this.duration;
+    }
+
+    /**
+     * Returns the number of processed events.
+     *
+     * @return The number of events
+     */
+    public long getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * Returns the time when the production reached a steady state.
+     *
+     * @return The time in seconds or -1 if the production never settled
+     */
+    public long getSteadyStateTime()
+    {
+        return this.steadyStateTime;
+    }
+
+    /**
+     * Checks if any factory stalled during the simulation.
+     *
+     * @return True if at least one factory stalled, false if not
+     */
+    public boolean hasStalls()
+    {
+        for (final long count: this.stalls)
+            if (count > 0) return true;
+        return false;
+    }
+}
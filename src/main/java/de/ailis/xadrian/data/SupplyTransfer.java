@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+/**
+ * A transfer of a ware from a complex with a surplus to a complex which
+ * needs it.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class SupplyTransfer
+{
+    /** The transferred ware */
+    private final Ware ware;
+
+    /** The name of the supplying complex */
+    private final String source;
+
+    /** The sector of the supplying complex */
+    private final Sector sourceSector;
+
+    /** The name of the receiving complex */
+    private final String target;
+
+    /** The sector of the receiving complex */
+    private final Sector targetSector;
+
+    /** The transferred units per hour */
+    private final double quantity;
+
+    /** The number of jumps between the two complexes */
+    private final int jumps;
+
+    /**
+     * Constructor
+     *
+     * @param ware
+     *            The transferred ware
+     * @param source
+     *            The name of the supplying complex
+     * @param sourceSector
+     *            The sector of the supplying complex
+     * @param target
+     *            The name of the receiving complex
+     * @param targetSector
+     *            The sector of the receiving complex
+     * @param quantity
+     *            The transferred units per hour
+     * @param jumps
+     *            The number of jumps between the two complexes
+     */
+    SupplyTransfer(final Ware ware, final String source,
+        final Sector sourceSector, final String target,
+        final Sector targetSector, final double quantity, final int jumps)
+    {
+        this.ware = ware;
+        this.source = source;
+        this.sourceSector = sourceSector;
+        this.target = target;
+        this.targetSector = targetSector;
+        this.quantity = quantity;
+        this.jumps = jumps;
+    }
+
+    /**
+     * Returns the transferred ware.
+     *
+     * @return The ware
+     */
+    public Ware getWare()
+    {
+        return this.ware;
+    }
+
+    /**
+     * Returns the name of the supplying complex.
+     *
+     * @return The name of the supplying complex
+     */
+    public String getSource()
+    {
+        return this.source;
+    }
+
+    /**
+     * Returns the sector of the supplying complex.
+     *
+     * @return The sector of the supplying complex
+     */
+    public Sector getSourceSector()
+    {
+        return this.sourceSector;
+    }
+
+    /**
+     * Returns the name of the receiving complex.
+     *
+     * @return The name of the receiving complex
+     */
+    public String getTarget()
+    {
+        return this.target;
+    }
+
+    /**
+     * Returns the sector of the receiving complex.
+     *
+     * @return The sector of the receiving complex
+     */
+    public Sector getTargetSector()
+    {
+        return this.targetSector;
+    }
+
+    /**
+     * Returns the transferred units per hour.
+     *
+     * @return The units per hour
+     */
+    public double getQuantity()
+    {
+        return this.quantity;
+    }
+
+    /**
+     * Returns the number of jumps between the two complexes.
+     *
+     * @return The number of jumps
+     */
+    public int getJumps()
+    {
+        return this.jumps;
+    }
+
+    /**
+     * Returns the transfer cost which is the number of units moved over one
+     * jump per hour.
+     *
+     * @return The transfer cost
+     */
+    public double getCost()
+    {
+        return this.quantity * this.jumps;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+/**
+ * The price sensitivity of a single ware traded by a complex. The profit of
+ * a complex is linear in the ware prices (Production is not affected by
+ * prices) so all values are exact and not estimated.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class WareSensitivity
+{
+    /** The ware */
+    private final Ware ware;
+
+    /** The surplus per hour. Negative if the ware is bought */
+    private final double surplus;
+
+    /** The current price */
+    private final int price;
+
+    /** The total profit of the complex per hour */
+    private final double profit;
+
+    /**
+     * Constructor
+     *
+     * @param ware
+     *            The ware
+     * @param surplus
+     *            The surplus per hour. Negative if the ware is bought
+     * @param price
+     *            The current price
+     * @param profit
+     *            The total profit of the complex per hour
+     */
+    WareSensitivity(final Ware ware, final double surplus, final int price,
+        final double profit)
+    {
+        this.ware = ware;
+        this.surplus = surplus;
+        this.price = price;
+        this.profit = profit;
+    }
+
+    /**
+     * Returns the ware.
+     *
+     * @return The ware
+     */
+    public Ware getWare()
+    {
+        return this.ware;
+    }
+
+    /**
+     * Returns the surplus per hour.
+     *
+     * @return The surplus. Negative if the ware is bought
+     */
+    public double getSurplus()
+    {
+        return this.surplus;
+    }
+
+    /**
+     * Checks if the ware is sold by the complex.
+     *
+     * @return True if the ware is sold, false if it is bought
+     */
+    public boolean isSold()
+    {
+        return this.surplus > 0;
+    }
+
+    /**
+     * Returns the current buy or sell price.
+     *
+     * @return The price
+     */
+    public int getPrice()
+    {
+        return this.price;
+    }
+
+    /**
+     * Returns the contribution of this ware to the profit per hour. Negative
+     * for bought wares.
+     *
+     * @return The profit contribution per hour
+     */
+    public double getContribution()
+    {
+        return this.surplus * this.price;
+    }
+
+    /**
+     * Returns the derivative of the profit per hour with respect to the
+     * price of this ware. This is how much the profit changes when the price
+     * is raised by one credit.
+     *
+     * @return The profit change per hour and credit
+     */
+    public double getDerivative()
+    {
+        return this.surplus;
+    }
+
+    /**
+     * Returns the price at which the complex neither gains nor loses money
+     * when all other prices stay the same. For a sold ware this is the lowest
+     * acceptable sell price, for a bought ware the highest acceptable buy
+     * price.
+     *
+     * @return The break-even price
+     */
+    public double getBreakEvenPrice()
+    {
+        return this.price - this.profit / this.surplus;
+    }
+
+    /**
+     * Checks if the complex can break even by changing the price of this
+     * ware alone. This is not the case when a sold ware could be given away
+     * for free without making the complex lose money.
+     *
+     * @return True if a non-negative break-even price exists, false if not
+     */
+    public boolean hasBreakEvenPrice()
+    {
+        return getBreakEvenPrice() >= 0;
+    }
+
+    /**
+     * Returns the elasticity of the profit with respect to the price of this
+     * ware. This is the relative profit change caused by a relative price
+     * change, so an elasticity of 2 means the profit changes by 2% when the
+     * price changes by 1%.
+     *
+     * @return The elasticity. 0 if the complex has no profit
+     */
+    public double getElasticity()
+    {
+        if (this.profit == 0) return 0;
+        return getContribution() / this.profit;
+    }
+}
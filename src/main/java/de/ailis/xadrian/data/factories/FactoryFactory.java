@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -405,6 +406,27 @@ public class FactoryFactory implements Serializable
      */
     public SortedSet<FactorySize> getFactorySizes(final Ware ware,
         final Race race, final boolean useIgnores)
+    {
+        final Set<Race> ignoredRaces = useIgnores ? this.game.getRaceFactory()
+            .getIgnoredRaces() : Collections.<Race>emptySet();
+        return getFactorySizes(ware, race, ignoredRaces);
+    }
+
+    /**
+     * Returns the available sizes of factories producing the specified ware and
+     * belonging to the specified race. The configured ignored races are not
+     * used.
+     * 
+     * @param ware
+     *            The product id ware
+     * @param race
+     *            Optional race to filter for. Maybe null
+     * @param ignoredRaces
+     *            The races which factories are not used
+     * @return The set with available factory sizes
+     */
+    public SortedSet<FactorySize> getFactorySizes(final Ware ware,
+        final Race race, final Set<Race> ignoredRaces)
     {
         final SortedSet<FactorySize> sizes = new TreeSet<FactorySize>();
 
@@ -414,8 +436,7 @@ public class FactoryFactory implements Serializable
             if (race != null && !factory.getRace().equals(race)) continue;
 
             // Ignore factories of ignored races.
-            if (useIgnores && config.isRaceIgnored(factory.getRace()))
-                continue;
+            if (ignoredRaces.contains(factory.getRace())) continue;
 
             if (factory.getProduct().getWare().equals(ware))
                 sizes.add(factory.getSize());
@@ -454,12 +475,54 @@ public class FactoryFactory implements Serializable
      */
     public Factory getCheapestFactory(final Ware ware, final FactorySize size,
         final boolean useIgnores)
+    {
+        return getCheapestFactory(ware, size, this.game.getRaceFactory()
+            .getIgnoredRaces(), useIgnores);
+    }
+
+    /**
+     * Returns the cheapest factory of the given size which produces the
+     * specified ware. Returns null if none found. The configured ignored
+     * races are not used.
+     * 
+     * @param ware
+     *            The ware
+     * @param size
+     *            The factory size
+     * @param ignoredRaces
+     *            The races which factories are not used
+     * @return The cheapest matching factory or null if none found.
+     */
+    public Factory getCheapestFactory(final Ware ware, final FactorySize size,
+        final Set<Race> ignoredRaces)
+    {
+        return getCheapestFactory(ware, size, ignoredRaces, true);
+    }
+
+    /**
+     * Returns the cheapest factory of the given size which produces the
+     * specified ware. Returns null if none found.
+     * 
+     * @param ware
+     *            The ware
+     * @param size
+     *            The factory size
+     * @param ignoredRaces
+     *            The ignored races
+     * @param useIgnores
+     *            True to ignore factories from ignored races. False to
+     *            use them anyway (But make them more expensive).
+     * @return The cheapest matching factory or null if none found.
+     */
+    private Factory getCheapestFactory(final Ware ware,
+        final FactorySize size, final Set<Race> ignoredRaces,
+        final boolean useIgnores)
     {
         Factory cheapestFactory = null;
         int cheapestPrice = Integer.MAX_VALUE;
         for (final Factory factory : this.factories)
         {
-            final boolean isIgnored = config.isRaceIgnored(factory.getRace());
+            final boolean isIgnored = ignoredRaces.contains(factory.getRace());
 
             // Ignore factories of ignored races.
             if (useIgnores && isIgnored) continue;
@@ -491,9 +554,29 @@ public class FactoryFactory implements Serializable
      * @return True if the race has matching factories, false if not
      */
     public boolean hasFactories(final Race race, final Ware ware)
+    {
+        return hasFactories(race, ware, this.game.getRaceFactory()
+            .getIgnoredRaces());
+    }
+
+    /**
+     * Checks if the specified race has at least one factory which produces the
+     * specified ware. If the race is one of the specified ignored races then
+     * this method always returns false.
+     * 
+     * @param race
+     *            The race
+     * @param ware
+     *            The ware
+     * @param ignoredRaces
+     *            The ignored races
+     * @return True if the race has matching factories, false if not
+     */
+    public boolean hasFactories(final Race race, final Ware ware,
+        final Set<Race> ignoredRaces)
     {
         // If race is ignored then it can't have matching factories
-        if (config.isRaceIgnored(race)) return false;
+        if (ignoredRaces.contains(race)) return false;
 
         for (final Factory factory : this.factories)
         {
@@ -11,7 +11,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -25,6 +27,7 @@ import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Race;
 import de.ailis.xadrian.exceptions.DataException;
 import de.ailis.xadrian.frames.SplashFrame;
+import de.ailis.xadrian.support.Config;
 
 /**
  * Factory for Race objects.
@@ -115,6 +118,22 @@ public class RaceFactory implements Serializable
         return races;
     }
 
+    /**
+     * Returns the races which are set to be ignored in the configuration.
+     *
+     * @return The ignored races. Never null
+     */
+    public Set<Race> getIgnoredRaces()
+    {
+        final Config config = Config.getInstance();
+        final Set<Race> ignoredRaces = new HashSet<Race>();
+        for (final Race race : this.races)
+        {
+            if (config.isRaceIgnored(race)) ignoredRaces.add(race);
+        }
+        return ignoredRaces;
+    }
+
     /**
      * Returns the race with the specified id or null if not found.
      *
@@ -6,6 +6,9 @@ package de.ailis.xadrian.data.factories;
 
 import java.io.Serializable;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -48,6 +51,19 @@ public class SectorFactory implements Serializable
     /** The sector map (for quick ID navigation) */
     private final Map<String, Sector> sectorMap = new HashMap<String, Sector>();
 
+    /** The sectors in the order of their ordinals */
+    private final List<Sector> sectorList = new ArrayList<Sector>();
+
+    /** Map from sector ID to sector ordinal */
+    private final Map<String, Integer> ordinals =
+        new HashMap<String, Integer>();
+
+    /**
+     * The number of jumps between all sectors (Indexed by sector ordinals).
+     * -1 if a sector is unreachable. Lazily calculated on first access.
+     */
+    private volatile short[][] jumps;
+
     /** The maximum X position */
     private int maxX = 0;
 
@@ -148,6 +164,8 @@ public class SectorFactory implements Serializable
 
                 this.sectors.add(sector);
                 this.sectorMap.put(id, sector);
+                this.ordinals.put(id, this.sectorList.size());
+                this.sectorList.add(sector);
 
                 this.maxSiliconYield = Math.max(this.maxSiliconYield, sector
                     .getTotalSiliconYield());
@@ -165,6 +183,75 @@ public class SectorFactory implements Serializable
         }
     }
 
+    /**
+     * Returns the number of jumps between all sectors. The matrix is
+     * calculated on first access.
+     *
+     * @return The jumps matrix indexed by sector ordinals
+     */
+    private short[][] getJumpsMatrix()
+    {
+        short[][] jumps = this.jumps;
+        if (jumps == null)
+        {
+            synchronized (this)
+            {
+                jumps = this.jumps;
+                if (jumps == null) this.jumps = jumps = calculateJumps();
+            }
+        }
+        return jumps;
+    }
+
+    /**
+     * Calculates the number of jumps between all sectors with a breadth
+     * first search starting in each sector.
+     *
+     * @return The jumps matrix indexed by sector ordinals
+     */
+    private short[][] calculateJumps()
+    {
+        final int count = this.sectorList.size();
+
+        // Resolve the gate connections into ordinals
+        final int[][] neighbours = new int[count][];
+        for (int i = 0; i < count; i++)
+        {
+            final Sector sector = this.sectorList.get(i);
+            final Sector[] gates = new Sector[] { sector.getNorth(),
+                sector.getEast(), sector.getWest(), sector.getSouth() };
+            final int[] ordinals = new int[gates.length];
+            int gateCount = 0;
+            for (final Sector gate : gates)
+                if (gate != null) ordinals[gateCount++] = getOrdinal(gate);
+            neighbours[i] = Arrays.copyOf(ordinals, gateCount);
+        }
+
+        // Run a breadth first search from each sector
+        final short[][] jumps = new short[count][count];
+        final int[] queue = new int[count];
+        for (int start = 0; start < count; start++)
+        {
+            final short[] distances = jumps[start];
+            Arrays.fill(distances, (short) -1);
+            distances[start] = 0;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            while (head < tail)
+            {
+                final int current = queue[head++];
+                for (final int next : neighbours[current])
+                {
+                    if (distances[next] >= 0) continue;
+                    distances[next] = (short) (distances[current] + 1);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return jumps;
+    }
+
     /**
      * Checks if sector has a shipyard.
      *
@@ -258,6 +345,99 @@ public class SectorFactory implements Serializable
         return this.sectorMap.get(id);
     }
 
+    /**
+     * Returns the number of sectors.
+     *
+     * @return The number of sectors
+     */
+    public int getSectorCount()
+    {
+        return this.sectorList.size();
+    }
+
+    /**
+     * Returns the ordinal of the specified sector. The ordinals are numbered
+     * from 0 to {@link #getSectorCount()} - 1 and never change while the
+     * program is running.
+     *
+     * @param sector
+     *            The sector
+     * @return The sector ordinal or -1 if sector is not from this game
+     */
+    public int getOrdinal(final Sector sector)
+    {
+        if (!sector.getGame().equals(this.game)) return -1;
+        final Integer ordinal = this.ordinals.get(sector.getId());
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the sector with the specified ordinal.
+     *
+     * @param ordinal
+     *            The sector ordinal
+     * @return The sector
+     */
+    public Sector getSectorByOrdinal(final int ordinal)
+    {
+        return this.sectorList.get(ordinal);
+    }
+
+    /**
+     * Returns the number of jumps needed to get from one sector to another.
+     *
+     * @param from
+     *            The start sector
+     * @param to
+     *            The destination sector
+     * @return The number of jumps. -1 if destination sector is unreachable
+     *         or one of the sectors doesn't belong to this game
+     */
+    public int getJumps(final Sector from, final Sector to)
+    {
+        final int fromOrdinal = getOrdinal(from);
+        final int toOrdinal = getOrdinal(to);
+        if (fromOrdinal < 0 || toOrdinal < 0) return -1;
+        return getJumps(fromOrdinal, toOrdinal);
+    }
+
+    /**
+     * Returns the number of jumps needed to get from one sector to another.
+     *
+     * @param from
+     *            The ordinal of the start sector
+     * @param to
+     *            The ordinal of the destination sector
+     * @return The number of jumps. -1 if destination sector is unreachable
+     */
+    public int getJumps(final int from, final int to)
+    {
+        return getJumpsMatrix()[from][to];
+    }
+
+    /**
+     * Returns the ordinals of all sectors which can be reached from the
+     * specified sector with the specified maximum number of jumps. The
+     * sector itself is always included.
+     *
+     * @param sector
+     *            The start sector
+     * @param maxJumps
+     *            The maximum number of jumps
+     * @return The ordinals of the reachable sectors
+     */
+    public BitSet getSectorsWithin(final Sector sector, final int maxJumps)
+    {
+        final short[] distances = getJumpsMatrix()[getOrdinal(sector)];
+        final BitSet result = new BitSet(distances.length);
+        for (int i = 0; i < distances.length; i++)
+        {
+            final int distance = distances[i];
+            if (distance >= 0 && distance <= maxJumps) result.set(i);
+        }
+        return result;
+    }
+
     /**
      * Returns the maximum X position in the universe.
      *
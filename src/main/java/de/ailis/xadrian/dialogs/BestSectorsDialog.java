@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.LocationSearch;
+import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.SectorRating;
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog which rates a complex in all sectors of the game and lets the user
+ * select the sector to move the complex to.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BestSectorsDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The logger */
+    private static final Log log = LogFactory.getLog(BestSectorsDialog.class);
+
+    /** The column names */
+    private static final String[] COLUMNS = { "sector", "suns", "profit",
+        "price", "returnOnInvestment", "paybackTime", "kitSector",
+        "kitDistance" };
+
+    /** The location search */
+    private final LocationSearch search;
+
+    /** The table model */
+    private RatingsTableModel model;
+
+    /** The ratings table */
+    private JTable table;
+
+    /** The progress bar */
+    private JProgressBar progressBar;
+
+    /** The worker rating the sectors in the background */
+    private SwingWorker<List<SectorRating>, Void> worker;
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to rate. Must not be null.
+     */
+    public BestSectorsDialog(final Complex complex)
+    {
+        if (complex == null)
+            throw new IllegalArgumentException("complex must be set");
+        this.search = new LocationSearch(complex);
+        init("bestSectors", Result.OK, Result.CANCEL);
+        setResultEnabled(Result.OK, false);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        // Create the ratings table
+        this.model = new RatingsTableModel();
+        final JTable table = this.table = new JTable(this.model);
+        table.setAutoCreateRowSorter(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(
+            new ListSelectionListener()
+            {
+                @Override
+                public void valueChanged(final ListSelectionEvent e)
+                {
+                    setResultEnabled(Result.OK, getSelected() != null);
+                }
+            });
+        final JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(720, 400));
+
+        // Create the progress bar
+        this.progressBar = new JProgressBar(0, 100);
+        this.progressBar.setStringPainted(true);
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 5));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(new JLabel(I18N
+            .getString("dialog.bestSectors.description")), BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(this.progressBar, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#open()
+     */
+    @Override
+    public Result open()
+    {
+        startSearch();
+        try
+        {
+            return super.open();
+        }
+        finally
+        {
+            this.worker.cancel(true);
+        }
+    }
+
+    /**
+     * Starts rating the sectors in the background.
+     */
+    private void startSearch()
+    {
+        final LocationSearch search = this.search;
+        final JProgressBar progressBar = this.progressBar;
+        this.worker = new SwingWorker<List<SectorRating>, Void>()
+        {
+            @Override
+            protected List<SectorRating> doInBackground()
+                throws InterruptedException
+            {
+                return search.rateSectors(new ProgressListener()
+                {
+                    @Override
+                    public void progressChanged(final int done, final int total)
+                    {
+                        setProgress(done * 100 / total);
+                    }
+                });
+            }
+
+            @Override
+            protected void done()
+            {
+                progressBar.setVisible(false);
+                try
+                {
+                    BestSectorsDialog.this.model.setRatings(get());
+                }
+                catch (final CancellationException e)
+                {
+                    // Dialog has been closed. Nothing to do.
+                }
+                catch (final InterruptedException e)
+                {
+                    // Dialog has been closed. Nothing to do.
+                }
+                catch (final ExecutionException e)
+                {
+                    log.error("Unable to rate sectors: " + e, e);
+                    JOptionPane.showMessageDialog(null, I18N
+                        .getString("error.cantRateSectors"), I18N
+                        .getString("error.title"), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        this.worker.addPropertyChangeListener(new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(final PropertyChangeEvent evt)
+            {
+                if ("progress".equals(evt.getPropertyName()))
+                    progressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+        this.worker.execute();
+    }
+
+    /**
+     * Returns the selected sector.
+     *
+     * @return The selected sector or null if none
+     */
+    public Sector getSelected()
+    {
+        final int row = this.table.getSelectedRow();
+        if (row < 0) return null;
+        return this.model.getRating(this.table.convertRowIndexToModel(row))
+            .getSector();
+    }
+
+    /**
+     * Table model for the sector ratings.
+     */
+    private static class RatingsTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The ratings */
+        private final List<SectorRating> ratings =
+            new ArrayList<SectorRating>();
+
+        /**
+         * Sets the ratings to display.
+         *
+         * @param ratings
+         *            The ratings
+         */
+        public void setRatings(final List<SectorRating> ratings)
+        {
+            this.ratings.clear();
+            this.ratings.addAll(ratings);
+            fireTableDataChanged();
+        }
+
+        /**
+         * Returns the rating in the specified row.
+         *
+         * @param row
+         *            The row index
+         * @return The rating
+         */
+        public SectorRating getRating(final int row)
+        {
+            return this.ratings.get(row);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.ratings.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString("dialog.bestSectors." + COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnClass(int)
+         */
+        @Override
+        public Class<?> getColumnClass(final int column)
+        {
+            switch (column)
+            {
+                case 0:
+                case 1:
+                case 6:
+                    return String.class;
+                case 3:
+                    return Long.class;
+                case 7:
+                    return Integer.class;
+                default:
+                    return Double.class;
+            }
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final SectorRating rating = this.ratings.get(row);
+            switch (column)
+            {
+                case 0:
+                    return rating.getSector().getName();
+                case 1:
+                    return rating.getSector().getSuns().toString();
+                case 2:
+                    return (double) Math.round(rating.getProfit());
+                case 3:
+                    return rating.getPrice();
+                case 4:
+                    return Math.round(rating.getReturnOnInvestment() * 10000)
+                        / 100d;
+                case 5:
+                    final double paybackTime = rating.getPaybackTime();
+                    if (Double.isInfinite(paybackTime)) return paybackTime;
+                    return Math.round(paybackTime * 10) / 10d;
+                case 6:
+                    return rating.getKitSector() == null ? "-" : rating
+                        .getKitSector().getName();
+                default:
+                    return rating.getKitDistance();
+            }
+        }
+    }
+}
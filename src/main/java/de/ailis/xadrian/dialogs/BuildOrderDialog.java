@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.table.AbstractTableModel;
+
+import de.ailis.xadrian.data.BuildSchedule;
+import de.ailis.xadrian.data.BuildScheduler;
+import de.ailis.xadrian.data.BuildStep;
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog which calculates the order in which the factories of the current
+ * complex are bought when starting with a limited budget and reinvesting
+ * the profit.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BuildOrderDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The complex to build */
+    private final Complex complex;
+
+    /** The budget spinner */
+    private JSpinner budgetSpinner;
+
+    /** The steps table model */
+    private StepsTableModel model;
+
+    /** The result label */
+    private JLabel resultLabel;
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to build. Must not be null.
+     */
+    public BuildOrderDialog(final Complex complex)
+    {
+        if (complex == null)
+            throw new IllegalArgumentException("complex must be set");
+        this.complex = complex;
+        init("buildOrder", Result.OK);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        // Create the budget controls
+        this.budgetSpinner = new JSpinner(new SpinnerNumberModel(
+            Long.valueOf(5000000), Long.valueOf(0),
+            Long.valueOf(Long.MAX_VALUE), Long.valueOf(1000000)));
+        this.budgetSpinner.setPreferredSize(new Dimension(130,
+            this.budgetSpinner.getPreferredSize().height));
+        final JLabel budgetLabel = new JLabel(I18N
+            .getString("dialog.buildOrder.budget"));
+        budgetLabel.setDisplayedMnemonic(I18N
+            .getMnemonic("dialog.buildOrder.budget"));
+        budgetLabel.setLabelFor(this.budgetSpinner);
+        final JButton scheduleButton = new JButton(I18N
+            .getString("dialog.buildOrder.schedule"));
+        scheduleButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                schedule();
+            }
+        });
+
+        final JPanel budgetPanel = new JPanel();
+        budgetPanel.setLayout(new BoxLayout(budgetPanel, BoxLayout.X_AXIS));
+        budgetPanel.add(budgetLabel);
+        budgetPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        budgetPanel.add(this.budgetSpinner);
+        budgetPanel.add(Box.createRigidArea(new Dimension(15, 0)));
+        budgetPanel.add(scheduleButton);
+
+        final JPanel controlsPanel = new JPanel(new BorderLayout(5, 5));
+        controlsPanel.add(new JLabel(I18N
+            .getString("dialog.buildOrder.description")), BorderLayout.NORTH);
+        controlsPanel.add(budgetPanel, BorderLayout.CENTER);
+
+        // Create the steps table
+        this.model = new StepsTableModel();
+        final JScrollPane scrollPane = new JScrollPane(new JTable(this.model));
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+
+        this.resultLabel = new JLabel(" ");
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(controlsPanel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(this.resultLabel, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * Calculates and displays the build schedule for the entered budget.
+     */
+    void schedule()
+    {
+        final BuildSchedule schedule = new BuildScheduler(this.complex,
+            (Long) this.budgetSpinner.getValue()).schedule();
+        this.model.setSteps(schedule.getSteps());
+        final NumberFormat formatter = NumberFormat.getNumberInstance();
+        formatter.setMaximumFractionDigits(1);
+        if (!schedule.isComplete())
+            this.resultLabel.setText(I18N
+                .getString("dialog.buildOrder.incomplete"));
+        else
+            this.resultLabel.setText(I18N.getString(
+                "dialog.buildOrder.result", formatter.format(schedule
+                    .getCompletionTime()), formatter.format(schedule
+                    .getPaybackTime())));
+    }
+
+    /**
+     * Table model for the build steps.
+     */
+    private static class StepsTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The column message keys */
+        private static final String[] COLUMNS = { "dialog.buildOrder.time",
+            "dialog.buildOrder.factory", "dialog.buildOrder.price",
+            "dialog.buildOrder.cash", "dialog.buildOrder.profit",
+            "dialog.buildOrder.roi" };
+
+        /** The steps */
+        private final List<BuildStep> steps = new ArrayList<BuildStep>();
+
+        /**
+         * Sets the steps to display.
+         *
+         * @param steps
+         *            The steps
+         */
+        public void setSteps(final List<BuildStep> steps)
+        {
+            this.steps.clear();
+            this.steps.addAll(steps);
+            fireTableDataChanged();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.steps.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString(COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final BuildStep step = this.steps.get(row);
+            final NumberFormat formatter = NumberFormat.getNumberInstance();
+            switch (column)
+            {
+                case 0:
+                    formatter.setMaximumFractionDigits(1);
+                    return formatter.format(step.getTime());
+
+                case 1:
+                    if (step.isKit())
+                        return I18N.getString("dialog.buildOrder.withKit",
+                            step.getFactory().getName());
+                    return step.getFactory().getName();
+
+                case 2:
+                    return formatter.format(step.getPrice());
+
+                case 3:
+                    return formatter.format(Math.round(step.getCash()));
+
+                case 4:
+                    return formatter.format(Math.round(step.getProfit()));
+
+                default:
+                    return formatter.format(Math.round(100 * step.getEarned()
+                        / step.getInvested()));
+            }
+        }
+    }
+}
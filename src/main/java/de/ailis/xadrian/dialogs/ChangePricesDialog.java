@@ -38,7 +38,6 @@ import javax.swing.event.ChangeListener;
 import de.ailis.xadrian.data.Complex;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Ware;
-import de.ailis.xadrian.data.factories.WareFactory;
 import de.ailis.xadrian.frames.SplashFrame;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog;
@@ -122,7 +121,6 @@ final public class ChangePricesDialog extends ModalDialog
      */
     private void initContent(final Complex complex)
     {
-        final WareFactory wareFactory = this.game.getWareFactory();
         final Color gray = new Color(0xee, 0xee, 0xee);
         final NumberFormat formatter = NumberFormat.getNumberInstance();
         JSpinner focusComponent = null;
@@ -134,11 +132,8 @@ final public class ChangePricesDialog extends ModalDialog
         c.gridy = 0;
         c.insets = new Insets(0, 0, 0, 0);
         c.fill = GridBagConstraints.BOTH;
-        for (final Ware ware : wareFactory.getWares())
+        for (final Ware ware : complex.getUsedWares())
         {
-            // Ignore ware if not used by the complex
-            if (!complex.usesWare(ware)) continue;
-
             // Get price and check if ware is used
             int price;
             final boolean used;
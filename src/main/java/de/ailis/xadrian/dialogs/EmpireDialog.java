@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridLayout;
+import java.text.NumberFormat;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+import de.ailis.xadrian.data.Empire;
+import de.ailis.xadrian.data.EmpireWare;
+import de.ailis.xadrian.data.SupplyTransfer;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog which shows the summed up supply and demand of all open complexes
+ * and the transfers of surplus wares from one complex to another.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class EmpireDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The empire to display */
+    private final Empire empire;
+
+    /**
+     * Constructor
+     *
+     * @param empire
+     *            The empire to display. Must not be null.
+     */
+    public EmpireDialog(final Empire empire)
+    {
+        if (empire == null)
+            throw new IllegalArgumentException("empire must be set");
+        this.empire = empire;
+        init("empire", Result.OK);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        final JScrollPane waresPane = new JScrollPane(new JTable(
+            new WaresTableModel(this.empire.getWares())));
+        waresPane.setPreferredSize(new Dimension(650, 200));
+        final List<SupplyTransfer> transfers = this.empire.getTransfers();
+        final JScrollPane transfersPane = new JScrollPane(new JTable(
+            new TransfersTableModel(transfers)));
+        transfersPane.setPreferredSize(new Dimension(650, 150));
+
+        final JPanel tablesPanel = new JPanel(new GridLayout(2, 1, 0, 10));
+        tablesPanel.add(waresPane);
+        tablesPanel.add(transfersPane);
+
+        final NumberFormat formatter = NumberFormat.getNumberInstance();
+        formatter.setMaximumFractionDigits(1);
+        final JLabel resultLabel = new JLabel(I18N.getString(
+            "dialog.empire.result", this.empire.getComplexCount(),
+            transfers.size(), formatter.format(this.empire.getTransferCost())));
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(new JLabel(I18N
+            .getString("dialog.empire.description")), BorderLayout.NORTH);
+        contentPanel.add(tablesPanel, BorderLayout.CENTER);
+        contentPanel.add(resultLabel, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * Table model for the summed up wares.
+     */
+    private static class WaresTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The column message keys */
+        private static final String[] COLUMNS = { "dialog.empire.ware",
+            "dialog.empire.produced", "dialog.empire.needed",
+            "dialog.empire.balance", "dialog.empire.transferred",
+            "dialog.empire.surplus", "dialog.empire.missing" };
+
+        /** The wares */
+        private final List<EmpireWare> wares;
+
+        /**
+         * Constructor
+         *
+         * @param wares
+         *            The wares to display
+         */
+        public WaresTableModel(final List<EmpireWare> wares)
+        {
+            this.wares = wares;
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.wares.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString(COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final EmpireWare ware = this.wares.get(row);
+            final NumberFormat formatter = NumberFormat.getNumberInstance();
+            formatter.setMaximumFractionDigits(1);
+            switch (column)
+            {
+                case 0:
+                    return ware.getWare().getName();
+
+                case 1:
+                    return formatter.format(ware.getProduced());
+
+                case 2:
+                    return formatter.format(ware.getNeeded());
+
+                case 3:
+                    return formatter.format(ware.getBalance());
+
+                case 4:
+                    return formatter.format(ware.getTransferred());
+
+                case 5:
+                    return formatter.format(ware.getSurplus());
+
+                default:
+                    return formatter.format(ware.getMissing());
+            }
+        }
+    }
+
+    /**
+     * Table model for the planned transfers.
+     */
+    private static class TransfersTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The column message keys */
+        private static final String[] COLUMNS = { "dialog.empire.ware",
+            "dialog.empire.source", "dialog.empire.target",
+            "dialog.empire.quantity", "dialog.empire.jumps" };
+
+        /** The transfers */
+        private final List<SupplyTransfer> transfers;
+
+        /**
+         * Constructor
+         *
+         * @param transfers
+         *            The transfers to display
+         */
+        public TransfersTableModel(final List<SupplyTransfer> transfers)
+        {
+            this.transfers = transfers;
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.transfers.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString(COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final SupplyTransfer transfer = this.transfers.get(row);
+            final NumberFormat formatter = NumberFormat.getNumberInstance();
+            formatter.setMaximumFractionDigits(1);
+            switch (column)
+            {
+                case 0:
+                    return transfer.getWare().getName();
+
+                case 1:
+                    return I18N.getString("dialog.empire.location", transfer
+                        .getSource(), transfer.getSourceSector().getName());
+
+                case 2:
+                    return I18N.getString("dialog.empire.location", transfer
+                        .getTarget(), transfer.getTargetSector().getName());
+
+                case 3:
+                    return formatter.format(transfer.getQuantity());
+
+                default:
+                    return transfer.getJumps();
+            }
+        }
+    }
+}
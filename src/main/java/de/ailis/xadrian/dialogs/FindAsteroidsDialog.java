@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import de.ailis.xadrian.components.SectorComboBox;
+import de.ailis.xadrian.data.AsteroidIndex;
+import de.ailis.xadrian.data.AsteroidLocation;
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.Ware;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog for searching the asteroids with the best yields in the whole
+ * universe or around a specific sector. The user can select one of the found
+ * asteroids to move the complex to its sector.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class FindAsteroidsDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The column names */
+    private static final String[] COLUMNS = { "sector", "suns", "yield",
+        "jumps" };
+
+    /** The game. */
+    private final Game game;
+
+    /** The asteroid index */
+    private final AsteroidIndex index;
+
+    /** The ware combo box */
+    private JComboBox wareComboBox;
+
+    /** The minimum yield spinner */
+    private JSpinner minYieldSpinner;
+
+    /** The sector combo box */
+    private SectorComboBox sectorComboBox;
+
+    /** The maximum jumps spinner */
+    private JSpinner maxJumpsSpinner;
+
+    /** The table model */
+    private AsteroidsTableModel model;
+
+    /** The results table */
+    private JTable table;
+
+    /**
+     * Constructor.
+     *
+     * @param game
+     *            The game. Must not be null.
+     */
+    public FindAsteroidsDialog(final Game game)
+    {
+        if (game == null)
+            throw new IllegalArgumentException("game must be set");
+        this.game = game;
+        this.index = game.getAsteroidIndex();
+        init("findAsteroids", Result.OK, Result.CANCEL);
+        setResultEnabled(Result.OK, false);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        final ChangeListener changeListener = new ChangeListener()
+        {
+            @Override
+            public void stateChanged(final ChangeEvent e)
+            {
+                search();
+            }
+        };
+        final ActionListener actionListener = new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                search();
+            }
+        };
+
+        // Create the search controls
+        this.wareComboBox = new JComboBox(this.index.getWares().toArray());
+        this.wareComboBox.addActionListener(actionListener);
+        this.minYieldSpinner = new JSpinner(new SpinnerNumberModel(0, 0,
+            999, 1));
+        this.minYieldSpinner.addChangeListener(changeListener);
+        this.sectorComboBox = new SectorComboBox(this.game);
+        this.sectorComboBox.addActionListener(actionListener);
+        this.maxJumpsSpinner = new JSpinner(new SpinnerNumberModel(3, 0, 99,
+            1));
+        this.maxJumpsSpinner.addChangeListener(changeListener);
+
+        final JPanel controlsPanel = new JPanel();
+        controlsPanel.setLayout(new BoxLayout(controlsPanel, BoxLayout.X_AXIS));
+        addControl(controlsPanel, "ware", this.wareComboBox);
+        addControl(controlsPanel, "minYield", this.minYieldSpinner);
+        addControl(controlsPanel, "near", this.sectorComboBox);
+        addControl(controlsPanel, "maxJumps", this.maxJumpsSpinner);
+
+        // Create the results table
+        this.model = new AsteroidsTableModel();
+        final JTable table = this.table = new JTable(this.model);
+        table.setAutoCreateRowSorter(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(
+            new ListSelectionListener()
+            {
+                @Override
+                public void valueChanged(final ListSelectionEvent e)
+                {
+                    setResultEnabled(Result.OK, getSelected() != null);
+                }
+            });
+        final JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(600, 400));
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 5));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(controlsPanel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+
+        search();
+    }
+
+    /**
+     * Adds a labeled control to the specified panel.
+     *
+     * @param panel
+     *            The panel
+     * @param key
+     *            The message key of the label (Without dialog prefix)
+     * @param control
+     *            The control
+     */
+    private static void addControl(final JPanel panel, final String key,
+        final JComponent control)
+    {
+        final String fullKey = "dialog.findAsteroids." + key;
+        final JLabel label = new JLabel(I18N.getString(fullKey));
+        label.setDisplayedMnemonic(I18N.getMnemonic(fullKey));
+        label.setLabelFor(control);
+        if (panel.getComponentCount() > 0)
+            panel.add(Box.createRigidArea(new Dimension(15, 0)));
+        panel.add(label);
+        panel.add(Box.createRigidArea(new Dimension(5, 0)));
+        panel.add(control);
+    }
+
+    /**
+     * Sets the sector to search around.
+     *
+     * @param sector
+     *            The sector. Null to search the whole universe
+     */
+    public void setSector(final Sector sector)
+    {
+        this.sectorComboBox.setSelectedItem(sector);
+        search();
+    }
+
+    /**
+     * Searches the asteroids matching the current search controls and
+     * displays them.
+     */
+    private void search()
+    {
+        // Ignore events fired while the UI is still being created
+        if (this.model == null) return;
+
+        final Ware ware = (Ware) this.wareComboBox.getSelectedItem();
+        final Sector sector = (Sector) this.sectorComboBox.getSelectedItem();
+        final int minYield = (Integer) this.minYieldSpinner.getValue();
+        final List<AsteroidLocation> asteroids;
+        if (ware == null)
+            asteroids = new ArrayList<AsteroidLocation>();
+        else if (sector == null)
+            asteroids = this.index.getByMinYield(ware, minYield);
+        else
+            asteroids = this.index.getNear(ware, sector,
+                (Integer) this.maxJumpsSpinner.getValue(), minYield,
+                Integer.MAX_VALUE);
+        this.maxJumpsSpinner.setEnabled(sector != null);
+        this.model.setAsteroids(asteroids, sector);
+    }
+
+    /**
+     * Returns the sector of the selected asteroid.
+     *
+     * @return The selected sector or null if none
+     */
+    public Sector getSelected()
+    {
+        final int row = this.table.getSelectedRow();
+        if (row < 0) return null;
+        return this.model.getAsteroid(this.table.convertRowIndexToModel(row))
+            .getSector();
+    }
+
+    /**
+     * Table model for the found asteroids.
+     */
+    private static class AsteroidsTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The asteroids */
+        private final List<AsteroidLocation> asteroids =
+            new ArrayList<AsteroidLocation>();
+
+        /** The sector to measure the jumps from. May be null */
+        private Sector origin;
+
+        /**
+         * Sets the asteroids to display.
+         *
+         * @param asteroids
+         *            The asteroids
+         * @param origin
+         *            The sector to measure the jumps from. May be null
+         */
+        public void setAsteroids(final List<AsteroidLocation> asteroids,
+            final Sector origin)
+        {
+            this.asteroids.clear();
+            this.asteroids.addAll(asteroids);
+            this.origin = origin;
+            fireTableDataChanged();
+        }
+
+        /**
+         * Returns the asteroid in the specified row.
+         *
+         * @param row
+         *            The row index
+         * @return The asteroid
+         */
+        public AsteroidLocation getAsteroid(final int row)
+        {
+            return this.asteroids.get(row);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.asteroids.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString("dialog.findAsteroids." + COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnClass(int)
+         */
+        @Override
+        public Class<?> getColumnClass(final int column)
+        {
+            return column < 2 ? String.class : Integer.class;
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final AsteroidLocation asteroid = this.asteroids.get(row);
+            switch (column)
+            {
+                case 0:
+                    return asteroid.getSector().getName();
+                case 1:
+                    return asteroid.getSector().getSuns().toString();
+                case 2:
+                    return asteroid.getYield();
+                default:
+                    if (this.origin == null) return null;
+                    return this.origin.getDistance(asteroid.getSector());
+            }
+        }
+    }
+}
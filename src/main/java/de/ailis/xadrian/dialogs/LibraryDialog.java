@@ -0,0 +1,552 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.ComplexLibrary;
+import de.ailis.xadrian.data.ComplexSummary;
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.Ware;
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog for scanning a directory tree of complex files into the complex
+ * library and searching it. The selected complex file can be opened.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LibraryDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The logger */
+    private static final Log log = LogFactory.getLog(LibraryDialog.class);
+
+    /** The library */
+    private final ComplexLibrary library;
+
+    /** The directory text field */
+    private JTextField directoryField;
+
+    /** The browse button */
+    private JButton browseButton;
+
+    /** The scan button */
+    private JButton scanButton;
+
+    /** The game combo box */
+    private JComboBox gameComboBox;
+
+    /** The produced ware combo box */
+    private JComboBox wareComboBox;
+
+    /** The minimum profit text field */
+    private JTextField profitField;
+
+    /** The progress bar */
+    private JProgressBar progressBar;
+
+    /** The summaries table model */
+    private SummariesTableModel model;
+
+    /** The summaries table */
+    private JTable table;
+
+    /** The result label */
+    private JLabel resultLabel;
+
+    /** The currently running worker. Null if none */
+    private SwingWorker<Void, Void> worker;
+
+    /**
+     * Constructor
+     */
+    public LibraryDialog()
+    {
+        this.library = ComplexLibrary.getDefault();
+        init("library", Result.OK, Result.CANCEL);
+        setResultEnabled(Result.OK, false);
+        search();
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        // Create the directory controls
+        final File root = this.library.getRoot();
+        this.directoryField = new JTextField(root == null ? System
+            .getProperty("user.home") : root.getPath(), 30);
+        this.browseButton = new JButton(I18N
+            .getString("dialog.library.browse"));
+        this.browseButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                browse();
+            }
+        });
+        this.scanButton = new JButton(I18N.getString("dialog.library.scan"));
+        this.scanButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                startScan();
+            }
+        });
+        final JPanel directoryPanel = new JPanel();
+        directoryPanel.setLayout(new BoxLayout(directoryPanel,
+            BoxLayout.X_AXIS));
+        directoryPanel.add(new JLabel(I18N
+            .getString("dialog.library.directory")));
+        directoryPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        directoryPanel.add(this.directoryField);
+        directoryPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        directoryPanel.add(this.browseButton);
+        directoryPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        directoryPanel.add(this.scanButton);
+
+        // Create the query controls
+        final ActionListener searchListener = new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                search();
+            }
+        };
+        this.gameComboBox = new JComboBox();
+        this.gameComboBox.addItem(I18N.getString("dialog.library.any"));
+        for (final Game game: GameFactory.getInstance().getGames())
+            this.gameComboBox.addItem(game);
+        this.gameComboBox.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                updateWares();
+                search();
+            }
+        });
+        this.wareComboBox = new JComboBox();
+        updateWares();
+        this.wareComboBox.addActionListener(searchListener);
+        this.profitField = new JTextField(8);
+        this.profitField.addActionListener(searchListener);
+        final JPanel queryPanel = new JPanel();
+        queryPanel.setLayout(new BoxLayout(queryPanel, BoxLayout.X_AXIS));
+        queryPanel.add(new JLabel(I18N.getString("dialog.library.game")));
+        queryPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        queryPanel.add(this.gameComboBox);
+        queryPanel.add(Box.createRigidArea(new Dimension(10, 0)));
+        queryPanel.add(new JLabel(I18N.getString("dialog.library.produces")));
+        queryPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        queryPanel.add(this.wareComboBox);
+        queryPanel.add(Box.createRigidArea(new Dimension(10, 0)));
+        queryPanel.add(new JLabel(I18N.getString("dialog.library.minProfit")));
+        queryPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        queryPanel.add(this.profitField);
+
+        final JPanel controlsPanel = new JPanel(new BorderLayout(5, 5));
+        controlsPanel.add(new JLabel(I18N
+            .getString("dialog.library.description")), BorderLayout.NORTH);
+        controlsPanel.add(directoryPanel, BorderLayout.CENTER);
+        controlsPanel.add(queryPanel, BorderLayout.SOUTH);
+
+        // Create the summaries table
+        this.model = new SummariesTableModel();
+        final JTable table = this.table = new JTable(this.model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(
+            new ListSelectionListener()
+            {
+                @Override
+                public void valueChanged(final ListSelectionEvent e)
+                {
+                    setResultEnabled(Result.OK, getSelectedFile() != null);
+                }
+            });
+        final JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(650, 300));
+
+        // Create the progress bar and the result label
+        this.progressBar = new JProgressBar(0, 100);
+        this.progressBar.setStringPainted(true);
+        this.resultLabel = new JLabel(" ");
+
+        final JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+        statusPanel.add(this.progressBar, BorderLayout.NORTH);
+        statusPanel.add(this.resultLabel, BorderLayout.CENTER);
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(controlsPanel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(statusPanel, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#open()
+     */
+    @Override
+    public Result open()
+    {
+        try
+        {
+            return super.open();
+        }
+        finally
+        {
+            cancelScan();
+        }
+    }
+
+    /**
+     * Returns the selected game.
+     *
+     * @return The selected game or null for any game
+     */
+    private Game getSelectedGame()
+    {
+        final Object item = this.gameComboBox.getSelectedItem();
+        return item instanceof Game ? (Game) item : null;
+    }
+
+    /**
+     * Fills the ware combo box with the wares of the selected game.
+     */
+    void updateWares()
+    {
+        final Game game = getSelectedGame();
+        this.wareComboBox.removeAllItems();
+        this.wareComboBox.addItem(I18N.getString("dialog.library.any"));
+        if (game != null) for (final Ware ware: game.getWareFactory()
+            .getWares())
+            this.wareComboBox.addItem(ware);
+        this.wareComboBox.setEnabled(game != null);
+    }
+
+    /**
+     * Lets the user choose the directory to scan.
+     */
+    void browse()
+    {
+        final JFileChooser chooser = new JFileChooser(this.directoryField
+            .getText());
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
+            this.directoryField.setText(chooser.getSelectedFile().getPath());
+    }
+
+    /**
+     * Searches the library with the current query and displays the result.
+     */
+    void search()
+    {
+        final ComplexLibrary.Query query = new ComplexLibrary.Query();
+        final Game game = getSelectedGame();
+        if (game != null) query.setGame(game.getId());
+        final Object ware = this.wareComboBox.getSelectedItem();
+        if (ware instanceof Ware) query.getProduced().add(((Ware) ware)
+            .getId());
+        final String profit = this.profitField.getText().trim();
+        if (profit.length() > 0)
+        {
+            try
+            {
+                query.setMinProfit(NumberFormat.getNumberInstance().parse(
+                    profit).longValue());
+            }
+            catch (final ParseException e)
+            {
+                this.profitField.selectAll();
+                this.profitField.requestFocus();
+                return;
+            }
+        }
+        final List<ComplexSummary> summaries = this.library.search(query);
+        this.model.setSummaries(summaries);
+        this.resultLabel.setText(I18N.getString("dialog.library.result",
+            summaries.size(), this.library.getSummaries().size()));
+        if (!summaries.isEmpty()) this.table.setRowSelectionInterval(0, 0);
+    }
+
+    /**
+     * Scans the selected directory in the background.
+     */
+    void startScan()
+    {
+        cancelScan();
+        final File root = new File(this.directoryField.getText().trim());
+        if (!root.isDirectory())
+        {
+            this.directoryField.selectAll();
+            this.directoryField.requestFocus();
+            return;
+        }
+        this.progressBar.setValue(0);
+        setControlsEnabled(false);
+
+        final ComplexLibrary library = this.library;
+        final SwingWorker<Void, Void> worker = this.worker =
+            new SwingWorker<Void, Void>()
+            {
+                @Override
+                protected Void doInBackground() throws InterruptedException,
+                    IOException
+                {
+                    library.scan(root, new ProgressListener()
+                    {
+                        @Override
+                        public void progressChanged(final int done,
+                            final int total)
+                        {
+                            setProgress(total == 0 ? 100 : done * 100
+                                / total);
+                        }
+                    });
+                    library.save();
+                    library.watch();
+                    return null;
+                }
+
+                @Override
+                protected void done()
+                {
+                    if (LibraryDialog.this.worker != this) return;
+                    LibraryDialog.this.worker = null;
+                    setControlsEnabled(true);
+                    try
+                    {
+                        get();
+                    }
+                    catch (final CancellationException e)
+                    {
+                        // Scan has been cancelled. Nothing to do.
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        // Scan has been cancelled. Nothing to do.
+                    }
+                    catch (final ExecutionException e)
+                    {
+                        if (e.getCause() instanceof InterruptedException)
+                            return;
+                        log.error("Unable to scan complex library: " + e, e);
+                        JOptionPane.showMessageDialog(null, I18N
+                            .getString("error.cantScanLibrary"), I18N
+                            .getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                    search();
+                }
+            };
+        final JProgressBar progressBar = this.progressBar;
+        worker.addPropertyChangeListener(new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(final PropertyChangeEvent evt)
+            {
+                if ("progress".equals(evt.getPropertyName()))
+                    progressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+        worker.execute();
+    }
+
+    /**
+     * Cancels the running scan (if any).
+     */
+    private void cancelScan()
+    {
+        if (this.worker == null) return;
+        this.library.cancel();
+        this.worker.cancel(true);
+        this.worker = null;
+        setControlsEnabled(true);
+    }
+
+    /**
+     * Enables or disables the scan controls.
+     *
+     * @param enabled
+     *            True to enable the controls, false to disable them
+     */
+    void setControlsEnabled(final boolean enabled)
+    {
+        this.directoryField.setEnabled(enabled);
+        this.browseButton.setEnabled(enabled);
+        this.scanButton.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the selected complex file.
+     *
+     * @return The selected complex file or null if none
+     */
+    public File getSelectedFile()
+    {
+        final int row = this.table.getSelectedRow();
+        if (row < 0) return null;
+        return this.model.getSummary(row).getFile();
+    }
+
+    /**
+     * Table model for the complex summaries.
+     */
+    private static class SummariesTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The column message keys */
+        private static final String[] COLUMNS = { "dialog.library.file",
+            "dialog.library.game", "dialog.library.sector",
+            "dialog.library.price", "dialog.library.profit" };
+
+        /** The summaries */
+        private final List<ComplexSummary> summaries =
+            new ArrayList<ComplexSummary>();
+
+        /**
+         * Sets the summaries to display.
+         *
+         * @param summaries
+         *            The summaries
+         */
+        public void setSummaries(final List<ComplexSummary> summaries)
+        {
+            this.summaries.clear();
+            this.summaries.addAll(summaries);
+            fireTableDataChanged();
+        }
+
+        /**
+         * Returns the summary in the specified row.
+         *
+         * @param row
+         *            The row index
+         * @return The summary
+         */
+        public ComplexSummary getSummary(final int row)
+        {
+            return this.summaries.get(row);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.summaries.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString(COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final ComplexSummary summary = this.summaries.get(row);
+            final NumberFormat formatter = NumberFormat.getNumberInstance();
+            final GameFactory games = GameFactory.getInstance();
+            switch (column)
+            {
+                case 0:
+                    return summary.getFile().getPath();
+
+                case 1:
+                    if (!games.hasGame(summary.getGame()))
+                        return summary.getGame();
+                    return games.getGame(summary.getGame()).getName();
+
+                case 2:
+                    if (summary.getSector() == null) return "";
+                    if (!games.hasGame(summary.getGame()))
+                        return summary.getSector();
+                    final Sector sector = games.getGame(summary.getGame())
+                        .getSectorFactory().getSector(summary.getSector());
+                    return sector == null ? summary.getSector() : sector
+                        .getName();
+
+                case 3:
+                    return formatter.format(summary.getPrice());
+
+                default:
+                    return formatter.format(summary.getProfit());
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.File;
 import javax.swing.JFileChooser;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import de.ailis.xadrian.data.Complex;
 import de.ailis.xadrian.frames.SplashFrame;
 import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
@@ -33,8 +34,9 @@ public class OpenComplexDialog extends JFileChooser
     {
         super();
         setFileFilter(new FileNameExtensionFilter(I18N
-            .getString("dialog.openComplex.filter"), "x3c"));
-        setMultiSelectionEnabled(false);
+            .getString("dialog.openComplex.filter"), "x3c",
+            Complex.BINARY_EXTENSION));
+        setMultiSelectionEnabled(true);
         setFileSelectionMode(FILES_ONLY);
         SplashFrame.advanceProgress();
     }
@@ -50,17 +52,17 @@ public class OpenComplexDialog extends JFileChooser
     }
 
     /**
-     * Opens the dialog. Returns the selected file or null if canceled.
+     * Opens the dialog. Returns the selected files or null if canceled.
      *
-     * @return The selected file or null if canceled
+     * @return The selected files or null if canceled
      */
-    public File open()
+    public File[] open()
     {
         setCurrentDirectory(Config.getInstance().getLastFileChooserPath());
         if (showOpenDialog(null) == APPROVE_OPTION)
         {
             Config.getInstance().setLastFileChooserPath(getCurrentDirectory());
-            return getSelectedFile();
+            return getSelectedFiles();
         }
         else
         {
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.NumberFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingWorker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.BudgetOptimizer;
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog which searches the most profitable complex for a specific budget.
+ * The suns, sector and custom prices are taken from the current complex.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class OptimizeBudgetDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The logger */
+    private static final Log log = LogFactory
+        .getLog(OptimizeBudgetDialog.class);
+
+    /** The complex providing suns, sector and prices */
+    private final Complex template;
+
+    /** The budget spinner */
+    private JSpinner budgetSpinner;
+
+    /** The max products spinner */
+    private JSpinner maxProductsSpinner;
+
+    /** The search button */
+    private JButton searchButton;
+
+    /** The progress bar */
+    private JProgressBar progressBar;
+
+    /** The result label */
+    private JLabel resultLabel;
+
+    /** The currently running worker. Null if none */
+    private SwingWorker<Complex, Void> worker;
+
+    /** The optimizer used by the running worker */
+    private BudgetOptimizer optimizer;
+
+    /** The found complex */
+    private Complex result;
+
+    /**
+     * Constructor
+     *
+     * @param template
+     *            The complex providing suns, sector and prices. Must not be
+     *            null.
+     */
+    public OptimizeBudgetDialog(final Complex template)
+    {
+        if (template == null)
+            throw new IllegalArgumentException("template must be set");
+        this.template = template;
+        init("optimizeBudget", Result.OK, Result.CANCEL);
+        setResultEnabled(Result.OK, false);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Create the search controls
+        this.budgetSpinner = new JSpinner(new SpinnerNumberModel(
+            Long.valueOf(50000000), Long.valueOf(0),
+            Long.valueOf(Long.MAX_VALUE), Long.valueOf(1000000)));
+        this.budgetSpinner.setPreferredSize(new Dimension(130,
+            this.budgetSpinner.getPreferredSize().height));
+        this.maxProductsSpinner = new JSpinner(new SpinnerNumberModel(
+            BudgetOptimizer.DEFAULT_MAX_PRODUCTS, 0, 10, 1));
+        this.searchButton = new JButton(I18N
+            .getString("dialog.optimizeBudget.search"));
+        this.searchButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                startSearch();
+            }
+        });
+
+        final JPanel controlsPanel = new JPanel();
+        controlsPanel.setLayout(new BoxLayout(controlsPanel, BoxLayout.X_AXIS));
+        addControl(controlsPanel, "budget", this.budgetSpinner);
+        addControl(controlsPanel, "maxProducts", this.maxProductsSpinner);
+        controlsPanel.add(Box.createRigidArea(new Dimension(15, 0)));
+        controlsPanel.add(this.searchButton);
+
+        // Create the progress bar and the result label
+        this.progressBar = new JProgressBar(0, 100);
+        this.progressBar.setStringPainted(true);
+        this.resultLabel = new JLabel(" ");
+
+        final JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+        statusPanel.add(this.progressBar, BorderLayout.NORTH);
+        statusPanel.add(this.resultLabel, BorderLayout.CENTER);
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(new JLabel(I18N
+            .getString("dialog.optimizeBudget.description")),
+            BorderLayout.NORTH);
+        contentPanel.add(controlsPanel, BorderLayout.CENTER);
+        contentPanel.add(statusPanel, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * Adds a labeled control to the specified panel.
+     *
+     * @param panel
+     *            The panel
+     * @param key
+     *            The message key of the label (Without dialog prefix)
+     * @param control
+     *            The control
+     */
+    private static void addControl(final JPanel panel, final String key,
+        final JComponent control)
+    {
+        final String fullKey = "dialog.optimizeBudget." + key;
+        final JLabel label = new JLabel(I18N.getString(fullKey));
+        label.setDisplayedMnemonic(I18N.getMnemonic(fullKey));
+        label.setLabelFor(control);
+        if (panel.getComponentCount() > 0)
+            panel.add(Box.createRigidArea(new Dimension(15, 0)));
+        panel.add(label);
+        panel.add(Box.createRigidArea(new Dimension(5, 0)));
+        panel.add(control);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#open()
+     */
+    @Override
+    public Result open()
+    {
+        try
+        {
+            return super.open();
+        }
+        finally
+        {
+            cancelSearch();
+        }
+    }
+
+    /**
+     * Starts searching the best complex in the background.
+     */
+    void startSearch()
+    {
+        cancelSearch();
+        this.result = null;
+        setResultEnabled(Result.OK, false);
+        this.resultLabel.setText(" ");
+        this.progressBar.setValue(0);
+        setControlsEnabled(false);
+
+        final BudgetOptimizer optimizer = this.optimizer = new BudgetOptimizer(
+            this.template, (Long) this.budgetSpinner.getValue());
+        optimizer.setMaxProducts((Integer) this.maxProductsSpinner.getValue());
+        final SwingWorker<Complex, Void> worker = this.worker =
+            new SwingWorker<Complex, Void>()
+            {
+                @Override
+                protected Complex doInBackground() throws InterruptedException
+                {
+                    return optimizer.optimize(new ProgressListener()
+                    {
+                        @Override
+                        public void progressChanged(final int done,
+                            final int total)
+                        {
+                            setProgress(done * 100 / total);
+                        }
+                    });
+                }
+
+                @Override
+                protected void done()
+                {
+                    if (OptimizeBudgetDialog.this.worker != this) return;
+                    OptimizeBudgetDialog.this.worker = null;
+                    setControlsEnabled(true);
+                    try
+                    {
+                        showResult(get());
+                    }
+                    catch (final CancellationException e)
+                    {
+                        // Search has been cancelled. Nothing to do.
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        // Search has been cancelled. Nothing to do.
+                    }
+                    catch (final ExecutionException e)
+                    {
+                        if (e.getCause() instanceof InterruptedException)
+                            return;
+                        log.error("Unable to optimize complex: " + e, e);
+                        JOptionPane.showMessageDialog(null, I18N
+                            .getString("error.cantOptimizeComplex"), I18N
+                            .getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            };
+        final JProgressBar progressBar = this.progressBar;
+        worker.addPropertyChangeListener(new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(final PropertyChangeEvent evt)
+            {
+                if ("progress".equals(evt.getPropertyName()))
+                    progressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+        worker.execute();
+    }
+
+    /**
+     * Cancels the running search (if any).
+     */
+    private void cancelSearch()
+    {
+        if (this.worker == null) return;
+        this.optimizer.cancel();
+        this.worker.cancel(true);
+        this.worker = null;
+        setControlsEnabled(true);
+    }
+
+    /**
+     * Enables or disables the search controls.
+     *
+     * @param enabled
+     *            True to enable the controls, false to disable them
+     */
+    void setControlsEnabled(final boolean enabled)
+    {
+        this.budgetSpinner.setEnabled(enabled);
+        this.maxProductsSpinner.setEnabled(enabled);
+        this.searchButton.setEnabled(enabled);
+    }
+
+    /**
+     * Displays the found complex.
+     *
+     * @param complex
+     *            The found complex. Null if nothing fits into the budget
+     */
+    void showResult(final Complex complex)
+    {
+        this.result = complex;
+        if (complex == null)
+        {
+            this.resultLabel.setText(I18N
+                .getString("dialog.optimizeBudget.noResult"));
+            return;
+        }
+        final NumberFormat formatter = NumberFormat.getNumberInstance();
+        final StringBuilder factories = new StringBuilder();
+        for (int i = 0; i < complex.getFactories().size(); i++)
+        {
+            if (factories.length() > 0) factories.append(", ");
+            factories.append(complex.getQuantity(i)).append("x ")
+                .append(complex.getFactory(i).getName());
+        }
+        this.resultLabel.setText(I18N.getString(
+            "dialog.optimizeBudget.result", factories,
+            formatter.format(Math.round(complex.getProfit())),
+            formatter.format(complex.getTotalPrice())));
+        setResultEnabled(Result.OK, true);
+    }
+
+    /**
+     * Returns the found complex.
+     *
+     * @return The found complex or null if none
+     */
+    public Complex getResult()
+    {
+        return this.result;
+    }
+}
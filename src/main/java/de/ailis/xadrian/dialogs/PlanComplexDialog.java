@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.OutputPlanner;
+import de.ailis.xadrian.data.Ware;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog for planning a complex which produces specific amounts of wares per
+ * hour. The suns and the sector are taken from the current complex. The plan
+ * is updated whenever the targets change.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class PlanComplexDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The planner */
+    private final OutputPlanner planner;
+
+    /** The ware combo box */
+    private JComboBox wareComboBox;
+
+    /** The quantity spinner */
+    private JSpinner quantitySpinner;
+
+    /** The targets table model */
+    private TargetsTableModel model;
+
+    /** The targets table */
+    private JTable table;
+
+    /** The remove button */
+    private JButton removeButton;
+
+    /** The result label */
+    private JLabel resultLabel;
+
+    /** The template code field */
+    private JTextField templateCodeField;
+
+    /** The planned complex */
+    private Complex result;
+
+    /**
+     * Constructor
+     *
+     * @param template
+     *            The complex providing game, suns and sector. Must not be
+     *            null.
+     */
+    public PlanComplexDialog(final Complex template)
+    {
+        if (template == null)
+            throw new IllegalArgumentException("template must be set");
+        this.planner = new OutputPlanner(template.getGame());
+        this.planner.setSuns(template.getSuns());
+        this.planner.setSector(template.getSector());
+        init("planComplex", Result.OK, Result.CANCEL);
+        setResultEnabled(Result.OK, false);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        // Create the target controls
+        this.wareComboBox = new JComboBox(this.planner.getWares().toArray());
+        this.quantitySpinner = new JSpinner(new SpinnerNumberModel(100, 1,
+            999999, 10));
+        final JButton addButton = new JButton(I18N
+            .getString("dialog.planComplex.add"));
+        addButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                addTarget();
+            }
+        });
+        this.removeButton = new JButton(I18N
+            .getString("dialog.planComplex.remove"));
+        this.removeButton.setEnabled(false);
+        this.removeButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                removeTarget();
+            }
+        });
+
+        final JPanel controlsPanel = new JPanel();
+        controlsPanel.setLayout(new BoxLayout(controlsPanel, BoxLayout.X_AXIS));
+        addControl(controlsPanel, "ware", this.wareComboBox);
+        addControl(controlsPanel, "quantity", this.quantitySpinner);
+        controlsPanel.add(Box.createRigidArea(new Dimension(15, 0)));
+        controlsPanel.add(addButton);
+        controlsPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+        controlsPanel.add(this.removeButton);
+
+        // Create the targets table
+        this.model = new TargetsTableModel();
+        final JTable table = this.table = new JTable(this.model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(
+            new ListSelectionListener()
+            {
+                @Override
+                public void valueChanged(final ListSelectionEvent e)
+                {
+                    updateRemoveButton();
+                }
+            });
+        final JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(500, 150));
+
+        // Create the result controls
+        this.resultLabel = new JLabel(" ");
+        this.templateCodeField = new JTextField();
+        this.templateCodeField.setEditable(false);
+        final JPanel templateCodePanel = new JPanel();
+        templateCodePanel.setLayout(new BoxLayout(templateCodePanel,
+            BoxLayout.X_AXIS));
+        addControl(templateCodePanel, "templateCode", this.templateCodeField);
+
+        final JPanel resultPanel = new JPanel(new BorderLayout(5, 5));
+        resultPanel.add(this.resultLabel, BorderLayout.NORTH);
+        resultPanel.add(templateCodePanel, BorderLayout.CENTER);
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(controlsPanel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(resultPanel, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * Adds a labeled control to the specified panel.
+     *
+     * @param panel
+     *            The panel
+     * @param key
+     *            The message key of the label (Without dialog prefix)
+     * @param control
+     *            The control
+     */
+    private static void addControl(final JPanel panel, final String key,
+        final JComponent control)
+    {
+        final String fullKey = "dialog.planComplex." + key;
+        final JLabel label = new JLabel(I18N.getString(fullKey));
+        label.setDisplayedMnemonic(I18N.getMnemonic(fullKey));
+        label.setLabelFor(control);
+        if (panel.getComponentCount() > 0)
+            panel.add(Box.createRigidArea(new Dimension(15, 0)));
+        panel.add(label);
+        panel.add(Box.createRigidArea(new Dimension(5, 0)));
+        panel.add(control);
+    }
+
+    /**
+     * Adds the currently entered target (or replaces the target of the
+     * same ware) and updates the plan.
+     */
+    void addTarget()
+    {
+        final Ware ware = (Ware) this.wareComboBox.getSelectedItem();
+        if (ware == null) return;
+        this.planner.setTarget(ware,
+            ((Integer) this.quantitySpinner.getValue()).doubleValue());
+        updatePlan();
+    }
+
+    /**
+     * Removes the selected target and updates the plan.
+     */
+    void removeTarget()
+    {
+        final int row = this.table.getSelectedRow();
+        if (row < 0) return;
+        this.planner.setTarget(this.model.getWare(row), 0);
+        updatePlan();
+    }
+
+    /**
+     * Enables or disables the remove button depending on the selection.
+     */
+    void updateRemoveButton()
+    {
+        this.removeButton.setEnabled(this.table.getSelectedRow() >= 0);
+    }
+
+    /**
+     * Plans the complex for the current targets and displays it.
+     */
+    private void updatePlan()
+    {
+        final Map<Ware, Double> targets = this.planner.getTargets();
+        this.model.setTargets(targets);
+        updateRemoveButton();
+        if (targets.isEmpty())
+        {
+            this.result = null;
+            this.resultLabel.setText(" ");
+            this.templateCodeField.setText("");
+            setResultEnabled(Result.OK, false);
+            return;
+        }
+
+        final Complex complex = this.result = this.planner.plan();
+        final NumberFormat formatter = NumberFormat.getNumberInstance();
+        this.resultLabel.setText(I18N.getString("dialog.planComplex.result",
+            complex.getTotalQuantity(),
+            formatter.format(complex.getTotalPrice()),
+            formatter.format(Math.round(complex.getProfit()))));
+        this.templateCodeField.setText(complex.getTemplateCode());
+        this.templateCodeField.setCaretPosition(0);
+        setResultEnabled(Result.OK, true);
+    }
+
+    /**
+     * Returns the planned complex.
+     *
+     * @return The planned complex or null if none
+     */
+    public Complex getResult()
+    {
+        return this.result;
+    }
+
+    /**
+     * Table model for the targets.
+     */
+    private static class TargetsTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The wares */
+        private final List<Ware> wares = new ArrayList<Ware>();
+
+        /** The units per hour */
+        private final List<Double> quantities = new ArrayList<Double>();
+
+        /**
+         * Sets the targets to display.
+         *
+         * @param targets
+         *            The targets
+         */
+        public void setTargets(final Map<Ware, Double> targets)
+        {
+            this.wares.clear();
+            this.wares.addAll(targets.keySet());
+            this.quantities.clear();
+            this.quantities.addAll(targets.values());
+            fireTableDataChanged();
+        }
+
+        /**
+         * Returns the ware in the specified row.
+         *
+         * @param row
+         *            The row index
+         * @return The ware
+         */
+        public Ware getWare(final int row)
+        {
+            return this.wares.get(row);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.wares.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return 2;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString(column == 0 ? "dialog.planComplex.ware"
+                : "dialog.planComplex.quantity");
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            if (column == 0) return this.wares.get(row).getName();
+            return Math.round(this.quantities.get(row));
+        }
+    }
+}
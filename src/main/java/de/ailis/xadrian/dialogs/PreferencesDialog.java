@@ -8,7 +8,9 @@ package de.ailis.xadrian.dialogs;
 import java.awt.BorderLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -20,6 +22,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.UIManager;
 import javax.swing.border.EmptyBorder;
 
@@ -81,6 +84,9 @@ public class PreferencesDialog extends ModalDialog
     /** The production statistics combo box. */
     private JComboBox prodStatsComboBox;
 
+    /** The cargo capacities text field. */
+    private JTextField cargoCapacitiesTextField;
+
     /**
      * Constructor
      */
@@ -313,6 +319,24 @@ public class PreferencesDialog extends ModalDialog
         }
         controlPanel.add(this.gamesComboBox, c);
         c.fill = GridBagConstraints.NONE;
+
+        // Create the cargo capacities controls
+        final JLabel cargoCapacityLabel =
+            new JLabel(I18N.getString("dialog.preferences.cargoCapacities"));
+        cargoCapacityLabel.setToolTipText(
+            I18N.getToolTip("dialog.preferences.cargoCapacities"));
+        c.weightx = 0;
+        c.gridx = 0;
+        c.gridy++;
+        c.insets.left = 0;
+        controlPanel.add(cargoCapacityLabel, c);
+        c.weightx = 1;
+        c.gridx = 1;
+        c.insets.left = 5;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        this.cargoCapacitiesTextField = new JTextField();
+        controlPanel.add(this.cargoCapacitiesTextField, c);
+        c.fill = GridBagConstraints.NONE;
         panel.add(controlPanel);
         return panel;
     }
@@ -461,6 +485,13 @@ public class PreferencesDialog extends ModalDialog
             config.getLocale()));
         this.prodStatsComboBox.setSelectedItem(new ComboBoxEntry(null,
             config.isProdStatsPerMinute()));
+        final StringBuilder capacities = new StringBuilder();
+        for (final int capacity : config.getCargoCapacities())
+        {
+            if (capacities.length() > 0) capacities.append(", ");
+            capacities.append(capacity);
+        }
+        this.cargoCapacitiesTextField.setText(capacities.toString());
         this.x3tcPlayerSectorComboBox.setSelectedIndex(config.getX3TCPlayerSector());
         this.x3apPlayerSectorComboBox.setSelectedIndex(config.getX3APPlayerSector());
 
@@ -500,6 +531,10 @@ public class PreferencesDialog extends ModalDialog
                 this.localeComboBox.getSelectedItem()).getValue());
             config.setProdStatsPerMinute((Boolean) ((ComboBoxEntry)
                 this.prodStatsComboBox.getSelectedItem()).getValue());
+            final List<Integer> cargoCapacities = parseCapacities(
+                this.cargoCapacitiesTextField.getText());
+            if (!cargoCapacities.isEmpty())
+                config.setCargoCapacities(cargoCapacities);
             if (this.gamesComboBox.getSelectedIndex() == 0)
                 config.setDefaultGame(null);
             else
@@ -509,6 +544,32 @@ public class PreferencesDialog extends ModalDialog
         return result;
     }
 
+    /**
+     * Parses the comma or space separated cargo capacities. Invalid and
+     * non-positive entries are ignored.
+     *
+     * @param text
+     *            The text to parse
+     * @return The parsed cargo capacities. May be empty
+     */
+    private static List<Integer> parseCapacities(final String text)
+    {
+        final List<Integer> capacities = new ArrayList<Integer>();
+        for (final String part : text.split("[,;\\s]+"))
+        {
+            try
+            {
+                final int capacity = Integer.parseInt(part);
+                if (capacity > 0) capacities.add(capacity);
+            }
+            catch (final NumberFormatException e)
+            {
+                // Ignored
+            }
+        }
+        return capacities;
+    }
+
     /**
      * Test main method.
      *
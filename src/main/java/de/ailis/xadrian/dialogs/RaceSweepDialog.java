@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.Race;
+import de.ailis.xadrian.data.RaceCombination;
+import de.ailis.xadrian.data.RaceSweep;
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.support.I18N;
+import de.ailis.xadrian.support.ModalDialog;
+
+/**
+ * Dialog which evaluates the current complex under every combination of
+ * ignored races and lists the complete combinations ordered by price.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class RaceSweepDialog extends ModalDialog
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1;
+
+    /** The logger */
+    private static final Log log = LogFactory.getLog(RaceSweepDialog.class);
+
+    /** The complex to evaluate */
+    private final Complex complex;
+
+    /** The race check boxes */
+    private final Map<Race, JCheckBox> raceCheckBoxes =
+        new LinkedHashMap<Race, JCheckBox>();
+
+    /** The sweep button */
+    private JButton sweepButton;
+
+    /** The progress bar */
+    private JProgressBar progressBar;
+
+    /** The combinations table model */
+    private CombinationsTableModel model;
+
+    /** The combinations table */
+    private JTable table;
+
+    /** The result label */
+    private JLabel resultLabel;
+
+    /** The currently running worker. Null if none */
+    private SwingWorker<List<RaceCombination>, Void> worker;
+
+    /** The sweep used by the last worker */
+    private RaceSweep sweep;
+
+    /**
+     * Constructor
+     *
+     * @param complex
+     *            The complex to evaluate. Must not be null.
+     */
+    public RaceSweepDialog(final Complex complex)
+    {
+        if (complex == null)
+            throw new IllegalArgumentException("complex must be set");
+        this.complex = complex;
+        init("raceSweep", Result.OK, Result.CANCEL);
+        setResultEnabled(Result.OK, false);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#createUI()
+     */
+    @Override
+    protected void createUI()
+    {
+        // Enable dialog resizing
+        setResizable(true);
+
+        // Create the race check boxes and the sweep button
+        final JPanel racesPanel = new JPanel();
+        racesPanel.setLayout(new BoxLayout(racesPanel, BoxLayout.X_AXIS));
+        for (final Race race: RaceSweep.getRelevantRaces(this.complex))
+        {
+            final JCheckBox checkBox = new JCheckBox(race.getName(), true);
+            this.raceCheckBoxes.put(race, checkBox);
+            racesPanel.add(checkBox);
+        }
+        this.sweepButton = new JButton(I18N
+            .getString("dialog.raceSweep.sweep"));
+        this.sweepButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(final ActionEvent e)
+            {
+                startSweep();
+            }
+        });
+        racesPanel.add(Box.createRigidArea(new Dimension(15, 0)));
+        racesPanel.add(this.sweepButton);
+
+        final JPanel controlsPanel = new JPanel(new BorderLayout(5, 5));
+        controlsPanel.add(new JLabel(I18N
+            .getString("dialog.raceSweep.description")), BorderLayout.NORTH);
+        controlsPanel.add(racesPanel, BorderLayout.CENTER);
+
+        // Create the combinations table
+        this.model = new CombinationsTableModel();
+        final JTable table = this.table = new JTable(this.model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(
+            new ListSelectionListener()
+            {
+                @Override
+                public void valueChanged(final ListSelectionEvent e)
+                {
+                    setResultEnabled(Result.OK, getSelectedCombination()
+                        != null);
+                }
+            });
+        final JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(500, 200));
+
+        // Create the progress bar and the result label
+        this.progressBar = new JProgressBar(0, 100);
+        this.progressBar.setStringPainted(true);
+        this.resultLabel = new JLabel(" ");
+
+        final JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+        statusPanel.add(this.progressBar, BorderLayout.NORTH);
+        statusPanel.add(this.resultLabel, BorderLayout.CENTER);
+
+        final JPanel contentPanel = new JPanel(new BorderLayout(5, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(controlsPanel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(statusPanel, BorderLayout.SOUTH);
+
+        // Put this last panel into the window
+        add(contentPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * @see de.ailis.xadrian.support.ModalDialog#open()
+     */
+    @Override
+    public Result open()
+    {
+        try
+        {
+            return super.open();
+        }
+        finally
+        {
+            cancelSweep();
+        }
+    }
+
+    /**
+     * Starts the sweep over the selected races in the background.
+     */
+    void startSweep()
+    {
+        cancelSweep();
+        this.model.setCombinations(new ArrayList<RaceCombination>());
+        this.resultLabel.setText(" ");
+        this.progressBar.setValue(0);
+        setControlsEnabled(false);
+
+        final List<Race> races = new ArrayList<Race>();
+        for (final Map.Entry<Race, JCheckBox> entry: this.raceCheckBoxes
+            .entrySet())
+            if (entry.getValue().isSelected()) races.add(entry.getKey());
+        final RaceSweep sweep = this.sweep = new RaceSweep(this.complex);
+        sweep.setRaces(races);
+        final SwingWorker<List<RaceCombination>, Void> worker = this.worker =
+            new SwingWorker<List<RaceCombination>, Void>()
+            {
+                @Override
+                protected List<RaceCombination> doInBackground()
+                    throws InterruptedException
+                {
+                    return sweep.sweep(new ProgressListener()
+                    {
+                        @Override
+                        public void progressChanged(final int done,
+                            final int total)
+                        {
+                            setProgress(done * 100 / total);
+                        }
+                    });
+                }
+
+                @Override
+                protected void done()
+                {
+                    if (RaceSweepDialog.this.worker != this) return;
+                    RaceSweepDialog.this.worker = null;
+                    setControlsEnabled(true);
+                    try
+                    {
+                        showResult(get());
+                    }
+                    catch (final CancellationException e)
+                    {
+                        // Sweep has been cancelled. Nothing to do.
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        // Sweep has been cancelled. Nothing to do.
+                    }
+                    catch (final ExecutionException e)
+                    {
+                        if (e.getCause() instanceof InterruptedException)
+                            return;
+                        log.error("Unable to sweep races: " + e, e);
+                        JOptionPane.showMessageDialog(null, I18N
+                            .getString("error.cantSweepRaces"), I18N
+                            .getString("error.title"),
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            };
+        final JProgressBar progressBar = this.progressBar;
+        worker.addPropertyChangeListener(new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(final PropertyChangeEvent evt)
+            {
+                if ("progress".equals(evt.getPropertyName()))
+                    progressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+        worker.execute();
+    }
+
+    /**
+     * Cancels the running sweep (if any).
+     */
+    private void cancelSweep()
+    {
+        if (this.worker == null) return;
+        this.sweep.cancel();
+        this.worker.cancel(true);
+        this.worker = null;
+        setControlsEnabled(true);
+    }
+
+    /**
+     * Enables or disables the sweep controls.
+     *
+     * @param enabled
+     *            True to enable the controls, false to disable them
+     */
+    void setControlsEnabled(final boolean enabled)
+    {
+        for (final JCheckBox checkBox: this.raceCheckBoxes.values())
+            checkBox.setEnabled(enabled);
+        this.sweepButton.setEnabled(enabled);
+    }
+
+    /**
+     * Displays the complete combinations.
+     *
+     * @param combinations
+     *            The combinations returned by the sweep
+     */
+    void showResult(final List<RaceCombination> combinations)
+    {
+        final List<RaceCombination> complete =
+            new ArrayList<RaceCombination>();
+        for (final RaceCombination combination: combinations)
+            if (combination.isComplete()) complete.add(combination);
+        this.model.setCombinations(complete);
+        this.resultLabel.setText(I18N.getString("dialog.raceSweep.result",
+            combinations.size(), complete.size()));
+        if (!complete.isEmpty()) this.table.setRowSelectionInterval(0, 0);
+    }
+
+    /**
+     * Returns the selected combination.
+     *
+     * @return The selected combination or null if none
+     */
+    RaceCombination getSelectedCombination()
+    {
+        final int row = this.table.getSelectedRow();
+        if (row < 0) return null;
+        return this.model.getCombination(row);
+    }
+
+    /**
+     * Returns the complex for the selected combination. The factories of
+     * the base complex are added as normal factories.
+     *
+     * @return The complex or null if no combination is selected
+     */
+    public Complex getResult()
+    {
+        final RaceCombination combination = getSelectedCombination();
+        if (combination == null) return null;
+        return this.sweep.createComplex(combination);
+    }
+
+    /**
+     * Table model for the race combinations.
+     */
+    private static class CombinationsTableModel extends AbstractTableModel
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1;
+
+        /** The column message keys */
+        private static final String[] COLUMNS = { "dialog.raceSweep.races",
+            "dialog.raceSweep.price", "dialog.raceSweep.profit" };
+
+        /** The combinations */
+        private final List<RaceCombination> combinations =
+            new ArrayList<RaceCombination>();
+
+        /**
+         * Sets the combinations to display.
+         *
+         * @param combinations
+         *            The combinations
+         */
+        public void setCombinations(final List<RaceCombination> combinations)
+        {
+            this.combinations.clear();
+            this.combinations.addAll(combinations);
+            fireTableDataChanged();
+        }
+
+        /**
+         * Returns the combination in the specified row.
+         *
+         * @param row
+         *            The row index
+         * @return The combination
+         */
+        public RaceCombination getCombination(final int row)
+        {
+            return this.combinations.get(row);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getRowCount()
+         */
+        @Override
+        public int getRowCount()
+        {
+            return this.combinations.size();
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getColumnCount()
+         */
+        @Override
+        public int getColumnCount()
+        {
+            return COLUMNS.length;
+        }
+
+        /**
+         * @see javax.swing.table.AbstractTableModel#getColumnName(int)
+         */
+        @Override
+        public String getColumnName(final int column)
+        {
+            return I18N.getString(COLUMNS[column]);
+        }
+
+        /**
+         * @see javax.swing.table.TableModel#getValueAt(int, int)
+         */
+        @Override
+        public Object getValueAt(final int row, final int column)
+        {
+            final RaceCombination combination = this.combinations.get(row);
+            final NumberFormat formatter = NumberFormat.getNumberInstance();
+            switch (column)
+            {
+                case 0:
+                    final StringBuilder races = new StringBuilder();
+                    for (final Race race: combination.getAllowedRaces())
+                    {
+                        if (races.length() > 0) races.append(", ");
+                        races.append(race.getName());
+                    }
+                    return races.toString();
+
+                case 1:
+                    return formatter.format(combination.getTotalPrice());
+
+                default:
+                    return formatter.format(Math.round(combination
+                        .getProfit()));
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.File;
 import javax.swing.JFileChooser;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import de.ailis.xadrian.data.Complex;
 import de.ailis.xadrian.frames.SplashFrame;
 import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
@@ -26,12 +27,19 @@ public class SaveComplexDialog extends JFileChooser
     /** The singleton instance. */
     private static final SaveComplexDialog instance = new SaveComplexDialog();
 
+    /** The file filter for the compact binary format */
+    private final FileNameExtensionFilter binaryFilter;
+
     /**
      * Constructor
      */
     private SaveComplexDialog()
     {
         super();
+        this.binaryFilter = new FileNameExtensionFilter(I18N
+            .getString("dialog.saveComplex.binaryFilter"),
+            Complex.BINARY_EXTENSION);
+        addChoosableFileFilter(this.binaryFilter);
         setFileFilter(new FileNameExtensionFilter(I18N
             .getString("dialog.saveComplex.filter"), "x3c"));
         setMultiSelectionEnabled(false);
@@ -49,6 +57,18 @@ public class SaveComplexDialog extends JFileChooser
         return instance;
     }
 
+    /**
+     * Returns the file extension matching the selected file filter. Used
+     * when the user didn't specify an extension.
+     *
+     * @return The file extension
+     */
+    public String getSelectedExtension()
+    {
+        return getFileFilter() == this.binaryFilter ? Complex.BINARY_EXTENSION
+            : "x3c";
+    }
+
     /**
      * Opens the dialog. Returns the selected file or null if canceled.
      *
@@ -19,7 +19,17 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import javax.swing.Action;
 import javax.swing.JButton;
@@ -31,10 +41,12 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JTabbedPane;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.MenuElement;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingConstants;
 import javax.swing.TransferHandler;
 import javax.swing.WindowConstants;
@@ -45,12 +57,10 @@ import javax.swing.event.EventListenerList;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.io.SAXReader;
 
 import de.ailis.xadrian.actions.AboutAction;
 import de.ailis.xadrian.actions.AddFactoryAction;
+import de.ailis.xadrian.actions.BuildOrderAction;
 import de.ailis.xadrian.actions.ChangePricesAction;
 import de.ailis.xadrian.actions.ChangeSectorAction;
 import de.ailis.xadrian.actions.ChangeSunsAction;
@@ -58,16 +68,23 @@ import de.ailis.xadrian.actions.CloseAction;
 import de.ailis.xadrian.actions.CloseAllAction;
 import de.ailis.xadrian.actions.CopyAction;
 import de.ailis.xadrian.actions.DonateAction;
+import de.ailis.xadrian.actions.EmpireAction;
 import de.ailis.xadrian.actions.ExitAction;
 import de.ailis.xadrian.actions.ExportASCIIAction;
 import de.ailis.xadrian.actions.ExportTemplateCodeAction;
+import de.ailis.xadrian.actions.FindAsteroidsAction;
+import de.ailis.xadrian.actions.FindBestSectorsAction;
 import de.ailis.xadrian.actions.ForumAction;
 import de.ailis.xadrian.actions.GithubAction;
 import de.ailis.xadrian.actions.GooglePlusAction;
 import de.ailis.xadrian.actions.HomepageAction;
 import de.ailis.xadrian.actions.ImportTemplateCodeAction;
+import de.ailis.xadrian.actions.LibraryAction;
 import de.ailis.xadrian.actions.NewAction;
 import de.ailis.xadrian.actions.OpenAction;
+import de.ailis.xadrian.actions.OptimizeBudgetAction;
+import de.ailis.xadrian.actions.PlanComplexAction;
+import de.ailis.xadrian.actions.RaceSweepAction;
 import de.ailis.xadrian.actions.PreferencesAction;
 import de.ailis.xadrian.actions.PrintAction;
 import de.ailis.xadrian.actions.SaveAction;
@@ -79,12 +96,20 @@ import de.ailis.xadrian.actions.TwitterAction;
 import de.ailis.xadrian.components.ComplexEditor;
 import de.ailis.xadrian.components.SocialPane;
 import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.ComplexJournal;
+import de.ailis.xadrian.data.Empire;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Sector;
 import de.ailis.xadrian.data.factories.GameFactory;
 import de.ailis.xadrian.dialogs.AboutDialog;
+import de.ailis.xadrian.dialogs.BuildOrderDialog;
+import de.ailis.xadrian.dialogs.EmpireDialog;
+import de.ailis.xadrian.dialogs.LibraryDialog;
 import de.ailis.xadrian.dialogs.OpenComplexDialog;
+import de.ailis.xadrian.dialogs.OptimizeBudgetDialog;
+import de.ailis.xadrian.dialogs.PlanComplexDialog;
 import de.ailis.xadrian.dialogs.PreferencesDialog;
+import de.ailis.xadrian.dialogs.RaceSweepDialog;
 import de.ailis.xadrian.dialogs.SelectGameDialog;
 import de.ailis.xadrian.interfaces.ClipboardProvider;
 import de.ailis.xadrian.interfaces.ComplexProvider;
@@ -100,6 +125,7 @@ import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog.Result;
 import de.ailis.xadrian.utils.FileUtils;
+import de.ailis.xadrian.utils.ThreadUtils;
 
 /**
  * The main frame.
@@ -116,6 +142,13 @@ public class MainFrame extends JFrame implements EditorStateListener,
     /** The logger. */
     private static final Log LOG = LogFactory.getLog(MainFrame.class);
 
+    /** Milliseconds to wait for pending journal writes on exit */
+    private static final long JOURNAL_TIMEOUT = 5000;
+
+    /** The executor reading complex files in the background */
+    private static final ExecutorService openExecutor = ThreadUtils
+        .createCalculationExecutor("open");
+
     /** The event listener list */
     private final EventListenerList listenerList = new EventListenerList();
 
@@ -128,6 +161,9 @@ public class MainFrame extends JFrame implements EditorStateListener,
     /** The "open" action */
     private final Action openAction = new OpenAction(this);
 
+    /** The "library" action */
+    private final Action libraryAction = new LibraryAction(this);
+
     /** The "close" action */
     private final Action closeAction = new CloseAction(this);
 
@@ -195,6 +231,28 @@ public class MainFrame extends JFrame implements EditorStateListener,
     /** The "changePrices" action */
     private final Action changePricesAction = new ChangePricesAction(this);
 
+    /** The "findBestSectors" action */
+    private final Action findBestSectorsAction =
+        new FindBestSectorsAction(this);
+
+    /** The "findAsteroids" action */
+    private final Action findAsteroidsAction = new FindAsteroidsAction(this);
+
+    /** The "optimizeBudget" action */
+    private final Action optimizeBudgetAction = new OptimizeBudgetAction(this);
+
+    /** The "planComplex" action */
+    private final Action planComplexAction = new PlanComplexAction(this);
+
+    /** The "raceSweep" action */
+    private final Action raceSweepAction = new RaceSweepAction(this);
+
+    /** The "buildOrder" action */
+    private final Action buildOrderAction = new BuildOrderAction(this);
+
+    /** The "empire" action */
+    private final Action empireAction = new EmpireAction(this);
+
     /** The "select all" action */
     private final Action selectAllAction = new SelectAllAction(this);
 
@@ -211,6 +269,30 @@ public class MainFrame extends JFrame implements EditorStateListener,
     /** The status bar. */
     private JLabel statusBar;
 
+    /** The progress bar showing the progress of opening complex files */
+    private JProgressBar openProgressBar;
+
+    /** The canonical files currently read in the background */
+    private final Set<File> openingFiles = new HashSet<File>();
+
+    /** The number of files to open in the current batch */
+    private int openTotal;
+
+    /** The number of files opened (or failed) in the current batch */
+    private int openDone;
+
+    /** The errors of the current batch */
+    private final List<String> openErrors = new ArrayList<String>();
+
+    /** The empires of the open complexes per game */
+    private final Map<Game, Empire> empires = new HashMap<Game, Empire>();
+
+    /** If the current batch imports template codes */
+    private boolean importing;
+
+    /** The number of complexes imported from template codes in the batch */
+    private int imported;
+
     /** The transfer handler for dropping complex files into Xadrian. */
     private final TransferHandler transferHandler = new ComplexTransferHandler(this);
 
@@ -267,6 +349,7 @@ public class MainFrame extends JFrame implements EditorStateListener,
         final JMenu fileMenu = I18N.createMenu(menuBar, "file");
         fileMenu.add(this.newAction);
         fileMenu.add(this.openAction);
+        fileMenu.add(this.libraryAction);
         fileMenu.addSeparator();
         fileMenu.add(this.closeAction);
         fileMenu.add(this.closeAllAction);
@@ -299,6 +382,14 @@ public class MainFrame extends JFrame implements EditorStateListener,
         complexMenu.add(this.changeSunsAction);
         complexMenu.add(this.changePricesAction);
         complexMenu.add(new JCheckBoxMenuItem(this.toggleBaseComplexAction));
+        complexMenu.addSeparator();
+        complexMenu.add(this.findBestSectorsAction);
+        complexMenu.add(this.findAsteroidsAction);
+        complexMenu.add(this.optimizeBudgetAction);
+        complexMenu.add(this.planComplexAction);
+        complexMenu.add(this.raceSweepAction);
+        complexMenu.add(this.buildOrderAction);
+        complexMenu.add(this.empireAction);
 
         // Create the 'Help' menu
         final JMenu helpMenu = I18N.createMenu(menuBar, "help");
@@ -420,7 +511,16 @@ public class MainFrame extends JFrame implements EditorStateListener,
     {
         final JLabel statusBar = this.statusBar = new JLabel(" ");
         statusBar.setBorder(new EmptyBorder(2, 5, 2, 5));
-        add(statusBar, BorderLayout.SOUTH);
+
+        final JProgressBar progressBar = this.openProgressBar =
+            new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+
+        final JPanel panel = new JPanel(new BorderLayout());
+        panel.add(statusBar, BorderLayout.CENTER);
+        panel.add(progressBar, BorderLayout.EAST);
+        add(panel, BorderLayout.SOUTH);
 
         addWindowFocusListener(new WindowAdapter()
         {
@@ -556,6 +656,8 @@ public class MainFrame extends JFrame implements EditorStateListener,
         editor.addStateListener((EditorStateListener) this);
         editor.addStateListener((StateListener) this);
         editor.addClipboardStateListener(this);
+        getEmpire(editor.getComplex().getGame()).update(editor,
+            editor.getComplex());
         fireChange();
     }
 
@@ -598,6 +700,7 @@ public class MainFrame extends JFrame implements EditorStateListener,
         if (current != null)
         {
             final ComplexEditor editor = (ComplexEditor) current;
+            editor.waitForSave();
             if (editor.isChanged())
             {
                 final int answer =
@@ -610,11 +713,13 @@ public class MainFrame extends JFrame implements EditorStateListener,
                 if (answer == JOptionPane.YES_OPTION)
                 {
                     editor.save();
-                    if (editor.isChanged()) return false;
+                    if (!editor.waitForSave()) return false;
                 }
             }
 
             this.tabs.remove(current);
+            editor.close();
+            getEmpire(editor.getComplex().getGame()).remove(editor);
 
             // Replace the tab control with the welcome panel if no tabs present
             if (this.tabs.getTabCount() == 0)
@@ -689,6 +794,8 @@ public class MainFrame extends JFrame implements EditorStateListener,
         final int index = this.tabs.indexOfComponent(sender);
         this.tabs.setTitleAt(index, sender.getComplex().getName()
             + (sender.isChanged() ? "*" : ""));
+        getEmpire(sender.getComplex().getGame()).update(sender,
+            sender.getComplex());
         fireChange();
     }
 
@@ -710,6 +817,7 @@ public class MainFrame extends JFrame implements EditorStateListener,
         {
             Config.saveWindowState(this);
             Config.getInstance().save();
+            ComplexJournal.sync(JOURNAL_TIMEOUT);
             System.exit(0);
         }
     }
@@ -1037,16 +1145,18 @@ public class MainFrame extends JFrame implements EditorStateListener,
     {
         synchronized (unprocessedFiles)
         {
+            final List<File> files = new ArrayList<File>(fileNames.length);
             for (final String fileName: fileNames)
             {
                 File file = new File(fileName);
                 if (!file.isAbsolute())
                     file = new File(directory, fileName);
-                if (instance == null)
-                    unprocessedFiles.add(file);
-                else
-                    instance.open(file);
+                files.add(file);
             }
+            if (instance == null)
+                unprocessedFiles.addAll(files);
+            else
+                instance.open(files);
         }
 
         // If main frame is already open then do lot of stuff to try to get
@@ -1065,46 +1175,147 @@ public class MainFrame extends JFrame implements EditorStateListener,
      *
      * @param fileNames
      *            The file names specified on the command line.
+     * @param recoveries
+     *            The complexes recovered from the journals of the last
+     *            session
      */
-    public static void start(final String[] fileNames)
+    public static void start(final String[] fileNames,
+        final List<ComplexJournal.Recovery> recoveries)
     {
         synchronized (unprocessedFiles)
         {
             instance = new MainFrame();
-            for (final File file: unprocessedFiles)
-                instance.open(file);
+            for (final ComplexJournal.Recovery recovery: recoveries)
+                instance.createComplexTab(new ComplexEditor(recovery));
+            final List<File> files = new ArrayList<File>(unprocessedFiles);
             unprocessedFiles.clear();
             for (final String fileName: fileNames)
-            {
-                final File file = new File(fileName);
-                instance.open(file);
-            }
+                files.add(new File(fileName));
+            instance.open(files);
         }
         instance.setVisible(true);
     }
 
     /**
-     * Prompts for a file name and opens this complex file.
+     * Prompts for file names and opens these complex files.
      */
     public void open()
     {
         final OpenComplexDialog dialog = OpenComplexDialog.getInstance();
 
-        final File file = dialog.open();
-        if (file != null) open(file);
+        final File[] files = dialog.open();
+        if (files != null) open(Arrays.asList(files));
+    }
+
+    /**
+     * Searches the complex library and opens the selected complex file.
+     */
+    public void library()
+    {
+        final LibraryDialog dialog = new LibraryDialog();
+        if (dialog.open() == Result.OK) open(dialog.getSelectedFile());
+    }
+
+    /**
+     * Searches the most profitable complex for a budget using the settings
+     * of the current complex and opens it in a new tab.
+     */
+    public void optimizeBudget()
+    {
+        final Component component = getCurrentTab();
+        if (!(component instanceof ComplexEditor)) return;
+        final OptimizeBudgetDialog dialog = new OptimizeBudgetDialog(
+            ((ComplexEditor) component).getComplex());
+        if (dialog.open() == Result.OK)
+            createLoadedComplexTab(new ComplexEditor(dialog.getResult()));
+    }
+
+    /**
+     * Plans the cheapest complex producing specific wares per hour using the
+     * suns and sector of the current complex and opens it in a new tab.
+     */
+    public void planComplex()
+    {
+        final Component component = getCurrentTab();
+        if (!(component instanceof ComplexEditor)) return;
+        final PlanComplexDialog dialog = new PlanComplexDialog(
+            ((ComplexEditor) component).getComplex());
+        if (dialog.open() == Result.OK)
+            createLoadedComplexTab(new ComplexEditor(dialog.getResult()));
+    }
+
+    /**
+     * Compares the current complex under all combinations of ignored races
+     * and opens the selected combination in a new tab.
+     */
+    public void raceSweep()
+    {
+        final Component component = getCurrentTab();
+        if (!(component instanceof ComplexEditor)) return;
+        final RaceSweepDialog dialog = new RaceSweepDialog(
+            ((ComplexEditor) component).getComplex());
+        if (dialog.open() == Result.OK)
+            createLoadedComplexTab(new ComplexEditor(dialog.getResult()));
     }
 
     /**
-     * Imports a new complex from the specified template code.
+     * Calculates the order in which the factories of the current complex are
+     * bought with a limited budget.
+     */
+    public void buildOrder()
+    {
+        final Component component = getCurrentTab();
+        if (!(component instanceof ComplexEditor)) return;
+        new BuildOrderDialog(((ComplexEditor) component).getComplex()).open();
+    }
+
+    /**
+     * Returns the empire of the open complexes of the specified game.
      *
-     * @param templateCode
-     *            The template code to import.
+     * @param game
+     *            The game
+     * @return The empire
      */
-    public void importFromTemplateCode(final String templateCode)
+    private Empire getEmpire(final Game game)
     {
-        final Complex complex = Complex.fromTemplateCode(templateCode);
-        final ComplexEditor editor = new ComplexEditor(complex);
-        createLoadedComplexTab(editor);
+        Empire empire = this.empires.get(game);
+        if (empire == null)
+        {
+            empire = new Empire(game);
+            this.empires.put(game, empire);
+        }
+        return empire;
+    }
+
+    /**
+     * Shows the supply and demand of all open complexes of the game of the
+     * current complex.
+     */
+    public void empire()
+    {
+        final Component component = getCurrentTab();
+        if (!(component instanceof ComplexEditor)) return;
+        new EmpireDialog(getEmpire(((ComplexEditor) component).getComplex()
+            .getGame())).open();
+    }
+
+    /**
+     * Imports complexes from all template codes found in the specified text.
+     * The text is scanned for template codes in the background and the codes
+     * are decoded and calculated in parallel. A tab is opened as soon as a
+     * code has been decoded. Invalid codes are ignored. An error is reported
+     * when no valid code has been found.
+     *
+     * @param text
+     *            The text containing the template codes. Can be a whole
+     *            forum thread.
+     */
+    public void importTemplateCodes(final String text)
+    {
+        this.importing = true;
+        this.openTotal++;
+        openExecutor.execute(new ScanTask(text));
+        updateOpenProgress();
     }
 
     /**
@@ -1139,38 +1350,367 @@ public class MainFrame extends JFrame implements EditorStateListener,
     }
 
     /**
-     * Reads a new complex from the specified file and returns the complex
-     * editor or null if an error occurred while reading the file.
+     * Opens the complex from the specified file in a new tab. The file is
+     * read in the background.
      *
      * @param file
      *            The file to open.
      */
     public void open(final File file)
     {
-        // Select already open editor if possible
-        ComplexEditor editor = getEditor(file);
-        if (editor != null)
+        open(Collections.singletonList(file));
+    }
+
+    /**
+     * Opens the complexes from the specified files in new tabs. Directories
+     * are replaced by the complex files they contain. The files are read and
+     * calculated in parallel in the background. A tab is opened as soon as
+     * its file has been read. Errors are reported when all files are
+     * finished.
+     *
+     * @param files
+     *            The files to open
+     */
+    public void open(final List<File> files)
+    {
+        for (final File file: expandDirectories(files))
         {
-            this.tabs.setSelectedComponent(editor);
-            return;
+            // Select already open editor if possible
+            final ComplexEditor editor = getEditor(file);
+            if (editor != null)
+            {
+                this.tabs.setSelectedComponent(editor);
+                continue;
+            }
+
+            // Ignore files which are already read
+            if (!this.openingFiles.add(getCanonicalFile(file))) continue;
+
+            this.openTotal++;
+            openExecutor.execute(new OpenTask(file));
         }
+        updateOpenProgress();
+    }
 
+    /**
+     * Replaces directories in the specified file list with the complex
+     * files they contain.
+     *
+     * @param files
+     *            The files and directories
+     * @return The files
+     */
+    private static List<File> expandDirectories(final List<File> files)
+    {
+        final List<File> expanded = new ArrayList<File>(files.size());
+        for (final File file: files)
+        {
+            if (!file.isDirectory())
+            {
+                expanded.add(file);
+                continue;
+            }
+            final File[] children = file.listFiles();
+            if (children == null) continue;
+            Arrays.sort(children);
+            for (final File child: children)
+                if (child.isFile() && Complex.isComplexFile(child))
+                    expanded.add(child);
+        }
+        return expanded;
+    }
+
+    /**
+     * Returns the canonical file of the specified file. If it can't be
+     * determined then the file itself is returned.
+     *
+     * @param file
+     *            The file
+     * @return The canonical file
+     */
+    private static File getCanonicalFile(final File file)
+    {
         try
         {
-            final SAXReader reader = new SAXReader();
-            final Document document = reader.read(file);
-            final Complex complex = Complex.fromXML(document);
+            return file.getCanonicalFile();
+        }
+        catch (final IOException e)
+        {
+            return file;
+        }
+    }
+
+    /**
+     * Finishes reading a complex file. Opens the complex in a new tab or
+     * records the error. When all files of the batch are finished then the
+     * errors are reported.
+     *
+     * @param task
+     *            The finished task
+     */
+    void finishOpen(final OpenTask task)
+    {
+        final File file = task.file;
+        this.openingFiles.remove(getCanonicalFile(file));
+        this.openDone++;
+        try
+        {
+            final Complex complex = task.get();
             complex.setName(FileUtils.getNameWithoutExt(file));
-            editor = new ComplexEditor(complex, file);
-            createLoadedComplexTab(editor);
+            createLoadedComplexTab(new ComplexEditor(complex, file));
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
         }
-        catch (final DocumentException e)
+        catch (final ExecutionException e)
         {
-            JOptionPane.showMessageDialog(null, I18N.getString(
-                "error.cantReadComplex", file, e.getMessage()), I18N
-                .getString("error.title"), JOptionPane.ERROR_MESSAGE);
+            final Throwable cause = e.getCause();
+            this.openErrors.add(I18N.getString("error.cantReadComplex", file,
+                cause.getMessage()));
             LOG.error("Unable to load complex from file '" + file + "': "
-                + e, e);
+                + cause, cause);
+        }
+        updateOpenProgress();
+        finishBatch();
+    }
+
+    /**
+     * Finishes scanning a text for template codes. Starts decoding the
+     * found codes in the background.
+     *
+     * @param task
+     *            The finished task
+     */
+    void finishScan(final ScanTask task)
+    {
+        this.openDone++;
+        try
+        {
+            for (final String code: task.get())
+            {
+                this.openTotal++;
+                openExecutor.execute(new ImportTask(code));
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (final ExecutionException e)
+        {
+            LOG.error("Unable to scan for template codes: " + e.getCause(),
+                e.getCause());
+        }
+        updateOpenProgress();
+        finishBatch();
+    }
+
+    /**
+     * Finishes decoding a template code. Opens the complex in a new tab if
+     * the code was valid.
+     *
+     * @param task
+     *            The finished task
+     */
+    void finishImport(final ImportTask task)
+    {
+        this.openDone++;
+        try
+        {
+            final Complex complex = task.get();
+            if (complex != null)
+            {
+                createLoadedComplexTab(new ComplexEditor(complex));
+                this.imported++;
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (final ExecutionException e)
+        {
+            LOG.error("Unable to import template code '" + task.code + "': "
+                + e.getCause(), e.getCause());
+        }
+        updateOpenProgress();
+        finishBatch();
+    }
+
+    /**
+     * Reports the errors of the current batch when all its files and
+     * template codes are finished.
+     */
+    private void finishBatch()
+    {
+        if (this.openDone < this.openTotal) return;
+        this.openDone = 0;
+        this.openTotal = 0;
+        if (this.importing && this.imported == 0)
+            this.openErrors.add(I18N.getString("error.noTemplateCodeFound"));
+        this.importing = false;
+        this.imported = 0;
+        if (this.openErrors.isEmpty()) return;
+        final StringBuilder message = new StringBuilder();
+        for (final String error: this.openErrors)
+        {
+            if (message.length() > 0) message.append('\n');
+            message.append(error);
+        }
+        this.openErrors.clear();
+        JOptionPane.showMessageDialog(null, message.toString(), I18N
+            .getString("error.title"), JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Updates the progress bar showing the progress of opening complex
+     * files. The progress bar is hidden when no files are read.
+     */
+    private void updateOpenProgress()
+    {
+        final JProgressBar progressBar = this.openProgressBar;
+        if (this.openDone >= this.openTotal)
+        {
+            progressBar.setVisible(false);
+            return;
+        }
+        progressBar.setMaximum(this.openTotal);
+        progressBar.setValue(this.openDone);
+        progressBar.setString(I18N.getString("opening", this.openDone,
+            this.openTotal));
+        progressBar.setVisible(true);
+    }
+
+    /**
+     * Reads a complex file in the background and finishes opening it on the
+     * event thread.
+     */
+    private final class OpenTask extends FutureTask<Complex>
+    {
+        /** The file to read */
+        final File file;
+
+        /**
+         * Constructor
+         *
+         * @param file
+         *            The file to read
+         */
+        OpenTask(final File file)
+        {
+            super(new Callable<Complex>()
+            {
+                @Override
+                public Complex call() throws Exception
+                {
+                    return Complex.readFile(file);
+                }
+            });
+            this.file = file;
+        }
+
+        /**
+         * @see java.util.concurrent.FutureTask#done()
+         */
+        @Override
+        protected void done()
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finishOpen(OpenTask.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Scans a text for template codes in the background and finishes the
+     * scan on the event thread.
+     */
+    private final class ScanTask extends FutureTask<List<String>>
+    {
+        /**
+         * Constructor
+         *
+         * @param text
+         *            The text to scan
+         */
+        ScanTask(final String text)
+        {
+            super(new Callable<List<String>>()
+            {
+                @Override
+                public List<String> call()
+                {
+                    return Complex.findTemplateCodes(text);
+                }
+            });
+        }
+
+        /**
+         * @see java.util.concurrent.FutureTask#done()
+         */
+        @Override
+        protected void done()
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finishScan(ScanTask.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Decodes and calculates a template code in the background and finishes
+     * the import on the event thread. The result is null if the code is
+     * invalid.
+     */
+    private final class ImportTask extends FutureTask<Complex>
+    {
+        /** The template code */
+        final String code;
+
+        /**
+         * Constructor
+         *
+         * @param code
+         *            The template code to decode
+         */
+        ImportTask(final String code)
+        {
+            super(new Callable<Complex>()
+            {
+                @Override
+                public Complex call()
+                {
+                    return Complex.parseTemplateCode(code);
+                }
+            });
+            this.code = code;
+        }
+
+        /**
+         * @see java.util.concurrent.FutureTask#done()
+         */
+        @Override
+        protected void done()
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finishImport(ImportTask.this);
+                }
+            });
         }
     }
 }
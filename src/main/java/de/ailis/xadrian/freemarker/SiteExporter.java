@@ -0,0 +1,850 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.freemarker;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.Main;
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.Race;
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.listeners.ProgressListener;
+import de.ailis.xadrian.support.Config;
+import de.ailis.xadrian.utils.FileUtils;
+import de.ailis.xadrian.utils.ThreadUtils;
+import freemarker.template.Template;
+
+/**
+ * Exports complex files to a static HTML site with an index page and one
+ * page per complex. The pages are rendered in parallel and streamed
+ * directly into the files. A manifest in the target directory remembers a
+ * content hash of each complex so only new or changed complexes are
+ * rendered again when exporting into the same directory again. Pages of
+ * complexes which no longer exist are removed.
+ *
+ * The complex pages are written into the "complexes" sub directory so the
+ * images referenced by the complex template are found in the "images"
+ * directory next to it.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class SiteExporter
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog(SiteExporter.class);
+
+    /**
+     * The version of the rendered pages. Must be increased when the
+     * templates change so existing pages are rendered again.
+     */
+    private static final String VERSION = "1";
+
+    /** The name of the manifest file */
+    private static final String MANIFEST = ".xadrian-site";
+
+    /** The name of the directory containing the complex pages */
+    private static final String PAGES = "complexes";
+
+    /** The resources copied into the site */
+    private static final String[] RESOURCES = {
+        "templates/complex.css", PAGES + "/complex.css",
+        "images/blank.png", "images/blank.png" };
+
+    /** The template for the complex pages */
+    private static final Template complexTemplate = TemplateFactory
+        .getTemplate("complex.ftl");
+
+    /** The template for the index page */
+    private static final Template indexTemplate = TemplateFactory
+        .getTemplate("site.ftl");
+
+    /** The target directory */
+    private final File directory;
+
+    /** The number of pages rendered by the last export */
+    private int rendered;
+
+    /**
+     * Constructor
+     *
+     * @param directory
+     *            The target directory
+     */
+    public SiteExporter(final File directory)
+    {
+        this.directory = directory.getAbsoluteFile();
+    }
+
+    /**
+     * Returns the target directory.
+     *
+     * @return The target directory
+     */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * Returns the number of complex pages rendered by the last export.
+     * Unchanged complexes are not counted.
+     *
+     * @return The number of rendered pages
+     */
+    public int getRendered()
+    {
+        return this.rendered;
+    }
+
+    /**
+     * Exports the specified complex files using a new executor with one
+     * thread per available processor.
+     *
+     * @param files
+     *            The complex files. Directories are replaced by the complex
+     *            files in their directory trees
+     * @param listener
+     *            Optional progress listener. May be null
+     * @throws IOException
+     *             When site could not be written
+     * @throws InterruptedException
+     *             When export was interrupted
+     */
+    public void export(final List<File> files, final ProgressListener listener)
+        throws IOException, InterruptedException
+    {
+        final ExecutorService executor =
+            ThreadUtils.createCalculationExecutor("site");
+        try
+        {
+            export(files, executor, listener);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Exports the specified complex files using the specified executor.
+     * Complex files which can't be read are logged and left out.
+     *
+     * @param files
+     *            The complex files. Directories are replaced by the complex
+     *            files in their directory trees
+     * @param executor
+     *            The executor rendering the pages
+     * @param listener
+     *            Optional progress listener. May be null
+     * @throws IOException
+     *             When site could not be written
+     * @throws InterruptedException
+     *             When export was interrupted
+     */
+    public void export(final List<File> files, final ExecutorService executor,
+        final ProgressListener listener) throws IOException,
+        InterruptedException
+    {
+        final File pagesDirectory = new File(this.directory, PAGES);
+        if (!pagesDirectory.isDirectory() && !pagesDirectory.mkdirs())
+            throw new IOException("Unable to create directory "
+                + pagesDirectory);
+        copyResources();
+
+        final List<File> complexFiles = new ArrayList<File>();
+        for (final File file: files)
+            collect(file.getAbsoluteFile(), complexFiles);
+        Collections.sort(complexFiles);
+        final Map<File, Page> previous = loadManifest();
+        final Map<File, String> names = assignNames(complexFiles, previous);
+
+        // Render the pages in parallel
+        final int total = complexFiles.size();
+        final Page[] pages = new Page[total];
+        final boolean[] renderedPages = new boolean[total];
+        final CompletionService<Void> service =
+            new ExecutorCompletionService<Void>(executor);
+        for (int i = 0; i < total; i++)
+        {
+            final int index = i;
+            final File file = complexFiles.get(i);
+            service.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws IOException
+                {
+                    final Page old = previous.get(file);
+                    final Page page = export(file, names.get(file), old);
+                    pages[index] = page;
+                    renderedPages[index] = page != null && page != old;
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < total; i++)
+        {
+            ThreadUtils.take(service, IOException.class);
+            if (listener != null) listener.progressChanged(i + 1, total);
+        }
+
+        // Remove the pages of removed complexes
+        final List<Page> exported = new ArrayList<Page>(total);
+        final Set<String> pageNames = new HashSet<String>();
+        int renderedCount = 0;
+        for (int i = 0; i < total; i++)
+        {
+            if (pages[i] == null) continue;
+            exported.add(pages[i]);
+            pageNames.add(pages[i].getName());
+            if (renderedPages[i]) renderedCount++;
+        }
+        for (final Page page: previous.values())
+            if (!pageNames.contains(page.getName()))
+                new File(pagesDirectory, page.getPage()).delete();
+
+        writeIndex(exported);
+        saveManifest(exported);
+        this.rendered = renderedCount;
+    }
+
+    /**
+     * Recursively collects the complex files.
+     *
+     * @param file
+     *            The complex file or directory
+     * @param files
+     *            The list to add the found files to
+     */
+    private static void collect(final File file, final List<File> files)
+    {
+        if (!file.isDirectory())
+        {
+            if (file.isFile()) files.add(file);
+            return;
+        }
+        final File[] children = file.listFiles();
+        if (children == null) return;
+        for (final File child: children)
+        {
+            if (child.isDirectory())
+                collect(child, files);
+            else if (child.isFile() && Complex.isComplexFile(child))
+                files.add(child);
+        }
+    }
+
+    /**
+     * Assigns page names to the complex files. Files which already have a
+     * page keep its name so links to the site stay valid.
+     *
+     * @param files
+     *            The complex files
+     * @param previous
+     *            The previous pages by complex file
+     * @return The page names by complex file
+     */
+    private static Map<File, String> assignNames(final List<File> files,
+        final Map<File, Page> previous)
+    {
+        final Map<File, String> names = new HashMap<File, String>();
+        final Set<String> used = new HashSet<String>();
+        for (final File file: files)
+        {
+            final Page page = previous.get(file);
+            if (page != null && used.add(page.getName()))
+                names.put(file, page.getName());
+        }
+        for (final File file: files)
+        {
+            if (names.containsKey(file)) continue;
+            final String base = FileUtils.getNameWithoutExt(file)
+                .replaceAll("[^A-Za-z0-9_.-]", "_");
+            String name = base;
+            for (int i = 2; !used.add(name); i++)
+                name = base + "-" + i;
+            names.put(file, name);
+        }
+        return names;
+    }
+
+    /**
+     * Exports a single complex. The page is only rendered when the content
+     * hash of the complex file differs from the previous one.
+     *
+     * @param file
+     *            The complex file
+     * @param name
+     *            The page name
+     * @param previous
+     *            The previous page. Null if none
+     * @return The page. The previous page if it is still current. Null if
+     *         complex file could not be read
+     * @throws IOException
+     *             When page could not be written
+     */
+    Page export(final File file, final String name, final Page previous)
+        throws IOException
+    {
+        // Read the complex file and calculate the content hash
+        final byte[] data;
+        try
+        {
+            data = readFile(file);
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to read complex " + file + ": " + e);
+            return null;
+        }
+        final String hash = hash(file, data);
+        final File pageFile = new File(new File(this.directory, PAGES), name
+            + ".html");
+        if (previous != null && previous.getName().equals(name)
+            && previous.getHash().equals(hash) && pageFile.isFile())
+            return previous;
+
+        final Complex complex;
+        try
+        {
+            complex = Complex.read(new ByteArrayInputStream(data), Complex
+                .isBinaryFile(file));
+        }
+        catch (final Exception e)
+        {
+            log.warn("Unable to read complex " + file + ": " + e);
+            return null;
+        }
+        complex.setName(FileUtils.getNameWithoutExt(file));
+
+        final Map<String, Object> model = new HashMap<String, Object>();
+        model.put("complex", complex);
+        model.put("print", true);
+        model.put("config", Config.getInstance());
+        render(complexTemplate, model, pageFile);
+
+        return new Page(file, name, hash, complex.getName(), complex
+            .getGame().getName(), complex.getSector() == null ? null
+            : complex.getSector().getName(), complex.getTotalPrice(), Math
+            .round(complex.getProfit()));
+    }
+
+    /**
+     * Reads the specified file.
+     *
+     * @param file
+     *            The file to read
+     * @return The file content
+     * @throws IOException
+     *             When file could not be read
+     */
+    private static byte[] readFile(final File file) throws IOException
+    {
+        final InputStream stream = new FileInputStream(file);
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                (int) file.length());
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Calculates the content hash of a complex page. Includes everything
+     * the page depends on besides the complex data: The file name (used as
+     * complex name), the locale, the page version and the settings returned
+     * by {@link #getSettings()}.
+     *
+     * @param file
+     *            The complex file
+     * @param data
+     *            The content of the complex file
+     * @return The hash as hex string
+     */
+    private static String hash(final File file, final byte[] data)
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update((VERSION + "\0" + Locale.getDefault() + "\0"
+                + file.getName() + "\0" + getSettings() + "\0")
+                .getBytes("UTF-8"));
+            digest.update(data);
+            final StringBuilder builder = new StringBuilder();
+            for (final byte b: digest.digest())
+                builder.append(String.format("%02x", b & 0xff));
+            return builder.toString();
+        }
+        catch (final NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e.toString(), e);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Returns the settings which influence the rendered complex pages: The
+     * display settings of the configuration and for each game the hash of
+     * the game data and the ignored races (Which influence the base
+     * complex).
+     *
+     * @return The settings as string
+     */
+    private static String getSettings()
+    {
+        final Config config = Config.getInstance();
+        final StringBuilder builder = new StringBuilder();
+        builder.append(config.isShowFactoryResources()).append(',');
+        builder.append(config.isProdStatsPerMinute());
+        for (final Game game: GameFactory.getInstance().getGames())
+        {
+            builder.append(',').append(game.getId()).append('=');
+            builder.append(Long.toHexString(game.getDataHash()));
+            final List<String> races = new ArrayList<String>();
+            for (final Race race: game.getRaceFactory().getIgnoredRaces())
+                races.add(race.getId());
+            Collections.sort(races);
+            for (final String race: races)
+                builder.append('-').append(race);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Renders the specified template directly into the specified file.
+     *
+     * @param template
+     *            The template
+     * @param model
+     *            The model
+     * @param file
+     *            The output file
+     * @throws IOException
+     *             When file could not be written
+     */
+    private static void render(final Template template,
+        final Map<String, Object> model, final File file) throws IOException
+    {
+        final Writer writer = new AsciiWriter(new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(file), "US-ASCII")));
+        try
+        {
+            TemplateFactory.processTemplate(template, model, writer);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the index page.
+     *
+     * @param pages
+     *            The exported pages
+     * @throws IOException
+     *             When index could not be written
+     */
+    private void writeIndex(final List<Page> pages) throws IOException
+    {
+        final List<Page> sorted = new ArrayList<Page>(pages);
+        Collections.sort(sorted, new Comparator<Page>()
+        {
+            @Override
+            public int compare(final Page a, final Page b)
+            {
+                return a.getTitle().compareToIgnoreCase(b.getTitle());
+            }
+        });
+        final Map<String, Object> model = new HashMap<String, Object>();
+        model.put("pages", sorted);
+        render(indexTemplate, model, new File(this.directory, "index.html"));
+    }
+
+    /**
+     * Copies the resources needed by the pages into the site.
+     *
+     * @throws IOException
+     *             When resources could not be copied
+     */
+    private void copyResources() throws IOException
+    {
+        for (int i = 0; i < RESOURCES.length; i += 2)
+        {
+            final InputStream stream = Main.class
+                .getResourceAsStream(RESOURCES[i]);
+            if (stream == null)
+                throw new IOException("Resource not found: " + RESOURCES[i]);
+            final byte[] data;
+            try
+            {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+                data = out.toByteArray();
+            }
+            finally
+            {
+                stream.close();
+            }
+            final File file = new File(this.directory, RESOURCES[i + 1]);
+            file.getParentFile().mkdirs();
+            FileUtils.writeAtomically(file, data);
+        }
+    }
+
+    /**
+     * Loads the manifest of the previous export.
+     *
+     * @return The previous pages by complex file. Empty if there was no
+     *         previous export
+     */
+    private Map<File, Page> loadManifest()
+    {
+        final Map<File, Page> pages = new HashMap<File, Page>();
+        final File file = new File(this.directory, MANIFEST);
+        if (!file.exists()) return pages;
+        final Properties manifest = new Properties();
+        try
+        {
+            final InputStream stream = new FileInputStream(file);
+            try
+            {
+                manifest.load(stream);
+            }
+            finally
+            {
+                stream.close();
+            }
+            final int count = Integer.parseInt(manifest.getProperty("pages",
+                "0"));
+            for (int i = 0; i < count; i++)
+            {
+                final String prefix = "page." + i + ".";
+                final Page page = new Page(new File(manifest
+                    .getProperty(prefix + "file")), manifest
+                    .getProperty(prefix + "name"), manifest
+                    .getProperty(prefix + "hash"), manifest
+                    .getProperty(prefix + "title"), manifest
+                    .getProperty(prefix + "game"), manifest
+                    .getProperty(prefix + "sector"), Long.parseLong(manifest
+                    .getProperty(prefix + "price")), Long.parseLong(manifest
+                    .getProperty(prefix + "profit")));
+                if (page.getName() == null || page.getHash() == null
+                    || page.getTitle() == null || page.getGame() == null)
+                    throw new IOException("Incomplete page " + i);
+                pages.put(page.getFile(), page);
+            }
+        }
+        catch (final Exception e)
+        {
+            log.warn("Unable to read site manifest " + file + ": " + e);
+            pages.clear();
+        }
+        return pages;
+    }
+
+    /**
+     * Saves the manifest of the export.
+     *
+     * @param pages
+     *            The exported pages
+     * @throws IOException
+     *             When manifest could not be written
+     */
+    private void saveManifest(final List<Page> pages) throws IOException
+    {
+        final Properties manifest = new Properties();
+        manifest.setProperty("pages", Integer.toString(pages.size()));
+        for (int i = 0; i < pages.size(); i++)
+        {
+            final Page page = pages.get(i);
+            final String prefix = "page." + i + ".";
+            manifest.setProperty(prefix + "file", page.getFile().getPath());
+            manifest.setProperty(prefix + "name", page.getName());
+            manifest.setProperty(prefix + "hash", page.getHash());
+            manifest.setProperty(prefix + "title", page.getTitle());
+            manifest.setProperty(prefix + "game", page.getGame());
+            if (page.getSector() != null)
+                manifest.setProperty(prefix + "sector", page.getSector());
+            manifest.setProperty(prefix + "price", Long.toString(page
+                .getPrice()));
+            manifest.setProperty(prefix + "profit", Long.toString(page
+                .getProfit()));
+        }
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        manifest.store(stream, "Xadrian site manifest");
+        FileUtils.writeAtomically(new File(this.directory, MANIFEST), stream
+            .toByteArray());
+    }
+
+    /**
+     * An exported complex page. Used as model for the index page.
+     */
+    public static final class Page
+    {
+        /** The complex file */
+        private final File file;
+
+        /** The page name */
+        private final String name;
+
+        /** The content hash */
+        private final String hash;
+
+        /** The complex name */
+        private final String title;
+
+        /** The game name */
+        private final String game;
+
+        /** The sector name. Null if none */
+        private final String sector;
+
+        /** The total price of the complex */
+        private final long price;
+
+        /** The profit of the complex per hour */
+        private final long profit;
+
+        /**
+         * Constructor
+         *
+         * @param file
+         *            The complex file
+         * @param name
+         *            The page name
+         * @param hash
+         *            The content hash
+         * @param title
+         *            The complex name
+         * @param game
+         *            The game name
+         * @param sector
+         *            The sector name. Null if none
+         * @param price
+         *            The total price of the complex
+         * @param profit
+         *            The profit of the complex per hour
+         */
+        Page(final File file, final String name, final String hash,
+            final String title, final String game, final String sector,
+            final long price, final long profit)
+        {
+            this.file = file;
+            this.name = name;
+            this.hash = hash;
+            this.title = title;
+            this.game = game;
+            this.sector = sector;
+            this.price = price;
+            this.profit = profit;
+        }
+
+        /**
+         * Returns the complex file.
+         *
+         * @return The complex file
+         */
+        public File getFile()
+        {
+            return this.file;
+        }
+
+        /**
+         * Returns the page name.
+         *
+         * @return The page name
+         */
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * Returns the page path relative to the site directory.
+         *
+         * @return The page path
+         */
+        public String getPath()
+        {
+            return PAGES + "/" + getPage();
+        }
+
+        /**
+         * Returns the file name of the page.
+         *
+         * @return The file name of the page
+         */
+        String getPage()
+        {
+            return this.name + ".html";
+        }
+
+        /**
+         * Returns the content hash.
+         *
+         * @return The content hash
+         */
+        public String getHash()
+        {
+            return this.hash;
+        }
+
+        /**
+         * Returns the complex name.
+         *
+         * @return The complex name
+         */
+        public String getTitle()
+        {
+            return this.title;
+        }
+
+        /**
+         * Returns the game name.
+         *
+         * @return The game name
+         */
+        public String getGame()
+        {
+            return this.game;
+        }
+
+        /**
+         * Returns the sector name.
+         *
+         * @return The sector name. Null if none
+         */
+        public String getSector()
+        {
+            return this.sector;
+        }
+
+        /**
+         * Returns the total price of the complex.
+         *
+         * @return The total price
+         */
+        public long getPrice()
+        {
+            return this.price;
+        }
+
+        /**
+         * Returns the profit of the complex per hour.
+         *
+         * @return The profit per hour
+         */
+        public long getProfit()
+        {
+            return this.profit;
+        }
+    }
+
+    /**
+     * Writer which replaces all non-ASCII characters with numeric character
+     * references so the pages display correctly regardless of the encoding
+     * assumed by the browser.
+     */
+    private static final class AsciiWriter extends FilterWriter
+    {
+        /**
+         * Constructor
+         *
+         * @param out
+         *            The writer to write to
+         */
+        AsciiWriter(final Writer out)
+        {
+            super(out);
+        }
+
+        /**
+         * @see java.io.FilterWriter#write(int)
+         */
+        @Override
+        public void write(final int c) throws IOException
+        {
+            if (c < 128)
+                this.out.write(c);
+            else
+                this.out.write("&#" + c + ";");
+        }
+
+        /**
+         * @see java.io.FilterWriter#write(char[], int, int)
+         */
+        @Override
+        public void write(final char[] cbuf, final int off, final int len)
+            throws IOException
+        {
+            int start = off;
+            final int end = off + len;
+            for (int i = off; i < end; i++)
+            {
+                if (cbuf[i] < 128) continue;
+                this.out.write(cbuf, start, i - start);
+                final int c = Character.codePointAt(cbuf, i, end);
+                this.out.write("&#" + c + ";");
+                i += Character.charCount(c) - 1;
+                start = i + 1;
+            }
+            this.out.write(cbuf, start, end - start);
+        }
+
+        /**
+         * @see java.io.FilterWriter#write(String, int, int)
+         */
+        @Override
+        public void write(final String str, final int off, final int len)
+            throws IOException
+        {
+            write(str.toCharArray(), off, len);
+        }
+    }
+}
@@ -6,6 +6,7 @@ package de.ailis.xadrian.freemarker;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 
 import de.ailis.xadrian.Main;
 import de.ailis.xadrian.exceptions.FreemarkerException;
@@ -97,4 +98,30 @@ public final class TemplateFactory
             throw new FreemarkerException("Unable to process template: " + e, e);
         }
     }
+
+    /**
+     * Processes the specified template and streams the result into the
+     * specified writer. The writer is not closed.
+     *
+     * @param template
+     *            The template to process
+     * @param rootMap
+     *            The root map
+     * @param writer
+     *            The writer to write the output to
+     * @throws IOException
+     *             When writing fails
+     */
+    public static void processTemplate(final Template template,
+        final Object rootMap, final Writer writer) throws IOException
+    {
+        try
+        {
+            template.process(rootMap, writer);
+        }
+        catch (final TemplateException e)
+        {
+            throw new FreemarkerException("Unable to process template: " + e, e);
+        }
+    }
 }
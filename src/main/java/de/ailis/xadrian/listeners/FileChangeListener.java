@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.listeners;
+
+import java.io.File;
+import java.util.EventListener;
+
+/**
+ * Listener interface for receiving changes of watched files. The listener
+ * is called from the file watcher thread.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public interface FileChangeListener extends EventListener
+{
+    /**
+     * Called when a watched file (or a watched directory tree) has been
+     * changed on disk.
+     *
+     * @param file
+     *            The watched file or directory
+     */
+    public void fileChanged(File file);
+}
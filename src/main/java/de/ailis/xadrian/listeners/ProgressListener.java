@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.listeners;
+
+import java.util.EventListener;
+
+/**
+ * Listener interface for receiving progress events of long running
+ * calculations. The listener may be called from any thread.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public interface ProgressListener extends EventListener
+{
+    /**
+     * Called when the progress of a calculation has been changed.
+     *
+     * @param done
+     *            The number of finished steps
+     * @param total
+     *            The total number of steps
+     */
+    public void progressChanged(int done, int total);
+}
@@ -7,12 +7,19 @@ package de.ailis.xadrian.models;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.event.EventListenerList;
 
 import de.ailis.xadrian.data.Asteroid;
+import de.ailis.xadrian.data.Factory;
+import de.ailis.xadrian.data.MineSolver;
 import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.Sun;
 import de.ailis.xadrian.data.Ware;
 import de.ailis.xadrian.interfaces.SectorProvider;
 import de.ailis.xadrian.listeners.AsteroidSelectionModelListener;
@@ -111,21 +118,70 @@ public class AsteroidSelectionModel implements Serializable, SectorProvider
         // Do nothing if no sector is set
         if (this.sector == null) return;
 
-        for (final Integer yield: new ArrayList<Integer>(this.restYields))
+        // Group the free asteroids of the sector by yield
+        final Map<Integer, LinkedList<Asteroid>> free =
+            new HashMap<Integer, LinkedList<Asteroid>>();
+        for (final Asteroid asteroid: this.sector.getAsteroids())
         {
-            for (final Asteroid asteroid: this.sector.getAsteroids())
+            // Ignore this asteroid if already used
+            if (isSelected(asteroid)) continue;
+
+            final Integer yield = asteroid.getYield(this.ware);
+            LinkedList<Asteroid> asteroids = free.get(yield);
+            if (asteroids == null)
             {
-                // Ignore this asteroid if already used
-                if (isSelected(asteroid)) continue;
-
-                if (yield.equals(asteroid.getYield(this.ware)))
-                {
-                    this.restYields.remove(yield);
-                    select(asteroid);
-                    break;
-                }
+                asteroids = new LinkedList<Asteroid>();
+                free.put(yield, asteroids);
             }
+            asteroids.add(asteroid);
         }
+
+        // Map the rest yields to the free asteroids
+        final Iterator<Integer> iterator = this.restYields.iterator();
+        while (iterator.hasNext())
+        {
+            final LinkedList<Asteroid> asteroids = free.get(iterator.next());
+            if (asteroids == null || asteroids.isEmpty()) continue;
+            iterator.remove();
+            select(asteroids.removeFirst());
+        }
+    }
+
+    /**
+     * Replaces the selection with the asteroids of the current sector which
+     * produce at least the specified rate with the fewest mines of the
+     * specified type and the least overproduction. The ware of the model is
+     * set to the product of the mine.
+     *
+     * @param mine
+     *            The mine type
+     * @param suns
+     *            The suns
+     * @param rate
+     *            The needed production per hour. Use
+     *            {@link de.ailis.xadrian.data.ComplexWare#getMissing()} to
+     *            cover the deficit of a complex
+     * @return True if the selected asteroids produce the needed rate, false
+     *         if the sector doesn't have enough asteroids. In this case all
+     *         asteroids are selected
+     */
+    public boolean selectForRate(final Factory mine, final Sun suns,
+        final double rate)
+    {
+        if (this.sector == null)
+            throw new IllegalStateException("No sector set");
+        final MineSolver solver = new MineSolver(mine, suns);
+        final List<Asteroid> asteroids = solver.solve(this.sector, rate);
+        this.ware = mine.getProduct().getWare();
+        this.restYields.clear();
+        this.selection.clear();
+        this.selection.addAll(asteroids);
+        fireSelectionChanged();
+
+        double produced = 0;
+        for (final Asteroid asteroid: asteroids)
+            produced += solver.getRate(asteroid);
+        return produced >= rate - 1e-9;
     }
 
     /**
@@ -10,11 +10,13 @@ import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.JComponent;
 import javax.swing.TransferHandler;
 
+import de.ailis.xadrian.data.Complex;
 import de.ailis.xadrian.exceptions.DataException;
 import de.ailis.xadrian.frames.MainFrame;
 
@@ -73,18 +75,26 @@ public final class ComplexTransferHandler extends TransferHandler
             {
                 if (flavor.equals(DataFlavor.javaFileListFlavor))
                 {
+                    final List<File> files = new ArrayList<File>();
                     for (File file : (List<File>) transferable
                         .getTransferData(DataFlavor.javaFileListFlavor))
                     {
+                        // Directories are searched for complex files
+                        if (file.isDirectory())
+                        {
+                            files.add(file);
+                            continue;
+                        }
+
                         // Ignore non-files
                         if (!file.isFile()) continue;
 
-                        // Ignore files which have no x3c extension
-                        if (!file.getName().toLowerCase().endsWith(".x3c"))
-                            continue;
+                        // Ignore files which have no complex file extension
+                        if (!Complex.isComplexFile(file)) continue;
 
-                        this.mainFrame.open(file);
+                        files.add(file);
                     }
+                    this.mainFrame.open(files);
                     return true;
                 }
             }
@@ -10,6 +10,7 @@ import java.awt.Frame;
 import java.awt.Window;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.prefs.Preferences;
@@ -20,6 +21,7 @@ import javax.swing.JSplitPane;
 
 import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Race;
+import de.ailis.xadrian.data.ShoppingRoutePlanner;
 import de.ailis.xadrian.exceptions.ConfigException;
 import de.ailis.xadrian.utils.ObjectUtils;
 import de.ailis.xadrian.utils.SwingUtils;
@@ -66,6 +68,9 @@ public final class Config
      */
     private static final String PROD_STATS_PER_MINUTE = "prodStatPerMinute";
 
+    /** Config key for the cargo capacities of the shopping freighters */
+    private static final String CARGO_CAPACITIES = "cargoCapacities";
+
     /**
      * The singleton instance.
      */
@@ -104,10 +109,19 @@ public final class Config
      */
     private boolean prodStatsPerMinute = false;
 
+    /** The cargo capacities of the freighters used for the shopping */
+    private final List<Integer> cargoCapacities = new ArrayList<Integer>();
+
     /** The print attributes. */
     private HashPrintRequestAttributeSet printAttributes =
         new HashPrintRequestAttributeSet();
 
+    /**
+     * The version of the settings which influence the base complex
+     * calculation. Incremented on every change.
+     */
+    private volatile int version = 0;
+
     /**
      * Private constructor to prevent instantiation
      */
@@ -148,6 +162,7 @@ public final class Config
         this.defaultGame = prefs.get(DEFAULT_GAME, null);
         this.nightMode = prefs.getBoolean(NIGHT_MODE, false);
         this.prodStatsPerMinute = prefs.getBoolean(PROD_STATS_PER_MINUTE, false);
+        loadCargoCapacities(prefs.get(CARGO_CAPACITIES, null));
 
         final String printAttributes = prefs.get(PRINT_ATTRIBUTES, null);
         if (printAttributes != null && !printAttributes.isEmpty())
@@ -158,6 +173,36 @@ public final class Config
         }
     }
 
+    /**
+     * Loads the cargo capacities from the specified space separated list.
+     * Invalid entries are ignored. The default capacity is used when no
+     * valid capacity is found.
+     *
+     * @param capacities
+     *            The space separated capacities. May be null
+     */
+    private void loadCargoCapacities(final String capacities)
+    {
+        this.cargoCapacities.clear();
+        if (capacities != null)
+        {
+            for (final String capacity: capacities.trim().split("\\s+"))
+            {
+                try
+                {
+                    final int value = Integer.parseInt(capacity);
+                    if (value > 0) this.cargoCapacities.add(value);
+                }
+                catch (final NumberFormatException e)
+                {
+                    // Ignored
+                }
+            }
+        }
+        if (this.cargoCapacities.isEmpty())
+            this.cargoCapacities.add(ShoppingRoutePlanner.DEFAULT_CAPACITY);
+    }
+
     /**
      * Resets the configuration.
      */
@@ -167,6 +212,8 @@ public final class Config
         this.showFactoryResources = true;
         this.lastFileChooserPath = null;
         this.theme = null;
+        loadCargoCapacities(null);
+        this.version++;
     }
 
     /**
@@ -210,6 +257,13 @@ public final class Config
             prefs.put(DEFAULT_GAME, this.defaultGame);
         prefs.putBoolean(NIGHT_MODE, this.nightMode);
         prefs.putBoolean(PROD_STATS_PER_MINUTE, this.prodStatsPerMinute);
+        final StringBuilder capacities = new StringBuilder();
+        for (final int capacity: this.cargoCapacities)
+        {
+            if (capacities.length() > 0) capacities.append(' ');
+            capacities.append(capacity);
+        }
+        prefs.put(CARGO_CAPACITIES, capacities.toString());
 
         prefs.put(PRINT_ATTRIBUTES, ObjectUtils.toString(this.printAttributes));
     }
@@ -264,6 +318,20 @@ public final class Config
             this.ignoredRaces.add(race.getId());
         else
             this.ignoredRaces.remove(race.getId());
+        this.version++;
+    }
+
+    /**
+     * Returns the version of the settings which influence the base complex
+     * calculation (The ignored races). The version changes whenever one of
+     * these settings is changed so calculation results cached for an older
+     * version can be discarded.
+     *
+     * @return The settings version
+     */
+    public int getVersion()
+    {
+        return this.version;
     }
 
     /**
@@ -562,4 +630,40 @@ public final class Config
     {
         return isProdStatsPerMinute() ? ",##0.000" : ",##0";
     }
+
+    /**
+     * Returns the cargo capacities of the freighters used to buy the
+     * factories.
+     *
+     * @return The cargo capacities. Never empty
+     */
+    public List<Integer> getCargoCapacities()
+    {
+        return Collections.unmodifiableList(this.cargoCapacities);
+    }
+
+    /**
+     * Sets the cargo capacities of the freighters used to buy the factories.
+     *
+     * @param cargoCapacities
+     *            The cargo capacities. Must not be empty
+     */
+    public void setCargoCapacities(final List<Integer> cargoCapacities)
+    {
+        if (cargoCapacities.isEmpty())
+            throw new IllegalArgumentException("No cargo capacities");
+        this.cargoCapacities.clear();
+        this.cargoCapacities.addAll(cargoCapacities);
+    }
+
+    /**
+     * Returns the largest cargo capacity of the freighters. This freighter
+     * is used to plan the shopping route.
+     *
+     * @return The largest cargo capacity
+     */
+    public int getCargoCapacity()
+    {
+        return Collections.max(this.cargoCapacities);
+    }
 }
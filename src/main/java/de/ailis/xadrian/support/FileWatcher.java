@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.support;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.listeners.FileChangeListener;
+import de.ailis.xadrian.utils.ThreadUtils;
+
+/**
+ * Watches files and directory trees for changes made by other programs. A
+ * single background thread checks all watched files. Java 6 has no file
+ * system notifications so the thread compares the modification time and
+ * size of each watched file in regular intervals. For a watched directory
+ * tree the modification times of the directories and the modification
+ * times and sizes of the files in the tree are compared. An optional filter
+ * restricts the compared files so changes of unrelated files are ignored.
+ * Walking a large directory tree is expensive so directory trees are only
+ * checked every {@link #TREE_INTERVAL} while single files are checked every
+ * {@link #INTERVAL}.
+ *
+ * Changes are debounced: A change is only reported when the file stayed
+ * unchanged for at least {@link #QUIET_TIME} so a file which is still being
+ * written (or synchronized) is reported once when it is complete.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class FileWatcher
+{
+    /** The interval between two checks in milliseconds */
+    public static final long INTERVAL = 1000;
+
+    /** The interval between two checks of a directory tree in milliseconds */
+    public static final long TREE_INTERVAL = 30000;
+
+    /** The time in milliseconds a change must be stable before reporting */
+    public static final long QUIET_TIME = 1000;
+
+    /** The logger */
+    private static final Log log = LogFactory.getLog(FileWatcher.class);
+
+    /** The singleton instance */
+    private static final FileWatcher instance = new FileWatcher();
+
+    /** The executor running the watcher thread */
+    private final ExecutorService executor = ThreadUtils.createExecutor(
+        "file-watcher", 1);
+
+    /** The watches by watched file */
+    private final Map<File, Watch> watches = new HashMap<File, Watch>();
+
+    /** If the watcher thread is running */
+    private boolean running;
+
+    /**
+     * Private constructor to prevent instantiation from outside.
+     */
+    private FileWatcher()
+    {
+        // Empty
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return The singleton instance
+     */
+    public static FileWatcher getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Starts watching the specified file or directory tree. The current
+     * state of the file is not reported.
+     *
+     * @param file
+     *            The file or directory to watch
+     * @param listener
+     *            The listener to inform about changes
+     */
+    public void watch(final File file, final FileChangeListener listener)
+    {
+        watch(file, null, listener);
+    }
+
+    /**
+     * Starts watching the specified file or directory tree. The current
+     * state of the file is not reported. When the file is already watched
+     * then the filter of the existing watch is used.
+     *
+     * @param file
+     *            The file or directory to watch
+     * @param filter
+     *            Selects the files of a watched directory tree which are
+     *            compared. Null to compare all files. Not used for a single
+     *            watched file
+     * @param listener
+     *            The listener to inform about changes
+     */
+    public synchronized void watch(final File file, final FileFilter filter,
+        final FileChangeListener listener)
+    {
+        final File key = file.getAbsoluteFile();
+        Watch watch = this.watches.get(key);
+        if (watch == null)
+        {
+            watch = new Watch(key, filter);
+            this.watches.put(key, watch);
+        }
+        watch.listeners.addIfAbsent(listener);
+        if (!this.running)
+        {
+            this.running = true;
+            this.executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    loop();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops watching the specified file or directory tree for the specified
+     * listener.
+     *
+     * @param file
+     *            The watched file or directory
+     * @param listener
+     *            The listener to remove
+     */
+    public synchronized void unwatch(final File file,
+        final FileChangeListener listener)
+    {
+        final File key = file.getAbsoluteFile();
+        final Watch watch = this.watches.get(key);
+        if (watch == null) return;
+        watch.listeners.remove(listener);
+        if (watch.listeners.isEmpty()) this.watches.remove(key);
+    }
+
+    /**
+     * Accepts the current state of the specified file without reporting it.
+     * Must be called after the application itself has written a watched
+     * file.
+     *
+     * @param file
+     *            The written file
+     */
+    public synchronized void update(final File file)
+    {
+        final Watch watch = this.watches.get(file.getAbsoluteFile());
+        if (watch == null) return;
+        watch.state = watch.getState();
+        watch.pending = watch.state;
+    }
+
+    /**
+     * Checks the watched files until no file is watched anymore. Runs in the
+     * watcher thread.
+     */
+    void loop()
+    {
+        while (true)
+        {
+            synchronized (this)
+            {
+                if (this.watches.isEmpty())
+                {
+                    this.running = false;
+                    return;
+                }
+                try
+                {
+                    wait(INTERVAL);
+                }
+                catch (final InterruptedException e)
+                {
+                    this.running = false;
+                    return;
+                }
+            }
+            try
+            {
+                check(System.currentTimeMillis());
+            }
+            catch (final RuntimeException e)
+            {
+                log.error("File watcher failed: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Checks all watched files once and informs the listeners about stable
+     * changes.
+     *
+     * @param now
+     *            The current time in milliseconds
+     */
+    void check(final long now)
+    {
+        final List<Watch> watches;
+        synchronized (this)
+        {
+            watches = new ArrayList<Watch>(this.watches.values());
+        }
+        for (final Watch watch: watches)
+        {
+            if (now < watch.next) continue;
+            final long state = watch.getState();
+            synchronized (this)
+            {
+                // Pending changes are checked in the normal interval until
+                // they are stable
+                if (state == watch.state)
+                {
+                    watch.pending = state;
+                    watch.next = now + watch.interval;
+                    continue;
+                }
+                if (state != watch.pending)
+                {
+                    watch.pending = state;
+                    watch.since = now;
+                    continue;
+                }
+                if (now - watch.since < QUIET_TIME) continue;
+                watch.state = state;
+                watch.next = now + watch.interval;
+            }
+            for (final FileChangeListener listener: watch.listeners)
+                listener.fileChanged(watch.file);
+        }
+    }
+
+    /**
+     * Returns the state of a single file.
+     *
+     * @param file
+     *            The file
+     * @return The state. 0 if file does not exist
+     */
+    private static long getFileState(final File file)
+    {
+        if (!file.exists()) return 0;
+        return file.lastModified() * 31 + file.length() + 1;
+    }
+
+    /**
+     * Returns the state of a directory tree. The state is a fingerprint of
+     * the modification times of all directories and the modification times
+     * and sizes of all accepted files in the tree.
+     *
+     * @param directory
+     *            The directory
+     * @param filter
+     *            Selects the compared files. Null for all files
+     * @return The state
+     */
+    static long getTreeState(final File directory, final FileFilter filter)
+    {
+        long state = directory.lastModified() * 31
+            + directory.getName().hashCode();
+        final File[] children = directory.listFiles();
+        // Summed up so the order of the children doesn't matter
+        if (children != null) for (final File child: children)
+        {
+            if (child.isDirectory())
+                state += getTreeState(child, filter) * 1000003;
+            else if (filter == null ? child.isFile() : filter.accept(child))
+                state += getFileState(child) * 31
+                    + child.getName().hashCode();
+        }
+        return state;
+    }
+
+    /**
+     * A watched file or directory tree.
+     */
+    private static final class Watch
+    {
+        /** The watched file or directory */
+        final File file;
+
+        /** The filter selecting the compared files. Null for all files */
+        final FileFilter filter;
+
+        /** The interval between two checks in milliseconds */
+        final long interval;
+
+        /** The listeners */
+        final CopyOnWriteArrayList<FileChangeListener> listeners =
+            new CopyOnWriteArrayList<FileChangeListener>();
+
+        /** The last reported state */
+        long state;
+
+        /** The last seen state */
+        long pending;
+
+        /** The time when the last seen state was seen first */
+        long since;
+
+        /** The time of the next check */
+        long next;
+
+        /**
+         * Constructor
+         *
+         * @param file
+         *            The watched file or directory
+         * @param filter
+         *            The filter selecting the compared files of a directory
+         *            tree. Null for all files
+         */
+        Watch(final File file, final FileFilter filter)
+        {
+            this.file = file;
+            this.filter = filter;
+            this.interval = file.isDirectory() ? TREE_INTERVAL : INTERVAL;
+            this.state = getState();
+            this.pending = this.state;
+            this.next = System.currentTimeMillis() + this.interval;
+        }
+
+        /**
+         * Returns the current state of the watched file or directory tree.
+         *
+         * @return The current state. 0 if file does not exist
+         */
+        long getState()
+        {
+            if (this.file.isDirectory())
+                return getTreeState(this.file, this.filter);
+            return getFileState(this.file);
+        }
+    }
+}
@@ -5,6 +5,8 @@
 package de.ailis.xadrian.utils;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 /**
  * Static file utility methods.
@@ -52,4 +54,62 @@ public final class FileUtils
         if (pos == -1) return fileName;
         return fileName.substring(0, pos);
     }
+
+    /**
+     * Writes the specified data into the specified file without ever leaving
+     * a truncated file behind. The data is written into a temporary file in
+     * the same directory which is synced to disk and then renamed to the
+     * target file. If the rename fails (Some platforms can't rename over
+     * existing files) then the old file is moved away first and restored if
+     * the new file can't be moved in place.
+     *
+     * @param file
+     *            The file to write
+     * @param data
+     *            The data to write
+     * @throws IOException
+     *             If file could not be written. The old file is still intact
+     *             in this case.
+     */
+    public static void writeAtomically(final File file, final byte[] data)
+        throws IOException
+    {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final File tmp = File.createTempFile("." + file.getName() + ".",
+            ".tmp", directory);
+        boolean written = false;
+        try
+        {
+            final FileOutputStream stream = new FileOutputStream(tmp);
+            try
+            {
+                stream.write(data);
+                stream.flush();
+                stream.getFD().sync();
+            }
+            finally
+            {
+                stream.close();
+            }
+            if (!tmp.renameTo(file))
+            {
+                final File backup = new File(directory, tmp.getName() + ".bak");
+                if (!file.renameTo(backup))
+                    throw new IOException("Unable to replace " + file);
+                if (!tmp.renameTo(file))
+                {
+                    if (!backup.renameTo(file))
+                        throw new IOException("Unable to restore " + file
+                            + " from " + backup);
+                    throw new IOException("Unable to replace " + file);
+                }
+                if (!backup.delete()) backup.deleteOnExit();
+            }
+            written = true;
+        }
+        finally
+        {
+            if (!written && !tmp.delete()) tmp.deleteOnExit();
+        }
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.utils;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Static thread utility methods.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class ThreadUtils
+{
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private ThreadUtils()
+    {
+        // Empty
+    }
+
+    /**
+     * Returns the number of threads to use for CPU bound calculations. This
+     * is the number of available processors.
+     *
+     * @return The number of calculation threads. At least 1.
+     */
+    public static int getCalculationThreads()
+    {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new executor for CPU bound calculations. The executor uses
+     * one daemon thread per available processor so a forgotten executor
+     * never prevents the application from exiting. The caller is responsible
+     * for shutting down the executor when it is no longer needed.
+     *
+     * @param name
+     *            The name prefix of the created threads.
+     * @return The executor. Never null.
+     */
+    public static ExecutorService createCalculationExecutor(final String name)
+    {
+        return createExecutor(name, getCalculationThreads());
+    }
+
+    /**
+     * Creates a new executor with the specified number of daemon threads. The
+     * caller is responsible for shutting down the executor when it is no
+     * longer needed.
+     *
+     * @param name
+     *            The name prefix of the created threads.
+     * @param threads
+     *            The number of threads.
+     * @return The executor. Never null.
+     */
+    public static ExecutorService createExecutor(final String name,
+        final int threads)
+    {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, name + "-"
+                    + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Waits for the next finished task of the specified completion service
+     * and returns its result. If the task failed then its exception is
+     * rethrown. Checked exceptions are wrapped in a runtime exception.
+     *
+     * @param <T>
+     *            The result type
+     * @param service
+     *            The completion service
+     * @return The result of the finished task
+     * @throws InterruptedException
+     *             When waiting was interrupted or the task was interrupted
+     */
+    public static <T> T take(final CompletionService<T> service)
+        throws InterruptedException
+    {
+        return take(service, RuntimeException.class);
+    }
+
+    /**
+     * Waits for the next finished task of the specified completion service
+     * and returns its result. If the task failed with an exception of the
+     * specified type then this exception is rethrown. Other checked
+     * exceptions are wrapped in a runtime exception.
+     *
+     * @param <T>
+     *            The result type
+     * @param <E>
+     *            The type of the exception to rethrow
+     * @param service
+     *            The completion service
+     * @param exceptionType
+     *            The type of the checked exception to rethrow
+     * @return The result of the finished task
+     * @throws E
+     *             When the task failed with this exception
+     * @throws InterruptedException
+     *             When waiting was interrupted or the task was interrupted
+     */
+    public static <T, E extends Exception> T take(
+        final CompletionService<T> service, final Class<E> exceptionType)
+        throws E, InterruptedException
+    {
+        try
+        {
+            return service.take().get();
+        }
+        catch (final ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+            if (exceptionType.isInstance(cause))
+                throw exceptionType.cast(cause);
+            if (cause instanceof InterruptedException)
+                throw (InterruptedException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause.toString(), cause);
+        }
+    }
+}
@@ -4,14 +4,11 @@
  */
 package de.ailis.xadrian.utils;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 
-import org.dom4j.Document;
-import org.dom4j.io.OutputFormat;
-import org.dom4j.io.XMLWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Static XML utility methods.
@@ -29,29 +26,41 @@ public final class XmlUtils
     }
 
     /**
-     * Writes the specified document to the specified file.
+     * Creates a streaming XML writer which writes UTF-8 encoded XML to the
+     * specified stream. The XML declaration is already written. Use
+     * {@link #newLine(XMLStreamWriter, int)} to indent the output.
      *
-     * @param document
-     *            The document to write
-     * @param file
-     *            The file to write to
-     * @throws IOException
-     *             If file could not be written
+     * @param stream
+     *            The stream to write to
+     * @return The XML writer
+     * @throws XMLStreamException
+     *             If writer could not be created
      */
-    public static void write(final Document document, final File file)
-        throws IOException
+    public static XMLStreamWriter createWriter(final OutputStream stream)
+        throws XMLStreamException
     {
-        final OutputFormat format = OutputFormat.createPrettyPrint();
-        final XMLWriter writer =
-            new XMLWriter(new OutputStreamWriter(new FileOutputStream(file),
-                "UTF-8"), format);
-        try
-        {
-            writer.write(document);
-        }
-        finally
-        {
-            writer.close();
-        }
+        final XMLStreamWriter writer = XMLOutputFactory.newInstance()
+            .createXMLStreamWriter(stream, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        return writer;
+    }
+
+    /**
+     * Starts a new indented line in the output of a streaming XML writer.
+     *
+     * @param writer
+     *            The XML writer
+     * @param depth
+     *            The indentation depth
+     * @throws XMLStreamException
+     *             If writing fails
+     */
+    public static void newLine(final XMLStreamWriter writer, final int depth)
+        throws XMLStreamException
+    {
+        final StringBuilder builder = new StringBuilder("\n");
+        for (int i = 0; i < depth; i++)
+            builder.append("  ");
+        writer.writeCharacters(builder.toString());
     }
 }
@@ -294,6 +294,66 @@
         </table>
       [/#if]
   
+      <h2>
+        <a href="file://toggleShowingPriceSensitivity">
+          [#if !print]
+            <img src="../images/[#if complex.showingPriceSensitivity]expanded[#else]collapsed[/#if].png" border="0" width="16" height="14" />
+          [/#if]
+          [@message key="complex.priceSensitivity" /]
+          [#if config.prodStatsPerMinute]
+            ([@message key="complex.perMinute" /])
+          [#else]
+            ([@message key="complex.perHour" /])
+          [/#if]
+        </a>
+      </h2>
+      [#if complex.showingPriceSensitivity || print]
+        [#assign sensitivity = complex.priceSensitivity]
+        <table class="indent">
+          <tr>
+            <th class="ware">[@message key="complex.ware" /]</th>
+            <th class="price">[@message key="complex.price" /]</th>
+            <th class="profit">[@message key="complex.contribution" /]</th>
+            <th class="units">[@message key="complex.derivative" /]</th>
+            <th class="price">[@message key="complex.breakEvenPrice" /]</th>
+            <th class="units">[@message key="complex.elasticity" /]</th>
+          </tr>
+          <tr>
+            <td colspan="6" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+          </tr>
+          [#list sensitivity.wares as wareSensitivity]
+            [#if wareSensitivity_index %2 == 0]
+              [#assign class="even" /]
+            [#else]
+              [#assign class="odd" /]
+            [/#if]
+            <tr class="${class}">
+              <td class="ware">${wareSensitivity.ware.name}</td>
+              <td class="price">
+                [#if !print]<a href="file://changePrice/${wareSensitivity.ware.id}">[/#if][#if wareSensitivity.price gt 0]${wareSensitivity.price} Cr[#else][@message key="complex.noTrade" /][/#if][#if !print]</a>[/#if]
+              </td>
+              [#if wareSensitivity.sold]
+                [#assign class="surplus"]
+              [#else]
+                [#assign class="missing"]
+              [/#if]
+              <td class="${class}">${(wareSensitivity.contribution*config.prodStatsFactor)?round} Cr</td>
+              <td class="units">${(wareSensitivity.derivative*config.prodStatsFactor)?string(config.prodStatsFormat)}</td>
+              <td class="price">[#if wareSensitivity.hasBreakEvenPrice()]${wareSensitivity.breakEvenPrice?round} Cr[#else]-[/#if]</td>
+              <td class="units">${wareSensitivity.elasticity?string("0.00")}</td>
+            </tr>
+          [/#list]
+          <tr>
+            <td colspan="6" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+          </tr>
+          <tr>
+            <th class="profit" colspan="2">[@message key="complex.total" /]</th>
+            <td class="profit">${(sensitivity.profit*config.prodStatsFactor)?round} Cr</td>
+            <td colspan="3"></td>
+          </tr>
+        </table>
+      [/#if]
+
       <h2>
         <a href="file://toggleShowingStorageCapacities">
           [#if !print]
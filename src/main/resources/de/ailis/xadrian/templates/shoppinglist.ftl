@@ -134,4 +134,149 @@
       [/#if]      
     </tr>        
   </table>
+  [#if complex.sector??]
+    [#assign route=complex.getShoppingRoute(config.cargoCapacity)]
+    [#if route.trips?size > 0 || !route.complete]
+      <p class="indent">[@message key="complex.shoppingRoute" /] ([@message key="complex.cargoCapacity" /]: ${config.cargoCapacity})</p>
+      <table class="indent">
+        <tr>
+          <th class="quantity">[@message key="complex.trip" /]</th>
+          <th class="manufacturer">[@message key="complex.sector" /]</th>
+          <th class="quantity">[@message key="complex.jumps" /]</th>
+          <th class="ware">[@message key="complex.cargo" /]</th>
+          <th class="volume">[@message key="complex.factoryVolume" /]</th>
+        </tr>
+        <tr>
+          <td colspan="5" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+        </tr>
+        [#list route.trips as trip]
+          [#if trip_index %2 == 0]
+            [#assign class="even" /]
+          [#else]
+            [#assign class="odd" /]
+          [/#if]
+          [#list trip.stops as stop]
+            <tr class="${class}">
+              <td class="quantity">[#if stop_index == 0]${trip_index + 1}[/#if]</td>
+              <td class="manufacturer">${stop.sector}</td>
+              <td class="quantity">${stop.jumps}</td>
+              <td class="ware">
+                [#list stop.factories as item]
+                  ${item.quantity} x ${item.factory}<br />
+                [/#list]
+                [#if stop.kits > 0]
+                  ${stop.kits} x [@message key="complex.kit" /]
+                [/#if]
+              </td>
+              <td class="volume">${stop.volume}</td>
+            </tr>
+          [/#list]
+          <tr class="${class}">
+            <td></td>
+            <td class="manufacturer">${complex.sector}</td>
+            <td class="quantity">${trip.returnJumps}</td>
+            <td class="ware">[@message key="complex.returnToComplex" /]</td>
+            <td class="volume">${trip.volume}</td>
+          </tr>
+        [/#list]
+        [#if !route.complete]
+          <tr>
+            <td colspan="5" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+          </tr>
+          <tr>
+            <td></td>
+            <td colspan="2">[@message key="complex.unroutable" /]</td>
+            <td class="ware">
+              [#list route.unroutableFactories as item]
+                ${item.quantity} x ${item.factory}<br />
+              [/#list]
+              [#if route.unroutableKits > 0]
+                ${route.unroutableKits} x [@message key="complex.kit" /]
+              [/#if]
+            </td>
+            <td></td>
+          </tr>
+        [/#if]
+        <tr>
+          <td colspan="5" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+        </tr>
+        <tr>
+          <th class="factory">[@message key="complex.total" /]</th>
+          <td></td>
+          <td class="quantity">${route.totalJumps}</td>
+          <td></td>
+          <td></td>
+        </tr>
+      </table>
+    [/#if]
+  [/#if]
+  [#assign loadPlan=complex.getLoadPlan(config.cargoCapacities)]
+  [#if loadPlan.loads?size > 0 || !loadPlan.complete]
+    <p class="indent">[@message key="complex.freighterLoads" /] (${loadPlan.tripCount} [@message key="complex.trips" /], ${loadPlan.rounds} [@message key="complex.rounds" /])</p>
+    <table class="indent">
+      <tr>
+        <th class="quantity">[@message key="complex.trip" /]</th>
+        <th class="quantity">[@message key="complex.cargoCapacity" /]</th>
+        <th class="manufacturer">[@message key="complex.sector" /]</th>
+        <th class="ware">[@message key="complex.cargo" /]</th>
+        <th class="volume">[@message key="complex.factoryVolume" /]</th>
+      </tr>
+      <tr>
+        <td colspan="5" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+      </tr>
+      [#list loadPlan.loads as load]
+        [#if load_index %2 == 0]
+          [#assign class="even" /]
+        [#else]
+          [#assign class="odd" /]
+        [/#if]
+        <tr class="${class}">
+          <td class="quantity">${load_index + 1}</td>
+          <td class="quantity">${load.capacity}</td>
+          <td class="manufacturer">
+            [#list load.sectors as sector]
+              ${sector}<br />
+            [/#list]
+          </td>
+          <td class="ware">
+            [#list load.factories as item]
+              ${item.quantity} x ${item.factory}<br />
+            [/#list]
+            [#if load.kits > 0]
+              ${load.kits} x [@message key="complex.kit" /]
+            [/#if]
+          </td>
+          <td class="volume">${load.volume}</td>
+        </tr>
+      [/#list]
+      [#if !loadPlan.complete]
+        <tr>
+          <td colspan="5" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+        </tr>
+        <tr>
+          <td></td>
+          <td colspan="2">[@message key="complex.unloadable" /]</td>
+          <td class="ware">
+            [#list loadPlan.unloadableFactories as item]
+              ${item.quantity} x ${item.factory}<br />
+            [/#list]
+            [#if loadPlan.unloadableKits > 0]
+              ${loadPlan.unloadableKits} x [@message key="complex.kit" /]
+            [/#if]
+          </td>
+          <td></td>
+        </tr>
+      [/#if]
+      <tr>
+        <td colspan="5" class="sep"><img src="../images/blank.png" width="1" height="1" /></td>
+      </tr>
+      <tr>
+        <th class="factory">[@message key="complex.total" /]</th>
+        <td></td>
+        <td></td>
+        <td></td>
+        <td class="volume">${loadPlan.totalVolume}</td>
+      </tr>
+    </table>
+  [/#if]
 [/#if]
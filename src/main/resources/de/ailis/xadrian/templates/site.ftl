@@ -0,0 +1,38 @@
+<!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN"
+  "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd">
+<html xmlns="http://www.w3.org/1999/xhtml">
+  <head>
+    <title>[@message key="site.title" /]</title>
+    <link rel="stylesheet" type="text/css" href="complexes/complex.css" />
+  </head>
+  <body class="print">
+    <h1>[@message key="site.title" /]</h1>
+    [#if pages?size == 0]
+      <p class="indent">[@message key="site.noComplexes" /]</p>
+    [#else]
+      <table class="indent">
+        <tr>
+          <th class="factory">[@message key="site.complex" /]</th>
+          <th class="factory">[@message key="complex.game" /]</th>
+          <th class="factory">[@message key="complex.sector" /]</th>
+          <th class="price">[@message key="complex.totalPrice" /]</th>
+          <th class="profit">[@message key="complex.profitPerHour" /]</th>
+        </tr>
+        [#list pages as page]
+          [#if page_index % 2 == 0]
+            [#assign class="even" /]
+          [#else]
+            [#assign class="odd" /]
+          [/#if]
+          <tr class="${class}">
+            <td class="factory"><a href="${page.path?html}">${page.title?html}</a></td>
+            <td class="factory">${page.game?html}</td>
+            <td class="factory">[#if page.sector??]${page.sector?html}[#else][@message key="complex.noSector" /][/#if]</td>
+            <td class="price">${page.price} Cr</td>
+            <td class="profit">${page.profit} Cr</td>
+          </tr>
+        [/#list]
+      </table>
+    [/#if]
+  </body>
+</html>
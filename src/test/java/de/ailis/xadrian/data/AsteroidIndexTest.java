@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the AsteroidIndex class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class AsteroidIndexTest
+{
+    /** The game */
+    private static Game game;
+
+    /** The ore ware */
+    private static Ware ore;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        game = GameFactory.getInstance().getGame("x3tc");
+        ore = game.getWareFactory().getWare("ore");
+    }
+
+    /**
+     * Checks the index results against a full scan of all sectors.
+     */
+    @Test
+    public void testQueries()
+    {
+        final AsteroidIndex index = game.getAsteroidIndex();
+
+        // Determine the expected results by scanning all sectors
+        int maxYield = 0;
+        int count = 0;
+        for (final Sector sector: game.getSectorFactory().getSectors())
+            for (final Asteroid asteroid: sector.getAsteroids())
+            {
+                if (!asteroid.getWare().equals(ore)) continue;
+                maxYield = Math.max(maxYield, asteroid.getYield());
+                if (asteroid.getYield() >= 20) count++;
+            }
+
+        // Check the top query
+        final List<AsteroidLocation> top = index.getTop(ore, 10);
+        assertEquals(10, top.size());
+        assertEquals(maxYield, top.get(0).getYield());
+        for (int i = 1; i < top.size(); i++)
+            assertTrue(top.get(i - 1).getYield() >= top.get(i).getYield());
+
+        // Check the minimum yield query
+        final List<AsteroidLocation> minYield = index.getByMinYield(ore, 20);
+        assertEquals(count, minYield.size());
+
+        // Check the jump range query
+        final Sector origin = game.getSectorFactory().getSector(0, 0);
+        final List<AsteroidLocation> near = index.getNear(ore, origin, 3, 0,
+            Integer.MAX_VALUE);
+        assertFalse(near.isEmpty());
+        for (final AsteroidLocation location: near)
+        {
+            final int jumps = origin.getDistance(location.getSector());
+            assertTrue(jumps >= 0 && jumps <= 3);
+        }
+    }
+}
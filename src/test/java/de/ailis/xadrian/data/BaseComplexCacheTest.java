@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the BaseComplexCache class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BaseComplexCacheTest
+{
+    /** The game */
+    private Game game;
+
+    /** The cache */
+    private BaseComplexCache cache;
+
+    /**
+     * Clears the cache.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.cache = BaseComplexCache.getInstance();
+        this.cache.clear();
+    }
+
+    /**
+     * Restores the default limits.
+     */
+    @After
+    public void tearDown()
+    {
+        this.cache.setMaxEntries(BaseComplexCache.DEFAULT_MAX_ENTRIES);
+        this.cache.setMaxMemory(BaseComplexCache.DEFAULT_MAX_MEMORY);
+        this.cache.clear();
+    }
+
+    /**
+     * Creates a quantum tube complex with base complex.
+     *
+     * @param quantity
+     *            The number of quantum tube fabs
+     * @return The complex
+     */
+    private Complex createComplex(final int quantity)
+    {
+        final Complex complex = new Complex(this.game, "test");
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), quantity);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        return complex;
+    }
+
+    /**
+     * Checks that equal complexes share the cached base complex.
+     */
+    @Test
+    public void testHit()
+    {
+        final Complex first = createComplex(4);
+        final long misses = this.cache.getMisses();
+        final long hits = this.cache.getHits();
+        final Complex second = createComplex(4);
+        assertEquals(misses, this.cache.getMisses());
+        assertTrue(this.cache.getHits() > hits);
+        assertEquals(first.getAutoFactories(), second.getAutoFactories());
+        assertEquals(first.getTotalPrice(), second.getTotalPrice());
+
+        // Cached factories must not be shared between complexes
+        assertFalse(first.getAutoFactories().get(0) == second
+            .getAutoFactories().get(0));
+    }
+
+    /**
+     * Checks that different complexes don't share the base complex.
+     */
+    @Test
+    public void testMiss()
+    {
+        final Complex first = createComplex(4);
+        final Complex second = createComplex(8);
+        assertFalse(first.getBaseComplexKey().equals(second
+            .getBaseComplexKey()));
+        assertFalse(first.getAutoFactories().equals(second
+            .getAutoFactories()));
+        final String key = first.getBaseComplexKey();
+        first.setSuns(this.game.getSunFactory().getSun(300));
+        assertFalse(key.equals(first.getBaseComplexKey()));
+
+        // Disabled factories don't matter
+        first.setSuns(this.game.getSunFactory().getDefaultSun());
+        final Factory bakery = this.game.getFactoryFactory().getFactory(
+            "cahoonaBakeryM-argon");
+        first.addFactory(bakery, 1);
+        for (int i = 0; i < first.getFactories().size(); i++)
+            if (first.getFactories().get(i).getFactory().equals(bakery))
+                first.disableFactory(i);
+        assertEquals(key, first.getBaseComplexKey());
+    }
+
+    /**
+     * Checks that the cache is invalidated when the ignored races change.
+     */
+    @Test
+    public void testConfigChange()
+    {
+        final Complex complex = createComplex(4);
+        final String key = complex.getBaseComplexKey();
+        assertTrue(this.cache.getSize() > 0);
+        final Race race = this.game.getRaceFactory().getRace("argon");
+        final Config config = Config.getInstance();
+        config.setRaceIgnored(race, true);
+        try
+        {
+            assertFalse(key.equals(complex.getBaseComplexKey()));
+            complex.updateBaseComplex();
+            assertEquals(1, this.cache.getSize());
+        }
+        finally
+        {
+            config.setRaceIgnored(race, false);
+        }
+    }
+
+    /**
+     * Checks that the least recently used entries are discarded.
+     */
+    @Test
+    public void testLimits()
+    {
+        this.cache.setMaxEntries(2);
+        final Complex first = createComplex(1);
+        createComplex(2);
+        createComplex(1);
+        createComplex(3);
+        assertEquals(2, this.cache.getSize());
+
+        // The first complex was used recently so it is still cached
+        final long hits = this.cache.getHits();
+        first.updateBaseComplex();
+        assertEquals(hits + 1, this.cache.getHits());
+
+        // The second complex was discarded
+        final long misses = this.cache.getMisses();
+        createComplex(2);
+        assertEquals(misses + 1, this.cache.getMisses());
+
+        // The memory limit also discards entries
+        this.cache.setMaxMemory(this.cache.getMemory() - 1);
+        assertEquals(1, this.cache.getSize());
+        this.cache.setMaxMemory(0);
+        assertEquals(0, this.cache.getSize());
+        assertEquals(0, this.cache.getMemory());
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the BaseComplexStore class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BaseComplexStoreTest
+{
+    /** The game */
+    private Game game;
+
+    /** The temporary store directory */
+    private File directory;
+
+    /**
+     * Creates the temporary store directory.
+     *
+     * @throws IOException
+     *             When directory could not be created
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.directory = File.createTempFile("xadrian", "");
+        assertTrue(this.directory.delete());
+        assertTrue(this.directory.mkdir());
+        BaseComplexCache.getInstance().clear();
+    }
+
+    /**
+     * Deletes the temporary store directory.
+     */
+    @After
+    public void tearDown()
+    {
+        BaseComplexCache.getInstance().setStore(null);
+        BaseComplexCache.getInstance().clear();
+        final File[] files = this.directory.listFiles();
+        if (files != null) for (final File file: files)
+            file.delete();
+        this.directory.delete();
+    }
+
+    /**
+     * Returns the size of the files in the store directory.
+     *
+     * @return The size in bytes
+     */
+    private long size()
+    {
+        long size = 0;
+        for (final File file: this.directory.listFiles())
+            size += file.length();
+        return size;
+    }
+
+    /**
+     * Creates a quantum tube complex with base complex.
+     *
+     * @param quantity
+     *            The number of quantum tube fabs
+     * @return The complex
+     */
+    private Complex createComplex(final int quantity)
+    {
+        final Complex complex = new Complex(this.game, "test");
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), quantity);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        return complex;
+    }
+
+    /**
+     * Checks that stored base complexes are read again.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        final Complex complex = createComplex(4);
+        final String key = complex.getBaseComplexKey();
+        final BaseComplexStore store = new BaseComplexStore(this.directory,
+            BaseComplexStore.DEFAULT_MAX_SIZE);
+        assertNull(store.load(this.game, key));
+        store.store(this.game, key, complex.getAutoFactories());
+
+        // Pending entries are served from memory (Or from disk when the
+        // background writer was faster)
+        assertEquals(complex.getAutoFactories(), store.load(this.game, key));
+        store.flush();
+        assertEquals(1, store.getWrites());
+        final long reads = store.getReads();
+        assertEquals(complex.getAutoFactories(), store.load(this.game, key));
+        assertEquals(reads + 1, store.getReads());
+
+        // A new store for the same directory (A new session) finds it, too
+        final BaseComplexStore other = new BaseComplexStore(this.directory,
+            BaseComplexStore.DEFAULT_MAX_SIZE);
+        assertEquals(complex.getAutoFactories(), other.load(this.game, key));
+        assertNull(other.load(this.game, createComplex(5)
+            .getBaseComplexKey()));
+    }
+
+    /**
+     * Checks that broken entries are ignored and deleted.
+     *
+     * @throws IOException
+     *             When file could not be modified
+     */
+    @Test
+    public void testBrokenEntry() throws IOException
+    {
+        final Complex complex = createComplex(4);
+        final String key = complex.getBaseComplexKey();
+        final BaseComplexStore store = new BaseComplexStore(this.directory,
+            BaseComplexStore.DEFAULT_MAX_SIZE);
+        store.store(this.game, key, complex.getAutoFactories());
+        store.flush();
+        final File file = this.directory.listFiles()[0];
+
+        // Truncated file
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(raf.length() - 3);
+        }
+        finally
+        {
+            raf.close();
+        }
+        assertNull(store.load(this.game, key));
+
+        // Garbage
+        final FileOutputStream stream = new FileOutputStream(file);
+        try
+        {
+            stream.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        }
+        finally
+        {
+            stream.close();
+        }
+        assertNull(store.load(this.game, key));
+        assertEquals(0, store.getReads());
+    }
+
+    /**
+     * Checks that the least recently used entries are deleted when the
+     * store gets too large.
+     */
+    @Test
+    public void testEviction()
+    {
+        final Complex complex = createComplex(4);
+        final BaseComplexStore probe = new BaseComplexStore(this.directory,
+            BaseComplexStore.DEFAULT_MAX_SIZE);
+        probe.store(this.game, complex.getBaseComplexKey(), complex
+            .getAutoFactories());
+        probe.flush();
+        final long size = probe.getSize();
+        probe.clear();
+        assertEquals(0, probe.getSize());
+
+        final BaseComplexStore store = new BaseComplexStore(this.directory,
+            size * 2 + size / 2);
+        for (int i = 1; i <= 5; i++)
+        {
+            final Complex other = createComplex(i);
+            store.store(this.game, other.getBaseComplexKey(), other
+                .getAutoFactories());
+            store.flush();
+            assertTrue(store.getSize() <= store.getMaxSize());
+            assertEquals(size(), store.getSize());
+        }
+        assertTrue(store.getSize() > 0);
+    }
+
+    /**
+     * Checks that the memory cache falls back to the disk store.
+     */
+    @Test
+    public void testSecondLevel()
+    {
+        final BaseComplexCache cache = BaseComplexCache.getInstance();
+        final BaseComplexStore store = new BaseComplexStore(this.directory,
+            BaseComplexStore.DEFAULT_MAX_SIZE);
+        cache.setStore(store);
+        final Complex first = createComplex(4);
+        store.flush();
+        assertEquals(1, store.getWrites());
+
+        // Simulate a new session by clearing the memory cache
+        cache.clear();
+        final Complex second = createComplex(4);
+        assertEquals(1, store.getReads());
+        assertEquals(1, store.getWrites());
+        assertEquals(first.getAutoFactories(), second.getAutoFactories());
+        assertEquals(first.getTotalPrice(), second.getTotalPrice());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the BudgetOptimizer class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BudgetOptimizerTest
+{
+    /** The game */
+    private static Game game;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        game = GameFactory.getInstance().getGame("x3tc");
+    }
+
+    /**
+     * Checks that the optimized complex fits into the budget and is at least
+     * as good as every single factory with base complex.
+     *
+     * @throws InterruptedException
+     *             When test is interrupted
+     */
+    @Test
+    public void testOptimize() throws InterruptedException
+    {
+        final long budget = 50000000;
+        final Complex template = new Complex(game, "test");
+        final BudgetOptimizer optimizer = new BudgetOptimizer(template, budget);
+        final Complex complex = optimizer.optimize(null);
+        assertNotNull(complex);
+        assertTrue(complex.getTotalPrice() <= budget);
+        assertTrue(complex.getProfit() > 0);
+        assertTrue(complex.getAutoFactories().size() > 0);
+
+        for (final Factory factory: optimizer.getCandidates())
+        {
+            final Complex single = new Complex(game, "single");
+            single.setAddBaseComplex(true);
+            single.addFactory(factory, 1);
+            if (single.getTotalPrice() <= budget)
+                assertTrue(single.getProfit() <= complex.getProfit());
+        }
+    }
+
+    /**
+     * Creates a complex with the specified factories and base complex.
+     *
+     * @param ignoredRaces
+     *            The ignored races
+     * @param factories
+     *            The factories
+     * @param quantities
+     *            The factory quantities
+     * @return The complex
+     */
+    private static Complex createComplex(final Set<Race> ignoredRaces,
+        final Factory[] factories, final int[] quantities)
+    {
+        final Complex complex = new Complex(game, "test");
+        complex.setIgnoredRaces(ignoredRaces);
+        complex.setAddBaseComplex(false);
+        for (int i = 0; i < factories.length; i++)
+            complex.addFactory(factories[i], quantities[i]);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        return complex;
+    }
+
+    /**
+     * Compares the search with a brute force search over all designs with
+     * up to two products on a small subset of the game.
+     *
+     * @throws InterruptedException
+     *             When test is interrupted
+     */
+    @Test
+    public void testBruteForce() throws InterruptedException
+    {
+        final long budget = 25000000;
+        final Set<Race> ignoredRaces = new HashSet<Race>();
+        for (final Race race: game.getRaceFactory().getRaces())
+            if (!"boron".equals(race.getId())) ignoredRaces.add(race);
+        final Complex template = new Complex(game, "test");
+        template.setIgnoredRaces(ignoredRaces);
+        final BudgetOptimizer optimizer = new BudgetOptimizer(template, budget);
+        final List<Factory> candidates = optimizer.getCandidates();
+        optimizer.setMaxProducts(2);
+        final Complex complex = optimizer.optimize(null);
+        assertNotNull(complex);
+
+        double best = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < candidates.size(); a++)
+        {
+            for (int b = a; b < candidates.size(); b++)
+            {
+                final Factory[] factories = a == b
+                    ? new Factory[] { candidates.get(a) }
+                    : new Factory[] { candidates.get(a), candidates.get(b) };
+                final int[] quantities = new int[factories.length];
+                Arrays.fill(quantities, 1);
+                best = Math.max(best, bruteForce(ignoredRaces, factories,
+                    quantities, 0, budget));
+            }
+        }
+        assertEquals(best, complex.getProfit(), 0.001);
+    }
+
+    /**
+     * Checks that raising the product limit never results in a worse design.
+     *
+     * @throws InterruptedException
+     *             When test is interrupted
+     */
+    @Test
+    public void testMaxProducts() throws InterruptedException
+    {
+        final long budget = 15000000;
+        final Set<Race> ignoredRaces = new HashSet<Race>();
+        for (final Race race: game.getRaceFactory().getRaces())
+            if (!"boron".equals(race.getId())) ignoredRaces.add(race);
+        final Complex template = new Complex(game, "test");
+        template.setIgnoredRaces(ignoredRaces);
+        final BudgetOptimizer limited = new BudgetOptimizer(template, budget);
+        limited.setMaxProducts(2);
+        final BudgetOptimizer raised = new BudgetOptimizer(template, budget);
+        raised.setMaxProducts(3);
+        final Complex complex = raised.optimize(null);
+        assertNotNull(complex);
+        assertTrue(complex.getTotalPrice() <= budget);
+        assertTrue(complex.getProfit() >= limited.optimize(null).getProfit());
+    }
+
+    /**
+     * Recursively evaluates all quantities of the specified factories which
+     * fit into the budget.
+     *
+     * @param ignoredRaces
+     *            The ignored races
+     * @param factories
+     *            The factories
+     * @param quantities
+     *            The quantities being built
+     * @param depth
+     *            The index of the enumerated factory
+     * @param budget
+     *            The budget
+     * @return The best profit. Negative infinity if nothing fits
+     */
+    private static double bruteForce(final Set<Race> ignoredRaces,
+        final Factory[] factories, final int[] quantities, final int depth,
+        final long budget)
+    {
+        double best = Double.NEGATIVE_INFINITY;
+        for (quantities[depth] = 1;; quantities[depth]++)
+        {
+            final Complex complex = createComplex(ignoredRaces, factories,
+                quantities);
+            if (complex.getTotalPrice() > budget) break;
+            if (depth + 1 < factories.length)
+                best = Math.max(best, bruteForce(ignoredRaces, factories,
+                    quantities, depth + 1, budget));
+            else
+                best = Math.max(best, complex.getProfit());
+        }
+        quantities[depth] = 1;
+        return best;
+    }
+}
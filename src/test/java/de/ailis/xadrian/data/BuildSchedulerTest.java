@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the BuildScheduler class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BuildSchedulerTest
+{
+    /** The complex to build */
+    private Complex complex;
+
+    /** The total price of the complex including the kits */
+    private long totalPrice;
+
+    /**
+     * Plans the complex.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(game.getWareFactory().getWare("quantumTubes"), 600);
+        this.complex = planner.plan();
+        this.totalPrice = this.complex.getShoppingList().getTotalPrice();
+    }
+
+    /**
+     * Checks that everything is bought immediately when the budget is large
+     * enough.
+     */
+    @Test
+    public void testAmpleBudget()
+    {
+        final BuildSchedule schedule = new BuildScheduler(this.complex,
+            this.totalPrice).schedule();
+        assertTrue(schedule.isComplete());
+        assertEquals(this.complex.getTotalQuantity(), schedule.getSteps()
+            .size());
+        assertEquals(0, schedule.getCompletionTime(), 0);
+        assertEquals(this.totalPrice, schedule.getTotalInvestment());
+        assertEquals(this.complex.getProfit(), schedule.getFinalProfit(),
+            0.0001);
+        assertEquals(0, schedule.getCash(0), 0.0001);
+        assertEquals(this.totalPrice / this.complex.getProfit(),
+            schedule.getPaybackTime(), 0.0001);
+    }
+
+    /**
+     * Checks a schedule which has to reinvest the profit.
+     */
+    @Test
+    public void testSmallBudget()
+    {
+        final BuildSchedule schedule = new BuildScheduler(this.complex,
+            this.totalPrice / 10).schedule();
+        assertTrue(schedule.isComplete());
+        assertTrue(schedule.getCompletionTime() > 0);
+        assertEquals(this.totalPrice, schedule.getTotalInvestment());
+        assertEquals(this.complex.getProfit(), schedule.getFinalProfit(),
+            0.0001);
+
+        double time = 0;
+        int kits = 0;
+        for (final BuildStep step: schedule.getSteps())
+        {
+            assertTrue(step.getTime() >= time);
+            assertTrue(step.getCash() >= 0);
+            assertEquals(schedule.getBudget() + step.getEarned()
+                - step.getInvested(), step.getCash(), 1);
+            time = step.getTime();
+            if (step.isKit()) kits++;
+        }
+        assertEquals(this.complex.getKitQuantity(), kits);
+        assertFalse(schedule.getSteps().get(0).isKit());
+
+        // Reinvesting takes longer than paying everything at once
+        assertTrue(schedule.getPaybackTime() > this.totalPrice
+            / this.complex.getProfit());
+        assertEquals(1, schedule.getRoi(schedule.getPaybackTime()), 0.0001);
+    }
+
+    /**
+     * Checks that nothing can be bought without budget.
+     */
+    @Test
+    public void testNoBudget()
+    {
+        final BuildSchedule schedule = new BuildScheduler(this.complex, 0)
+            .schedule();
+        assertFalse(schedule.isComplete());
+        assertTrue(schedule.getSteps().isEmpty());
+        assertEquals(-1, schedule.getPaybackTime(), 0);
+    }
+
+    /**
+     * Checks that already built factories and kits are not bought again.
+     */
+    @Test
+    public void testBuiltFactories()
+    {
+        final ShoppingListItem item = this.complex.getShoppingList()
+            .getItems().get(0);
+        this.complex.buildFactory(item.getFactory().getId());
+        this.complex.buildFactory(item.getFactory().getId());
+        this.complex.buildKit();
+        final ShoppingList list = this.complex.getShoppingList();
+        final BuildSchedule schedule = new BuildScheduler(this.complex,
+            this.totalPrice).schedule();
+        assertTrue(schedule.isComplete());
+        assertEquals(this.complex.getTotalQuantity() - 2, schedule.getSteps()
+            .size());
+        assertEquals(list.getTotalRestPrice(), schedule.getTotalInvestment());
+        assertEquals(this.complex.getProfit(), schedule.getFinalProfit(),
+            0.0001);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the binary format of the Complex class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexBinaryTest
+{
+    /** The game */
+    private Game game;
+
+    /**
+     * Loads the game.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+    }
+
+    /**
+     * Creates a complex using every feature of the binary format.
+     *
+     * @return The complex
+     */
+    private Complex createComplex()
+    {
+        final Complex complex = new Complex(this.game, "test");
+        final Factory tubes = this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron");
+        complex.addFactory(tubes, 4);
+        final List<Integer> yields = new ArrayList<Integer>();
+        for (int i = 0; i < 200; i++)
+            yields.add(i % 64);
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "oreMineM-boron"), yields);
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "cahoonaBakeryM-argon"), 1);
+        for (int i = 0; i < complex.getFactories().size(); i++)
+            if (complex.getFactories().get(i).getFactory().getId().equals(
+                "cahoonaBakeryM-argon")) complex.disableFactory(i);
+        complex.setSector(this.game.getSectorFactory().getSector("sec-10-8"));
+        complex.setAddBaseComplex(true);
+        complex.toggleShowingShoppingList();
+        complex.toggleShowingComplexSetup();
+        complex.updateBaseComplex();
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(this.game.getWareFactory().getWare("quantumTubes"), 4000);
+        prices.put(this.game.getWareFactory().getWare("energyCells"), -12);
+        complex.setCustomPrices(prices);
+        complex.buildFactory(tubes.getId());
+        complex.buildKit();
+        return complex;
+    }
+
+    /**
+     * Checks that two complexes are equal.
+     *
+     * @param expected
+     *            The expected complex
+     * @param actual
+     *            The actual complex
+     */
+    private static void assertComplex(final Complex expected,
+        final Complex actual)
+    {
+        assertEquals(expected.getGame(), actual.getGame());
+        assertEquals(expected.getFactories(), actual.getFactories());
+        assertEquals(expected.getAutoFactories(), actual.getAutoFactories());
+        assertEquals(expected.getSector(), actual.getSector());
+        assertEquals(expected.getSuns(), actual.getSuns());
+        assertEquals(expected.getCustomPrices(), actual.getCustomPrices());
+        assertEquals(expected.isAddBaseComplex(), actual.isAddBaseComplex());
+        assertEquals(expected.isShowingShoppingList(), actual
+            .isShowingShoppingList());
+        assertEquals(expected.isShowingComplexSetup(), actual
+            .isShowingComplexSetup());
+        assertEquals(expected.isShowingProductionStats(), actual
+            .isShowingProductionStats());
+        assertEquals(expected.getShoppingList().getTotalQuantityBuilt(),
+            actual.getShoppingList().getTotalQuantityBuilt());
+        assertEquals(expected.getShoppingList().getKitQuantityBuilt(), actual
+            .getShoppingList().getKitQuantityBuilt());
+    }
+
+    /**
+     * Writes the complex in the binary format and reads it again.
+     *
+     * @param complex
+     *            The complex
+     * @param compressed
+     *            If the body should be deflated
+     * @return The data
+     * @throws IOException
+     *             When writing fails
+     */
+    private static byte[] write(final Complex complex, final boolean compressed)
+        throws IOException
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        complex.writeBinary(stream, compressed);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Checks that the binary format keeps everything the XML format keeps.
+     *
+     * @throws IOException
+     *             When reading or writing fails
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        final Complex complex = createComplex();
+        for (final boolean compressed: new boolean[] { false, true })
+        {
+            final byte[] data = write(complex, compressed);
+            final Complex loaded = Complex.readBinary(
+                new ByteArrayInputStream(data));
+            assertComplex(complex, loaded);
+            assertTrue(Arrays.equals(data, write(loaded, compressed)));
+        }
+
+        // A complex without sector
+        final Complex simple = new Complex(this.game, "simple");
+        simple.setSuns(this.game.getSunFactory().getSun(300));
+        simple.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 1);
+        assertComplex(simple, Complex.readBinary(new ByteArrayInputStream(
+            write(simple, false))));
+    }
+
+    /**
+     * Checks that the binary format is much smaller than the XML format.
+     *
+     * @throws IOException
+     *             When writing fails
+     */
+    @Test
+    public void testSize() throws IOException
+    {
+        final Complex complex = createComplex();
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        complex.writeXML(xml);
+        final int binary = write(complex, false).length;
+        assertTrue(binary * 10 < xml.size());
+        assertTrue(write(complex, true).length < binary);
+    }
+
+    /**
+     * Checks that invalid data is rejected.
+     */
+    @Test
+    public void testInvalid()
+    {
+        try
+        {
+            Complex.readBinary(new ByteArrayInputStream("<complex/>"
+                .getBytes()));
+            fail("Invalid magic accepted");
+        }
+        catch (final IOException e)
+        {
+            // Expected
+        }
+        try
+        {
+            final byte[] data = write(createComplex(), false);
+            Complex.readBinary(new ByteArrayInputStream(Arrays.copyOf(data,
+                data.length - 3)));
+            fail("Truncated data accepted");
+        }
+        catch (final EOFException e)
+        {
+            // Expected
+        }
+        catch (final IOException e)
+        {
+            fail(e.toString());
+        }
+        assertTrue(Complex.isBinaryFile(new File("test.X3CB")));
+        assertFalse(Complex.isBinaryFile(new File("test.x3c")));
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.ComplexJournal.Recovery;
+import de.ailis.xadrian.data.ComplexJournal.Toggle;
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the ComplexJournal class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexJournalTest
+{
+    /** The game */
+    private Game game;
+
+    /** The temporary journal directory */
+    private File directory;
+
+    /**
+     * Creates the temporary journal directory.
+     *
+     * @throws IOException
+     *             When directory could not be created
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.directory = File.createTempFile("xadrian", "");
+        assertTrue(this.directory.delete());
+        assertTrue(this.directory.mkdir());
+        ComplexJournal.setDirectory(this.directory);
+    }
+
+    /**
+     * Deletes the temporary journal directory.
+     */
+    @After
+    public void tearDown()
+    {
+        ComplexJournal.setDirectory(null);
+        final File[] files = this.directory.listFiles();
+        if (files != null) for (final File file: files)
+            file.delete();
+        this.directory.delete();
+    }
+
+    /**
+     * Records some changes of a complex while mirroring them in the journal.
+     *
+     * @param complex
+     *            The complex to change
+     * @param journal
+     *            The journal
+     */
+    private void change(final Complex complex, final ComplexJournal journal)
+    {
+        final Factory tubes = this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron");
+        complex.addFactory(tubes, 2);
+        journal.addFactory(tubes, 2);
+        final Factory mine = this.game.getFactoryFactory().getFactory(
+            "oreMineM-boron");
+        final List<Integer> yields = Arrays.asList(12, 25, 40);
+        complex.addFactory(mine, yields);
+        journal.addFactory(mine, yields);
+        final Sector sector = this.game.getSectorFactory().getSector(
+            "sec-10-8");
+        complex.setSector(sector);
+        journal.setSector(sector);
+        complex.toggleAddBaseComplex();
+        journal.toggle(Toggle.BASE_COMPLEX);
+        complex.toggleShowingShoppingList();
+        journal.toggle(Toggle.SHOPPING_LIST);
+        int index = 0;
+        while (!complex.getFactories().get(index).getFactory().equals(tubes))
+            index++;
+        complex.increaseQuantity(index);
+        journal.increaseQuantity(index);
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(this.game.getWareFactory().getWare("quantumTubes"), 4000);
+        complex.setCustomPrices(prices);
+        journal.setCustomPrices(prices);
+        complex.buildFactory(tubes.getId());
+        journal.buildFactory(tubes.getId());
+        complex.buildKit();
+        journal.buildKit();
+    }
+
+    /**
+     * Checks that two complexes are equal.
+     *
+     * @param expected
+     *            The expected complex
+     * @param actual
+     *            The actual complex
+     */
+    private static void assertComplex(final Complex expected,
+        final Complex actual)
+    {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getFactories(), actual.getFactories());
+        assertEquals(expected.getAutoFactories(), actual.getAutoFactories());
+        assertEquals(expected.getSector(), actual.getSector());
+        assertEquals(expected.getCustomPrices(), actual.getCustomPrices());
+        assertEquals(expected.isAddBaseComplex(), actual.isAddBaseComplex());
+        assertEquals(expected.isShowingShoppingList(), actual
+            .isShowingShoppingList());
+        assertEquals(expected.getShoppingList().getTotalQuantityBuilt(),
+            actual.getShoppingList().getTotalQuantityBuilt());
+        assertEquals(expected.getShoppingList().getKitQuantityBuilt(), actual
+            .getShoppingList().getKitQuantityBuilt());
+    }
+
+    /**
+     * Checks that the changes are recovered.
+     */
+    @Test
+    public void testRecover()
+    {
+        final Complex complex = new Complex(this.game, "test");
+        final ComplexJournal journal = ComplexJournal.create();
+        final File file = new File("test.x3c");
+        journal.snapshot(complex, file, false);
+        change(complex, journal);
+        assertTrue(ComplexJournal.sync(10000));
+
+        final List<Recovery> recoveries = ComplexJournal.recover();
+        assertEquals(1, recoveries.size());
+        final Recovery recovery = recoveries.get(0);
+        assertComplex(complex, recovery.getComplex());
+        assertEquals(file, recovery.getFile());
+        assertTrue(recovery.isChanged());
+        assertEquals(journal.getFile(), recovery.getJournal().getFile());
+
+        // A new snapshot replaces the changes
+        journal.snapshot(complex, file, false);
+        assertTrue(ComplexJournal.sync(10000));
+        assertFalse(ComplexJournal.replay(journal.getFile()).isChanged());
+        assertComplex(complex, ComplexJournal.replay(journal.getFile())
+            .getComplex());
+
+        // Closing the journal deletes it
+        journal.close();
+        assertTrue(ComplexJournal.sync(10000));
+        assertFalse(journal.getFile().exists());
+        assertTrue(ComplexJournal.recover().isEmpty());
+    }
+
+    /**
+     * Checks that a torn or corrupted tail is ignored.
+     *
+     * @throws IOException
+     *             When journal file could not be modified
+     */
+    @Test
+    public void testBrokenTail() throws IOException
+    {
+        final Complex complex = new Complex(this.game, "test");
+        final ComplexJournal journal = ComplexJournal.create();
+        journal.snapshot(complex, null, false);
+        change(complex, journal);
+        assertTrue(ComplexJournal.sync(10000));
+        final File file = journal.getFile();
+
+        // Truncated last record (The kit is lost)
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(raf.length() - 2);
+            Recovery recovery = ComplexJournal.replay(file);
+            assertEquals(0, recovery.getComplex().getShoppingList()
+                .getKitQuantityBuilt());
+            assertEquals(complex.getFactories(), recovery.getComplex()
+                .getFactories());
+
+            // Corrupted checksum of the built factory record (The kit record
+            // has 6 bytes)
+            raf.setLength(raf.length() - 4);
+            raf.seek(raf.length() - 1);
+            final int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xff);
+            recovery = ComplexJournal.replay(file);
+            assertEquals(0, recovery.getComplex().getShoppingList()
+                .getTotalQuantityBuilt());
+            assertEquals(complex.getFactories(), recovery.getComplex()
+                .getFactories());
+
+            // Garbage header
+            raf.seek(0);
+            raf.writeInt(0);
+            assertNull(ComplexJournal.replay(file));
+        }
+        finally
+        {
+            raf.close();
+        }
+        journal.close();
+        assertTrue(ComplexJournal.sync(10000));
+    }
+
+    /**
+     * Checks that accepted automatically added factories are recovered even
+     * when the base complex is different during the replay.
+     */
+    @Test
+    public void testAcceptFactory()
+    {
+        final Complex complex = new Complex(this.game, "test");
+        complex.setSector(this.game.getSectorFactory().getSector("sec-10-8"));
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 2);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        final ComplexJournal journal = ComplexJournal.create();
+        journal.snapshot(complex, null, false);
+        final ComplexFactory accepted = complex.getAutoFactories().get(0);
+        complex.acceptFactory(0);
+        journal.acceptFactory(accepted.getFactory(), accepted.getQuantity());
+        assertTrue(ComplexJournal.sync(10000));
+        assertComplex(complex, ComplexJournal.replay(journal.getFile())
+            .getComplex());
+
+        // Without a base complex there is no automatically added factory
+        // at the recorded index but the factory is still recovered
+        final Complex manual = new Complex(this.game, "manual");
+        manual.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 2);
+        journal.snapshot(manual, null, false);
+        manual.addFactory(accepted.getFactory(), accepted.getQuantity());
+        journal.acceptFactory(accepted.getFactory(), accepted.getQuantity());
+        assertTrue(ComplexJournal.sync(10000));
+        assertComplex(manual, ComplexJournal.replay(journal.getFile())
+            .getComplex());
+        journal.close();
+        assertTrue(ComplexJournal.sync(10000));
+    }
+
+    /**
+     * Checks that empty new complexes are not recovered.
+     */
+    @Test
+    public void testDiscardEmpty()
+    {
+        final ComplexJournal journal = ComplexJournal.create();
+        journal.snapshot(new Complex(this.game, "test"), null, false);
+        assertTrue(ComplexJournal.sync(10000));
+        assertTrue(journal.getFile().exists());
+        assertTrue(ComplexJournal.recover().isEmpty());
+        assertFalse(journal.getFile().exists());
+    }
+
+    /**
+     * Checks that compaction is requested after many records.
+     */
+    @Test
+    public void testCompaction()
+    {
+        final Complex complex = new Complex(this.game, "test");
+        final ComplexJournal journal = ComplexJournal.create();
+        journal.snapshot(complex, null, false);
+        for (int i = 0; i < ComplexJournal.COMPACT_RECORDS; i++)
+        {
+            assertFalse(journal.needsCompaction());
+            complex.toggleShowingProductionStats();
+            journal.toggle(Toggle.PRODUCTION_STATS);
+        }
+        assertTrue(journal.needsCompaction());
+        journal.snapshot(complex, null, true);
+        assertFalse(journal.needsCompaction());
+        assertTrue(ComplexJournal.sync(10000));
+        final long length = journal.getFile().length();
+        assertTrue(ComplexJournal.replay(journal.getFile()).isChanged());
+        journal.close();
+        assertTrue(ComplexJournal.sync(10000));
+        assertTrue(length > 0);
+
+        // Disabled journals ignore everything
+        ComplexJournal.setDirectory(null);
+        final ComplexJournal disabled = ComplexJournal.create();
+        assertNull(disabled.getFile());
+        disabled.snapshot(complex, null, true);
+        disabled.buildKit();
+        assertFalse(disabled.needsCompaction());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.ComplexLibrary.Query;
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the ComplexLibrary class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexLibraryTest
+{
+    /** The game */
+    private Game game;
+
+    /** The temporary directory */
+    private File directory;
+
+    /** The scanned complex directory */
+    private File root;
+
+    /**
+     * Creates the temporary directories.
+     *
+     * @throws IOException
+     *             When directory could not be created
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.directory = File.createTempFile("xadrian", "");
+        assertTrue(this.directory.delete());
+        this.root = new File(this.directory, "complexes");
+        assertTrue(new File(this.root, "sub").mkdirs());
+    }
+
+    /**
+     * Deletes the temporary directories.
+     */
+    @After
+    public void tearDown()
+    {
+        delete(this.directory);
+    }
+
+    /**
+     * Recursively deletes a file or directory.
+     *
+     * @param file
+     *            The file or directory to delete
+     */
+    private static void delete(final File file)
+    {
+        final File[] files = file.listFiles();
+        if (files != null) for (final File child: files)
+            delete(child);
+        file.delete();
+    }
+
+    /**
+     * Writes a complex file.
+     *
+     * @param name
+     *            The file name relative to the root directory
+     * @param factoryId
+     *            The ID of the factory to add
+     * @param quantity
+     *            The factory quantity
+     * @param sectorId
+     *            The sector ID. Null for none
+     * @return The written file
+     * @throws IOException
+     *             When file could not be written
+     */
+    private File write(final String name, final String factoryId,
+        final int quantity, final String sectorId) throws IOException
+    {
+        final Complex complex = new Complex(this.game, name);
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            factoryId), quantity);
+        if (sectorId != null)
+            complex.setSector(this.game.getSectorFactory().getSector(
+                sectorId));
+        final File file = new File(this.root, name);
+        final OutputStream stream = new FileOutputStream(file);
+        try
+        {
+            if (Complex.isBinaryFile(file))
+                complex.writeBinary(stream, true);
+            else
+                complex.writeXML(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+        return file;
+    }
+
+    /**
+     * Creates a query for complexes producing the specified ware.
+     *
+     * @param wareId
+     *            The ware ID
+     * @return The query
+     */
+    private static Query produces(final String wareId)
+    {
+        final Query query = new Query();
+        query.getProduced().add(wareId);
+        return query;
+    }
+
+    /**
+     * Checks scanning and searching.
+     *
+     * @throws Exception
+     *             When test fails
+     */
+    @Test
+    public void testSearch() throws Exception
+    {
+        final File tubes = write("tubes.x3c", "quantumTubeFab-boron", 2,
+            "sec-10-8");
+        final File moreTubes = write("sub/tubes.x3cb",
+            "quantumTubeFab-boron", 6, null);
+        write("bakery.x3c", "cahoonaBakeryM-argon", 1, null);
+        final OutputStream stream = new FileOutputStream(new File(this.root,
+            "broken.x3c"));
+        stream.write("<complex".getBytes());
+        stream.close();
+
+        final ComplexLibrary library = new ComplexLibrary(new File(
+            this.directory, "library.idx"));
+        library.scan(this.root, null);
+        assertEquals(3, library.getSummaries().size());
+        assertEquals(4, library.getRead());
+
+        // Ordered by profit
+        List<ComplexSummary> hits = library.search(produces("quantumTubes"));
+        assertEquals(2, hits.size());
+        assertEquals(moreTubes.getAbsoluteFile(), hits.get(0).getFile());
+        assertEquals(tubes.getAbsoluteFile(), hits.get(1).getFile());
+        assertEquals(Integer.valueOf(6), hits.get(0).getFactories().get(
+            "quantumTubeFab-boron"));
+        assertTrue(hits.get(0).getConsumed().contains("energyCells"));
+
+        // Combined criteria
+        Query query = produces("quantumTubes");
+        query.setMinProfit(hits.get(1).getProfit() + 1);
+        assertEquals(1, library.search(query).size());
+        query = produces("quantumTubes");
+        query.setSector("sec-10-8");
+        assertEquals(tubes.getAbsoluteFile(), library.search(query).get(0)
+            .getFile());
+        query.setGame("x3ap");
+        assertTrue(library.search(query).isEmpty());
+        query = new Query();
+        query.getFactories().add("cahoonaBakeryM-argon");
+        assertEquals(1, library.search(query).size());
+        assertEquals(3, library.search(new Query()).size());
+    }
+
+    /**
+     * Checks that the index is stored and refreshed incrementally.
+     *
+     * @throws Exception
+     *             When test fails
+     */
+    @Test
+    public void testIncremental() throws Exception
+    {
+        final File tubes = write("tubes.x3c", "quantumTubeFab-boron", 2,
+            null);
+        final File bakery = write("sub/bakery.x3cb", "cahoonaBakeryM-argon",
+            1, null);
+        final File index = new File(this.directory, "library.idx");
+        final ComplexLibrary library = new ComplexLibrary(index);
+        assertFalse(library.load());
+        library.scan(this.root, null);
+        library.save();
+
+        // A new session reads the index instead of the complex files
+        final ComplexLibrary loaded = new ComplexLibrary(index);
+        assertTrue(loaded.load());
+        assertEquals(this.root.getAbsoluteFile(), loaded.getRoot());
+        assertEquals(2, loaded.getSummaries().size());
+        for (int i = 0; i < 2; i++)
+        {
+            final ComplexSummary a = library.getSummaries().get(i);
+            final ComplexSummary b = loaded.getSummaries().get(i);
+            assertEquals(a.getFile(), b.getFile());
+            assertEquals(a.getFactories(), b.getFactories());
+            assertEquals(a.getProduced(), b.getProduced());
+            assertEquals(a.getConsumed(), b.getConsumed());
+            assertEquals(a.getPrice(), b.getPrice());
+            assertEquals(a.getProfit(), b.getProfit());
+        }
+        assertEquals(1, loaded.search(produces("quantumTubes")).size());
+        loaded.scan(this.root, null);
+        assertEquals(0, loaded.getRead());
+
+        // Only modified files are read again
+        write("tubes.x3c", "quantumTubeFab-boron", 5, null);
+        tubes.setLastModified(tubes.lastModified() + 2000);
+        assertTrue(bakery.delete());
+        loaded.scan(this.root, null);
+        assertEquals(1, loaded.getRead());
+        assertEquals(1, loaded.getSummaries().size());
+        assertEquals(Integer.valueOf(5), loaded.search(produces(
+            "quantumTubes")).get(0).getFactories().get(
+            "quantumTubeFab-boron"));
+
+        // Broken index is ignored
+        final OutputStream stream = new FileOutputStream(index);
+        stream.write(new byte[] { 0x58, 0x43, 0x4c, 0x49, 0, 0, 0, 1, 0 });
+        stream.close();
+        assertFalse(new ComplexLibrary(index).load());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests merging the changes of two versions of a complex.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexMergeTest
+{
+    /** The game */
+    private Game game;
+
+    /** The common ancestor */
+    private Complex base;
+
+    /**
+     * Creates the common ancestor.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.base = new Complex(this.game, "test");
+        this.base.addFactory(getFactory("quantumTubeFab-boron"), 2);
+    }
+
+    /**
+     * Returns the factory with the specified ID.
+     *
+     * @param id
+     *            The factory ID
+     * @return The factory
+     */
+    private Factory getFactory(final String id)
+    {
+        return this.game.getFactoryFactory().getFactory(id);
+    }
+
+    /**
+     * Checks that changes of different parts are combined.
+     */
+    @Test
+    public void testMerge()
+    {
+        final Complex local = this.base.copy();
+        local.addFactory(getFactory("cahoonaBakeryM-argon"), 1);
+        local.toggleShowingShoppingList();
+        final Complex remote = this.base.copy();
+        final Sector sector = this.game.getSectorFactory().getSector(
+            "sec-10-8");
+        remote.setSector(sector);
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(this.game.getWareFactory().getWare("quantumTubes"), 4000);
+        remote.setCustomPrices(prices);
+
+        final Complex merged = Complex.merge(this.base, local, remote);
+        assertNotNull(merged);
+        assertEquals(local.getFactories(), merged.getFactories());
+        assertEquals(sector, merged.getSector());
+        assertEquals(prices, merged.getCustomPrices());
+        assertTrue(merged.isShowingShoppingList());
+
+        // Nothing changed locally: The remote version wins
+        final Complex reloaded = Complex.merge(this.base, this.base.copy(),
+            remote);
+        assertEquals(remote.getFactories(), reloaded.getFactories());
+        assertEquals(sector, reloaded.getSector());
+
+        // Same change on both sides is no conflict
+        final Complex same = this.base.copy();
+        same.setSector(sector);
+        assertNotNull(Complex.merge(this.base, same, remote));
+    }
+
+    /**
+     * Checks that different changes of the same part conflict.
+     */
+    @Test
+    public void testConflict()
+    {
+        final Complex local = this.base.copy();
+        local.increaseQuantity(0);
+        final Complex remote = this.base.copy();
+        remote.addFactory(getFactory("cahoonaBakeryM-argon"), 1);
+        assertNull(Complex.merge(this.base, local, remote));
+
+        // Disabling a factory is a change, too
+        final Complex disabled = this.base.copy();
+        disabled.disableFactory(0);
+        assertNull(Complex.merge(this.base, local, disabled));
+        assertNotNull(Complex.merge(this.base, this.base.copy(), disabled));
+        assertTrue(Complex.merge(this.base, this.base.copy(), disabled)
+            .getFactories().get(0).isDisabled());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.utils.FileUtils;
+
+/**
+ * Tests the XML serialization of the Complex class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexXMLTest
+{
+    /**
+     * Writes a complex atomically into a file, reads it again and checks
+     * that nothing was lost.
+     *
+     * @throws IOException
+     *             When file could not be written
+     * @throws DocumentException
+     *             When file could not be read
+     */
+    @Test
+    public void testRoundTrip() throws IOException, DocumentException
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final Complex complex = new Complex(game, "test");
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 4);
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "oreMineM-boron"), Arrays.asList(12, 25, 40));
+        complex.setSector(game.getSectorFactory().getSector("sec-10-8"));
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(game.getWareFactory().getWare("quantumTubes"), 4000);
+        prices.put(game.getWareFactory().getWare("energyCells"), -12);
+        complex.setCustomPrices(prices);
+        complex.buildFactory("quantumTubeFab-boron");
+        complex.buildKit();
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        complex.writeXML(stream);
+        final File file = File.createTempFile("xadrian", ".x3c");
+        try
+        {
+            // Replace an existing file
+            FileUtils.writeAtomically(file, new byte[] { 1, 2, 3 });
+            FileUtils.writeAtomically(file, stream.toByteArray());
+            assertEquals(stream.size(), file.length());
+
+            final Complex loaded = Complex.fromXML(new SAXReader().read(file));
+            assertEquals(complex.getFactories(), loaded.getFactories());
+            assertEquals(complex.getAutoFactories(), loaded
+                .getAutoFactories());
+            assertEquals(complex.getSector(), loaded.getSector());
+            assertEquals(complex.getSuns(), loaded.getSuns());
+            assertEquals(complex.getCustomPrices(), loaded.getCustomPrices());
+            assertEquals(complex.getShoppingList().getTotalQuantityBuilt(),
+                loaded.getShoppingList().getTotalQuantityBuilt());
+            assertEquals(complex.getShoppingList().getKitQuantityBuilt(),
+                loaded.getShoppingList().getKitQuantityBuilt());
+            assertTrue(loaded.isAddBaseComplex());
+
+            // No temporary files are left behind
+            for (final File other: file.getParentFile().listFiles())
+                assertTrue(!other.getName().startsWith("." + file.getName()));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
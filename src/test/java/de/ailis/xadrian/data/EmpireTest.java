@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the Empire class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class EmpireTest
+{
+    /** The game */
+    private Game game;
+
+    /** The energy cells ware */
+    private Ware energyCells;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.energyCells = this.game.getWareFactory().getWare("energyCells");
+    }
+
+    /**
+     * Creates a complex.
+     *
+     * @param name
+     *            The complex name
+     * @param sectorId
+     *            The sector ID. Null for none
+     * @param factoryId
+     *            The ID of the factory to add
+     * @param quantity
+     *            The factory quantity
+     * @return The complex
+     */
+    private Complex createComplex(final String name, final String sectorId,
+        final String factoryId, final int quantity)
+    {
+        final Complex complex = new Complex(this.game, name);
+        if (sectorId != null)
+            complex.setSector(this.game.getSectorFactory().getSector(
+                sectorId));
+        complex.addFactory(this.game.getFactoryFactory()
+            .getFactory(factoryId), quantity);
+        return complex;
+    }
+
+    /**
+     * Returns the empire ware for the specified ware.
+     *
+     * @param empire
+     *            The empire
+     * @param ware
+     *            The ware
+     * @return The empire ware or null if not found
+     */
+    private static EmpireWare getWare(final Empire empire, final Ware ware)
+    {
+        for (final EmpireWare empireWare: empire.getWares())
+            if (empireWare.getWare().equals(ware)) return empireWare;
+        return null;
+    }
+
+    /**
+     * Checks that the totals are updated incrementally.
+     */
+    @Test
+    public void testTotals()
+    {
+        final Complex tubes = createComplex("tubes", "sec-10-8",
+            "quantumTubeFab-boron", 2);
+        final Complex bakery = createComplex("bakery", "sec-10-8",
+            "cahoonaBakeryM-argon", 3);
+        final double tubesNeeded = getNeeded(tubes, this.energyCells);
+        final double bakeryNeeded = getNeeded(bakery, this.energyCells);
+
+        final Empire empire = new Empire(this.game);
+        assertTrue(empire.isEmpty());
+        empire.update("tubes", tubes);
+        empire.update("bakery", bakery);
+        assertEquals(2, empire.getComplexCount());
+        assertEquals(tubesNeeded + bakeryNeeded, getWare(empire,
+            this.energyCells).getNeeded(), 0.0001);
+
+        // Replacing a complex only replaces its own contribution
+        final Complex bigger = createComplex("tubes", "sec-10-8",
+            "quantumTubeFab-boron", 5);
+        empire.update("tubes", bigger);
+        assertEquals(2, empire.getComplexCount());
+        assertEquals(getNeeded(bigger, this.energyCells) + bakeryNeeded,
+            getWare(empire, this.energyCells).getNeeded(), 0.0001);
+
+        empire.remove("tubes");
+        empire.remove("unknown");
+        assertEquals(bakeryNeeded, getWare(empire, this.energyCells)
+            .getNeeded(), 0.0001);
+        empire.remove("bakery");
+        assertTrue(empire.isEmpty());
+        assertTrue(empire.getWares().isEmpty());
+        assertTrue(empire.getTransfers().isEmpty());
+    }
+
+    /**
+     * Returns the needed units of a ware of the specified complex.
+     *
+     * @param complex
+     *            The complex
+     * @param ware
+     *            The ware
+     * @return The needed units per hour
+     */
+    private static double getNeeded(final Complex complex, final Ware ware)
+    {
+        for (final ComplexWare complexWare: complex.getWares())
+            if (complexWare.getWare().equals(ware))
+                return complexWare.getNeeded();
+        return 0;
+    }
+
+    /**
+     * Returns the produced units of a ware of the specified complex.
+     *
+     * @param complex
+     *            The complex
+     * @param ware
+     *            The ware
+     * @return The produced units per hour
+     */
+    private static double getProduced(final Complex complex, final Ware ware)
+    {
+        for (final ComplexWare complexWare: complex.getWares())
+            if (complexWare.getWare().equals(ware))
+                return complexWare.getProduced();
+        return 0;
+    }
+
+    /**
+     * Checks that surplus wares are delivered to complexes needing them.
+     */
+    @Test
+    public void testTransfers()
+    {
+        final Empire empire = new Empire(this.game);
+        final Complex tubes = createComplex("tubes", "sec-10-8",
+            "quantumTubeFab-boron", 1);
+        empire.update("tubes", tubes);
+        final Complex cells = createComplex("cells", "sec-10-1",
+            "solarPowerPlantM-boron", 1);
+        empire.update("cells", cells);
+
+        final EmpireWare ware = getWare(empire, this.energyCells);
+        final double quantity = Math.min(getNeeded(tubes, this.energyCells),
+            getProduced(cells, this.energyCells));
+        assertTrue(quantity > 0);
+        assertEquals(quantity, ware.getTransferred(), 0.0001);
+
+        final List<SupplyTransfer> transfers = empire.getTransfers();
+        assertEquals(1, transfers.size());
+        final SupplyTransfer transfer = transfers.get(0);
+        assertEquals("cells", transfer.getSource());
+        assertEquals("tubes", transfer.getTarget());
+        assertEquals(quantity, transfer.getQuantity(), 0.0001);
+        assertEquals(cells.getSector().getDistance(tubes.getSector()),
+            transfer.getJumps());
+        assertEquals(quantity * transfer.getJumps(),
+            empire.getTransferCost(), 0.0001);
+
+        // Only the transferred units are taken from the surplus and the
+        // missing units
+        assertEquals(getProduced(cells, this.energyCells)
+            - getNeeded(cells, this.energyCells) - quantity,
+            ware.getSurplus(), 0.0001);
+        assertEquals(getNeeded(tubes, this.energyCells)
+            - getProduced(tubes, this.energyCells) - quantity,
+            ware.getMissing(), 0.0001);
+
+        // Complexes without a sector don't take part in deliveries
+        empire.update("tubes", createComplex("tubes", null,
+            "quantumTubeFab-boron", 1));
+        assertTrue(empire.getTransfers().isEmpty());
+        assertEquals(0, getWare(empire, this.energyCells).getTransferred(),
+            0.0001);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the LoadPlanner class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LoadPlannerTest
+{
+    /** The complex to buy */
+    private Complex complex;
+
+    /**
+     * Plans the complex.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(game.getWareFactory().getWare("quantumTubes"), 600);
+        this.complex = planner.plan();
+        this.complex.setSector(game.getSectorFactory().getSector("sec-10-8"));
+    }
+
+    /**
+     * Checks that every load fits into its freighter, the factories are
+     * bought in their manufacturer sectors and the whole shopping list is
+     * covered.
+     *
+     * @param plan
+     *            The plan to check
+     */
+    private void checkPlan(final LoadPlan plan)
+    {
+        final ShoppingList list = plan.getShoppingList();
+        final Map<Factory, Integer> loaded = new HashMap<Factory, Integer>();
+        final Map<Factory, Sector> sectors = new HashMap<Factory, Sector>();
+        for (final ShoppingListItem item: list.getItems())
+            sectors.put(item.getFactory(), item.getNearestManufacturer());
+        int kits = plan.getUnloadableKits();
+        for (final ShoppingListItem item: plan.getUnloadableFactories())
+            loaded.put(item.getFactory(), item.getQuantity());
+        for (final FreighterLoad load: plan.getLoads())
+        {
+            assertTrue(load.getVolume() <= load.getCapacity());
+            assertEquals(plan.getCapacities().get(load.getFreighter())
+                .intValue(), load.getCapacity());
+            int volume = load.getKits() * Complex.KIT_VOLUME;
+            kits += load.getKits();
+            for (final ShoppingListItem item: load.getFactories())
+            {
+                assertEquals(sectors.get(item.getFactory()), item
+                    .getNearestManufacturer());
+                volume += item.getQuantity() * item.getFactory().getVolume();
+                final Integer count = loaded.get(item.getFactory());
+                loaded.put(item.getFactory(), (count == null ? 0 : count)
+                    + item.getQuantity());
+            }
+            assertEquals(volume, load.getVolume());
+        }
+        assertEquals(list.getKitQuantityLeft(), kits);
+        for (final ShoppingListItem item: list.getItems())
+        {
+            final Integer count = loaded.get(item.getFactory());
+            assertEquals(item.getQuantityLeft(), count == null ? 0 : count
+                .intValue());
+        }
+    }
+
+    /**
+     * Checks the number of trips for a single freighter.
+     */
+    @Test
+    public void testSingleFreighter()
+    {
+        for (final int capacity: new int[] { 30000, 60000, 200000 })
+        {
+            final LoadPlan plan = new LoadPlanner(Arrays.asList(capacity))
+                .plan(this.complex.getShoppingList());
+            checkPlan(plan);
+            assertTrue(plan.isComplete());
+            assertTrue(plan.getTripCount() >= plan.getMinTrips());
+            assertTrue(plan.getTripCount() <= plan.getMinTrips() * 11 / 9 + 1);
+            assertEquals(plan.getTripCount(), plan.getRounds());
+        }
+    }
+
+    /**
+     * Checks that the trips are spread over several freighters.
+     */
+    @Test
+    public void testSeveralFreighters()
+    {
+        final LoadPlan plan = new LoadPlanner(Arrays.asList(30000, 60000,
+            60000)).plan(this.complex.getShoppingList());
+        checkPlan(plan);
+        assertTrue(plan.isComplete());
+        int max = 0;
+        int trips = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            max = Math.max(max, plan.getLoads(i).size());
+            trips += plan.getLoads(i).size();
+        }
+        assertEquals(plan.getTripCount(), trips);
+        assertEquals(max, plan.getRounds());
+        assertTrue(plan.getRounds() <= (plan.getTripCount() + 1) / 2);
+    }
+
+    /**
+     * Checks that the plan is updated when factories are built.
+     */
+    @Test
+    public void testUpdate()
+    {
+        final List<Integer> capacities = Arrays.asList(60000);
+        final LoadPlan plan = this.complex.getLoadPlan(capacities);
+        assertSame(plan, this.complex.getLoadPlan(capacities));
+        checkPlan(plan);
+        this.complex.buildFactory(this.complex.getShoppingList().getItems()
+            .get(0).getFactory().getId());
+        this.complex.buildKit();
+        final LoadPlan updated = this.complex.getLoadPlan(capacities);
+        assertFalse(plan == updated);
+        checkPlan(updated);
+        assertTrue(updated.getTripCount() <= plan.getTripCount());
+
+        // Most loads must not have changed
+        int unchanged = 0;
+        for (final FreighterLoad load: updated.getLoads())
+            for (final FreighterLoad old: plan.getLoads())
+                if (load.getFactories().equals(old.getFactories())
+                    && load.getKits() == old.getKits())
+                {
+                    unchanged++;
+                    break;
+                }
+        assertTrue(unchanged * 2 > updated.getTripCount());
+
+        // Changed capacities result in a new plan
+        checkPlan(this.complex.getLoadPlan(Arrays.asList(30000)));
+    }
+
+    /**
+     * Checks that factories larger than all freighters are reported.
+     */
+    @Test
+    public void testTooSmall()
+    {
+        final LoadPlan plan = new LoadPlanner(Arrays.asList(
+            Complex.KIT_VOLUME)).plan(this.complex.getShoppingList());
+        checkPlan(plan);
+        assertFalse(plan.isComplete());
+        assertEquals(0, plan.getUnloadableKits());
+        assertEquals(this.complex.getShoppingList().getItems().size(), plan
+            .getUnloadableFactories().size());
+    }
+}
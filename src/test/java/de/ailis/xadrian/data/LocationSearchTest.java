@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.dom4j.DocumentHelper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the location search.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class LocationSearchTest
+{
+    /** The game. */
+    private static Game game;
+
+    /** The tested complex */
+    private static Complex complex;
+
+    /**
+     * Initializes the test.
+     *
+     * @throws Exception
+     *             When complex could not be read
+     */
+    @BeforeClass
+    public static void init() throws Exception
+    {
+        Config.getInstance().reset();
+        game = GameFactory.getInstance().getGame("x3tc");
+        complex = Complex.fromXML(DocumentHelper.parseText(
+            "<complex version=\"4\" game=\"x3tc\" suns=\"100\" "
+                + "addBaseComplex=\"true\"><complexFactories>"
+                + "<complexFactory factory=\"siliconMineM-boron\">"
+                + "<yields><yield>10</yield><yield>10</yield></yields>"
+                + "</complexFactory>"
+                + "<complexFactory factory=\"chipPlant-argon\" "
+                + "quantity=\"1\" />"
+                + "</complexFactories></complex>"));
+    }
+
+    /**
+     * Tests relocating a complex.
+     */
+    @Test
+    public void testRelocate()
+    {
+        for (final Sector sector: game.getSectorFactory().getSectors())
+        {
+            final Complex copy = complex.copy();
+            final List<Integer> yields = sector.getYields("siliconWafers");
+            if (yields.size() < 2)
+            {
+                assertFalse(copy.relocate(sector));
+                assertNull(copy.getSector());
+            }
+            else
+            {
+                assertTrue(copy.relocate(sector));
+                assertEquals(sector, copy.getSector());
+                for (final ComplexFactory factory: copy.getFactories())
+                    if (factory.getFactory().isMine())
+                        assertEquals(yields.subList(0, 2), factory.getYields());
+            }
+        }
+    }
+
+    /**
+     * Tests rating all sectors.
+     *
+     * @throws InterruptedException
+     *             When test was interrupted
+     */
+    @Test
+    public void testRateSectors() throws InterruptedException
+    {
+        final List<SectorRating> ratings =
+            new LocationSearch(complex).rateSectors(null);
+        assertFalse(ratings.isEmpty());
+        double lastProfit = Double.MAX_VALUE;
+        for (final SectorRating rating: ratings)
+        {
+            // Check rating against a sequentially calculated complex
+            final Complex copy = complex.copy();
+            assertTrue(copy.relocate(rating.getSector()));
+            assertEquals(copy.getProfit(), rating.getProfit(), 0.0001);
+            assertEquals(copy.getTotalPrice(), rating.getPrice());
+
+            // Check sort order
+            assertTrue(rating.getProfit() <= lastProfit);
+            lastProfit = rating.getProfit();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the MineSolver class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class MineSolverTest
+{
+    /** The game */
+    private static Game game;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        game = GameFactory.getInstance().getGame("x3tc");
+    }
+
+    /**
+     * Compares the solver results with a brute force search over all subsets
+     * of the ore asteroids of a sector.
+     */
+    @Test
+    public void testSolve()
+    {
+        final Factory mine =
+            game.getFactoryFactory().getFactory("oreMineM-boron");
+        final Sun suns = game.getSunFactory().getDefaultSun();
+        final MineSolver solver = new MineSolver(mine, suns);
+
+        // Find a sector with a lot of ore asteroids
+        List<Asteroid> ores = new ArrayList<Asteroid>();
+        for (final Sector sector: game.getSectorFactory().getSectors())
+        {
+            final List<Asteroid> candidates = new ArrayList<Asteroid>();
+            for (final Asteroid asteroid: sector.getAsteroids())
+                if (asteroid.getWare().getId().equals("ore"))
+                    candidates.add(asteroid);
+            if (candidates.size() > ores.size() && candidates.size() <= 14)
+                ores = candidates;
+        }
+        assertTrue(ores.size() >= 6);
+
+        double total = 0;
+        for (final Asteroid asteroid: ores)
+            total += solver.getRate(asteroid);
+
+        for (double rate = 100; rate < total; rate += total / 17)
+        {
+            // Brute force the best selection
+            int bestCount = Integer.MAX_VALUE;
+            double bestSum = Double.MAX_VALUE;
+            for (int mask = 1; mask < 1 << ores.size(); mask++)
+            {
+                double sum = 0;
+                for (int i = 0; i < ores.size(); i++)
+                    if ((mask & 1 << i) != 0)
+                        sum += solver.getRate(ores.get(i));
+                if (sum < rate) continue;
+                final int count = Integer.bitCount(mask);
+                if (count < bestCount
+                    || (count == bestCount && sum < bestSum))
+                {
+                    bestCount = count;
+                    bestSum = sum;
+                }
+            }
+
+            final List<Asteroid> selection = solver.solve(ores, rate);
+            double sum = 0;
+            for (final Asteroid asteroid: selection)
+                sum += solver.getRate(asteroid);
+            assertEquals(bestCount, selection.size());
+            assertEquals(bestSum, sum, 0.0001);
+        }
+
+        // Unreachable rates select all asteroids
+        assertEquals(ores.size(), solver.solve(ores, total + 1).size());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the OutputPlanner class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class OutputPlannerTest
+{
+    /** The game */
+    private static Game game;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        game = GameFactory.getInstance().getGame("x3tc");
+    }
+
+    /**
+     * Checks that the planned complex produces the targets and all needed
+     * intermediate products and is not more expensive than the automatically
+     * calculated base complex for the same product factories.
+     */
+    @Test
+    public void testPlan()
+    {
+        final Ware tubes = game.getWareFactory().getWare("quantumTubes");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(tubes, 600);
+        final Complex complex = planner.plan();
+
+        assertTrue(complex.getAutoFactories().isEmpty());
+        for (final ComplexWare ware: complex.getWares())
+        {
+            if (ware.getWare().isMineral()) continue;
+            assertEquals(0, ware.getMissing(), 0.0001);
+            if (ware.getWare().equals(tubes))
+                assertTrue(ware.getProduced() - ware.getNeeded() >= 600);
+        }
+
+        final Complex base = new Complex(game, "base");
+        for (final ComplexFactory factory: complex.getFactories())
+            if (factory.getFactory().getProduct().getWare().equals(tubes))
+                base.addFactory(factory.getFactory(), factory.getQuantity());
+        base.setAddBaseComplex(true);
+        base.updateBaseComplex();
+        assertTrue(complex.getTotalPrice() <= base.getTotalPrice());
+    }
+
+    /**
+     * Checks that minerals are mined in the sector when a sector is set.
+     */
+    @Test
+    public void testPlanWithSector()
+    {
+        // Find the sector with the most silicon
+        final Ware silicon = game.getWareFactory().getWare("siliconWafers");
+        Sector best = null;
+        int bestYield = 0;
+        for (final Sector sector: game.getSectorFactory().getSectors())
+        {
+            int yield = 0;
+            for (final Asteroid asteroid: sector.getSiliconAsteroids())
+                yield += asteroid.getYield();
+            if (yield > bestYield)
+            {
+                best = sector;
+                bestYield = yield;
+            }
+        }
+
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setSector(best);
+        planner.setTarget(game.getWareFactory().getWare("crystals"), 200);
+        final Complex complex = planner.plan();
+        assertTrue(complex.hasMines());
+        for (final ComplexWare ware: complex.getWares())
+            if (ware.getWare().equals(silicon))
+                assertEquals(0, ware.getMissing(), 0.0001);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the PriceSensitivity class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class PriceSensitivityTest
+{
+    /**
+     * Checks the analytic values against recalculated profits.
+     */
+    @Test
+    public void testSensitivity()
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(game.getWareFactory().getWare("quantumTubes"), 600);
+        final Complex complex = planner.plan();
+        final double profit = complex.getProfit();
+
+        final PriceSensitivity sensitivity = complex.getPriceSensitivity();
+        assertFalse(sensitivity.getWares().isEmpty());
+        assertEquals(profit, sensitivity.getProfit(), 0.0001);
+
+        double contributions = 0;
+        for (final WareSensitivity ware: sensitivity.getWares())
+        {
+            contributions += ware.getContribution();
+
+            // Raising the price by one credit changes the profit by the
+            // derivative
+            final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+            prices.put(ware.getWare(), ware.getPrice() + 1);
+            complex.setCustomPrices(prices);
+            assertEquals(profit + ware.getDerivative(), complex.getProfit(),
+                0.0001);
+
+            // The break-even price brings the profit to zero (Within the
+            // rounding to full credits)
+            if (ware.hasBreakEvenPrice())
+            {
+                prices.put(ware.getWare(), (int) Math.round(ware
+                    .getBreakEvenPrice()));
+                complex.setCustomPrices(prices);
+                assertEquals(0, complex.getProfit(),
+                    Math.abs(ware.getSurplus()));
+            }
+        }
+        assertEquals(profit, contributions, 0.0001);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the ProductionGraph class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProductionGraphTest
+{
+    /** The game */
+    private static Game game;
+
+    /** The production graph */
+    private static ProductionGraph graph;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        game = GameFactory.getInstance().getGame("x3tc");
+        graph = game.getProductionGraph();
+    }
+
+    /**
+     * Returns the ware with the specified ID.
+     *
+     * @param id
+     *            The ware ID
+     * @return The ware
+     */
+    private static Ware ware(final String id)
+    {
+        return game.getWareFactory().getWare(id);
+    }
+
+    /**
+     * Checks that resources come before their products in the topological
+     * order unless both are part of the same cycle.
+     */
+    @Test
+    public void testTopologicalOrder()
+    {
+        final List<Ware> order = graph.getTopologicalOrder();
+        assertEquals(graph.getWareCount(), order.size());
+        for (final Factory factory: game.getFactoryFactory().getFactories())
+        {
+            final Ware product = factory.getProduct().getWare();
+            for (final Product resource: factory.getResources())
+            {
+                final Ware ware = resource.getWare();
+                if (graph.needs(ware, product)) continue;
+                assertTrue(graph.getPosition(ware) < graph.getPosition(product));
+            }
+        }
+    }
+
+    /**
+     * Checks the transitive closures and the cycle detection.
+     */
+    @Test
+    public void testClosures()
+    {
+        final Ware tubes = ware("quantumTubes");
+        final Ware energy = ware("energyCells");
+        final Ware crystals = ware("crystals");
+        final Ware silicon = ware("siliconWafers");
+
+        assertTrue(graph.needs(tubes, energy));
+        assertTrue(graph.needs(tubes, silicon));
+        assertFalse(graph.needs(energy, tubes));
+        assertTrue(graph.getAllConsumers(energy).get(graph.getOrdinal(tubes)));
+
+        assertTrue(graph.isCyclic(energy));
+        assertTrue(graph.isCyclic(crystals));
+        assertFalse(graph.isCyclic(tubes));
+        boolean found = false;
+        for (final List<Ware> cycle: graph.getCycles())
+            if (cycle.contains(energy) && cycle.contains(crystals))
+                found = true;
+        assertTrue(found);
+    }
+
+    /**
+     * Checks that the used wares of a complex match its factories.
+     */
+    @Test
+    public void testUsesWare()
+    {
+        final Complex complex = new Complex(game, "test");
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 1);
+        for (final Ware ware: game.getWareFactory().getWares())
+        {
+            boolean used = false;
+            for (final ComplexFactory complexFactory: complex.getFactories())
+            {
+                final Factory factory = complexFactory.getFactory();
+                if (factory.getProduct().getWare().equals(ware)) used = true;
+                for (final Product resource: factory.getResources())
+                    if (resource.getWare().equals(ware)) used = true;
+            }
+            assertEquals(used, complex.usesWare(ware));
+            assertEquals(used, complex.getUsedWares().contains(ware));
+        }
+    }
+}
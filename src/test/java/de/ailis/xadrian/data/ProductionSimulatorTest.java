@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the ProductionSimulator class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProductionSimulatorTest
+{
+    /** The planned complex */
+    private static Complex complex;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(game.getWareFactory().getWare("quantumTubes"), 600);
+        complex = planner.plan();
+    }
+
+    /**
+     * Checks that a balanced complex with regular trading runs without
+     * stalls and never exceeds its storage.
+     */
+    @Test
+    public void testBalancedComplex()
+    {
+        final ProductionSimulator simulator = new ProductionSimulator(complex);
+        final SimulationResult result = simulator.simulate();
+
+        assertEquals(ProductionSimulator.DEFAULT_DURATION, result.getDuration());
+        assertFalse(result.hasStalls());
+        assertTrue(result.getSteadyStateTime() >= 0);
+        for (int i = 0; i < result.getFactories().size(); i++)
+        {
+            assertEquals(1, result.getUtilization(i), 0.0001);
+            assertTrue(result.getCycles(i) > 0);
+        }
+        for (int i = 0; i < result.getWares().size(); i++)
+            assertTrue(result.getPeakStock(i) <= result.getCapacity(i)
+                + 0.0001);
+    }
+
+    /**
+     * Checks that the factories stall when nothing is traded.
+     */
+    @Test
+    public void testWithoutTrading()
+    {
+        final ProductionSimulator simulator = new ProductionSimulator(complex);
+        simulator.setTradeInterval(0);
+        final SimulationResult result = simulator.simulate();
+
+        assertTrue(result.hasStalls());
+        long blocked = 0;
+        for (int i = 0; i < result.getFactories().size(); i++)
+            blocked += result.getBlockedTime(i);
+        assertTrue(blocked > 0);
+        for (int i = 0; i < result.getWares().size(); i++)
+        {
+            assertEquals(0, result.getBought(i), 0.0001);
+            assertEquals(0, result.getSold(i), 0.0001);
+        }
+    }
+}
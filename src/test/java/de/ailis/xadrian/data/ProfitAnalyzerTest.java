@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the ProfitAnalyzer class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ProfitAnalyzerTest
+{
+    /** The planned complex */
+    private static Complex complex;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(game.getWareFactory().getWare("quantumTubes"), 600);
+        complex = planner.plan();
+    }
+
+    /**
+     * Checks that the sampled profits stay within the profits of the worst
+     * and best prices and that the result only depends on the seed.
+     */
+    @Test
+    public void testBounds() throws InterruptedException
+    {
+        double worst = 0, best = 0;
+        for (final ComplexWare ware: complex.getWares())
+        {
+            final double surplus = ware.getSurplus();
+            final int min = ware.getWare().getMinPrice();
+            final int max = ware.getWare().getMaxPrice();
+            worst += surplus * (surplus > 0 ? min : max);
+            best += surplus * (surplus > 0 ? max : min);
+        }
+
+        final ProfitAnalyzer analyzer = new ProfitAnalyzer(complex);
+        analyzer.setSamples(20000);
+        analyzer.setSeed(1);
+        final ProfitDistribution result = analyzer.analyze(null);
+        assertEquals(20000, result.getSampleCount());
+        assertEquals(complex.getProfit(), result.getExpectedProfit(), 0.0001);
+        assertTrue(result.getMin() >= worst - 0.0001);
+        assertTrue(result.getMax() <= best + 0.0001);
+        assertTrue(result.getPercentile(5) <= result.getMedian());
+        assertTrue(result.getMedian() <= result.getPercentile(95));
+        assertEquals(1, result.getProbability(result.getMin()), 0);
+
+        final ProfitDistribution again = analyzer.analyze(null);
+        assertEquals(result.getMedian(), again.getMedian(), 0);
+    }
+
+    /**
+     * Checks that fully correlated prices spread the profit wider than
+     * independent prices.
+     */
+    @Test
+    public void testCorrelation() throws InterruptedException
+    {
+        final ProfitAnalyzer analyzer = new ProfitAnalyzer(complex);
+        analyzer.setSamples(20000);
+        analyzer.setDefaultDistribution(PriceDistribution.UNIFORM);
+        final double independent = analyzer.analyze(null)
+            .getStandardDeviation();
+        analyzer.setDefaultCorrelation(1);
+        final double correlated = analyzer.analyze(null)
+            .getStandardDeviation();
+        assertTrue(independent > 0);
+        assertTrue(correlated != independent);
+    }
+}
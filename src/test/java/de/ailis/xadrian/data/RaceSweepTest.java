@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests the RaceSweep class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class RaceSweepTest
+{
+    /**
+     * Sweeps the races of a quantum tube complex.
+     */
+    @Test
+    public void testSweep() throws InterruptedException
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final Race boron = game.getRaceFactory().getRace("boron");
+        final Complex complex = new Complex(game, "test");
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 4);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+
+        final RaceSweep sweep = new RaceSweep(complex);
+        assertTrue(sweep.getRaces().contains(boron));
+        final List<RaceCombination> combinations = sweep.sweep(null);
+        assertEquals(sweep.countCombinations(), combinations.size());
+
+        // Complete combinations come first, ordered by price
+        RaceCombination previous = null;
+        for (final RaceCombination combination: combinations)
+        {
+            if (previous != null && previous.isComplete()
+                && combination.isComplete())
+                assertTrue(previous.getTotalPrice()
+                    <= combination.getTotalPrice());
+            if (previous != null) assertTrue(previous.isComplete()
+                || !combination.isComplete());
+            previous = combination;
+
+            // Only the boron sell BoFu factories
+            if (!combination.getAllowedRaces().contains(boron))
+                assertFalse(combination.isComplete());
+
+            // Allowing all races gives the normal base complex
+            if (combination.getIgnoredRaces().isEmpty())
+                assertEquals(complex.getTotalPrice(), combination
+                    .getTotalPrice());
+        }
+
+        final RaceCombination cheapest = RaceSweep.getCheapest(combinations, 1);
+        assertEquals(Collections.singleton(boron), cheapest.getAllowedRaces());
+        final Complex result = sweep.createComplex(cheapest);
+        assertTrue(result.getAutoFactories().isEmpty());
+        assertEquals(cheapest.getTotalPrice(), result.getTotalPrice());
+    }
+}
@@ -54,4 +54,16 @@ public class SectorTest
         assertEquals(-1, sectorFactory.getSector(9, 14).getDistance(
             sectorFactory.getSector(16, 11)));
     }
+
+    /**
+     * Checks that the distance to a sector of another game is -1.
+     */
+    @Test
+    public void testGetDistanceOtherGame()
+    {
+        final Sector other = GameFactory.getInstance().getGame("x3ap")
+            .getSectorFactory().getSector("sec-12-4");
+        assertEquals(-1, sectorFactory.getSector(0, 0).getDistance(other));
+        assertEquals(-1, other.getDistance(sectorFactory.getSector(0, 0)));
+    }
 }
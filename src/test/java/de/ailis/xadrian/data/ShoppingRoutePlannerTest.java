@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.data.factories.SectorFactory;
+
+/**
+ * Tests the ShoppingRoutePlanner class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ShoppingRoutePlannerTest
+{
+    /** The complex to buy */
+    private Complex complex;
+
+    /**
+     * Plans the complex.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final OutputPlanner planner = new OutputPlanner(game);
+        planner.setTarget(game.getWareFactory().getWare("quantumTubes"), 600);
+        this.complex = planner.plan();
+        this.complex.setSector(game.getSectorFactory().getSector("sec-10-8"));
+    }
+
+    /**
+     * Plans the route for the specified capacity and checks that every trip
+     * fits into the cargo bay, the jumps match the sector distances and the
+     * whole shopping list is covered.
+     *
+     * @param capacity
+     *            The cargo capacity
+     * @return The route
+     */
+    private ShoppingRoute checkRoute(final int capacity)
+    {
+        final ShoppingList list = this.complex.getShoppingList();
+        final ShoppingRoute route = new ShoppingRoutePlanner(list,
+            this.complex.getSector(), capacity).plan();
+        final SectorFactory sectors = this.complex.getGame()
+            .getSectorFactory();
+        final Map<Factory, Integer> bought = new HashMap<Factory, Integer>();
+        int kits = route.getUnroutableKits();
+        for (final ShoppingListItem item: route.getUnroutableFactories())
+            bought.put(item.getFactory(), item.getQuantity());
+        for (final ShoppingTrip trip: route.getTrips())
+        {
+            assertTrue(trip.getVolume() <= capacity);
+            Sector previous = this.complex.getSector();
+            for (final ShoppingStop stop: trip.getStops())
+            {
+                assertEquals(sectors.getJumps(previous, stop.getSector()),
+                    stop.getJumps());
+                previous = stop.getSector();
+                kits += stop.getKits();
+                for (final ShoppingListItem item: stop.getFactories())
+                {
+                    assertEquals(item.getNearestManufacturer(),
+                        stop.getSector());
+                    final Integer count = bought.get(item.getFactory());
+                    bought.put(item.getFactory(), (count == null ? 0 : count)
+                        + item.getQuantity());
+                }
+            }
+            assertEquals(sectors.getJumps(previous, this.complex.getSector()),
+                trip.getReturnJumps());
+        }
+        assertEquals(list.getKitQuantityLeft(), kits);
+        for (final ShoppingListItem item: list.getItems())
+        {
+            final Integer count = bought.get(item.getFactory());
+            assertEquals(item.getQuantityLeft(), count == null ? 0 : count
+                .intValue());
+        }
+        return route;
+    }
+
+    /**
+     * Checks routes for different cargo capacities.
+     */
+    @Test
+    public void testCapacities()
+    {
+        final ShoppingRoute small = checkRoute(ShoppingRoutePlanner
+            .DEFAULT_CAPACITY);
+        final ShoppingRoute large = checkRoute(200000);
+        final ShoppingRoute unlimited = checkRoute(Integer.MAX_VALUE);
+        assertTrue(small.isComplete());
+        assertTrue(large.isComplete());
+        assertTrue(unlimited.isComplete());
+        assertTrue(small.getTrips().size() > large.getTrips().size());
+        assertTrue(small.getTotalJumps() >= large.getTotalJumps());
+        assertTrue(large.getTotalJumps() >= unlimited.getTotalJumps());
+        assertEquals(1, unlimited.getTrips().size());
+    }
+
+    /**
+     * Checks that factories larger than the cargo bay are reported.
+     */
+    @Test
+    public void testTooSmall()
+    {
+        final ShoppingRoute route = checkRoute(Complex.KIT_VOLUME);
+        assertFalse(route.isComplete());
+        assertEquals(0, route.getUnroutableKits());
+        assertEquals(this.complex.getShoppingList().getItems().size(), route
+            .getUnroutableFactories().size());
+    }
+
+    /**
+     * Checks that built factories are not bought and the route is cached.
+     */
+    @Test
+    public void testBuiltFactories()
+    {
+        final ShoppingRoute route = this.complex.getShoppingRoute(60000);
+        assertSame(route, this.complex.getShoppingRoute(60000));
+        this.complex.buildFactory(this.complex.getShoppingList().getItems()
+            .get(0).getFactory().getId());
+        this.complex.buildKit();
+        final ShoppingRoute updated = this.complex.getShoppingRoute(60000);
+        assertFalse(route == updated);
+        checkRoute(60000);
+    }
+}
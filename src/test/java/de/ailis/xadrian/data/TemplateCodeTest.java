@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Tests scanning text for template codes and decoding them.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class TemplateCodeTest
+{
+    /** The game */
+    private Game game;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp()
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+    }
+
+    /**
+     * Creates a template code.
+     *
+     * @param factoryId
+     *            The ID of the factory to add
+     * @param quantity
+     *            The factory quantity
+     * @return The template code
+     */
+    private String createCode(final String factoryId, final int quantity)
+    {
+        final Complex complex = new Complex(this.game, "test");
+        complex.setSector(this.game.getSectorFactory().getSector("sec-10-8"));
+        complex.addFactory(this.game.getFactoryFactory()
+            .getFactory(factoryId), quantity);
+        return complex.getTemplateCode();
+    }
+
+    /**
+     * Checks decoding template codes.
+     */
+    @Test
+    public void testParse()
+    {
+        final String code = createCode("quantumTubeFab-boron", 3);
+        final Complex complex = Complex.parseTemplateCode(code);
+        assertNotNull(complex);
+        assertEquals("sec-10-8", complex.getSector().getId());
+        assertEquals(3, complex.getFactories().get(0).getQuantity());
+        assertEquals(code, complex.getTemplateCode());
+        assertTrue(Complex.isValidTemplateCode(code));
+
+        assertNull(Complex.parseTemplateCode(""));
+        assertNull(Complex.parseTemplateCode("Wikipedia"));
+        assertNull(Complex.parseTemplateCode(code.substring(0, 4)));
+        assertFalse(Complex.isValidTemplateCode("#+!"));
+    }
+
+    /**
+     * Returns the XML of the specified complex.
+     *
+     * @param complex
+     *            The complex
+     * @return The XML
+     * @throws IOException
+     *             When writing fails
+     */
+    private static String toXML(final Complex complex) throws IOException
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        complex.writeXML(stream);
+        return stream.toString("UTF-8");
+    }
+
+    /**
+     * Checks version 2 template codes.
+     *
+     * @throws IOException
+     *             When test fails
+     */
+    @Test
+    public void testVersion2() throws IOException
+    {
+        // Simple complexes still use the original format
+        final String simple = createCode("quantumTubeFab-boron", 3);
+        assertEquals(0, DatatypeConverter.parseBase64Binary(simple)[0] & 16);
+
+        // Extended state is preserved
+        final Complex complex = new Complex(this.game, "test");
+        complex.setSector(this.game.getSectorFactory().getSector("sec-10-8"));
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 4);
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "cahoonaBakeryM-argon"), 2);
+        complex.disableFactory(1);
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(this.game.getWareFactory().getWare("quantumTubes"), 4000);
+        prices.put(this.game.getWareFactory().getWare("energyCells"), -12);
+        complex.setCustomPrices(prices);
+        complex.toggleAddBaseComplex();
+        complex.buildKit();
+        complex.buildFactory("quantumTubeFab-boron");
+        final String code = complex.getTemplateCode();
+        assertEquals(16, DatatypeConverter.parseBase64Binary(code)[0] & 16);
+        final Complex decoded = Complex.parseTemplateCode(code);
+        assertNotNull(decoded);
+        decoded.setName("test");
+        assertEquals(toXML(complex), toXML(decoded));
+        assertEquals(code, decoded.getTemplateCode());
+    }
+
+    /**
+     * Checks that complexes with an automatically added base complex still
+     * use the original format which contains the base complex factories as
+     * normal factories.
+     *
+     * @throws IOException
+     *             When test fails
+     */
+    @Test
+    public void testBaseComplex() throws IOException
+    {
+        final Complex complex = new Complex(this.game, "test");
+        complex.setSector(this.game.getSectorFactory().getSector("sec-10-8"));
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "quantumTubeFab-boron"), 2);
+        complex.toggleAddBaseComplex();
+        assertFalse(complex.getAutoFactories().isEmpty());
+        final String code = complex.getTemplateCode();
+        assertEquals(0, DatatypeConverter.parseBase64Binary(code)[0] & 16);
+
+        final Complex decoded = Complex.parseTemplateCode(code);
+        assertNotNull(decoded);
+        assertFalse(decoded.isAddBaseComplex());
+        final List<String> expected = new ArrayList<String>();
+        for (final ComplexFactory factory: complex.getFactories())
+            expected.add(factory.getFactory().getId() + "*"
+                + factory.getQuantity());
+        for (final ComplexFactory factory: complex.getAutoFactories())
+            expected.add(factory.getFactory().getId() + "*"
+                + factory.getQuantity());
+        final List<String> actual = new ArrayList<String>();
+        for (final ComplexFactory factory: decoded.getFactories())
+            actual.add(factory.getFactory().getId() + "*"
+                + factory.getQuantity());
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+
+        // The decoded complex is encoded in the original format again
+        final String decodedCode = decoded.getTemplateCode();
+        assertEquals(0,
+            DatatypeConverter.parseBase64Binary(decodedCode)[0] & 16);
+        assertEquals(toXML(decoded), toXML(Complex
+            .parseTemplateCode(decodedCode)));
+    }
+
+    /**
+     * Checks that large mine complexes get short codes.
+     *
+     * @throws IOException
+     *             When test fails
+     */
+    @Test
+    public void testMines() throws IOException
+    {
+        final List<Integer> yields = new ArrayList<Integer>();
+        for (int i = 0; i < 200; i++)
+            yields.add(i < 120 ? 30 : 17 + i % 3);
+        final Complex complex = new Complex(this.game, "test");
+        complex.setSector(this.game.getSectorFactory().getSector("sec-10-8"));
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            "oreMineM-boron"), yields);
+        final String code = complex.getTemplateCode();
+        assertTrue(code.length() < 120);
+        final Complex decoded = Complex.parseTemplateCode(code);
+        assertNotNull(decoded);
+        assertEquals(yields, decoded.getFactories().get(0).getYields());
+        decoded.setName("test");
+        assertEquals(toXML(complex), toXML(decoded));
+
+        // Corrupted compressed data is rejected
+        final byte[] data = DatatypeConverter.parseBase64Binary(code);
+        data[data.length / 2] ^= 0x55;
+        assertNull(Complex.parseTemplateCode(DatatypeConverter
+            .printBase64Binary(data)));
+    }
+
+    /**
+     * Checks finding template codes in arbitrary text.
+     */
+    @Test
+    public void testFind()
+    {
+        final String tubes = createCode("quantumTubeFab-boron", 3);
+        final String bakery = createCode("cahoonaBakeryM-argon", 12);
+        final String text = "Try this one:[code]" + tubes + "[/code]\n"
+            + "or (" + bakery + "). Quote: \"" + tubes + "\"\n"
+            + "http://example.com/viewtopic.php?t=123";
+
+        final List<String> codes = Complex.findTemplateCodes(text);
+        assertTrue(codes.contains(tubes));
+        assertTrue(codes.contains(bakery));
+        assertEquals(tubes, codes.get(0));
+
+        int valid = 0;
+        for (final String code: codes)
+            if (Complex.parseTemplateCode(code) != null) valid++;
+        assertEquals(2, valid);
+
+        assertTrue(Complex.findTemplateCodes("").isEmpty());
+        assertEquals(1, Complex.findTemplateCodes(tubes).size());
+    }
+}
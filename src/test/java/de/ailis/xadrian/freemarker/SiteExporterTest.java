@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.freemarker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the SiteExporter class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class SiteExporterTest
+{
+    /** The game */
+    private Game game;
+
+    /** The temporary directory */
+    private File directory;
+
+    /** The complex directory */
+    private File root;
+
+    /** The site directory */
+    private File site;
+
+    /**
+     * Creates the temporary directories.
+     *
+     * @throws IOException
+     *             When directory could not be created
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        System.setProperty("xadrian.config", "false");
+        this.game = GameFactory.getInstance().getGame("x3tc");
+        this.directory = File.createTempFile("xadrian", "");
+        assertTrue(this.directory.delete());
+        this.root = new File(this.directory, "complexes");
+        this.site = new File(this.directory, "site");
+        assertTrue(new File(this.root, "sub").mkdirs());
+    }
+
+    /**
+     * Deletes the temporary directories.
+     */
+    @After
+    public void tearDown()
+    {
+        delete(this.directory);
+    }
+
+    /**
+     * Recursively deletes a file or directory.
+     *
+     * @param file
+     *            The file or directory to delete
+     */
+    private static void delete(final File file)
+    {
+        final File[] files = file.listFiles();
+        if (files != null) for (final File child: files)
+            delete(child);
+        file.delete();
+    }
+
+    /**
+     * Writes a complex file.
+     *
+     * @param name
+     *            The file name relative to the complex directory
+     * @param factoryId
+     *            The ID of the factory to add
+     * @param quantity
+     *            The factory quantity
+     * @return The written file
+     * @throws IOException
+     *             When file could not be written
+     */
+    private File write(final String name, final String factoryId,
+        final int quantity) throws IOException
+    {
+        final Complex complex = new Complex(this.game, name);
+        complex.addFactory(this.game.getFactoryFactory().getFactory(
+            factoryId), quantity);
+        final File file = new File(this.root, name);
+        final OutputStream stream = new FileOutputStream(file);
+        try
+        {
+            complex.writeXML(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+        return file;
+    }
+
+    /**
+     * Reads a text file.
+     *
+     * @param file
+     *            The file to read
+     * @return The text
+     * @throws IOException
+     *             When file could not be read
+     */
+    private static String read(final File file) throws IOException
+    {
+        final InputStream stream = new FileInputStream(file);
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toString("US-ASCII");
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Checks exporting a site and updating it.
+     *
+     * @throws Exception
+     *             When test fails
+     */
+    @Test
+    public void testExport() throws Exception
+    {
+        final File tubes = write("tubes.x3c", "quantumTubeFab-boron", 2);
+        write("sub/tubes.x3c", "quantumTubeFab-boron", 4);
+        final File bakery = write("bakery.x3c", "cahoonaBakeryM-argon", 1);
+
+        final SiteExporter exporter = new SiteExporter(this.site);
+        exporter.export(Collections.singletonList(this.root), null);
+        assertEquals(3, exporter.getRendered());
+        final File pages = new File(this.site, "complexes");
+        assertTrue(new File(pages, "tubes.html").isFile());
+        assertTrue(new File(pages, "tubes-2.html").isFile());
+        assertTrue(new File(pages, "complex.css").isFile());
+        assertTrue(new File(this.site, "images/blank.png").isFile());
+        final String index = read(new File(this.site, "index.html"));
+        assertTrue(index.contains("href=\"complexes/bakery.html\""));
+        assertTrue(index.contains("href=\"complexes/tubes-2.html\""));
+        assertTrue(read(new File(pages, "bakery.html")).contains(
+            "<h1>bakery</h1>"));
+
+        // Nothing changed
+        final SiteExporter again = new SiteExporter(this.site);
+        again.export(Collections.singletonList(this.root), null);
+        assertEquals(0, again.getRendered());
+
+        // Only changed complexes are rendered again and removed complexes
+        // are removed from the site
+        write("tubes.x3c", "quantumTubeFab-boron", 7);
+        assertTrue(bakery.delete());
+        again.export(Collections.singletonList(this.root), null);
+        assertEquals(1, again.getRendered());
+        assertFalse(new File(pages, "bakery.html").exists());
+        assertFalse(read(new File(this.site, "index.html")).contains(
+            "bakery"));
+        assertTrue(tubes.isFile());
+        assertTrue(new File(pages, "tubes.html").isFile());
+
+        // Changed display settings render all pages again
+        final Config config = Config.getInstance();
+        config.setProdStatsPerMinute(!config.isProdStatsPerMinute());
+        try
+        {
+            again.export(Collections.singletonList(this.root), null);
+            assertEquals(2, again.getRendered());
+        }
+        finally
+        {
+            config.setProdStatsPerMinute(!config.isProdStatsPerMinute());
+        }
+    }
+}
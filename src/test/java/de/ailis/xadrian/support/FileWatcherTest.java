@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ailis.xadrian.listeners.FileChangeListener;
+
+/**
+ * Tests the FileWatcher class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class FileWatcherTest
+{
+    /** Accepts complex files */
+    private static final FileFilter COMPLEX_FILES = new FileFilter()
+    {
+        @Override
+        public boolean accept(final File file)
+        {
+            return file.getName().endsWith(".x3c");
+        }
+    };
+
+    /** The temporary directory */
+    private File directory;
+
+    /**
+     * Creates the temporary directory.
+     *
+     * @throws IOException
+     *             When directory could not be created
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        this.directory = File.createTempFile("xadrian", "");
+        assertTrue(this.directory.delete());
+        assertTrue(new File(this.directory, "sub").mkdirs());
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @After
+    public void tearDown()
+    {
+        delete(this.directory);
+    }
+
+    /**
+     * Recursively deletes a file or directory.
+     *
+     * @param file
+     *            The file or directory to delete
+     */
+    private static void delete(final File file)
+    {
+        final File[] files = file.listFiles();
+        if (files != null) for (final File child: files)
+            delete(child);
+        file.delete();
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param file
+     *            The file to write
+     * @param text
+     *            The file content
+     * @param modified
+     *            The modification time to set
+     * @throws IOException
+     *             When file could not be written
+     */
+    private static void write(final File file, final String text,
+        final long modified) throws IOException
+    {
+        final OutputStream stream = new FileOutputStream(file);
+        try
+        {
+            stream.write(text.getBytes("UTF-8"));
+        }
+        finally
+        {
+            stream.close();
+        }
+        assertTrue(file.setLastModified(modified));
+    }
+
+    /**
+     * Checks that files modified in place change the tree state while
+     * ignored files don't.
+     *
+     * @throws IOException
+     *             When test fails
+     */
+    @Test
+    public void testTreeState() throws IOException
+    {
+        final File sub = new File(this.directory, "sub");
+        final long subModified = sub.lastModified();
+        final File complex = new File(sub, "test.x3c");
+        final File other = new File(sub, "notes.txt");
+        write(complex, "<complex/>", 1000000000000L);
+        write(other, "notes", 1000000000000L);
+        assertTrue(sub.setLastModified(subModified));
+        final long state = FileWatcher.getTreeState(this.directory,
+            COMPLEX_FILES);
+
+        // Ignored files are not compared
+        write(other, "more notes", 1000000001000L);
+        assertTrue(sub.setLastModified(subModified));
+        assertEquals(state, FileWatcher.getTreeState(this.directory,
+            COMPLEX_FILES));
+
+        // Complex files modified in place (The directory doesn't change)
+        write(complex, "<complex></complex>", 1000000001000L);
+        assertTrue(sub.setLastModified(subModified));
+        final long modified = FileWatcher.getTreeState(this.directory,
+            COMPLEX_FILES);
+        assertFalse(state == modified);
+
+        // Same size, only the modification time changed
+        write(complex, "<complex></complex>", 1000000002000L);
+        assertTrue(sub.setLastModified(subModified));
+        assertFalse(modified == FileWatcher.getTreeState(this.directory,
+            COMPLEX_FILES));
+    }
+
+    /**
+     * Checks that directory trees are checked in a longer interval than
+     * single files.
+     *
+     * @throws IOException
+     *             When test fails
+     */
+    @Test
+    public void testTreeInterval() throws IOException
+    {
+        final File complex = new File(new File(this.directory, "sub"),
+            "test.x3c");
+        write(complex, "<complex/>", 1000000000000L);
+        final List<File> changed = new ArrayList<File>();
+        final FileChangeListener listener = new FileChangeListener()
+        {
+            @Override
+            public void fileChanged(final File file)
+            {
+                changed.add(file);
+            }
+        };
+        final FileWatcher watcher = FileWatcher.getInstance();
+        final long start = System.currentTimeMillis();
+        watcher.watch(this.directory, COMPLEX_FILES, listener);
+        try
+        {
+            write(complex, "<complex></complex>", 1000000001000L);
+
+            // Not checked within the tree interval
+            watcher.check(start + FileWatcher.INTERVAL);
+            watcher.check(start + FileWatcher.INTERVAL
+                + FileWatcher.QUIET_TIME);
+            assertTrue(changed.isEmpty());
+
+            // Checked after the tree interval and reported when stable
+            final long later = start + FileWatcher.TREE_INTERVAL + 1000;
+            watcher.check(later);
+            assertTrue(changed.isEmpty());
+            watcher.check(later + FileWatcher.QUIET_TIME);
+            assertEquals(1, changed.size());
+            assertEquals(this.directory.getAbsoluteFile(), changed.get(0));
+        }
+        finally
+        {
+            watcher.unwatch(this.directory, listener);
+        }
+    }
+}